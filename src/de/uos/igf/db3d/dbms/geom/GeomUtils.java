@@ -9,6 +9,7 @@ import java.util.Comparator;
 
 import de.uos.igf.db3d.dbms.api.Db3dSimpleResourceBundle;
 import de.uos.igf.db3d.dbms.geom.LA.SingularException;
+import de.uos.igf.db3d.dbms.structure.GeoObj;
 
 /**
  * This class contains static and dynamic methods to compare two ore more double
@@ -400,6 +401,191 @@ public final class GeomUtils {
 		return result;
 	}
 
+	/**
+	 * Computes the square of the euclidean distance between the given point
+	 * and the closest point of the given object. Supported are points,
+	 * segments, triangles and tetrahedrons including the elements of nets.
+	 * 
+	 * @param obj
+	 *            the GeoObj
+	 * @param point
+	 *            the Point3D
+	 * @return the square of the distance, or NaN if the type of obj is not
+	 *         supported.
+	 */
+	public static double euclideanDistanceSQR(GeoObj obj, Point3D point) {
+		switch (obj.getType()) {
+		case SimpleGeoObj.POINT3D:
+		case SimpleGeoObj.POINT_ELT_3D:
+			return ((Point3D) obj).euclideanDistanceSQR(point);
+		case SimpleGeoObj.SEGMENT3D:
+		case SimpleGeoObj.SEGMENT_ELT_3D:
+			return ((Segment3D) obj).euclideanDistanceSQR(point);
+		case SimpleGeoObj.TRIANGLE3D:
+		case SimpleGeoObj.TRIANGLE_ELT_3D:
+			return ((Triangle3D) obj).euclideanDistanceSQR(point);
+		case SimpleGeoObj.TETRAHEDRON3D:
+		case SimpleGeoObj.TETRAHEDRON_ELT_3D:
+			return ((Tetrahedron3D) obj).euclideanDistanceSQR(point);
+		default:
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * Computes the square of the euclidean distance between the closest points
+	 * of the given objects. Supported are points, segments, triangles and
+	 * tetrahedrons including the elements of nets.<br>
+	 * Two disjoint simplexes have a closest pair of points at a vertex of one
+	 * of them or at two edges. So the distance is the minimum of the vertex
+	 * distances to the other object and the distances between the edges, or
+	 * 0 if an edge crosses a triangle of the other object.
+	 * 
+	 * @param obj1
+	 *            the first GeoObj
+	 * @param obj2
+	 *            the second GeoObj
+	 * @return the square of the distance, or NaN if the type of an object is
+	 *         not supported.
+	 */
+	public static double euclideanDistanceSQR(GeoObj obj1, GeoObj obj2) {
+		Point3D[] a = vertices(obj1);
+		Point3D[] b = vertices(obj2);
+		if (a == null || b == null)
+			return Double.NaN;
+
+		double min = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < a.length; i++)
+			min = Math.min(min, euclideanDistanceSQR(obj2, a[i]));
+		for (int j = 0; j < b.length; j++)
+			min = Math.min(min, euclideanDistanceSQR(obj1, b[j]));
+		for (int i = 0; i < a.length && min > 0; i++)
+			for (int k = i + 1; k < a.length; k++)
+				for (int j = 0; j < b.length; j++)
+					for (int l = j + 1; l < b.length; l++)
+						min = Math.min(min, segmentDistanceSQR(a[i], a[k],
+								b[j], b[l]));
+		if (min > 0 && (crosses(a, b) || crosses(b, a)))
+			return 0;
+		return min;
+	}
+
+	/**
+	 * Returns the vertices of the given simplex.
+	 * 
+	 * @param obj
+	 *            Point3D, Segment3D, Triangle3D or Tetrahedron3D object
+	 * @return Point3D[] - vertices, null if obj is no simplex.
+	 */
+	public static Point3D[] vertices(GeoObj obj) {
+		switch (obj.getType()) {
+		case SimpleGeoObj.POINT3D:
+		case SimpleGeoObj.POINT_ELT_3D:
+			return new Point3D[] { (Point3D) obj };
+		case SimpleGeoObj.SEGMENT3D:
+		case SimpleGeoObj.SEGMENT_ELT_3D:
+			return ((Segment3D) obj).getPoints();
+		case SimpleGeoObj.TRIANGLE3D:
+		case SimpleGeoObj.TRIANGLE_ELT_3D:
+			return ((Triangle3D) obj).getPoints();
+		case SimpleGeoObj.TETRAHEDRON3D:
+		case SimpleGeoObj.TETRAHEDRON_ELT_3D:
+			return ((Tetrahedron3D) obj).getPoints();
+		default:
+			return null;
+		}
+	}
+
+	/*
+	 * Tests whether an edge of the simplex with the vertices a crosses a
+	 * triangle of the simplex with the vertices b. The edge has to pass
+	 * strictly through the plane and the interior of the triangle, touching
+	 * configurations are found by the distances.
+	 */
+	private static boolean crosses(Point3D[] a, Point3D[] b) {
+		for (int i = 0; i < a.length; i++)
+			for (int k = i + 1; k < a.length; k++)
+				for (int j = 0; j < b.length; j++)
+					for (int l = j + 1; l < b.length; l++)
+						for (int m = l + 1; m < b.length; m++)
+							if (crosses(a[i], a[k], b[j], b[l], b[m]))
+								return true;
+		return false;
+	}
+
+	/*
+	 * Tests whether the segment [p, q] crosses the triangle (a, b, c).
+	 */
+	private static boolean crosses(Point3D p, Point3D q, Point3D a,
+			Point3D b, Point3D c) {
+		double op = Predicates.orient3d(a, b, c, p);
+		double oq = Predicates.orient3d(a, b, c, q);
+		if (!((op > 0 && oq < 0) || (op < 0 && oq > 0)))
+			return false;
+		double o1 = Predicates.orient3d(p, q, a, b);
+		double o2 = Predicates.orient3d(p, q, b, c);
+		double o3 = Predicates.orient3d(p, q, c, a);
+		return (o1 > 0 && o2 > 0 && o3 > 0) || (o1 < 0 && o2 < 0 && o3 < 0);
+	}
+
+	/*
+	 * Computes the square of the distance between the segments [p1, q1] and
+	 * [p2, q2] by clamping the parameters of the closest points of the
+	 * supporting lines.
+	 */
+	private static double segmentDistanceSQR(Point3D p1, Point3D q1,
+			Point3D p2, Point3D q2) {
+		double[] d1 = { q1.getX() - p1.getX(), q1.getY() - p1.getY(),
+				q1.getZ() - p1.getZ() };
+		double[] d2 = { q2.getX() - p2.getX(), q2.getY() - p2.getY(),
+				q2.getZ() - p2.getZ() };
+		double[] r = { p1.getX() - p2.getX(), p1.getY() - p2.getY(),
+				p1.getZ() - p2.getZ() };
+		double a = LA.dot(d1, d1);
+		double e = LA.dot(d2, d2);
+		double f = LA.dot(d2, r);
+		double s;
+		double t;
+		if (a == 0 && e == 0) {
+			s = 0;
+			t = 0;
+		} else if (a == 0) {
+			s = 0;
+			t = clamp(f / e);
+		} else {
+			double c = LA.dot(d1, r);
+			if (e == 0) {
+				t = 0;
+				s = clamp(-c / a);
+			} else {
+				double b = LA.dot(d1, d2);
+				double denom = a * e - b * b;
+				s = denom > 0 ? clamp((b * f - c * e) / denom) : 0;
+				t = (b * s + f) / e;
+				if (t < 0) {
+					t = 0;
+					s = clamp(-c / a);
+				} else if (t > 1) {
+					t = 1;
+					s = clamp((b - c) / a);
+				}
+			}
+		}
+		double dist = 0;
+		for (int k = 0; k < 3; k++) {
+			double d = r[k] + d1[k] * s - d2[k] * t;
+			dist += d * d;
+		}
+		return dist;
+	}
+
+	/*
+	 * Clamps the given parameter to [0, 1].
+	 */
+	private static double clamp(double value) {
+		return value < 0 ? 0 : (value > 1 ? 1 : value);
+	}
+
 	/**
 	 * Computes the (square of) the distance between the convex hulls of the two
 	 * given point sets and eventually also the convex coordinates of points at
@@ -187,6 +187,12 @@ public class Line3D implements SimpleGeoObj, Serializable {
 	 * @return boolean - true if contained, false otherwise.
 	 */
 	public boolean contains(Point3D point, ScalarOperator sop) {
+		// fast rejection of points clearly off this
+		Point3D next = new Point3D(this.origin.getX() + this.dvec.getX(),
+				this.origin.getY() + this.dvec.getY(), this.origin.getZ()
+						+ this.dvec.getZ());
+		if (Predicates.offLine(this.origin, next, point, 2 * sop.getEpsilon()))
+			return false;
 		return sop.equal(this.distance(point), 0);
 	}
 
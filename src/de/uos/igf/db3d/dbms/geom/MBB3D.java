@@ -647,6 +647,115 @@ public class MBB3D implements PersistentObject, SimpleGeoObj, Externalizable {
 		}
 	}
 
+	/**
+	 * Copies the coordinates of this into the given array in the order min x,
+	 * y, z and max x, y, z.
+	 * 
+	 * @param box
+	 *            target array
+	 * @param offset
+	 *            offset of the six coordinates in box
+	 */
+	public void getCoordinates(double[] box, int offset) {
+		box[offset] = pMin.getX();
+		box[offset + 1] = pMin.getY();
+		box[offset + 2] = pMin.getZ();
+		box[offset + 3] = pMax.getX();
+		box[offset + 4] = pMax.getY();
+		box[offset + 5] = pMax.getZ();
+	}
+
+	/**
+	 * Expands the box at the given offset in place to the union of it and
+	 * this. The coordinates are chosen like in union(MBB3D, ScalarOperator),
+	 * so no MBB3D or Point3D object is created.
+	 * 
+	 * @param box
+	 *            box as six coordinates (min x, y, z, max x, y, z)
+	 * @param offset
+	 *            offset of the box in the array
+	 * @param sop
+	 *            ScalarOperator
+	 * @see MBB3D#union(MBB3D, ScalarOperator)
+	 */
+	public void expand(double[] box, int offset, ScalarOperator sop) {
+		for (int i = 0; i < 3; i++) {
+			if (!sop.lessOrEqual(box[offset + i], pMin.getCoord(i)))
+				box[offset + i] = pMin.getCoord(i);
+			if (!sop.greaterOrEqual(box[offset + i + 3], pMax.getCoord(i)))
+				box[offset + i + 3] = pMax.getCoord(i);
+		}
+	}
+
+	/**
+	 * Computes the volume of the union of this and the given MBB3D without
+	 * creating the union MBB3D.
+	 * 
+	 * @param mbb
+	 *            MBB3D for union
+	 * @param sop
+	 *            ScalarOperator
+	 * @return double - volume of the union MBB3D.
+	 * @see MBB3D#union(MBB3D, ScalarOperator)
+	 */
+	public double unionVolume(MBB3D mbb, ScalarOperator sop) {
+		double volume = 1.0;
+		for (int i = 0; i < 3; i++) {
+			double min = sop.lessOrEqual(pMin.getCoord(i), mbb.pMin
+					.getCoord(i)) ? pMin.getCoord(i) : mbb.pMin.getCoord(i);
+			double max = sop.greaterOrEqual(pMax.getCoord(i), mbb.pMax
+					.getCoord(i)) ? pMax.getCoord(i) : mbb.pMax.getCoord(i);
+			volume = volume * (max - min);
+		}
+		return volume;
+	}
+
+	/**
+	 * Tests whether the boxes at the given offsets intersect. The boxes are
+	 * given as six coordinates (min x, y, z, max x, y, z). If the two boxes
+	 * have a boundary in common, they DO intersect.
+	 * 
+	 * @param box1
+	 *            array of the first box
+	 * @param offset1
+	 *            offset of the first box
+	 * @param box2
+	 *            array of the second box
+	 * @param offset2
+	 *            offset of the second box
+	 * @param sop
+	 *            ScalarOperator
+	 * @return boolean - true if intersects, false otherwise.
+	 * @see MBB3D#intersects(MBB3D, ScalarOperator)
+	 */
+	public static boolean intersects(double[] box1, int offset1,
+			double[] box2, int offset2, ScalarOperator sop) {
+		for (int i = 0; i < 3; i++) {
+			if (sop.greaterThan(box1[offset1 + i], box2[offset2 + i + 3])
+					|| sop.lessThan(box1[offset1 + i + 3], box2[offset2 + i]))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Creates a MBB3D from the box at the given offset.
+	 * 
+	 * @param box
+	 *            box as six coordinates (min x, y, z, max x, y, z)
+	 * @param offset
+	 *            offset of the box in the array
+	 * @return MBB3D - new MBB3D.
+	 * @throws IllegalArgumentException
+	 *             if the maximum point of the box is not greater than its
+	 *             minimum point.
+	 */
+	public static MBB3D create(double[] box, int offset) {
+		return new MBB3D(new Point3D(box[offset], box[offset + 1],
+				box[offset + 2]), new Point3D(box[offset + 3], box[offset + 4],
+				box[offset + 5]));
+	}
+
 	/**
 	 * Computes the margin of this.
 	 * 
@@ -697,6 +806,28 @@ public class MBB3D implements PersistentObject, SimpleGeoObj, Externalizable {
 		return min;
 	}
 
+	/**
+	 * Computes the minimal distance square between this and the given MBB3D.
+	 * Gaps along an axis within the epsilon range count as zero.
+	 * 
+	 * @param mbb
+	 *            MBB3D for distance
+	 * @param sop
+	 *            ScalarOperator
+	 * @return double - minimal distance square, 0 if the MBB3Ds intersect.
+	 */
+	public double minDistSquare(MBB3D mbb, ScalarOperator sop) {
+		double min = 0.0;
+		for (int i = 0; i < 3; i++) {
+			double gap = Math.max(mbb.getPMin().getCoord(i)
+					- this.getPMax().getCoord(i), this.getPMin().getCoord(i)
+					- mbb.getPMax().getCoord(i));
+			if (sop.greaterThan(gap, 0))
+				min = min + gap * gap;
+		}
+		return min;
+	}
+
 	/**
 	 * Sets the max point.
 	 * 
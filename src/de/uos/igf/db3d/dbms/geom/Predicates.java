@@ -0,0 +1,660 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.dbms.geom;
+
+/**
+ * Predicates - robust geometric predicates on double coordinates.<br>
+ * <br>
+ * The predicates orient2d, orient3d, incircle and insphere compute the sign
+ * of a determinant exactly. The determinant is first evaluated in floating
+ * point arithmetic together with a bound of its rounding error. Only if the
+ * result is smaller than the bound, the determinant is evaluated again with
+ * exact expansion arithmetic, where a number is represented as a sum of
+ * non-overlapping doubles. The returned value has always the correct sign,
+ * its magnitude is an approximation.<br>
+ * <br>
+ * Unlike the comparisons of the ScalarOperator the predicates use no
+ * epsilon, so they are consistent for degenerate and nearly degenerate
+ * input. Overflow and underflow of the coordinates are not handled.<br>
+ * <br>
+ * Shewchuk, J. R. : Adaptive Precision Floating-Point Arithmetic and Fast
+ * Robust Geometric Predicates - In Discrete & Computational Geometry 18(3),
+ * 1997, pages 305 - 363.
+ */
+public final class Predicates {
+
+	/* half of the machine epsilon - 2^-53 */
+	private final static double EPSILON = 1.1102230246251565E-16;
+
+	/* splitter of the exact multiplication - 2^27 + 1 */
+	private final static double SPLITTER = 134217729.0;
+
+	/* error bounds of the floating point filters */
+	private final static double CCW_ERRBOUND = (3.0 + 16.0 * EPSILON)
+			* EPSILON;
+
+	private final static double O3D_ERRBOUND = (7.0 + 56.0 * EPSILON)
+			* EPSILON;
+
+	private final static double ICC_ERRBOUND = (10.0 + 96.0 * EPSILON)
+			* EPSILON;
+
+	private final static double ISP_ERRBOUND = (16.0 + 224.0 * EPSILON)
+			* EPSILON;
+
+	/*
+	 * Not instantiable.
+	 */
+	private Predicates() {
+	}
+
+	/**
+	 * Tests the orientation of the points a, b and c in the plane.
+	 * 
+	 * @param ax
+	 *            x coordinate of a
+	 * @param ay
+	 *            y coordinate of a
+	 * @param bx
+	 *            x coordinate of b
+	 * @param by
+	 *            y coordinate of b
+	 * @param cx
+	 *            x coordinate of c
+	 * @param cy
+	 *            y coordinate of c
+	 * @return double - positive if a, b and c are in counterclockwise order,
+	 *         negative if they are in clockwise order, 0 if they are
+	 *         collinear.
+	 */
+	public static double orient2d(double ax, double ay, double bx,
+			double by, double cx, double cy) {
+		double detleft = (ax - cx) * (by - cy);
+		double detright = (ay - cy) * (bx - cx);
+		double det = detleft - detright;
+		double detsum;
+
+		if (detleft > 0) {
+			if (detright <= 0)
+				return det;
+			detsum = detleft + detright;
+		} else if (detleft < 0) {
+			if (detright >= 0)
+				return det;
+			detsum = -detleft - detright;
+		} else
+			return det;
+
+		double errbound = CCW_ERRBOUND * detsum;
+		if (det >= errbound || -det >= errbound)
+			return det;
+
+		double[] acx = diff(ax, cx);
+		double[] acy = diff(ay, cy);
+		double[] bcx = diff(bx, cx);
+		double[] bcy = diff(by, cy);
+		return top(sum(mul(acx, bcy), negate(mul(acy, bcx))));
+	}
+
+	/**
+	 * Tests on which side of the plane through a, b and c the point d lies.
+	 * The result is the determinant of the vectors a - d, b - d and c - d,
+	 * six times the signed volume of the tetrahedron abcd.
+	 * 
+	 * @param a
+	 *            first point of the plane
+	 * @param b
+	 *            second point of the plane
+	 * @param c
+	 *            third point of the plane
+	 * @param d
+	 *            Point3D for test
+	 * @return double - positive if d lies below the plane, where a, b and c
+	 *         appear counterclockwise seen from above, negative if it lies
+	 *         above, 0 if the four points are coplanar.
+	 */
+	public static double orient3d(Point3D a, Point3D b, Point3D c, Point3D d) {
+		return orient3d(a.getX(), a.getY(), a.getZ(), b.getX(), b.getY(), b
+				.getZ(), c.getX(), c.getY(), c.getZ(), d.getX(), d.getY(), d
+				.getZ());
+	}
+
+	/**
+	 * Tests on which side of the plane through a, b and c the point d lies.
+	 * 
+	 * @see Predicates#orient3d(Point3D, Point3D, Point3D, Point3D)
+	 * @return double - positive if d lies below the plane, negative if it
+	 *         lies above, 0 if the four points are coplanar.
+	 */
+	public static double orient3d(double ax, double ay, double az,
+			double bx, double by, double bz, double cx, double cy, double cz,
+			double dx, double dy, double dz) {
+		double adx = ax - dx;
+		double bdx = bx - dx;
+		double cdx = cx - dx;
+		double ady = ay - dy;
+		double bdy = by - dy;
+		double cdy = cy - dy;
+		double adz = az - dz;
+		double bdz = bz - dz;
+		double cdz = cz - dz;
+
+		double bdxcdy = bdx * cdy;
+		double cdxbdy = cdx * bdy;
+		double cdxady = cdx * ady;
+		double adxcdy = adx * cdy;
+		double adxbdy = adx * bdy;
+		double bdxady = bdx * ady;
+
+		double det = adz * (bdxcdy - cdxbdy) + bdz * (cdxady - adxcdy) + cdz
+				* (adxbdy - bdxady);
+		double permanent = (Math.abs(bdxcdy) + Math.abs(cdxbdy))
+				* Math.abs(adz) + (Math.abs(cdxady) + Math.abs(adxcdy))
+				* Math.abs(bdz) + (Math.abs(adxbdy) + Math.abs(bdxady))
+				* Math.abs(cdz);
+		double errbound = O3D_ERRBOUND * permanent;
+		if (det > errbound || -det > errbound)
+			return det;
+
+		double[] eadx = diff(ax, dx);
+		double[] ebdx = diff(bx, dx);
+		double[] ecdx = diff(cx, dx);
+		double[] eady = diff(ay, dy);
+		double[] ebdy = diff(by, dy);
+		double[] ecdy = diff(cy, dy);
+		double[] bc = cross(ebdx, ecdy, ecdx, ebdy);
+		double[] ca = cross(ecdx, eady, eadx, ecdy);
+		double[] ab = cross(eadx, ebdy, ebdx, eady);
+		return top(sum(sum(mul(bc, diff(az, dz)), mul(ca, diff(bz, dz))),
+				mul(ab, diff(cz, dz))));
+	}
+
+	/**
+	 * Tests whether the point d lies inside the circle through a, b and c in
+	 * the plane.
+	 * 
+	 * @param ax
+	 *            x coordinate of a
+	 * @param ay
+	 *            y coordinate of a
+	 * @param bx
+	 *            x coordinate of b
+	 * @param by
+	 *            y coordinate of b
+	 * @param cx
+	 *            x coordinate of c
+	 * @param cy
+	 *            y coordinate of c
+	 * @param dx
+	 *            x coordinate of d
+	 * @param dy
+	 *            y coordinate of d
+	 * @return double - positive if d lies inside the circle, negative if it
+	 *         lies outside, 0 if the four points are cocircular. The points a,
+	 *         b and c must be in counterclockwise order, otherwise the sign is
+	 *         reversed.
+	 */
+	public static double incircle(double ax, double ay, double bx,
+			double by, double cx, double cy, double dx, double dy) {
+		double adx = ax - dx;
+		double bdx = bx - dx;
+		double cdx = cx - dx;
+		double ady = ay - dy;
+		double bdy = by - dy;
+		double cdy = cy - dy;
+
+		double bdxcdy = bdx * cdy;
+		double cdxbdy = cdx * bdy;
+		double alift = adx * adx + ady * ady;
+		double cdxady = cdx * ady;
+		double adxcdy = adx * cdy;
+		double blift = bdx * bdx + bdy * bdy;
+		double adxbdy = adx * bdy;
+		double bdxady = bdx * ady;
+		double clift = cdx * cdx + cdy * cdy;
+
+		double det = alift * (bdxcdy - cdxbdy) + blift * (cdxady - adxcdy)
+				+ clift * (adxbdy - bdxady);
+		double permanent = (Math.abs(bdxcdy) + Math.abs(cdxbdy)) * alift
+				+ (Math.abs(cdxady) + Math.abs(adxcdy)) * blift
+				+ (Math.abs(adxbdy) + Math.abs(bdxady)) * clift;
+		double errbound = ICC_ERRBOUND * permanent;
+		if (det > errbound || -det > errbound)
+			return det;
+
+		double[] eadx = diff(ax, dx);
+		double[] ebdx = diff(bx, dx);
+		double[] ecdx = diff(cx, dx);
+		double[] eady = diff(ay, dy);
+		double[] ebdy = diff(by, dy);
+		double[] ecdy = diff(cy, dy);
+		double[] ealift = sum(mul(eadx, eadx), mul(eady, eady));
+		double[] eblift = sum(mul(ebdx, ebdx), mul(ebdy, ebdy));
+		double[] eclift = sum(mul(ecdx, ecdx), mul(ecdy, ecdy));
+		return top(sum(sum(mul(ealift, cross(ebdx, ecdy, ecdx, ebdy)), mul(
+				eblift, cross(ecdx, eady, eadx, ecdy))), mul(eclift, cross(
+				eadx, ebdy, ebdx, eady))));
+	}
+
+	/**
+	 * Tests whether the point e lies inside the sphere through a, b, c and d.
+	 * 
+	 * @param a
+	 *            first point of the sphere
+	 * @param b
+	 *            second point of the sphere
+	 * @param c
+	 *            third point of the sphere
+	 * @param d
+	 *            fourth point of the sphere
+	 * @param e
+	 *            Point3D for test
+	 * @return double - positive if e lies inside the sphere, negative if it
+	 *         lies outside, 0 if the five points are cospherical. The points
+	 *         a, b, c and d must have a positive orientation (see orient3d),
+	 *         otherwise the sign is reversed.
+	 */
+	public static double insphere(Point3D a, Point3D b, Point3D c,
+			Point3D d, Point3D e) {
+		return insphere(a.getX(), a.getY(), a.getZ(), b.getX(), b.getY(), b
+				.getZ(), c.getX(), c.getY(), c.getZ(), d.getX(), d.getY(), d
+				.getZ(), e.getX(), e.getY(), e.getZ());
+	}
+
+	/**
+	 * Tests whether the point e lies inside the sphere through a, b, c and d.
+	 * 
+	 * @see Predicates#insphere(Point3D, Point3D, Point3D, Point3D, Point3D)
+	 * @return double - positive if e lies inside the sphere, negative if it
+	 *         lies outside, 0 if the five points are cospherical.
+	 */
+	public static double insphere(double ax, double ay, double az,
+			double bx, double by, double bz, double cx, double cy, double cz,
+			double dx, double dy, double dz, double ex, double ey, double ez) {
+		double aex = ax - ex;
+		double bex = bx - ex;
+		double cex = cx - ex;
+		double dex = dx - ex;
+		double aey = ay - ey;
+		double bey = by - ey;
+		double cey = cy - ey;
+		double dey = dy - ey;
+		double aez = az - ez;
+		double bez = bz - ez;
+		double cez = cz - ez;
+		double dez = dz - ez;
+
+		double aexbey = aex * bey;
+		double bexaey = bex * aey;
+		double ab = aexbey - bexaey;
+		double bexcey = bex * cey;
+		double cexbey = cex * bey;
+		double bc = bexcey - cexbey;
+		double cexdey = cex * dey;
+		double dexcey = dex * cey;
+		double cd = cexdey - dexcey;
+		double dexaey = dex * aey;
+		double aexdey = aex * dey;
+		double da = dexaey - aexdey;
+		double aexcey = aex * cey;
+		double cexaey = cex * aey;
+		double ac = aexcey - cexaey;
+		double bexdey = bex * dey;
+		double dexbey = dex * bey;
+		double bd = bexdey - dexbey;
+
+		double abc = aez * bc - bez * ac + cez * ab;
+		double bcd = bez * cd - cez * bd + dez * bc;
+		double cda = cez * da + dez * ac + aez * cd;
+		double dab = dez * ab + aez * bd + bez * da;
+
+		double alift = aex * aex + aey * aey + aez * aez;
+		double blift = bex * bex + bey * bey + bez * bez;
+		double clift = cex * cex + cey * cey + cez * cez;
+		double dlift = dex * dex + dey * dey + dez * dez;
+
+		double det = (dlift * abc - clift * dab) + (blift * cda - alift * bcd);
+
+		double aezplus = Math.abs(aez);
+		double bezplus = Math.abs(bez);
+		double cezplus = Math.abs(cez);
+		double dezplus = Math.abs(dez);
+		double aexbeyplus = Math.abs(aexbey);
+		double bexaeyplus = Math.abs(bexaey);
+		double bexceyplus = Math.abs(bexcey);
+		double cexbeyplus = Math.abs(cexbey);
+		double cexdeyplus = Math.abs(cexdey);
+		double dexceyplus = Math.abs(dexcey);
+		double dexaeyplus = Math.abs(dexaey);
+		double aexdeyplus = Math.abs(aexdey);
+		double aexceyplus = Math.abs(aexcey);
+		double cexaeyplus = Math.abs(cexaey);
+		double bexdeyplus = Math.abs(bexdey);
+		double dexbeyplus = Math.abs(dexbey);
+		double permanent = ((cexdeyplus + dexceyplus) * bezplus
+				+ (dexbeyplus + bexdeyplus) * cezplus + (bexceyplus + cexbeyplus)
+				* dezplus)
+				* alift
+				+ ((dexaeyplus + aexdeyplus) * cezplus
+						+ (aexceyplus + cexaeyplus) * dezplus + (cexdeyplus + dexceyplus)
+						* aezplus)
+				* blift
+				+ ((aexbeyplus + bexaeyplus) * dezplus
+						+ (bexdeyplus + dexbeyplus) * aezplus + (dexaeyplus + aexdeyplus)
+						* bezplus)
+				* clift
+				+ ((bexceyplus + cexbeyplus) * aezplus
+						+ (cexaeyplus + aexceyplus) * bezplus + (aexbeyplus + bexaeyplus)
+						* cezplus) * dlift;
+		double errbound = ISP_ERRBOUND * permanent;
+		if (det > errbound || -det > errbound)
+			return det;
+
+		double[] eaex = diff(ax, ex);
+		double[] ebex = diff(bx, ex);
+		double[] ecex = diff(cx, ex);
+		double[] edex = diff(dx, ex);
+		double[] eaey = diff(ay, ey);
+		double[] ebey = diff(by, ey);
+		double[] ecey = diff(cy, ey);
+		double[] edey = diff(dy, ey);
+		double[] eaez = diff(az, ez);
+		double[] ebez = diff(bz, ez);
+		double[] ecez = diff(cz, ez);
+		double[] edez = diff(dz, ez);
+
+		double[] eab = cross(eaex, ebey, ebex, eaey);
+		double[] ebc = cross(ebex, ecey, ecex, ebey);
+		double[] ecd = cross(ecex, edey, edex, ecey);
+		double[] eda = cross(edex, eaey, eaex, edey);
+		double[] eac = cross(eaex, ecey, ecex, eaey);
+		double[] ebd = cross(ebex, edey, edex, ebey);
+
+		double[] eabc = sum(sum(mul(eaez, ebc), negate(mul(ebez, eac))), mul(
+				ecez, eab));
+		double[] ebcd = sum(sum(mul(ebez, ecd), negate(mul(ecez, ebd))), mul(
+				edez, ebc));
+		double[] ecda = sum(sum(mul(ecez, eda), mul(edez, eac)), mul(eaez,
+				ecd));
+		double[] edab = sum(sum(mul(edez, eab), mul(eaez, ebd)), mul(ebez,
+				eda));
+
+		double[] ealift = lift(eaex, eaey, eaez);
+		double[] eblift = lift(ebex, ebey, ebez);
+		double[] eclift = lift(ecex, ecey, ecez);
+		double[] edlift = lift(edex, edey, edez);
+
+		return top(sum(sum(mul(edlift, eabc), negate(mul(eclift, edab))), sum(
+				mul(eblift, ecda), negate(mul(ealift, ebcd)))));
+	}
+
+	/**
+	 * Tests on which side of the plane through a, b and c the point d lies
+	 * with a distance of more than the given tolerance. The side is decided
+	 * by orient3d, the distance is approximated from its value.
+	 * 
+	 * @param a
+	 *            first point of the plane
+	 * @param b
+	 *            second point of the plane
+	 * @param c
+	 *            third point of the plane
+	 * @param d
+	 *            Point3D for test
+	 * @param tolerance
+	 *            minimal distance
+	 * @return int - the sign of orient3d if the distance of d to the plane is
+	 *         greater than tolerance, 0 otherwise or if a, b and c are
+	 *         collinear.
+	 */
+	static int side(Point3D a, Point3D b, Point3D c, Point3D d,
+			double tolerance) {
+		double abx = b.getX() - a.getX();
+		double aby = b.getY() - a.getY();
+		double abz = b.getZ() - a.getZ();
+		double acx = c.getX() - a.getX();
+		double acy = c.getY() - a.getY();
+		double acz = c.getZ() - a.getZ();
+		double nx = aby * acz - abz * acy;
+		double ny = abz * acx - abx * acz;
+		double nz = abx * acy - aby * acx;
+		double norm = Math.sqrt(nx * nx + ny * ny + nz * nz);
+		if (norm == 0)
+			return 0;
+		double det = orient3d(a, b, c, d);
+		if (Math.abs(det) <= tolerance * norm)
+			return 0;
+		return det > 0 ? 1 : -1;
+	}
+
+	/**
+	 * Tests whether the point p lies farther than the given tolerance from
+	 * the line through a and b. The orient2d values of the projections onto
+	 * the coordinate planes are the components of (b - a) x (p - a), whose
+	 * norm is the distance times |b - a|, so one large component suffices.
+	 * 
+	 * @param a
+	 *            first point of the line
+	 * @param b
+	 *            second point of the line
+	 * @param p
+	 *            Point3D for test
+	 * @param tolerance
+	 *            minimal distance
+	 * @return boolean - true if the distance of p to the line is greater
+	 *         than tolerance, false otherwise or if a equals b.
+	 */
+	static boolean offLine(Point3D a, Point3D b, Point3D p, double tolerance) {
+		double abx = b.getX() - a.getX();
+		double aby = b.getY() - a.getY();
+		double abz = b.getZ() - a.getZ();
+		double bound = tolerance * tolerance
+				* (abx * abx + aby * aby + abz * abz);
+		if (bound == 0)
+			return false;
+		double xy = orient2d(a.getX(), a.getY(), b.getX(), b.getY(), p
+				.getX(), p.getY());
+		if (xy * xy > bound)
+			return true;
+		double yz = orient2d(a.getY(), a.getZ(), b.getY(), b.getZ(), p
+				.getY(), p.getZ());
+		if (yz * yz > bound)
+			return true;
+		double zx = orient2d(a.getZ(), a.getX(), b.getZ(), b.getX(), p
+				.getZ(), p.getX());
+		return xy * xy + yz * yz + zx * zx > bound;
+	}
+
+	/**
+	 * Tests whether the lines through a, b and through c, d are farther
+	 * apart than the given tolerance. orient3d of the four points is the
+	 * triple product of b - a, d - c and c - a, which is the distance of the
+	 * lines times |(b - a) x (d - c)|.
+	 * 
+	 * @param a
+	 *            first point of the first line
+	 * @param b
+	 *            second point of the first line
+	 * @param c
+	 *            first point of the second line
+	 * @param d
+	 *            second point of the second line
+	 * @param tolerance
+	 *            minimal distance
+	 * @return boolean - true if the lines are skew with a distance greater
+	 *         than tolerance, false otherwise or if they are parallel.
+	 */
+	static boolean skew(Point3D a, Point3D b, Point3D c, Point3D d,
+			double tolerance) {
+		double abx = b.getX() - a.getX();
+		double aby = b.getY() - a.getY();
+		double abz = b.getZ() - a.getZ();
+		double cdx = d.getX() - c.getX();
+		double cdy = d.getY() - c.getY();
+		double cdz = d.getZ() - c.getZ();
+		double nx = aby * cdz - abz * cdy;
+		double ny = abz * cdx - abx * cdz;
+		double nz = abx * cdy - aby * cdx;
+		double norm = Math.sqrt(nx * nx + ny * ny + nz * nz);
+		if (norm == 0)
+			return false;
+		return Math.abs(orient3d(a, b, c, d)) > tolerance * norm;
+	}
+
+	/*
+	 * Returns the expansion of a * b - c * d.
+	 */
+	private static double[] cross(double[] a, double[] b, double[] c,
+			double[] d) {
+		return sum(mul(a, b), negate(mul(c, d)));
+	}
+
+	/*
+	 * Returns the expansion of x * x + y * y + z * z.
+	 */
+	private static double[] lift(double[] x, double[] y, double[] z) {
+		return sum(sum(mul(x, x), mul(y, y)), mul(z, z));
+	}
+
+	/*
+	 * Returns the most significant component of the given expansion, which
+	 * has the sign of the expansion.
+	 */
+	private static double top(double[] e) {
+		return e[e.length - 1];
+	}
+
+	/*
+	 * Returns the exact difference a - b as expansion.
+	 */
+	private static double[] diff(double a, double b) {
+		double x = a - b;
+		double bvirt = a - x;
+		double avirt = x + bvirt;
+		double bround = bvirt - b;
+		double around = a - avirt;
+		double y = around + bround;
+		return y == 0 ? new double[] { x } : new double[] { y, x };
+	}
+
+	/*
+	 * Returns the negated expansion.
+	 */
+	private static double[] negate(double[] e) {
+		double[] h = new double[e.length];
+		for (int i = 0; i < e.length; i++)
+			h[i] = -e[i];
+		return h;
+	}
+
+	/*
+	 * Returns the sum of two expansions. The components of f are added one
+	 * by one.
+	 */
+	private static double[] sum(double[] e, double[] f) {
+		double[] h = e;
+		for (int i = 0; i < f.length; i++)
+			h = grow(h, f[i]);
+		return h;
+	}
+
+	/*
+	 * Returns the sum of an expansion and a double. Zero components are
+	 * eliminated (grow_expansion_zeroelim).
+	 */
+	private static double[] grow(double[] e, double b) {
+		double[] h = new double[e.length + 1];
+		int n = 0;
+		double q = b;
+		for (int i = 0; i < e.length; i++) {
+			double x = q + e[i];
+			double bvirt = x - q;
+			double avirt = x - bvirt;
+			double bround = e[i] - bvirt;
+			double around = q - avirt;
+			double y = around + bround;
+			q = x;
+			if (y != 0)
+				h[n++] = y;
+		}
+		if (q != 0 || n == 0)
+			h[n++] = q;
+		return trim(h, n);
+	}
+
+	/*
+	 * Returns the product of two expansions as sum of the products of e with
+	 * the components of f.
+	 */
+	private static double[] mul(double[] e, double[] f) {
+		double[] h = scale(e, f[0]);
+		for (int i = 1; i < f.length; i++)
+			h = sum(h, scale(e, f[i]));
+		return h;
+	}
+
+	/*
+	 * Returns the product of an expansion and a double. Zero components are
+	 * eliminated (scale_expansion_zeroelim).
+	 */
+	private static double[] scale(double[] e, double b) {
+		double[] h = new double[2 * e.length];
+		int n = 0;
+		double[] product = new double[2];
+		twoProduct(e[0], b, product);
+		double q = product[1];
+		if (product[0] != 0)
+			h[n++] = product[0];
+		for (int i = 1; i < e.length; i++) {
+			twoProduct(e[i], b, product);
+			// two sum of q and the low part
+			double sum = q + product[0];
+			double bvirt = sum - q;
+			double avirt = sum - bvirt;
+			double y = (q - avirt) + (product[0] - bvirt);
+			if (y != 0)
+				h[n++] = y;
+			// fast two sum of the high part and the sum
+			q = product[1] + sum;
+			y = sum - (q - product[1]);
+			if (y != 0)
+				h[n++] = y;
+		}
+		if (q != 0 || n == 0)
+			h[n++] = q;
+		return trim(h, n);
+	}
+
+	/*
+	 * Computes the exact product a * b as the high part result[1] and the
+	 * low part result[0] with the splitting of Dekker.
+	 */
+	private static void twoProduct(double a, double b, double[] result) {
+		double x = a * b;
+		double c = SPLITTER * a;
+		double ahi = c - (c - a);
+		double alo = a - ahi;
+		c = SPLITTER * b;
+		double bhi = c - (c - b);
+		double blo = b - bhi;
+		double err1 = x - ahi * bhi;
+		double err2 = err1 - alo * bhi;
+		double err3 = err2 - ahi * blo;
+		result[0] = alo * blo - err3;
+		result[1] = x;
+	}
+
+	/*
+	 * Returns the first n components of h.
+	 */
+	private static double[] trim(double[] h, int n) {
+		if (n == h.length)
+			return h;
+		double[] e = new double[n];
+		System.arraycopy(h, 0, e, 0, n);
+		return e;
+	}
+
+}
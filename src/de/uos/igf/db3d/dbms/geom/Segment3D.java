@@ -31,6 +31,9 @@ public class Segment3D implements PersistentObject, SimpleGeoObj,
 	/* end point of Segment3D */
 	private Point3D end;
 
+	/* MBB3D of this - transient */
+	private transient MBB3D mbb = null;
+
 	/**
 	 * Constructor.<br>
 	 * Constructs a Segment3D with given start and end point. StartPoint has
@@ -132,6 +135,7 @@ public class Segment3D implements PersistentObject, SimpleGeoObj,
 	public void setPoints(Point3D[] points) {
 		this.start = points[0];
 		this.end = points[1];
+		this.mbb = null;
 	}
 
 	/**
@@ -155,6 +159,7 @@ public class Segment3D implements PersistentObject, SimpleGeoObj,
 			throw new IllegalStateException(Db3dSimpleResourceBundle
 					.getString("db3d.geom.segonlystartend"));
 		}
+		this.mbb = null;
 	}
 
 	/**
@@ -188,7 +193,9 @@ public class Segment3D implements PersistentObject, SimpleGeoObj,
 	}
 
 	/**
-	 * Returns (computes) the MBB3D of this.
+	 * Returns (computes) the MBB3D of this.<br>
+	 * The MBB3D is cached until a point of this is set and must not be
+	 * modified.
 	 * 
 	 * @return MBB3D - mbb of this.
 	 * @throws IllegalArgumentException
@@ -196,7 +203,9 @@ public class Segment3D implements PersistentObject, SimpleGeoObj,
 	 *             point is not greater than its minimum point.
 	 */
 	public MBB3D getMBB() {
-		return new MBB3D(
+		if (this.mbb != null)
+			return this.mbb;
+		this.mbb = new MBB3D(
 				new Point3D(GeomUtils
 						.getMin(this.start.getX(), this.end.getX()), GeomUtils
 						.getMin(this.start.getY(), this.end.getY()), GeomUtils
@@ -205,6 +214,7 @@ public class Segment3D implements PersistentObject, SimpleGeoObj,
 						.getMax(this.start.getX(), this.end.getX()), GeomUtils
 						.getMax(this.start.getY(), this.end.getY()), GeomUtils
 						.getMax(this.start.getZ(), this.end.getZ())));
+		return this.mbb;
 	}
 
 	/**
@@ -394,6 +404,10 @@ public class Segment3D implements PersistentObject, SimpleGeoObj,
 
 		if (!this.getMBB().intersects(segment.getMBB(), sop))
 			return false;
+		// fast rejection of segments on skew lines clearly apart
+		if (Predicates.skew(this.start, this.end, segment.getPoint(0), segment
+				.getPoint(1), 2 * sop.getEpsilon()))
+			return false;
 
 		SimpleGeoObj result = this.intersection(new Line3D(segment, sop), sop);
 		// check the result
@@ -595,6 +609,10 @@ public class Segment3D implements PersistentObject, SimpleGeoObj,
 	 * @see #containsOnLine(Point3D, ScalarOperator)
 	 */
 	public boolean contains(Point3D point, ScalarOperator sop) {
+		// fast rejection of points clearly off the line of this
+		if (Predicates.offLine(this.start, this.end, point, 2 * sop
+				.getEpsilon()))
+			return false;
 		if (new Line3D(this, sop).contains(point, sop))
 			if (this.containsOnLine(point, sop))
 				return true;
@@ -602,6 +620,66 @@ public class Segment3D implements PersistentObject, SimpleGeoObj,
 		return false;
 	}
 
+	/**
+	 * Computes the square of the euclidean distance between the given point
+	 * and the closest point of this.
+	 * 
+	 * @param point
+	 *            Point3D for computation
+	 * @return double - square distance.
+	 */
+	public double euclideanDistanceSQR(Point3D point) {
+		return euclideanDistanceSQR(this.getPoint(0), this.getPoint(1), point);
+	}
+
+	/**
+	 * Computes the euclidean distance between the given point and the closest
+	 * point of this.
+	 * 
+	 * @param point
+	 *            Point3D for computation
+	 * @return double - distance.
+	 */
+	public double euclideanDistance(Point3D point) {
+		return Math.sqrt(euclideanDistanceSQR(point));
+	}
+
+	/*
+	 * Computes the square distance between the point p and the closest point
+	 * of the segment ab. The projection of p onto the line is clamped to the
+	 * segment.
+	 * 
+	 * @param a first point of the segment
+	 * 
+	 * @param b second point of the segment
+	 * 
+	 * @param p Point3D for computation
+	 * 
+	 * @return double - square distance.
+	 */
+	static double euclideanDistanceSQR(Point3D a, Point3D b, Point3D p) {
+		double abx = b.getX() - a.getX();
+		double aby = b.getY() - a.getY();
+		double abz = b.getZ() - a.getZ();
+		double apx = p.getX() - a.getX();
+		double apy = p.getY() - a.getY();
+		double apz = p.getZ() - a.getZ();
+
+		double len = abx * abx + aby * aby + abz * abz;
+		double t = 0;
+		if (len > 0) {
+			t = (apx * abx + apy * aby + apz * abz) / len;
+			if (t < 0)
+				t = 0;
+			else if (t > 1)
+				t = 1;
+		}
+		double dx = apx - t * abx;
+		double dy = apy - t * aby;
+		double dz = apz - t * abz;
+		return dx * dx + dy * dy + dz * dz;
+	}
+
 	/**
 	 * Tests whether a segment is contained on this.
 	 * 
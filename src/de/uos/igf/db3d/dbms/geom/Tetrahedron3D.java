@@ -40,6 +40,9 @@ public class Tetrahedron3D implements PersistentObject, SimpleGeoObj,
 	/* triangles of this [0,3] */
 	private transient Triangle3D[] triangles = null;
 
+	/* MBB3D of this - transient */
+	private transient MBB3D mbb = null;
+
 	/**
 	 * Constructor.
 	 * 
@@ -238,6 +241,7 @@ public class Tetrahedron3D implements PersistentObject, SimpleGeoObj,
 		this.two = points[2];
 		this.three = points[3];
 		this.triangles = null;
+		this.mbb = null;
 		this.ensureOrder();
 	}
 
@@ -298,6 +302,7 @@ public class Tetrahedron3D implements PersistentObject, SimpleGeoObj,
 					.getString("db3d.geom.wronindtetraconsfour"));
 		}
 		this.triangles = null;
+		this.mbb = null;
 		this.ensureOrder();
 	}
 
@@ -475,7 +480,9 @@ public class Tetrahedron3D implements PersistentObject, SimpleGeoObj,
 	}
 
 	/**
-	 * Computes and returns the MBB3D of this.
+	 * Computes and returns the MBB3D of this.<br>
+	 * The MBB3D is cached until a point of this is set and must not be
+	 * modified.
 	 * 
 	 * @return MBB3D - MBB3D of this.
 	 * @throws IllegalArgumentException
@@ -483,6 +490,8 @@ public class Tetrahedron3D implements PersistentObject, SimpleGeoObj,
 	 *             point is not greater than its minimum point.
 	 */
 	public MBB3D getMBB() {
+		if (this.mbb != null)
+			return this.mbb;
 		Point3D pMin = new Point3D(GeomUtils.getMin(zero.getX(), one.getX(),
 				this.two.getX(), three.getX()), GeomUtils.getMin(zero.getY(),
 				one.getY(), two.getY(), three.getY()), GeomUtils.getMin(zero
@@ -491,7 +500,8 @@ public class Tetrahedron3D implements PersistentObject, SimpleGeoObj,
 				two.getX(), three.getX()), GeomUtils.getMax(zero.getY(), one
 				.getY(), two.getY(), three.getY()), GeomUtils.getMax(zero
 				.getZ(), this.one.getZ(), two.getZ(), three.getZ()));
-		return new MBB3D(pMin, pMax);
+		this.mbb = new MBB3D(pMin, pMax);
+		return this.mbb;
 	}
 
 	/**
@@ -1467,6 +1477,33 @@ public class Tetrahedron3D implements PersistentObject, SimpleGeoObj,
 		if (!this.getMBB().contains(point, sop))
 			return false;
 
+		/*
+		 * Fast path with exact orientations: the point is contained if it lies
+		 * on the side of the opposite point for all four faces, and not
+		 * contained if it lies clearly outside of one face. Only points near
+		 * the boundary are left to the epsilon tests below.
+		 */
+		Point3D[] p = this.getPoints();
+		if (Predicates.orient3d(p[0], p[1], p[2], p[3]) != 0) {
+			boolean inside = true;
+			for (int i = 0; i < 4; i++) {
+				Point3D a = p[(i + 1) % 4];
+				Point3D b = p[(i + 2) % 4];
+				Point3D c = p[(i + 3) % 4];
+				double opposite = Predicates.orient3d(a, b, c, p[i]);
+				double test = Predicates.orient3d(a, b, c, point);
+				if (test == 0 || (test > 0) != (opposite > 0)) {
+					inside = false;
+					if (test != 0
+							&& Predicates.side(a, b, c, point, 2 * sop
+									.getEpsilon()) != 0)
+						return false;
+				}
+			}
+			if (inside)
+				return true;
+		}
+
 		/*
 		 * The point is cointained if: (1) it belongs to one of the triangles of
 		 * the tetrahedron; (2) for ALL four triangles of the tetrahedron, it
@@ -1498,6 +1535,51 @@ public class Tetrahedron3D implements PersistentObject, SimpleGeoObj,
 		return true;
 	}
 
+	/**
+	 * Computes the square of the euclidean distance between the given point
+	 * and the closest point of this. The distance is 0 if the point lies
+	 * inside.
+	 * 
+	 * @param point
+	 *            Point3D for computation
+	 * @return double - square distance.
+	 */
+	public double euclideanDistanceSQR(Point3D point) {
+		Point3D[] p = this.getPoints();
+
+		// inside if point lies on the side of the opposite point for all faces
+		boolean inside = true;
+		for (int i = 0; i < 4 && inside; i++) {
+			Point3D a = p[(i + 1) % 4];
+			Point3D b = p[(i + 2) % 4];
+			Point3D c = p[(i + 3) % 4];
+			double opposite = Predicates.orient3d(a, b, c, p[i]);
+			double test = Predicates.orient3d(a, b, c, point);
+			if ((opposite > 0 && test < 0) || (opposite < 0 && test > 0))
+				inside = false;
+		}
+		if (inside)
+			return 0;
+
+		double min = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < 4; i++)
+			min = Math.min(min, Triangle3D.euclideanDistanceSQR(p[(i + 1) % 4],
+					p[(i + 2) % 4], p[(i + 3) % 4], point));
+		return min;
+	}
+
+	/**
+	 * Computes the euclidean distance between the given point and the closest
+	 * point of this. The distance is 0 if the point lies inside.
+	 * 
+	 * @param point
+	 *            Point3D for computation
+	 * @return double - distance.
+	 */
+	public double euclideanDistance(Point3D point) {
+		return Math.sqrt(euclideanDistanceSQR(point));
+	}
+
 	/**
 	 * Tests whether the given point is STRICTLY contained in this.<br>
 	 * Method doesn't assume that normvectors of triangles of this show in
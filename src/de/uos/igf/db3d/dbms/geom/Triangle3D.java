@@ -37,6 +37,12 @@ public class Triangle3D implements PersistentObject, SimpleGeoObj,
 	/* line segments of this [0,2] */
 	private transient Segment3D[] lines = null;
 
+	/* MBB3D of this - transient */
+	private transient MBB3D mbb = null;
+
+	/* coordinates of this for the intersection kernel - transient */
+	private transient double[] coordinates = null;
+
 	/**
 	 * Returns the attributes of Triangle3D in a formatted string, or provides an
 	 * siutable message if no attributes are stored for the Triangle.
@@ -585,6 +591,8 @@ public class Triangle3D implements PersistentObject, SimpleGeoObj,
 		this.two = points[2];
 		this.lines = null;
 		this.normvec = null;
+		this.mbb = null;
+		this.coordinates = null;
 	}
 
 	/**
@@ -639,6 +647,8 @@ public class Triangle3D implements PersistentObject, SimpleGeoObj,
 		}
 		this.lines = null;
 		this.normvec = null;
+		this.mbb = null;
+		this.coordinates = null;
 	}
 
 	/**
@@ -659,7 +669,9 @@ public class Triangle3D implements PersistentObject, SimpleGeoObj,
 	}
 
 	/**
-	 * Computes and returns the MBB3D of this.
+	 * Computes and returns the MBB3D of this.<br>
+	 * The MBB3D is cached until a point of this is set and must not be
+	 * modified.
 	 * 
 	 * @return MBB3D - MBB3D of this.
 	 * @throws IllegalArgumentException
@@ -667,6 +679,8 @@ public class Triangle3D implements PersistentObject, SimpleGeoObj,
 	 *             point is not greater than its minimum point.
 	 */
 	public MBB3D getMBB() {
+		if (this.mbb != null)
+			return this.mbb;
 		Point3D[] points = this.getPoints();
 		if (points[0] != null && points[1] != null && points[2] != null) {
 			Point3D pMin = new Point3D(GeomUtils.getMin(points[0].getX(),
@@ -679,11 +693,28 @@ public class Triangle3D implements PersistentObject, SimpleGeoObj,
 					points[0].getY(), points[1].getY(), points[2].getY()),
 					GeomUtils.getMax(points[0].getZ(), points[1].getZ(),
 							points[2].getZ()));
-			return new MBB3D(pMin, pMax);
+			this.mbb = new MBB3D(pMin, pMax);
+			return this.mbb;
 		} else
 			return null;
 	}
 
+	/**
+	 * Returns the coordinates of this as nine doubles x0, y0, z0, x1, y1, z1,
+	 * x2, y2, z2 for the TriangleIntersection kernel.<br>
+	 * The array is cached until a point of this is set and must not be
+	 * modified.
+	 * 
+	 * @return double[] - coordinates of this.
+	 */
+	double[] getCoordinates() {
+		if (this.coordinates == null)
+			this.coordinates = new double[] { zero.getX(), zero.getY(),
+					zero.getZ(), one.getX(), one.getY(), one.getZ(),
+					two.getX(), two.getY(), two.getZ() };
+		return this.coordinates;
+	}
+
 	/**
 	 * Returns the normalized normal vector for this triangle.<br>
 	 * The normal vector is computed from the points in the ascending index
@@ -1207,6 +1238,13 @@ public class Triangle3D implements PersistentObject, SimpleGeoObj,
 	 *             class Vector3D.
 	 */
 	public boolean intersects(Segment3D segment, ScalarOperator sop) { // Dag
+		// fast rejection of segments clearly on one side of the plane of this
+		int side = Predicates.side(zero, one, two, segment.getPoint(0),
+				2 * sop.getEpsilon());
+		if (side != 0
+				&& side == Predicates.side(zero, one, two, segment
+						.getPoint(1), 2 * sop.getEpsilon()))
+			return false;
 
 		SimpleGeoObj type = this.getPlane(sop).intersection(segment, sop);
 		if (type == null)
@@ -1271,10 +1309,38 @@ public class Triangle3D implements PersistentObject, SimpleGeoObj,
 	}
 
 	/**
-	 * Tests whether this intersects with given Triangle3D.
+	 * Tests whether this intersects with given Triangle3D.<br>
+	 * The test runs on the coordinates of the triangles without constructing
+	 * planes or lines (see TriangleIntersection). Only for nearly parallel
+	 * planes it falls back to intersectsByPlanes(Triangle3D, ScalarOperator).
 	 * 
 	 * @param triangle
 	 *            Triangle3D to test
+	 * @param sop
+	 *            ScalarOperator
+	 * @return boolean - true if they intersect, false otherwise.
+	 * @see Triangle3D#intersectsByPlanes(Triangle3D, ScalarOperator)
+	 */
+	public boolean intersects(Triangle3D triangle, ScalarOperator sop) {
+		if (!(this.getMBB().intersects(triangle.getMBB(), sop)))
+			return false;
+		int result = TriangleIntersection.intersects(this.getCoordinates(),
+				0, triangle.getCoordinates(), 0, sop.getEpsilon());
+		if (result == TriangleIntersection.UNDECIDED)
+			return this.intersectsByPlanes(triangle, sop);
+		return result == TriangleIntersection.INTERSECTING;
+	}
+
+	/**
+	 * Tests whether this intersects with given Triangle3D by intersecting
+	 * each triangle with the plane of the other one.<br>
+	 * This is the general but slow test behind intersects(Triangle3D,
+	 * ScalarOperator).
+	 * 
+	 * @param triangle
+	 *            Triangle3D to test
+	 * @param sop
+	 *            ScalarOperator
 	 * @return boolean - true if they intersect, false otherwise.
 	 * @throws IllegalStateException
 	 *             - if the intersectsInt(Line3D line, ScalarOperator sop)
@@ -1299,7 +1365,7 @@ public class Triangle3D implements PersistentObject, SimpleGeoObj,
 	 *             originates in the method normalize(ScalarOperator) of the
 	 *             class Vector3D.
 	 */
-	public boolean intersects(Triangle3D triangle, ScalarOperator sop) {// Dag
+	public boolean intersectsByPlanes(Triangle3D triangle, ScalarOperator sop) {// Dag
 
 		/*
 		 * Idea:
@@ -1850,12 +1916,122 @@ public class Triangle3D implements PersistentObject, SimpleGeoObj,
 	 * @see Triangle3D#containsInPlane(Point3D, ScalarOperator).
 	 */
 	public boolean contains(Point3D point, ScalarOperator sop) {
+		// fast rejection of points clearly off the plane of this
+		if (Predicates.side(zero, one, two, point, 2 * sop.getEpsilon()) != 0)
+			return false;
 		if (sop.equal(new Plane3D(this, sop).distance(point), 0))
 			return containsInPlane(point, sop);
 		else
 			return false;
 	}
 
+	/**
+	 * Computes the square of the euclidean distance between the given point
+	 * and the closest point of this.
+	 * 
+	 * @param point
+	 *            Point3D for computation
+	 * @return double - square distance.
+	 */
+	public double euclideanDistanceSQR(Point3D point) {
+		return euclideanDistanceSQR(this.getPoint(0), this.getPoint(1), this
+				.getPoint(2), point);
+	}
+
+	/**
+	 * Computes the euclidean distance between the given point and the closest
+	 * point of this.
+	 * 
+	 * @param point
+	 *            Point3D for computation
+	 * @return double - distance.
+	 */
+	public double euclideanDistance(Point3D point) {
+		return Math.sqrt(euclideanDistanceSQR(point));
+	}
+
+	/*
+	 * Computes the square distance between the point p and the closest point
+	 * of the triangle abc. The Voronoi region of p (vertex, edge or face) is
+	 * determined with dot products - see Ericson, C. : Real-Time Collision
+	 * Detection, 2005, section 5.1.5.
+	 * 
+	 * @param a first point of the triangle
+	 * 
+	 * @param b second point of the triangle
+	 * 
+	 * @param c third point of the triangle
+	 * 
+	 * @param p Point3D for computation
+	 * 
+	 * @return double - square distance.
+	 */
+	static double euclideanDistanceSQR(Point3D a, Point3D b, Point3D c,
+			Point3D p) {
+		double abx = b.getX() - a.getX();
+		double aby = b.getY() - a.getY();
+		double abz = b.getZ() - a.getZ();
+		double acx = c.getX() - a.getX();
+		double acy = c.getY() - a.getY();
+		double acz = c.getZ() - a.getZ();
+		double apx = p.getX() - a.getX();
+		double apy = p.getY() - a.getY();
+		double apz = p.getZ() - a.getZ();
+
+		// vertex region a
+		double d1 = abx * apx + aby * apy + abz * apz;
+		double d2 = acx * apx + acy * apy + acz * apz;
+		if (d1 <= 0 && d2 <= 0)
+			return p.euclideanDistanceSQR(a);
+
+		// vertex region b
+		double bpx = p.getX() - b.getX();
+		double bpy = p.getY() - b.getY();
+		double bpz = p.getZ() - b.getZ();
+		double d3 = abx * bpx + aby * bpy + abz * bpz;
+		double d4 = acx * bpx + acy * bpy + acz * bpz;
+		if (d3 >= 0 && d4 <= d3)
+			return p.euclideanDistanceSQR(b);
+
+		// edge region ab
+		double vc = d1 * d4 - d3 * d2;
+		if (vc <= 0 && d1 >= 0 && d3 <= 0)
+			return Segment3D.euclideanDistanceSQR(a, b, p);
+
+		// vertex region c
+		double cpx = p.getX() - c.getX();
+		double cpy = p.getY() - c.getY();
+		double cpz = p.getZ() - c.getZ();
+		double d5 = abx * cpx + aby * cpy + abz * cpz;
+		double d6 = acx * cpx + acy * cpy + acz * cpz;
+		if (d6 >= 0 && d5 <= d6)
+			return p.euclideanDistanceSQR(c);
+
+		// edge region ac
+		double vb = d5 * d2 - d1 * d6;
+		if (vb <= 0 && d2 >= 0 && d6 <= 0)
+			return Segment3D.euclideanDistanceSQR(a, c, p);
+
+		// edge region bc
+		double va = d3 * d6 - d5 * d4;
+		if (va <= 0 && (d4 - d3) >= 0 && (d5 - d6) >= 0)
+			return Segment3D.euclideanDistanceSQR(b, c, p);
+
+		double sum = va + vb + vc;
+		if (sum == 0) // degenerated triangle
+			return Math.min(Segment3D.euclideanDistanceSQR(a, b, p), Math.min(
+					Segment3D.euclideanDistanceSQR(a, c, p), Segment3D
+							.euclideanDistanceSQR(b, c, p)));
+
+		// face region - barycentric coordinates of the closest point
+		double v = vb / sum;
+		double w = vc / sum;
+		double dx = apx - abx * v - acx * w;
+		double dy = apy - aby * v - acy * w;
+		double dz = apz - abz * v - acz * w;
+		return dx * dx + dy * dy + dz * dz;
+	}
+
 	/**
 	 * Tests whether the given point is contained in border of this.
 	 * 
@@ -2326,6 +2502,53 @@ public class Triangle3D implements PersistentObject, SimpleGeoObj,
 
 	/**
 	 * Computes the intersection of this and the given triangle.<br>
+	 * For triangles in different planes the intersection is computed on the
+	 * coordinates of the triangles (see TriangleIntersection). Coplanar
+	 * triangles are intersected with intersectionInPlane(Triangle3D,
+	 * ScalarOperator), triangles in nearly parallel planes with
+	 * intersectionByPlanes(Triangle3D, ScalarOperator).<br>
+	 * Returns <code>null</code> if no intersection occures.<br>
+	 * Returns a Point3D object if the triangles touch in a point.<br>
+	 * Returns a Segment3D if the triangles intersect in a segment.<br>
+	 * Returns a Triangle3D object if one triangle contains the other one or
+	 * they do intersect in one.<br>
+	 * Returns a Wireframe3D object if the triangles intersect in more than
+	 * three intersection points (4 to 6 are possible).<br>
+	 * 
+	 * @param triangle
+	 *            Triangle3D for intersection
+	 * @param sop
+	 *            ScalarOperator
+	 * @return SimpleGeoObj - resulting object. May be <code>null</code>,
+	 *         <code>Point3D</code>, <code>Segment3D</code>,
+	 *         <code>Trangle3D</code> or <code>Wireframe3D</code>.
+	 * @see Triangle3D#intersectionByPlanes(Triangle3D, ScalarOperator)
+	 */
+	public SimpleGeoObj intersection(Triangle3D triangle, ScalarOperator sop) {
+		if (!this.getMBB().intersects(triangle.getMBB(), sop))
+			return null;
+		double[] result = new double[6];
+		switch (TriangleIntersection.intersection(this.getCoordinates(), 0,
+				triangle.getCoordinates(), 0, sop.getEpsilon(), result)) {
+		case TriangleIntersection.DISJOINT:
+			return null;
+		case TriangleIntersection.POINT:
+			return new Point3D(result[0], result[1], result[2]);
+		case TriangleIntersection.SEGMENT:
+			return new Segment3D(new Point3D(result[0], result[1], result[2]),
+					new Point3D(result[3], result[4], result[5]), null);
+		case TriangleIntersection.COPLANAR:
+			return this.intersectionInPlane(triangle, sop);
+		default:
+			return this.intersectionByPlanes(triangle, sop);
+		}
+	}
+
+	/**
+	 * Computes the intersection of this and the given triangle by the
+	 * intersection line of their planes.<br>
+	 * This is the general but slow computation behind
+	 * intersection(Triangle3D, ScalarOperator).<br>
 	 * Returns <code>null</code> if no intersection occures.<br>
 	 * Returns a Point3D object if the triangles touch in a point.<br>
 	 * Returns a Segment3D if the triangles intersect in a segment.<br>
@@ -2363,7 +2586,8 @@ public class Triangle3D implements PersistentObject, SimpleGeoObj,
 	 *             class Vector3D.
 	 */
 
-	public SimpleGeoObj intersection(Triangle3D triangle, ScalarOperator sop) { // Dag
+	public SimpleGeoObj intersectionByPlanes(Triangle3D triangle,
+			ScalarOperator sop) { // Dag
 
 		if (!this.getMBB().intersects(triangle.getMBB(), sop))
 			return null;
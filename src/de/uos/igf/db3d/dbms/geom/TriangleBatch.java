@@ -0,0 +1,317 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.dbms.geom;
+
+/**
+ * TriangleBatch - batch intersection of segments and lines with a set of
+ * triangles on packed coordinates.<br>
+ * <br>
+ * The batch stores the first point and the two edge vectors of each triangle
+ * in separate arrays per coordinate. A segment or line is tested against all
+ * triangles with the algorithm of Moeller and Trumbore. The loop over the
+ * triangles has no branches and works on the arrays with the same index, so
+ * that the JIT compiler can vectorize it. The hits are collected in a second
+ * pass.<br>
+ * <br>
+ * A segment is given by six doubles for its start and end point, a line by
+ * six doubles for its origin and direction. The hits are written into buffers
+ * of the caller as index of the segment or line, index of the triangle and
+ * parameter t of the intersection point start + t * (end - start) or origin +
+ * t * direction. Segments or lines parallel to a triangle are not reported;
+ * for these Triangle3D.intersection(Segment3D, ScalarOperator) has to be
+ * used.<br>
+ * <br>
+ * Moeller, T., Trumbore, B. : Fast, Minimum Storage Ray/Triangle
+ * Intersection - In Journal of Graphics Tools 2(1), 1997, pages 21 - 28.
+ */
+public final class TriangleBatch {
+
+	/* minimal sine of the angle between segment and triangle plane */
+	private final static double PARALLEL = 1.0E-12;
+
+	/* first points of the triangles */
+	private final double[] px;
+	private final double[] py;
+	private final double[] pz;
+
+	/* first edge vectors of the triangles */
+	private final double[] ax;
+	private final double[] ay;
+	private final double[] az;
+
+	/* second edge vectors of the triangles */
+	private final double[] bx;
+	private final double[] by;
+	private final double[] bz;
+
+	/* lengths of the normals of the triangles */
+	private final double[] norm;
+
+	/**
+	 * Constructor.<br>
+	 * Constructs a batch of count triangles given by nine doubles x0, y0, z0,
+	 * x1, y1, z1, x2, y2, z2 each.
+	 * 
+	 * @param triangles
+	 *            packed coordinates of the triangles
+	 * @param offset
+	 *            offset of the first triangle
+	 * @param count
+	 *            number of triangles
+	 * @throws IllegalArgumentException
+	 *             - if the array is shorter than given by offset and count.
+	 */
+	public TriangleBatch(double[] triangles, int offset, int count) {
+		if (offset < 0 || count < 0 || triangles.length < offset + 9 * count)
+			throw new IllegalArgumentException("IllegalParameters");
+		this.px = new double[count];
+		this.py = new double[count];
+		this.pz = new double[count];
+		this.ax = new double[count];
+		this.ay = new double[count];
+		this.az = new double[count];
+		this.bx = new double[count];
+		this.by = new double[count];
+		this.bz = new double[count];
+		this.norm = new double[count];
+		for (int i = 0; i < count; i++) {
+			int o = offset + 9 * i;
+			px[i] = triangles[o];
+			py[i] = triangles[o + 1];
+			pz[i] = triangles[o + 2];
+			ax[i] = triangles[o + 3] - px[i];
+			ay[i] = triangles[o + 4] - py[i];
+			az[i] = triangles[o + 5] - pz[i];
+			bx[i] = triangles[o + 6] - px[i];
+			by[i] = triangles[o + 7] - py[i];
+			bz[i] = triangles[o + 8] - pz[i];
+			double nx = ay[i] * bz[i] - az[i] * by[i];
+			double ny = az[i] * bx[i] - ax[i] * bz[i];
+			double nz = ax[i] * by[i] - ay[i] * bx[i];
+			norm[i] = Math.sqrt(nx * nx + ny * ny + nz * nz);
+		}
+	}
+
+	/**
+	 * Constructor.<br>
+	 * Constructs a batch of the given triangles.
+	 * 
+	 * @param triangles
+	 *            Triangle3D[]
+	 */
+	public TriangleBatch(Triangle3D[] triangles) {
+		this(pack(triangles), 0, triangles.length);
+	}
+
+	/**
+	 * Packs the coordinates of the given triangles into an array of nine
+	 * doubles per triangle.
+	 * 
+	 * @param triangles
+	 *            Triangle3D[]
+	 * @return double[] - packed coordinates.
+	 */
+	public static double[] pack(Triangle3D[] triangles) {
+		double[] coords = new double[9 * triangles.length];
+		for (int i = 0; i < triangles.length; i++)
+			System.arraycopy(triangles[i].getCoordinates(), 0, coords, 9 * i,
+					9);
+		return coords;
+	}
+
+	/**
+	 * Packs the start and end points of the given segments into an array of
+	 * six doubles per segment.
+	 * 
+	 * @param segments
+	 *            Segment3D[]
+	 * @return double[] - packed coordinates.
+	 */
+	public static double[] pack(Segment3D[] segments) {
+		double[] coords = new double[6 * segments.length];
+		for (int i = 0; i < segments.length; i++) {
+			Point3D start = segments[i].getPoint(0);
+			Point3D end = segments[i].getPoint(1);
+			coords[6 * i] = start.getX();
+			coords[6 * i + 1] = start.getY();
+			coords[6 * i + 2] = start.getZ();
+			coords[6 * i + 3] = end.getX();
+			coords[6 * i + 4] = end.getY();
+			coords[6 * i + 5] = end.getZ();
+		}
+		return coords;
+	}
+
+	/**
+	 * Packs the origins and the normalized direction vectors of the given
+	 * lines into an array of six doubles per line. The parameter t of a hit
+	 * is then the distance of the intersection point from the origin.
+	 * 
+	 * @param lines
+	 *            Line3D[]
+	 * @return double[] - packed coordinates.
+	 */
+	public static double[] pack(Line3D[] lines) {
+		double[] coords = new double[6 * lines.length];
+		for (int i = 0; i < lines.length; i++) {
+			Point3D origin = lines[i].getOrigin();
+			Vector3D dvec = lines[i].getDVector();
+			coords[6 * i] = origin.getX();
+			coords[6 * i + 1] = origin.getY();
+			coords[6 * i + 2] = origin.getZ();
+			coords[6 * i + 3] = dvec.getX();
+			coords[6 * i + 4] = dvec.getY();
+			coords[6 * i + 5] = dvec.getZ();
+		}
+		return coords;
+	}
+
+	/**
+	 * Returns the number of triangles of this.
+	 * 
+	 * @return int - number of triangles.
+	 */
+	public int getCount() {
+		return px.length;
+	}
+
+	/**
+	 * Intersects the given segments with the triangles of this. A hit is
+	 * reported if the barycentric coordinates of the intersection point and
+	 * the parameter t on the segment lie in [0, 1], extended by the given
+	 * tolerance.<br>
+	 * All hits are counted, but only as many are stored as the buffers can
+	 * take. If the returned number is greater, the call can be repeated with
+	 * larger buffers.
+	 * 
+	 * @param segments
+	 *            packed start and end points of the segments
+	 * @param offset
+	 *            offset of the first segment
+	 * @param count
+	 *            number of segments
+	 * @param tolerance
+	 *            tolerance of the barycentric coordinates and of t
+	 * @param segmentHits
+	 *            buffer for the indices of the segments
+	 * @param triangleHits
+	 *            buffer for the indices of the triangles
+	 * @param params
+	 *            buffer for the parameters t
+	 * @return int - number of hits.
+	 * @throws IllegalArgumentException
+	 *             - if the array is shorter than given by offset and count or
+	 *             the buffers differ in length.
+	 */
+	public int intersectSegments(double[] segments, int offset, int count,
+			double tolerance, int[] segmentHits, int[] triangleHits,
+			double[] params) {
+		return intersect(segments, offset, count, false, tolerance,
+				segmentHits, triangleHits, params);
+	}
+
+	/**
+	 * Intersects the given lines with the triangles of this. A hit is
+	 * reported if the barycentric coordinates of the intersection point lie
+	 * in [0, 1], extended by the given tolerance.<br>
+	 * All hits are counted, but only as many are stored as the buffers can
+	 * take. If the returned number is greater, the call can be repeated with
+	 * larger buffers.
+	 * 
+	 * @param lines
+	 *            packed origins and direction vectors of the lines
+	 * @param offset
+	 *            offset of the first line
+	 * @param count
+	 *            number of lines
+	 * @param tolerance
+	 *            tolerance of the barycentric coordinates
+	 * @param lineHits
+	 *            buffer for the indices of the lines
+	 * @param triangleHits
+	 *            buffer for the indices of the triangles
+	 * @param params
+	 *            buffer for the parameters t
+	 * @return int - number of hits.
+	 * @throws IllegalArgumentException
+	 *             - if the array is shorter than given by offset and count or
+	 *             the buffers differ in length.
+	 */
+	public int intersectLines(double[] lines, int offset, int count,
+			double tolerance, int[] lineHits, int[] triangleHits,
+			double[] params) {
+		return intersect(lines, offset, count, true, tolerance, lineHits,
+				triangleHits, params);
+	}
+
+	/*
+	 * Intersects segments or lines with the triangles of this.
+	 */
+	private int intersect(double[] rays, int offset, int count,
+			boolean lines, double tolerance, int[] rayHits,
+			int[] triangleHits, double[] params) {
+		if (offset < 0 || count < 0 || rays.length < offset + 6 * count
+				|| rayHits.length != triangleHits.length
+				|| rayHits.length != params.length)
+			throw new IllegalArgumentException("IllegalParameters");
+
+		int n = px.length;
+		double[] det = new double[n];
+		double[] u = new double[n];
+		double[] v = new double[n];
+		double[] t = new double[n];
+		double low = -tolerance;
+		double high = 1 + tolerance;
+		int hits = 0;
+
+		for (int r = 0; r < count; r++) {
+			int o = offset + 6 * r;
+			double ox = rays[o];
+			double oy = rays[o + 1];
+			double oz = rays[o + 2];
+			double dx = lines ? rays[o + 3] : rays[o + 3] - ox;
+			double dy = lines ? rays[o + 4] : rays[o + 4] - oy;
+			double dz = lines ? rays[o + 5] : rays[o + 5] - oz;
+			double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+
+			// branch free pass over all triangles
+			for (int i = 0; i < n; i++) {
+				double qx = dy * bz[i] - dz * by[i];
+				double qy = dz * bx[i] - dx * bz[i];
+				double qz = dx * by[i] - dy * bx[i];
+				double d = ax[i] * qx + ay[i] * qy + az[i] * qz;
+				double inv = 1.0 / d;
+				double sx = ox - px[i];
+				double sy = oy - py[i];
+				double sz = oz - pz[i];
+				double wx = sy * az[i] - sz * ay[i];
+				double wy = sz * ax[i] - sx * az[i];
+				double wz = sx * ay[i] - sy * ax[i];
+				det[i] = d;
+				u[i] = (sx * qx + sy * qy + sz * qz) * inv;
+				v[i] = (dx * wx + dy * wy + dz * wz) * inv;
+				t[i] = (bx[i] * wx + by[i] * wy + bz[i] * wz) * inv;
+			}
+
+			// collection of the hits
+			for (int i = 0; i < n; i++) {
+				if (Math.abs(det[i]) <= PARALLEL * norm[i] * length)
+					continue;
+				if (u[i] < low || v[i] < low || u[i] + v[i] > high)
+					continue;
+				if (!lines && (t[i] < low || t[i] > high))
+					continue;
+				if (hits < params.length) {
+					rayHits[hits] = r;
+					triangleHits[hits] = i;
+					params[hits] = t[i];
+				}
+				hits++;
+			}
+		}
+		return hits;
+	}
+
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.dbms.geom;
+
+/**
+ * TriangleIntersection - intersection kernel for two triangles on raw
+ * coordinates.<br>
+ * <br>
+ * A triangle is given by nine doubles x0, y0, z0, x1, y1, z1, x2, y2, z2 at an
+ * offset in a coordinate array. The kernel allocates no objects. It follows
+ * the interval test of Moeller: the signed distances of the points of each
+ * triangle to the plane of the other triangle reject most pairs, otherwise
+ * both triangles are cut with the plane of the other one and the resulting
+ * intervals on the common line of the planes are compared. Distances smaller
+ * than epsilon count as zero, intervals closer than epsilon overlap, like in
+ * the comparisons of the ScalarOperator.<br>
+ * <br>
+ * Coplanar triangles are tested by the distances of their edges and the
+ * containment of a point. The intersection of coplanar triangles and the
+ * test of triangles with nearly parallel planes are left to the caller.<br>
+ * <br>
+ * Moeller, T. : A Fast Triangle-Triangle Intersection Test - In Journal of
+ * Graphics Tools 2(2), 1997, pages 25 - 30.
+ */
+public final class TriangleIntersection {
+
+	/**
+	 * The triangles do not intersect.
+	 */
+	public final static int DISJOINT = 0;
+
+	/**
+	 * The triangles intersect.
+	 */
+	public final static int INTERSECTING = 1;
+
+	/**
+	 * The triangles intersect in the point stored in the result array.
+	 */
+	public final static int POINT = 2;
+
+	/**
+	 * The triangles intersect in the segment stored in the result array.
+	 */
+	public final static int SEGMENT = 3;
+
+	/**
+	 * The triangles are coplanar and intersect. The intersection is not
+	 * computed.
+	 */
+	public final static int COPLANAR = 4;
+
+	/**
+	 * The planes of the triangles are nearly parallel but not equal or a
+	 * triangle is degenerated. The kernel does not decide these cases.
+	 */
+	public final static int UNDECIDED = 5;
+
+	/* minimal sine of the angle between the planes for the interval test */
+	private final static double PARALLEL = 1.0E-9;
+
+	/*
+	 * Not instantiable.
+	 */
+	private TriangleIntersection() {
+	}
+
+	/**
+	 * Tests whether the given triangles intersect.
+	 * 
+	 * @param a
+	 *            coordinates of the first triangle
+	 * @param aOffset
+	 *            offset of the first triangle in a
+	 * @param b
+	 *            coordinates of the second triangle
+	 * @param bOffset
+	 *            offset of the second triangle in b
+	 * @param epsilon
+	 *            tolerance of the test
+	 * @return int - DISJOINT, INTERSECTING or UNDECIDED.
+	 */
+	public static int intersects(double[] a, int aOffset, double[] b,
+			int bOffset, double epsilon) {
+		return compute(a, aOffset, b, bOffset, epsilon, null);
+	}
+
+	/**
+	 * Computes the intersection of the given triangles. If the triangles
+	 * intersect in a point, its coordinates are stored at index 0 to 2 of the
+	 * result array. If they intersect in a segment, the coordinates of its
+	 * start and end point are stored at index 0 to 5.
+	 * 
+	 * @param a
+	 *            coordinates of the first triangle
+	 * @param aOffset
+	 *            offset of the first triangle in a
+	 * @param b
+	 *            coordinates of the second triangle
+	 * @param bOffset
+	 *            offset of the second triangle in b
+	 * @param epsilon
+	 *            tolerance of the test
+	 * @param result
+	 *            array of at least 6 doubles for the result
+	 * @return int - DISJOINT, POINT, SEGMENT, COPLANAR or UNDECIDED.
+	 * @throws IllegalArgumentException
+	 *             - if the result array is shorter than 6.
+	 */
+	public static int intersection(double[] a, int aOffset, double[] b,
+			int bOffset, double epsilon, double[] result) {
+		if (result == null || result.length < 6)
+			throw new IllegalArgumentException("IllegalParameters");
+		return compute(a, aOffset, b, bOffset, epsilon, result);
+	}
+
+	/*
+	 * Runs the test and computes the intersection if result is not null.
+	 */
+	private static int compute(double[] a, int ao, double[] b, int bo,
+			double eps, double[] result) {
+		// plane of a
+		double nax = cross(a, ao, 1, 2, 2, 1);
+		double nay = cross(a, ao, 2, 0, 0, 2);
+		double naz = cross(a, ao, 0, 1, 1, 0);
+		double lena = Math.sqrt(nax * nax + nay * nay + naz * naz);
+		// plane of b
+		double nbx = cross(b, bo, 1, 2, 2, 1);
+		double nby = cross(b, bo, 2, 0, 0, 2);
+		double nbz = cross(b, bo, 0, 1, 1, 0);
+		double lenb = Math.sqrt(nbx * nbx + nby * nby + nbz * nbz);
+		if (lena == 0 || lenb == 0)
+			return UNDECIDED;
+
+		// distances of the points of b to the plane of a
+		double db0 = distance(b, bo, a, ao, nax, nay, naz, lena, eps);
+		double db1 = distance(b, bo + 3, a, ao, nax, nay, naz, lena, eps);
+		double db2 = distance(b, bo + 6, a, ao, nax, nay, naz, lena, eps);
+		if (sameSide(db0, db1, db2))
+			return DISJOINT;
+
+		// distances of the points of a to the plane of b
+		double da0 = distance(a, ao, b, bo, nbx, nby, nbz, lenb, eps);
+		double da1 = distance(a, ao + 3, b, bo, nbx, nby, nbz, lenb, eps);
+		double da2 = distance(a, ao + 6, b, bo, nbx, nby, nbz, lenb, eps);
+		if (sameSide(da0, da1, da2))
+			return DISJOINT;
+
+		if ((db0 == 0 && db1 == 0 && db2 == 0)
+				|| (da0 == 0 && da1 == 0 && da2 == 0)) {
+			if (!coplanar(a, ao, b, bo, nax, nay, naz, nbx, nby, nbz, eps))
+				return DISJOINT;
+			return result == null ? INTERSECTING : COPLANAR;
+		}
+
+		// direction of the common line of the planes
+		double dx = nay * nbz - naz * nby;
+		double dy = naz * nbx - nax * nbz;
+		double dz = nax * nby - nay * nbx;
+		double len = Math.sqrt(dx * dx + dy * dy + dz * dz);
+		if (len < PARALLEL * lena * lenb)
+			return UNDECIDED;
+		dx /= len;
+		dy /= len;
+		dz /= len;
+
+		// intervals of the triangles on the line, relative to the first point
+		// of a
+		double ox = a[ao], oy = a[ao + 1], oz = a[ao + 2];
+		double mina = extreme(a, ao, da0, da1, da2, dx, dy, dz, ox, oy, oz,
+				false, null, 0);
+		double maxa = extreme(a, ao, da0, da1, da2, dx, dy, dz, ox, oy, oz,
+				true, null, 0);
+		double minb = extreme(b, bo, db0, db1, db2, dx, dy, dz, ox, oy, oz,
+				false, null, 0);
+		double maxb = extreme(b, bo, db0, db1, db2, dx, dy, dz, ox, oy, oz,
+				true, null, 0);
+		if (Math.max(mina, minb) > Math.min(maxa, maxb) + eps)
+			return DISJOINT;
+		if (result == null)
+			return INTERSECTING;
+
+		// the intersection is the overlap of the intervals
+		if (mina >= minb)
+			extreme(a, ao, da0, da1, da2, dx, dy, dz, ox, oy, oz, false,
+					result, 0);
+		else
+			extreme(b, bo, db0, db1, db2, dx, dy, dz, ox, oy, oz, false,
+					result, 0);
+		if (maxa <= maxb)
+			extreme(a, ao, da0, da1, da2, dx, dy, dz, ox, oy, oz, true,
+					result, 3);
+		else
+			extreme(b, bo, db0, db1, db2, dx, dy, dz, ox, oy, oz, true,
+					result, 3);
+		if (Math.abs(result[0] - result[3]) < eps
+				&& Math.abs(result[1] - result[4]) < eps
+				&& Math.abs(result[2] - result[5]) < eps)
+			return POINT;
+		return SEGMENT;
+	}
+
+	/*
+	 * Returns a component of the normal of the triangle at offset o, computed
+	 * with the coordinates i and j of its edge vectors.
+	 */
+	private static double cross(double[] t, int o, int i, int j, int k, int l) {
+		return (t[o + 3 + i] - t[o + i]) * (t[o + 6 + j] - t[o + j])
+				- (t[o + 3 + k] - t[o + k]) * (t[o + 6 + l] - t[o + l]);
+	}
+
+	/*
+	 * Returns the signed distance of the point at offset p to the plane
+	 * through the point at offset o with the given normal, 0 if it is smaller
+	 * than epsilon.
+	 */
+	private static double distance(double[] t, int p, double[] s, int o,
+			double nx, double ny, double nz, double len, double eps) {
+		double d = (nx * (t[p] - s[o]) + ny * (t[p + 1] - s[o + 1]) + nz
+				* (t[p + 2] - s[o + 2]))
+				/ len;
+		return Math.abs(d) < eps ? 0 : d;
+	}
+
+	/*
+	 * Tests whether all distances are on the same side of a plane.
+	 */
+	private static boolean sameSide(double d0, double d1, double d2) {
+		return (d0 > 0 && d1 > 0 && d2 > 0) || (d0 < 0 && d1 < 0 && d2 < 0);
+	}
+
+	/*
+	 * Returns the minimum or maximum parameter of the points of the triangle
+	 * at offset o on the given plane with the distances d0, d1 and d2. These
+	 * are the points with distance 0 and the crossings of the edges with the
+	 * plane. The parameter is measured along the direction d from the origin
+	 * o. If out is not null, the point of the extreme is stored at out[index].
+	 */
+	private static double extreme(double[] t, int o, double d0, double d1,
+			double d2, double dx, double dy, double dz, double ox,
+			double oy, double oz, boolean max, double[] out, int index) {
+		double best = max ? Double.NEGATIVE_INFINITY
+				: Double.POSITIVE_INFINITY;
+		for (int i = 0; i < 3; i++) {
+			int j = (i + 1) % 3;
+			double di = i == 0 ? d0 : (i == 1 ? d1 : d2);
+			double dj = j == 0 ? d0 : (j == 1 ? d1 : d2);
+			int pi = o + 3 * i;
+			int pj = o + 3 * j;
+			double x, y, z;
+			if (di == 0) {
+				x = t[pi];
+				y = t[pi + 1];
+				z = t[pi + 2];
+			} else if ((di > 0 && dj < 0) || (di < 0 && dj > 0)) {
+				double s = di / (di - dj);
+				x = t[pi] + s * (t[pj] - t[pi]);
+				y = t[pi + 1] + s * (t[pj + 1] - t[pi + 1]);
+				z = t[pi + 2] + s * (t[pj + 2] - t[pi + 2]);
+			} else
+				continue;
+			double param = dx * (x - ox) + dy * (y - oy) + dz * (z - oz);
+			if (max ? param > best : param < best) {
+				best = param;
+				if (out != null) {
+					out[index] = x;
+					out[index + 1] = y;
+					out[index + 2] = z;
+				}
+			}
+		}
+		return best;
+	}
+
+	/*
+	 * Tests whether two coplanar triangles intersect: an edge of a is closer
+	 * than epsilon to an edge of b or a point of one triangle lies in the
+	 * other one.
+	 */
+	private static boolean coplanar(double[] a, int ao, double[] b, int bo,
+			double nax, double nay, double naz, double nbx, double nby,
+			double nbz, double eps) {
+		double eps2 = eps * eps;
+		for (int i = 0; i < 3; i++) {
+			int pi = ao + 3 * i;
+			int pj = ao + 3 * ((i + 1) % 3);
+			for (int k = 0; k < 3; k++) {
+				int qk = bo + 3 * k;
+				int ql = bo + 3 * ((k + 1) % 3);
+				if (segmentDistanceSQR(a, pi, pj, b, qk, ql) < eps2)
+					return true;
+			}
+		}
+		return inside(b, bo, nbx, nby, nbz, a, ao)
+				|| inside(a, ao, nax, nay, naz, b, bo);
+	}
+
+	/*
+	 * Tests whether the point at offset p of s lies inside the triangle at
+	 * offset o of t with the given normal.
+	 */
+	private static boolean inside(double[] t, int o, double nx, double ny,
+			double nz, double[] s, int p) {
+		boolean positive = false;
+		boolean negative = false;
+		for (int i = 0; i < 3; i++) {
+			int pi = o + 3 * i;
+			int pj = o + 3 * ((i + 1) % 3);
+			double ex = t[pj] - t[pi], ey = t[pj + 1] - t[pi + 1], ez = t[pj + 2]
+					- t[pi + 2];
+			double vx = s[p] - t[pi], vy = s[p + 1] - t[pi + 1], vz = s[p + 2]
+					- t[pi + 2];
+			double side = nx * (ey * vz - ez * vy) + ny * (ez * vx - ex * vz)
+					+ nz * (ex * vy - ey * vx);
+			if (side > 0)
+				positive = true;
+			else if (side < 0)
+				negative = true;
+		}
+		return !(positive && negative);
+	}
+
+	/*
+	 * Returns the squared distance of the segment p0 p1 of t and the segment
+	 * q0 q1 of s.
+	 */
+	private static double segmentDistanceSQR(double[] t, int p0, int p1,
+			double[] s, int q0, int q1) {
+		double ux = t[p1] - t[p0], uy = t[p1 + 1] - t[p0 + 1], uz = t[p1 + 2]
+				- t[p0 + 2];
+		double vx = s[q1] - s[q0], vy = s[q1 + 1] - s[q0 + 1], vz = s[q1 + 2]
+				- s[q0 + 2];
+		double wx = t[p0] - s[q0], wy = t[p0 + 1] - s[q0 + 1], wz = t[p0 + 2]
+				- s[q0 + 2];
+		double uu = ux * ux + uy * uy + uz * uz;
+		double uv = ux * vx + uy * vy + uz * vz;
+		double vv = vx * vx + vy * vy + vz * vz;
+		double uw = ux * wx + uy * wy + uz * wz;
+		double vw = vx * wx + vy * wy + vz * wz;
+		double denom = uu * vv - uv * uv;
+
+		// parameters of the closest points, clamped to the segments
+		double sc = denom > 0 ? clamp((uv * vw - vv * uw) / denom) : 0;
+		double tc = (uv * sc + vw) / vv;
+		if (tc < 0) {
+			tc = 0;
+			sc = clamp(-uw / uu);
+		} else if (tc > 1) {
+			tc = 1;
+			sc = clamp((uv - uw) / uu);
+		}
+		double x = wx + sc * ux - tc * vx;
+		double y = wy + sc * uy - tc * vy;
+		double z = wz + sc * uz - tc * vz;
+		return x * x + y * y + z * z;
+	}
+
+	/*
+	 * Clamps the value to [0, 1].
+	 */
+	private static double clamp(double value) {
+		return value < 0 ? 0 : (value > 1 ? 1 : value);
+	}
+
+}
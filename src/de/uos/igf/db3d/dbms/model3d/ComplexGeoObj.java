@@ -6,6 +6,9 @@ package de.uos.igf.db3d.dbms.model3d;
 
 import de.uos.igf.db3d.dbms.geom.SimpleGeoObj;
 import de.uos.igf.db3d.dbms.structure.GeoObj;
+import de.uos.igf.db3d.dbms.util.RStarProvider;
+import de.uos.igf.db3d.dbms.util.SAMProvider;
+import de.uos.igf.db3d.dbms.util.SpatialHashProvider;
 
 /**
  * Interface SimpleGeoObj is a common datatype for the simple geo objects in the
@@ -13,9 +16,26 @@ import de.uos.igf.db3d.dbms.structure.GeoObj;
  */
 public interface ComplexGeoObj extends GeoObj {
 
-	/** defines the maximum entries per node in the SAM */
+	/** defines the default maximum entries per node in the SAM */
 	public static final short MAX_SAM = 8;
 
+	/** defines the number of queries passed at once to the SAM */
+	public static final int BATCH_SAM = 4096;
+
+	/**
+	 * default provider for the SAM of the segment, triangle and tetrahedron
+	 * net components - RStar with MAX_SAM entries per node
+	 */
+	public static final SAMProvider DEFAULT_SAM_PROVIDER = new RStarProvider(
+			MAX_SAM);
+
+	/**
+	 * default provider for the SAM of the point net components - SpatialHash
+	 * with an initial cell size of 1
+	 */
+	public static final SAMProvider DEFAULT_POINT_SAM_PROVIDER = new SpatialHashProvider(
+			1.0);
+
 	// complex objects (3D)
 	/** constant for a PointNet3D object */
 	public static final byte POINT_NET_3D = 20;
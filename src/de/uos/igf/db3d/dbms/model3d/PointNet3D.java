@@ -184,7 +184,8 @@ public class PointNet3D extends SpatialObject3D implements Sample3D,
 	 * @return PointNet3DComp - newly added component.
 	 */
 	public PointNet3DComp createComponent() {
-		PointNet3DComp comp = new PointNet3DComp(getScalarOperator().copy());
+		PointNet3DComp comp = new PointNet3DComp(getScalarOperator().copy(),
+				getSAMProvider());
 		addComponent(comp);
 		return comp;
 	}
@@ -25,6 +25,7 @@ import de.uos.igf.db3d.dbms.geom.SimpleGeoObj;
 import de.uos.igf.db3d.dbms.structure.PersistentObject;
 import de.uos.igf.db3d.dbms.util.RStar;
 import de.uos.igf.db3d.dbms.util.SAM;
+import de.uos.igf.db3d.dbms.util.SAMProvider;
 
 /**
  * PointNet3DComp represents a single point net component. All PointElt3D
@@ -67,10 +68,23 @@ public class PointNet3DComp implements PersistentObject, ComplexGeoObj,
 	 * @param sop
 	 *            ScalarOperator
 	 */
-	public PointNet3DComp(ScalarOperator sop) {
+	public PointNet3DComp(ScalarOperator sop){
+		this(sop, DEFAULT_POINT_SAM_PROVIDER);
+	}
+
+	/**
+	 * Constructor.<br>
+	 * 
+	 * @param sop
+	 *            ScalarOperator
+	 * @param provider
+	 *            SAMProvider creating the SAM of this component, null for
+	 *            the default provider
+	 */
+	public PointNet3DComp(ScalarOperator sop, SAMProvider provider) {
 		this.id = -1;
 		this.sop = sop;
-		this.sam = new RStar(MAX_SAM, sop);
+		this.sam = createSAM(provider, sop);
 	}
 
 	/**
@@ -88,10 +102,33 @@ public class PointNet3DComp implements PersistentObject, ComplexGeoObj,
 	 *             - if an attempt is made to construct a MBB3D whose maximum
 	 *             point is not greater than its minimum point.
 	 */
-	protected PointNet3DComp(PointElt3D[] elements, ScalarOperator sop) {
+	protected PointNet3DComp(PointElt3D[] elements, ScalarOperator sop){
+		this(elements, sop, DEFAULT_POINT_SAM_PROVIDER);
+	}
+
+	/**
+	 * Constructor.<br>
+	 * Constructs a PointNet3DComp object with the given PointElt3D[].<br>
+	 * In the given array the neighbourhood topology has not been defined.<br>
+	 * It is assumed that there are NO ! redundant Point3D used in this triangle
+	 * array.
+	 * 
+	 * @param sop
+	 *            ScalarOperator
+	 * @param elements
+	 *            PointElt3D[]
+	 * @param provider
+	 *            SAMProvider creating the SAM of this component, null for
+	 *            the default provider
+	 * @throws IllegalArgumentException
+	 *             - if an attempt is made to construct a MBB3D whose maximum
+	 *             point is not greater than its minimum point.
+	 */
+	protected PointNet3DComp(PointElt3D[] elements, ScalarOperator sop,
+			SAMProvider provider) {
 		this.id = -1;
 		this.sop = sop;
-		this.sam = new RStar(MAX_SAM, sop);
+		this.sam = createSAM(provider, sop);
 		loadSAM(elements);
 		// Here an IllegalArgumentException can be thrown.
 		this.mbb = sam.getMBB();
@@ -236,15 +273,13 @@ public class PointNet3DComp implements PersistentObject, ComplexGeoObj,
 	 *            Point3D to be tested
 	 * @return boolean - true if is contained, false otherwise.
 	 */
-	public boolean containsElt(Point3D point) {
-		Set set = this.getSAM().intersects(point.getMBB());
-		Iterator it = set.iterator();
-		while (it.hasNext()) {
-			PointElt3D pointelt = (PointElt3D) it.next();
-			if (pointelt.isGeometryEquivalent(point, getScalarOperator()))
-				return true;
-		}
-		return false;
+	public boolean containsElt(final Point3D point) {
+		final ScalarOperator sop = this.getScalarOperator();
+		return !this.getSAM().intersects(point.getMBB(), new SAM.Visitor() {
+			public boolean visit(Object obj) {
+				return !((PointElt3D) obj).isGeometryEquivalent(point, sop);
+			}
+		});
 	}
 
 	/**
@@ -428,6 +463,21 @@ public class PointNet3DComp implements PersistentObject, ComplexGeoObj,
 		// in the pointnetcomp do nothing
 	}
 
+	/*
+	 * Creates the SAM of a component with the given provider.
+	 * 
+	 * @param provider SAMProvider, null for DEFAULT_POINT_SAM_PROVIDER
+	 * 
+	 * @param sop ScalarOperator
+	 * 
+	 * @return SAM - new empty SAM.
+	 */
+	private static SAM createSAM(SAMProvider provider, ScalarOperator sop) {
+		if (provider == null)
+			provider = DEFAULT_POINT_SAM_PROVIDER;
+		return provider.createSAM(sop);
+	}
+
 	/*
 	 * Inserts <code>PointElt3D</code> elements into the spatial access method
 	 * of this.
@@ -438,6 +488,11 @@ public class PointNet3DComp implements PersistentObject, ComplexGeoObj,
 	 * MBB3D whose maximum point is not greater than its minimum point.
 	 */
 	private void loadSAM(PointElt3D[] elements) {
+		if (this.sam instanceof RStar) {
+			// packed bulk load instead of single inserts
+			((RStar) this.sam).bulkLoad(elements);
+			return;
+		}
 		for (int i = 0; i < elements.length; i++)
 			this.sam.insert(elements[i]);
 	}
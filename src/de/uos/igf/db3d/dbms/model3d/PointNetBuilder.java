@@ -9,6 +9,7 @@ import java.util.List;
 
 import de.uos.igf.db3d.dbms.geom.ScalarOperator;
 import de.uos.igf.db3d.dbms.structure.Space3D;
+import de.uos.igf.db3d.dbms.util.SAMProvider;
 
 /**
  * PointNetBuilder is for constructing PointNet3D objects.<br>
@@ -27,6 +28,9 @@ public class PointNetBuilder {
 	/* the ScalarOperator to be used if built in Workspace */
 	private ScalarOperator wsSOP;
 
+	/* SAM provider of the components - null for the one of the space */
+	private SAMProvider samProvider;
+
 	/* the components for the net */
 	private List components;
 
@@ -81,6 +85,32 @@ public class PointNetBuilder {
 		this.compIDCounter = counter;
 	}
 
+	/**
+	 * Returns the provider for the SAMs of the components built.
+	 * 
+	 * @return SAMProvider - the provider set on this builder, otherwise the
+	 *         one of the SpaceDefinition of the space - null for the default
+	 *         provider of the component type.
+	 */
+	public SAMProvider getSAMProvider() {
+		if (samProvider != null)
+			return samProvider;
+		if (space != null && space.getSpaceDefinition() != null)
+			return space.getSpaceDefinition().getSAMProvider();
+		return null;
+	}
+
+	/**
+	 * Sets the provider for the SAMs of the components built with this
+	 * builder and of the new components of the built net.
+	 * 
+	 * @param provider
+	 *            SAMProvider, null for the provider of the space
+	 */
+	public void setSAMProvider(SAMProvider provider) {
+		this.samProvider = provider;
+	}
+
 	/**
 	 * Returns a ScalarOperator copy.
 	 * 
@@ -108,7 +138,8 @@ public class PointNetBuilder {
 	 *             point is not greater than its minimum point.
 	 */
 	public void addComponent(PointElt3D[] elements) {
-		PointNet3DComp comp = new PointNet3DComp(elements, getScalarOperator());
+		PointNet3DComp comp = new PointNet3DComp(elements, getScalarOperator(),
+				getSAMProvider());
 		// Here an IllegalArgumentException can be thrown.
 
 		for (int i = 0; i < elements.length; i++) {
@@ -136,7 +167,8 @@ public class PointNetBuilder {
 	 *             point is not greater than its minimum point.
 	 */
 	public void addComponent(PointElt3D[] elements, int id) {
-		PointNet3DComp comp = new PointNet3DComp(elements, getScalarOperator());
+		PointNet3DComp comp = new PointNet3DComp(elements, getScalarOperator(),
+				getSAMProvider());
 		// Here an IllegalArgumentException can be thrown.
 		comp.setComponentID(id);
 
@@ -168,6 +200,7 @@ public class PointNetBuilder {
 
 		PointNet3D net = new PointNet3D(compnet, getScalarOperator());
 		// Here an IllegalArgumentException can be thrown.
+		net.setSAMProvider(getSAMProvider());
 
 		// set component counter
 		net.setComponentID(this.compIDCounter);
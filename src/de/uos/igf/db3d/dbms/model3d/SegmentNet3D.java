@@ -191,7 +191,8 @@ public class SegmentNet3D extends SpatialObject3D implements Curve3D,
 	 *             point is not greater than its minimum point.
 	 */
 	public SegmentNet3DComp createComponent() {
-		SegmentNet3DComp comp = new SegmentNet3DComp(getScalarOperator().copy());
+		SegmentNet3DComp comp = new SegmentNet3DComp(getScalarOperator()
+				.copy(), getSAMProvider());
 		addComponent(comp);
 		return comp;
 	}
@@ -18,7 +18,6 @@ import java.util.Set;
 
 import de.uos.igf.db3d.dbms.api.ContainmentException;
 import de.uos.igf.db3d.dbms.api.DB3DException;
-import de.uos.igf.db3d.dbms.api.Db3dSimpleResourceBundle;
 import de.uos.igf.db3d.dbms.api.GeometryException;
 import de.uos.igf.db3d.dbms.api.TopologyException;
 import de.uos.igf.db3d.dbms.api.UpdateException;
@@ -31,12 +30,12 @@ import de.uos.igf.db3d.dbms.geom.ScalarOperator;
 import de.uos.igf.db3d.dbms.geom.Segment3D;
 import de.uos.igf.db3d.dbms.geom.SimpleGeoObj;
 import de.uos.igf.db3d.dbms.geom.Triangle3D;
-import de.uos.igf.db3d.dbms.geom.Wireframe3D;
 import de.uos.igf.db3d.dbms.structure.PersistentObject;
 import de.uos.igf.db3d.dbms.util.EquivalentableHashSet;
 import de.uos.igf.db3d.dbms.util.IdentityHashSet;
 import de.uos.igf.db3d.dbms.util.RStar;
 import de.uos.igf.db3d.dbms.util.SAM;
+import de.uos.igf.db3d.dbms.util.SAMProvider;
 
 /**
  * SegmentNet3DComp represents a single segment net component. All SegmentElt3D
@@ -94,12 +93,48 @@ public class SegmentNet3DComp implements PersistentObject, ComplexGeoObj,
 	 * @param sop
 	 *            ScalarOperator
 	 */
-	protected SegmentNet3DComp(ScalarOperator sop) {
+	protected SegmentNet3DComp(ScalarOperator sop){
+		this(sop, DEFAULT_SAM_PROVIDER);
+	}
+
+	/**
+	 * Constructor.<br>
+	 * 
+	 * @param sop
+	 *            ScalarOperator
+	 * @param provider
+	 *            SAMProvider creating the SAM of this component, null for
+	 *            the default provider
+	 */
+	protected SegmentNet3DComp(ScalarOperator sop, SAMProvider provider) {
 		this.id = -1;
 		this.sop = sop;
 		this.oriented = false;
 		this.connected = false;
-		this.sam = new RStar(MAX_SAM, sop);
+		this.sam = createSAM(provider, sop);
+	}
+
+	/**
+	 * Constructor.<br>
+	 * Constructs a SegmentNet3DComp object with the given SegmentElt3D[].<br>
+	 * In the given array the neighbourhood topology has not be defined.<br>
+	 * It is assumed that there are NO ! redundant Point3D used in this segment
+	 * array.
+	 * 
+	 * @param sop
+	 *            ScalarOperator
+	 * @param elements
+	 *            SegmentElt3D[]
+	 * @throws IllegalArgumentException
+	 *             - if an attempt is made to construct a MBB3D whose maximum
+	 *             point is not greater than its minimum point.
+	 * @throws IllegalArgumentException
+	 *             if the index of the point of the tetrahedron is not in the
+	 *             interval [0;3]. The exception originates in the method
+	 *             getPoint(int) of the class Tetrahedron3D.
+	 */
+	public SegmentNet3DComp(ScalarOperator sop, SegmentElt3D[] elements){
+		this(sop, elements, DEFAULT_SAM_PROVIDER);
 	}
 
 	/**
@@ -113,6 +148,9 @@ public class SegmentNet3DComp implements PersistentObject, ComplexGeoObj,
 	 *            ScalarOperator
 	 * @param elements
 	 *            SegmentElt3D[]
+	 * @param provider
+	 *            SAMProvider creating the SAM of this component, null for
+	 *            the default provider
 	 * @throws IllegalArgumentException
 	 *             - if an attempt is made to construct a MBB3D whose maximum
 	 *             point is not greater than its minimum point.
@@ -121,10 +159,11 @@ public class SegmentNet3DComp implements PersistentObject, ComplexGeoObj,
 	 *             interval [0;3]. The exception originates in the method
 	 *             getPoint(int) of the class Tetrahedron3D.
 	 */
-	public SegmentNet3DComp(ScalarOperator sop, SegmentElt3D[] elements) {
+	public SegmentNet3DComp(ScalarOperator sop, SegmentElt3D[] elements,
+			SAMProvider provider) {
 		this.id = -1;
 		this.sop = sop;
-		this.sam = new RStar(MAX_SAM, sop);
+		this.sam = createSAM(provider, sop);
 		loadSAM(elements);
 		// Here an IllegalArgumentException can be thrown.
 
@@ -170,52 +209,13 @@ public class SegmentNet3DComp implements PersistentObject, ComplexGeoObj,
 	 *             originates in the method normalize(ScalarOperator) of the
 	 *             class Vector3D.
 	 */
-	public boolean intersects(Plane3D plane) throws DB3DException { // Dag
-
-		SimpleGeoObj obj = this.getMBB().intersection(plane,
-				this.getScalarOperator());
-		// Here an IllegalStateException can be thrown. This exception
-		// originates in the getPoint(int) method of the class Rectangle3D.
-
-		// Here an IllegalStateException can be thrown signaling problems with
-		// the dimension of the wireframe.
-
-		// Here an IllegalStateException can be thrown signaling problems with
-		// the index of a point coordinate.
-		if (obj == null)
-			return false;
-
-		MBB3D intMbb = new MBB3D();
-
-		switch (obj.getType()) {
-		case SimpleGeoObj.POINT3D:
-			intMbb = ((Point3D) obj).getMBB();
-			break;
-		case SimpleGeoObj.SEGMENT3D:
-			intMbb = ((Segment3D) obj).getMBB();
-			break;
-		case SimpleGeoObj.TRIANGLE3D:
-			intMbb = ((Triangle3D) obj).getMBB();
-			break;
-		case SimpleGeoObj.WIREFRAME3D:
-			intMbb = ((Wireframe3D) obj).getMBB();
-			// Here an IllegalArgumentException can be thrown.
-			break;
-		default:
-			throw new DB3DException(Db3dSimpleResourceBundle.getString(
-					"db3d.geom.defrmethod"));
-		}
-
-		SAM sam = this.getSAM();
-		Set segments = sam.intersects(intMbb);
-
-		Iterator it = segments.iterator();
-		while (it.hasNext()) {
-			SegmentElt3D segment = (SegmentElt3D) it.next();
-			if (segment.intersects(plane, this.getScalarOperator()))
-				return true;
-		}
-		return false;
+	public boolean intersects(final Plane3D plane) throws DB3DException { // Dag
+		final ScalarOperator sop = this.getScalarOperator();
+		return !this.getSAM().intersects(plane, new SAM.Visitor() {
+			public boolean visit(Object obj) {
+				return !((SegmentElt3D) obj).intersects(plane, sop);
+			}
+		});
 	}
 
 	/**
@@ -309,15 +309,13 @@ public class SegmentNet3DComp implements PersistentObject, ComplexGeoObj,
 	 *             originates in the method normalize(ScalarOperator) of the
 	 *             class Vector3D.
 	 */
-	public boolean contains(Point3D point) {
-		Set set = this.getSAM().contains(point);
-		Iterator it = set.iterator();
-		while (it.hasNext()) {
-			SegmentElt3D segelt = (SegmentElt3D) it.next();
-			if (segelt.contains(point, this.getScalarOperator()))
-				return true;
-		}
-		return false;
+	public boolean contains(final Point3D point) {
+		final ScalarOperator sop = this.getScalarOperator();
+		return !this.getSAM().contains(point, new SAM.Visitor() {
+			public boolean visit(Object obj) {
+				return !((SegmentElt3D) obj).contains(point, sop);
+			}
+		});
 	}
 
 	/**
@@ -1033,6 +1031,21 @@ public class SegmentNet3DComp implements PersistentObject, ComplexGeoObj,
 		this.connected = con;
 	}
 
+	/*
+	 * Creates the SAM of a component with the given provider.
+	 * 
+	 * @param provider SAMProvider, null for DEFAULT_SAM_PROVIDER
+	 * 
+	 * @param sop ScalarOperator
+	 * 
+	 * @return SAM - new empty SAM.
+	 */
+	private static SAM createSAM(SAMProvider provider, ScalarOperator sop) {
+		if (provider == null)
+			provider = DEFAULT_SAM_PROVIDER;
+		return provider.createSAM(sop);
+	}
+
 	/*
 	 * Loads the sam at construction time and counts the vertices.
 	 * 
@@ -1042,6 +1055,11 @@ public class SegmentNet3DComp implements PersistentObject, ComplexGeoObj,
 	 * MBB3D whose maximum point is not greater than its minimum point.
 	 */
 	private void loadSAM(SegmentElt3D[] elements) {
+		if (this.sam instanceof RStar) {
+			// packed bulk load instead of single inserts
+			((RStar) this.sam).bulkLoad(elements);
+			return;
+		}
 		for (int i = 0; i < elements.length; i++)
 			this.sam.insert(elements[i]);
 	}
@@ -1059,10 +1077,19 @@ public class SegmentNet3DComp implements PersistentObject, ComplexGeoObj,
 	public void buildNetTopology(SegmentElt3D[] elts) {
 		ScalarOperator so = getScalarOperator();
 
+		SAM sa = this.getSAM();
+		Set[] queries = null;
+
 		for (int i = 0; i < elts.length; i++) {
+			// the neighbour candidates are queried in batches
+			if (i % BATCH_SAM == 0) {
+				MBB3D[] mbbs = new MBB3D[Math.min(BATCH_SAM, elts.length - i)];
+				for (int j = 0; j < mbbs.length; j++)
+					mbbs[j] = elts[i + j].getMBB();
+				queries = sa.intersects(mbbs);
+			}
 			if (elts[i].isInterior() != true) {
-				SAM sa = this.getSAM();
-				Set query = sa.intersects(elts[i].getMBB());
+				Set query = queries[i % BATCH_SAM];
 				query.remove(elts[i]);
 
 				Point3D po = null;
@@ -10,6 +10,7 @@ import java.util.List;
 import de.uos.igf.db3d.dbms.geom.Point3D;
 import de.uos.igf.db3d.dbms.geom.ScalarOperator;
 import de.uos.igf.db3d.dbms.structure.Space3D;
+import de.uos.igf.db3d.dbms.util.SAMProvider;
 
 /**
  * SegmentNetBuilder is for constructing SegmentNet3D objects.<br>
@@ -49,6 +50,9 @@ public class SegmentNetBuilder {
 	/* the ScalarOperator to be used if built in Workspace */
 	private ScalarOperator wsSOP;
 
+	/* SAM provider of the components - null for the one of the space */
+	private SAMProvider samProvider;
+
 	/* the components for the net */
 	private List components;
 
@@ -103,6 +107,32 @@ public class SegmentNetBuilder {
 		this.compIDCounter = counter;
 	}
 
+	/**
+	 * Returns the provider for the SAMs of the components built.
+	 * 
+	 * @return SAMProvider - the provider set on this builder, otherwise the
+	 *         one of the SpaceDefinition of the space - null for the default
+	 *         provider of the component type.
+	 */
+	public SAMProvider getSAMProvider() {
+		if (samProvider != null)
+			return samProvider;
+		if (space != null && space.getSpaceDefinition() != null)
+			return space.getSpaceDefinition().getSAMProvider();
+		return null;
+	}
+
+	/**
+	 * Sets the provider for the SAMs of the components built with this
+	 * builder and of the new components of the built net.
+	 * 
+	 * @param provider
+	 *            SAMProvider, null for the provider of the space
+	 */
+	public void setSAMProvider(SAMProvider provider) {
+		this.samProvider = provider;
+	}
+
 	/**
 	 * Returns a ScalarOperator copy.
 	 * 
@@ -135,7 +165,7 @@ public class SegmentNetBuilder {
 	 */
 	public void addComponent(SegmentElt3D[] elements) {
 		SegmentNet3DComp comp = new SegmentNet3DComp(
-				getScalarOperator().copy(), elements);
+				getScalarOperator().copy(), elements, getSAMProvider());
 		// Here an IllegalArgumentException can be thrown.
 
 		for (int i = 0; i < elements.length; i++) {
@@ -168,7 +198,7 @@ public class SegmentNetBuilder {
 	 */
 	public void addComponent(SegmentElt3D[] elements, int id) {
 		SegmentNet3DComp comp = new SegmentNet3DComp(space.getScalarOperator()
-				.copy(), elements);
+				.copy(), elements, getSAMProvider());
 		// Here an IllegalArgumentException can be thrown.
 		comp.setComponentID(id);
 
@@ -200,6 +230,7 @@ public class SegmentNetBuilder {
 
 		SegmentNet3D net = new SegmentNet3D(compnet, getScalarOperator());
 		// Here an IllegalArgumentException can be thrown.
+		net.setSAMProvider(getSAMProvider());
 
 		// set component counter
 		net.setComponentID(this.compIDCounter);
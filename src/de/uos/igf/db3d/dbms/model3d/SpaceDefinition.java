@@ -7,6 +7,7 @@ package de.uos.igf.db3d.dbms.model3d;
 import de.uos.igf.db3d.dbms.geom.ScalarOperator;
 import de.uos.igf.db3d.dbms.structure.PersistentObject;
 import de.uos.igf.db3d.dbms.api.SRID;
+import de.uos.igf.db3d.dbms.util.SAMProvider;
 
 /**
  * The SpaceDefinition class holds all definitions and restrictions for the
@@ -20,6 +21,9 @@ public class SpaceDefinition implements PersistentObject {
 	/* spatial reference system as defined of OGC SFS */
 	private int srid;
 
+	/* provider for the SAMs of the net components */
+	private SAMProvider samProvider;
+
 	/**
 	 * Constructor.
 	 * 
@@ -31,6 +35,22 @@ public class SpaceDefinition implements PersistentObject {
 	public SpaceDefinition(double epsilon, int srid) {
 		this.sop = new ScalarOperator(epsilon);
 		this.srid = srid;
+		this.samProvider = null;
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param epsilon
+	 *            for epsilon arithmetic
+	 * @param srid
+	 *            spatial reference system id
+	 * @param provider
+	 *            SAMProvider for the SAMs of the net components
+	 */
+	public SpaceDefinition(double epsilon, int srid, SAMProvider provider) {
+		this(epsilon, srid);
+		this.samProvider = provider;
 	}
 
 	/**
@@ -51,6 +71,28 @@ public class SpaceDefinition implements PersistentObject {
 		return this.srid;
 	}
 
+	/**
+	 * Returns the provider for the SAMs of the net components built in this
+	 * Space3D.
+	 * 
+	 * @return SAMProvider - the provider, null if none was set and the default
+	 *         provider of the component type is used.
+	 */
+	public SAMProvider getSAMProvider() {
+		return this.samProvider;
+	}
+
+	/**
+	 * Sets the provider for the SAMs of the net components built in this
+	 * Space3D.
+	 * 
+	 * @param provider
+	 *            SAMProvider, null for the default provider
+	 */
+	public void setSAMProvider(SAMProvider provider) {
+		this.samProvider = provider;
+	}
+
 	/**
 	 * Returns name for SRID code.
 	 * 
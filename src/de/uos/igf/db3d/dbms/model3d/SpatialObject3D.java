@@ -10,6 +10,7 @@ import de.uos.igf.db3d.dbms.geom.MBB3D;
 import de.uos.igf.db3d.dbms.geom.ScalarOperator;
 import de.uos.igf.db3d.dbms.structure.PersistentObject;
 import de.uos.igf.db3d.dbms.util.SAM;
+import de.uos.igf.db3d.dbms.util.SAMProvider;
 
 /**
  * SpatialObject3D is the abstract superclass of all geometric objects in 3D.<br>
@@ -38,6 +39,9 @@ public abstract class SpatialObject3D implements Spatial3D, PersistentObject {
 	/* current component id state */
 	private int componentID;
 
+	/* provider for the SAMs of new components */
+	private SAMProvider samProvider;
+
 	/**
 	 * Constructor.
 	 */
@@ -47,6 +51,7 @@ public abstract class SpatialObject3D implements Spatial3D, PersistentObject {
 		this.update = false;
 		this.elementID = 0;
 		this.componentID = 0;
+		this.samProvider = null;
 	}
 
 	/**
@@ -161,6 +166,27 @@ public abstract class SpatialObject3D implements Spatial3D, PersistentObject {
 		return this.sam;
 	}
 
+	/**
+	 * Returns the provider for the SAMs of new components of this.
+	 * 
+	 * @return SAMProvider - the provider, null if none was set and the default
+	 *         provider of the component type is used.
+	 */
+	public SAMProvider getSAMProvider() {
+		return this.samProvider;
+	}
+
+	/**
+	 * Sets the provider for the SAMs of new components of this.<br>
+	 * Existing components keep their SAM.
+	 * 
+	 * @param provider
+	 *            SAMProvider, null for the default provider
+	 */
+	public void setSAMProvider(SAMProvider provider) {
+		this.samProvider = provider;
+	}
+
 	/**
 	 * Sets the SAM in which this is indexed to given SAM.
 	 * 
@@ -200,7 +200,7 @@ public class TetrahedronNet3D extends SpatialObject3D implements Solid3D,
 	 */
 	public TetrahedronNet3DComp createComponent() {
 		TetrahedronNet3DComp comp = new TetrahedronNet3DComp(
-				getScalarOperator().copy());
+				getScalarOperator().copy(), getSAMProvider());
 		addComponent(comp);
 		return comp;
 	}
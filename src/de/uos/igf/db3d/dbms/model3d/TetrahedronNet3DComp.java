@@ -26,17 +26,20 @@ import de.uos.igf.db3d.dbms.geom.Line3D;
 import de.uos.igf.db3d.dbms.geom.MBB3D;
 import de.uos.igf.db3d.dbms.geom.Plane3D;
 import de.uos.igf.db3d.dbms.geom.Point3D;
+import de.uos.igf.db3d.dbms.geom.Predicates;
 import de.uos.igf.db3d.dbms.geom.ScalarOperator;
 import de.uos.igf.db3d.dbms.geom.Segment3D;
 import de.uos.igf.db3d.dbms.geom.SimpleGeoObj;
 import de.uos.igf.db3d.dbms.geom.Tetrahedron3D;
 import de.uos.igf.db3d.dbms.geom.Triangle3D;
 import de.uos.igf.db3d.dbms.structure.PersistentObject;
+import de.uos.igf.db3d.dbms.util.ClosestPairResult;
 import de.uos.igf.db3d.dbms.util.EquivalentableHashSet;
 import de.uos.igf.db3d.dbms.util.FlagMap;
 import de.uos.igf.db3d.dbms.util.IdentityHashSet;
 import de.uos.igf.db3d.dbms.util.RStar;
 import de.uos.igf.db3d.dbms.util.SAM;
+import de.uos.igf.db3d.dbms.util.SAMProvider;
 
 /**
  * TetrahedronNet3DComp represents a single tetrahedron net component. All
@@ -93,6 +96,9 @@ public class TetrahedronNet3DComp implements PersistentObject, ComplexGeoObj,
 
 	private int faces;
 
+	/* last located element, start of the next walk - transient */
+	private transient TetrahedronElt3D hint;
+
 	/**
 	 * Constructor.<br>
 	 * 
@@ -100,10 +106,23 @@ public class TetrahedronNet3DComp implements PersistentObject, ComplexGeoObj,
 	 *            ScalarOperator
 	 */
 	protected TetrahedronNet3DComp(ScalarOperator sop) {
+		this(sop, DEFAULT_SAM_PROVIDER);
+	}
+
+	/**
+	 * Constructor.<br>
+	 * 
+	 * @param sop
+	 *            ScalarOperator
+	 * @param provider
+	 *            SAMProvider creating the SAM of this component, null for
+	 *            the default provider
+	 */
+	protected TetrahedronNet3DComp(ScalarOperator sop, SAMProvider provider) {
 		this.id = -1;
 		this.sop = sop;
 		this.connected = false;
-		this.sam = new RStar(MAX_SAM, sop);
+		this.sam = createSAM(provider, sop);
 	}
 
 	/**
@@ -140,9 +159,50 @@ public class TetrahedronNet3DComp implements PersistentObject, ComplexGeoObj,
 	 */
 	protected TetrahedronNet3DComp(ScalarOperator sop,
 			TetrahedronElt3D[] elements) throws DB3DException {
+		this(sop, elements, DEFAULT_SAM_PROVIDER);
+	}
+
+	/**
+	 * Constructor.<br>
+	 * Constructs a TetrahedronNet3DComp object with the given
+	 * TetrahedronElt3D[].<br>
+	 * In the given array the neighbourhood topology has not been defined.<br>
+	 * It is assumed that there are NO ! redundant Point3D used in this
+	 * tetrahedron array.
+	 * 
+	 * @param sop
+	 *            ScalarOperator
+	 * @param elements
+	 *            TetrahedronElt3D[]
+	 * @param provider
+	 *            SAMProvider creating the SAM of this component, null for
+	 *            the default provider
+	 * @throws DB3DException
+	 *             - during building net topology and registering neighbours, a
+	 *             DB3DException is thrown if the neighbour index is not 0, 1, 2
+	 *             or 3.
+	 * @throws IllegalArgumentException
+	 *             - if an attempt is made to construct a MBB3D whose maximum
+	 *             point is not greater than its minimum point.
+	 * @throws IllegalArgumentException
+	 *             if the index of the point of the tetrahedron is not in the
+	 *             interval [0;3]. The exception originates in the method
+	 *             getPoint(int) of the class Tetrahedron3D.
+	 * @throws IllegalArgumentException
+	 *             if the index of the point of the tetrahedron is not in the
+	 *             interval [0;3]. The exception originates in the method
+	 *             getPoint(int) of the class Tetrahedron3D.
+	 * @throws ArithmeticException
+	 *             - if norm equals zero in epsilon range. This exception
+	 *             originates in the method normalize(ScalarOperator) of the
+	 *             class Vector3D.
+	 */
+	protected TetrahedronNet3DComp(ScalarOperator sop,
+			TetrahedronElt3D[] elements, SAMProvider provider)
+			throws DB3DException {
 		this.id = -1;
 		this.sop = sop;
-		this.sam = new RStar(MAX_SAM, sop);
+		this.sam = createSAM(provider, sop);
 		loadSAM(elements);
 		// Here an IllegalArgumentException can be thrown.
 
@@ -423,6 +483,8 @@ public class TetrahedronNet3DComp implements PersistentObject, ComplexGeoObj,
 			}
 			this.getSAM().remove(removable);
 			// Here an IllegalArgumentException can be thrown
+			if (removable == this.hint)
+				this.hint = null;
 			return removable;
 		}
 		return null; // not removable
@@ -1317,20 +1379,13 @@ public class TetrahedronNet3DComp implements PersistentObject, ComplexGeoObj,
 	 *             originates in the method normalize(ScalarOperator) of the
 	 *             class Vector3D.
 	 */
-	public boolean intersects(Plane3D plane) {
-
-		SimpleGeoObj sgo = this.getMBB().intersection(plane,
-				this.getScalarOperator());
-		if (sgo == null)
-			return false;
-		Set set = this.getSAM().intersects(sgo.getMBB());
-		Iterator it = set.iterator();
-		while (it.hasNext()) {
-			TetrahedronElt3D tetra = (TetrahedronElt3D) it.next();
-			if (tetra.intersects(plane, this.getScalarOperator()))
-				return true;
-		}
-		return false;
+	public boolean intersects(final Plane3D plane) {
+		final ScalarOperator sop = this.getScalarOperator();
+		return !this.getSAM().intersects(plane, new SAM.Visitor() {
+			public boolean visit(Object obj) {
+				return !((TetrahedronElt3D) obj).intersects(plane, sop);
+			}
+		});
 	}
 
 	/**
@@ -1461,43 +1516,120 @@ public class TetrahedronNet3DComp implements PersistentObject, ComplexGeoObj,
 		return false;
 	}
 
-	/*
-	 * Tests whether this contains the given point geometrically. Returns the
-	 * Tetrahedron which contains the point or <code>null</code> if not.
-	 * 
-	 * @param point Point3D to be tested
+	/**
+	 * Returns the tetrahedron of this which contains the given point
+	 * geometrically or <code>null</code> if there is none.<br>
+	 * The tetrahedron is located by a walk over the neighbours, starting at
+	 * the last located tetrahedron or at the tetrahedron with the nearest
+	 * MBB3D. In each step the walk crosses a face which separates the
+	 * current tetrahedron from the point, decided by the exact orient3d
+	 * predicate. Only if the walk leaves the net at its border, the
+	 * tetrahedron is searched in the SAM.
 	 * 
+	 * @param point
+	 *            Point3D to be tested
 	 * @return TetrahedronElt3D if contains the point or <code>null</code>
-	 * otherwise.
-	 * 
-	 * @throws IllegalArgumentException if an attempt is made to construct a
-	 * MBB3D whose maximum point is not greater than its minimum point.
-	 * 
-	 * @throws IllegalArgumentException if the index of the point of the
-	 * tetrahedron is not in the interval [0;3]. The exception originates in the
-	 * method getPoint(int) of the class Tetrahedron3D.
-	 * 
-	 * @throws IllegalArgumentException - if index of a triangle point is not 0,
-	 * 1 or 2. The exception originates in the method getPoint(int) of the class
-	 * Triangle3D.
-	 * 
-	 * @throws ArithmeticException - if norm equals zero in epsilon range. This
-	 * exception originates in the method normalize(ScalarOperator) of the class
-	 * Vector3D.
+	 *         otherwise.
+	 * @throws IllegalArgumentException
+	 *             if an attempt is made to construct a MBB3D whose maximum
+	 *             point is not greater than its minimum point.
+	 * @throws IllegalArgumentException
+	 *             if the index of the point of the tetrahedron is not in the
+	 *             interval [0;3]. The exception originates in the method
+	 *             getPoint(int) of the class Tetrahedron3D.
+	 * @throws IllegalArgumentException
+	 *             - if index of a triangle point is not 0, 1 or 2. The
+	 *             exception originates in the method getPoint(int) of the class
+	 *             Triangle3D.
+	 * @throws ArithmeticException
+	 *             - if norm equals zero in epsilon range. This exception
+	 *             originates in the method normalize(ScalarOperator) of the
+	 *             class Vector3D.
 	 */
-	private TetrahedronElt3D getTetraContainingPoint(Point3D point) { // Dag
-
-		Set tetras = this.getSAM().contains(point);
+	public TetrahedronElt3D getTetraContainingPoint(final Point3D point) { // Dag
+		TetrahedronElt3D result = walk(point);
+		if (result == null) {
+			final TetrahedronElt3D[] found = new TetrahedronElt3D[1];
+			// stop at the first tetrahedron containing point
+			this.getSAM().contains(point, new SAM.Visitor() {
+				public boolean visit(Object obj) {
+					TetrahedronElt3D tetra = (TetrahedronElt3D) obj;
+					if (tetra.contains(point, sop)) {
+						found[0] = tetra;
+						return false;
+					}
+					return true;
+				}
+			});
+			result = found[0];
+		}
+		if (result != null)
+			this.hint = result;
+		return result;
+	}
 
-		Iterator it = tetras.iterator();
-		while (it.hasNext()) {
-			TetrahedronElt3D tetra = (TetrahedronElt3D) it.next();
-			if (tetra.contains(point, sop))
-				return tetra;
+	/*
+	 * Walks from a start element over the neighbours to the tetrahedron
+	 * containing the given point. Returns null if the walk reaches the border
+	 * of this, meets a degenerated tetrahedron or does not end.
+	 * 
+	 * @param point Point3D to be located
+	 * 
+	 * @return TetrahedronElt3D containing the point or <code>null</code>.
+	 */
+	private TetrahedronElt3D walk(Point3D point) {
+		TetrahedronElt3D current = getWalkStart(point);
+		int steps = this.countTetras();
+		int start = 0;
+		for (int n = 0; current != null && n <= steps; n++) {
+			double orientation = Predicates.orient3d(current.getPoint(0),
+					current.getPoint(1), current.getPoint(2), current
+							.getPoint(3));
+			if (orientation == 0)
+				return null;
+			/*
+			 * Face i lies opposite to point i. Its points in the order i + 1,
+			 * i + 2, i + 3 followed by point i are the points of the
+			 * tetrahedron shifted i + 1 times, so point i lies on the side
+			 * with the sign of orientation times (-1)^(i + 1).
+			 */
+			int next = -1;
+			for (int k = 0; k < 4 && next == -1; k++) {
+				int i = (start + k) % 4;
+				double side = Predicates.orient3d(current
+						.getPoint((i + 1) % 4), current.getPoint((i + 2) % 4),
+						current.getPoint((i + 3) % 4), point);
+				if (i % 2 == 1)
+					side = -side;
+				if ((side > 0 && orientation > 0)
+						|| (side < 0 && orientation < 0))
+					next = i;
+			}
+			if (next == -1)
+				return current;
+			current = current.getNeighbour(next);
+			// vary the first tested face to avoid cycles
+			start = (start + 1) % 4;
 		}
 		return null;
 	}
 
+	/*
+	 * Returns the element to start a walk to the given point: the last
+	 * located element if its MBB3D contains the point, otherwise the element
+	 * with the nearest MBB3D in the SAM.
+	 * 
+	 * @param point Point3D to be located
+	 * 
+	 * @return TetrahedronElt3D or <code>null</code> if this is empty.
+	 */
+	private TetrahedronElt3D getWalkStart(Point3D point) {
+		if (this.hint != null && this.hint.getMBB().contains(point, sop))
+			return this.hint;
+		SAM.NNResult[] nearest = this.getSAM().nearest(1, point);
+		return (TetrahedronElt3D) nearest[0].getObjectRef();
+	}
+
 	/**
 	 * Tests whether this contains the given segment geometrically.
 	 * 
@@ -1768,6 +1900,21 @@ public class TetrahedronNet3DComp implements PersistentObject, ComplexGeoObj,
 		this.net = net3D;
 	}
 
+	/*
+	 * Creates the SAM of a component with the given provider.
+	 * 
+	 * @param provider SAMProvider, null for DEFAULT_SAM_PROVIDER
+	 * 
+	 * @param sop ScalarOperator
+	 * 
+	 * @return SAM - new empty SAM.
+	 */
+	private static SAM createSAM(SAMProvider provider, ScalarOperator sop) {
+		if (provider == null)
+			provider = DEFAULT_SAM_PROVIDER;
+		return provider.createSAM(sop);
+	}
+
 	/*
 	 * Load the sam at construction time and counts the vertices.
 	 * 
@@ -1778,6 +1925,11 @@ public class TetrahedronNet3DComp implements PersistentObject, ComplexGeoObj,
 	 * MBB3D whose maximum point is not greater than its minimum point.
 	 */
 	private void loadSAM(TetrahedronElt3D[] elements) {
+		if (this.sam instanceof RStar) {
+			// packed bulk load instead of single inserts
+			((RStar) this.sam).bulkLoad(elements);
+			return;
+		}
 		for (int i = 0; i < elements.length; i++)
 			this.sam.insert(elements[i]);
 	}
@@ -1799,10 +1951,19 @@ public class TetrahedronNet3DComp implements PersistentObject, ComplexGeoObj,
 	public void buildNetTopology(TetrahedronElt3D[] elts) throws DB3DException {
 		ScalarOperator so = getScalarOperator();
 
+		SAM sa = this.getSAM();
+		Set[] queries = null;
+
 		for (int i = 0; i < elts.length; i++) {
+			// the neighbour candidates are queried in batches
+			if (i % BATCH_SAM == 0) {
+				MBB3D[] mbbs = new MBB3D[Math.min(BATCH_SAM, elts.length - i)];
+				for (int j = 0; j < mbbs.length; j++)
+					mbbs[j] = elts[i + j].getMBB();
+				queries = sa.intersects(mbbs);
+			}
 			if (elts[i].isInterior() != true) {
-				SAM sa = this.getSAM();
-				Set query = sa.intersects(elts[i].getMBB());
+				Set query = queries[i % BATCH_SAM];
 				query.remove(elts[i]);
 
 				Point3D po = null;
@@ -2039,6 +2200,61 @@ public class TetrahedronNet3DComp implements PersistentObject, ComplexGeoObj,
 		}
 	}
 
+	/**
+	 * Returns the <code>number</code> pairs of elements of this and the given
+	 * component with the smallest distances, e.g. to measure the gap between
+	 * two bodies. The distance of a pair is the distance of the closest
+	 * points of the two elements.<br>
+	 * The SAMs of the components are traversed simultaneously, see
+	 * {@link RStar#closestPairs(RStar, int)}. A SAM which is no RStar is
+	 * copied into a temporary RStar on every call. If comp is this, pairs of
+	 * an element with itself are skipped and every other pair is returned in
+	 * both orders.
+	 * 
+	 * @param comp
+	 *            the TetrahedronNet3DComp
+	 * @param number
+	 *            number of pairs to search
+	 * @return ClosestPairResult[] - pairs sorted by distance, the first
+	 *         element of a pair is an element of this.
+	 * @throws IllegalArgumentException
+	 *             if number is less than 1.
+	 */
+	public ClosestPairResult[] closestPairs(TetrahedronNet3DComp comp, int number) {
+		RStar rstar = this.toRStar();
+		return rstar.closestPairs(comp == this ? rstar : comp.toRStar(),
+				number);
+	}
+
+	/**
+	 * Returns the <code>number</code> pairs of elements of this and the given
+	 * component with the smallest distances.<br>
+	 * See {@link #closestPairs(TetrahedronNet3DComp, int)}.
+	 * 
+	 * @param comp
+	 *            the TriangleNet3DComp
+	 * @param number
+	 *            number of pairs to search
+	 * @return ClosestPairResult[] - pairs sorted by distance, the first
+	 *         element of a pair is an element of this.
+	 * @throws IllegalArgumentException
+	 *             if number is less than 1.
+	 */
+	public ClosestPairResult[] closestPairs(TriangleNet3DComp comp, int number) {
+		return this.toRStar().closestPairs(comp.toRStar(), number);
+	}
+
+	/*
+	 * Returns the SAM of this as RStar, see
+	 * {@link RStar#toRStar(SAM, int, ScalarOperator)}. SAMs of other types are
+	 * copied on every call.
+	 * 
+	 * @return RStar - SAM of this or a RStar with its elements.
+	 */
+	RStar toRStar() {
+		return RStar.toRStar(this.getSAM(), MAX_SAM, this.getScalarOperator());
+	}
+
 	/**
 	 * Returns the internal spatial access method object (SAM) to the elements
 	 * of the component.
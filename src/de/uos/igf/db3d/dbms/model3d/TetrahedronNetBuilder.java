@@ -10,6 +10,7 @@ import java.util.List;
 import de.uos.igf.db3d.dbms.api.DB3DException;
 import de.uos.igf.db3d.dbms.geom.ScalarOperator;
 import de.uos.igf.db3d.dbms.structure.Space3D;
+import de.uos.igf.db3d.dbms.util.SAMProvider;
 
 /**
  * TetrahedronNetBuilder is for constructing TetrahedronNet3D objects.<br>
@@ -28,6 +29,9 @@ public class TetrahedronNetBuilder {
 	/* the ScalarOperator to be used if build in Workspace */
 	private ScalarOperator wsSOP;
 
+	/* SAM provider of the components - null for the one of the space */
+	private SAMProvider samProvider;
+
 	/** the components for the net */
 	protected List components;
 
@@ -82,6 +86,32 @@ public class TetrahedronNetBuilder {
 		this.compIDCounter = counter;
 	}
 
+	/**
+	 * Returns the provider for the SAMs of the components built.
+	 * 
+	 * @return SAMProvider - the provider set on this builder, otherwise the
+	 *         one of the SpaceDefinition of the space - null for the default
+	 *         provider of the component type.
+	 */
+	public SAMProvider getSAMProvider() {
+		if (samProvider != null)
+			return samProvider;
+		if (space != null && space.getSpaceDefinition() != null)
+			return space.getSpaceDefinition().getSAMProvider();
+		return null;
+	}
+
+	/**
+	 * Sets the provider for the SAMs of the components built with this
+	 * builder and of the new components of the built net.
+	 * 
+	 * @param provider
+	 *            SAMProvider, null for the provider of the space
+	 */
+	public void setSAMProvider(SAMProvider provider) {
+		this.samProvider = provider;
+	}
+
 	/**
 	 * Returns a ScalarOperator copy.
 	 * 
@@ -121,7 +151,8 @@ public class TetrahedronNetBuilder {
 	public boolean addComponent(TetrahedronElt3D[] elements) {
 		TetrahedronNet3DComp comp = null;
 		try {
-			comp = new TetrahedronNet3DComp(getScalarOperator(), elements);
+			comp = new TetrahedronNet3DComp(getScalarOperator(), elements,
+					getSAMProvider());
 			// Here an IllegalArgumentException can be thrown.
 		} catch (DB3DException e) {
 			// TODO Auto-generated catch block
@@ -171,7 +202,8 @@ public class TetrahedronNetBuilder {
 	public boolean addComponent(TetrahedronElt3D[] elements, int id)
 			throws DB3DException {
 		TetrahedronNet3DComp comp = null;
-		comp = new TetrahedronNet3DComp(getScalarOperator(), elements);
+		comp = new TetrahedronNet3DComp(getScalarOperator(), elements,
+				getSAMProvider());
 		// Here an IllegalArgumentException can be thrown.
 		if (comp != null) {
 			comp.setComponentID(id);
@@ -207,6 +239,7 @@ public class TetrahedronNetBuilder {
 		TetrahedronNet3D net = new TetrahedronNet3D(compnet,
 				getScalarOperator());
 		// Here an IllegalArgumentException can be thrown.
+		net.setSAMProvider(getSAMProvider());
 
 		// set component counter
 		net.setComponentID(this.compIDCounter);
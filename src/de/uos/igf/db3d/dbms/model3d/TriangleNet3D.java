@@ -190,7 +190,7 @@ public class TriangleNet3D extends SpatialObject3D implements Surface3D,
 	 */
 	public TriangleNet3DComp createComponent() {
 		TriangleNet3DComp comp = new TriangleNet3DComp(getScalarOperator()
-				.copy());
+				.copy(), getSAMProvider());
 		addComponent(comp);
 		// Here an IllegalArgumentException can be thrown.
 		return comp;
@@ -38,12 +38,14 @@ import de.uos.igf.db3d.dbms.geom.Segment3D;
 import de.uos.igf.db3d.dbms.geom.SimpleGeoObj;
 import de.uos.igf.db3d.dbms.geom.Triangle3D;
 import de.uos.igf.db3d.dbms.structure.PersistentObject;
+import de.uos.igf.db3d.dbms.util.ClosestPairResult;
+import de.uos.igf.db3d.dbms.util.EquivalentableHashMap;
 import de.uos.igf.db3d.dbms.util.EquivalentableHashSet;
 import de.uos.igf.db3d.dbms.util.FlagMap;
 import de.uos.igf.db3d.dbms.util.IdentityHashSet;
 import de.uos.igf.db3d.dbms.util.RStar;
 import de.uos.igf.db3d.dbms.util.SAM;
-import de.uos.igf.db3d.dbms.util.SAM.NNResult;
+import de.uos.igf.db3d.dbms.util.SAMProvider;
 import de.uos.igf.db3d.resources.DB3DLogger;
 
 /**
@@ -104,6 +106,9 @@ public class TriangleNet3DComp implements PersistentObject, ComplexGeoObj,
 	/* edges counter */
 	private int edges;
 
+	/* vertex -> incident elements index - built on first use */
+	private transient EquivalentableHashMap stars;
+
 	/**
 	 * Constructor.<br>
 	 * 
@@ -111,11 +116,24 @@ public class TriangleNet3DComp implements PersistentObject, ComplexGeoObj,
 	 *            ScalarOperator needed for validation
 	 */
 	protected TriangleNet3DComp(ScalarOperator sop) {
+		this(sop, DEFAULT_SAM_PROVIDER);
+	}
+
+	/**
+	 * Constructor.<br>
+	 * 
+	 * @param sop
+	 *            ScalarOperator needed for validation
+	 * @param provider
+	 *            SAMProvider creating the SAM of this component, null for
+	 *            the default provider
+	 */
+	protected TriangleNet3DComp(ScalarOperator sop, SAMProvider provider) {
 		this.id = -1;
 		this.sop = sop;
 		this.oriented = false;
 		this.connected = false;
-		this.sam = new RStar(MAX_SAM, sop);
+		this.sam = createSAM(provider, sop);
 	}
 
 	/**
@@ -138,15 +156,36 @@ public class TriangleNet3DComp implements PersistentObject, ComplexGeoObj,
 	 *             Triangle3D.
 	 */
 	public TriangleNet3DComp(ScalarOperator sop, TriangleElt3D[] elements) {
+		this(sop, elements, DEFAULT_SAM_PROVIDER);
+	}
+
+	/**
+	 * Constructor.<br>
+	 * Constructs a TriangleNet3DComp object with the given TriangleElt3D[].<br>
+	 * In the given array the neighbourhood topology has not be defined.<br>
+	 * It is assumed that there are NO ! redundant Point3D used in this triangle
+	 * array.
+	 * 
+	 * @param sop
+	 *            ScalarOperator needed for validation
+	 * @param elements
+	 *            TriangleElt3D[]
+	 * @param provider
+	 *            SAMProvider creating the SAM of this component, null for
+	 *            the default provider
+	 * @throws IllegalArgumentException
+	 *             - if an attempt is made to construct a MBB3D whose maximum
+	 *             point is not greater than its minimum point.
+	 * @throws IllegalArgumentException
+	 *             - if index of a triangle point is not 0, 1 or 2. The
+	 *             exception originates in the method getPoint(int) of the class
+	 *             Triangle3D.
+	 */
+	public TriangleNet3DComp(ScalarOperator sop, TriangleElt3D[] elements,
+			SAMProvider provider) {
 		this.id = -1;
 		this.sop = sop;
-		this.sam = new RStar(MAX_SAM, sop);
-		// MBB3D XXMBB = elements[0].getMBB();
-		// for( int i=1; i < elements.length; i++) {
-		// XXMBB = XXMBB.union(elements[i].getMBB(), sop);
-		// }
-		//
-		// this.sam = new Octree((short)10, XXMBB, sop);
+		this.sam = createSAM(provider, sop);
 		DB3DLogger.logger.log(Level.FINEST, "Insert data into SAM");
 		double time = System.currentTimeMillis();
 		loadSAM(elements);
@@ -221,6 +260,7 @@ public class TriangleNet3DComp implements PersistentObject, ComplexGeoObj,
 			this.setConnected(true);
 			this.getSAM().insert(element);
 			// Here an IllegalArgumentException can be thrown.
+			this.addToStars(element);
 			return element;
 		}
 
@@ -294,6 +334,7 @@ public class TriangleNet3DComp implements PersistentObject, ComplexGeoObj,
 			}
 			// add element to SAM
 			this.getSAM().insert(element);
+			this.addToStars(element);
 			return element;
 		} else
 			throw new GeometryException(
@@ -389,6 +430,7 @@ public class TriangleNet3DComp implements PersistentObject, ComplexGeoObj,
 			}
 			this.getSAM().remove(removable);
 			// Here an IllegalArgumentException can be thrown.
+			this.removeFromStars(removable);
 			return removable;
 		}
 		throw new ContainmentException("Element not contained !"); // not
@@ -461,6 +503,7 @@ public class TriangleNet3DComp implements PersistentObject, ComplexGeoObj,
 
 		this.getSAM().remove(removable);
 		// Here an IllegalArgumentException could be thrown.
+		this.removeFromStars(removable);
 		// System.out.println("Actual removal step ... done");
 		return removable;
 	}
@@ -511,6 +554,7 @@ public class TriangleNet3DComp implements PersistentObject, ComplexGeoObj,
 			this.setConnected(true);
 			this.getSAM().insert(element);
 			// Here an IllegalArgumentException can be thrown.
+			this.addToStars(element);
 			return element;
 		}
 
@@ -585,6 +629,7 @@ public class TriangleNet3DComp implements PersistentObject, ComplexGeoObj,
 		}
 		// add element to SAM
 		this.getSAM().insert(element);
+		this.addToStars(element);
 		return element;
 	}
 
@@ -640,16 +685,13 @@ public class TriangleNet3DComp implements PersistentObject, ComplexGeoObj,
 	 *            Triangle3D
 	 * @return boolean - true if contained, false otherwise.
 	 */
-	public boolean containsElt(Triangle3D tri) { // Dag
-		Set<Equivalentable> triangles = this.getSAM().intersects(tri.getMBB());
-
-		Iterator<Equivalentable> it = triangles.iterator();
-		while (it.hasNext()) {
-			TriangleElt3D triElt = (TriangleElt3D) it.next();
-			if (triElt.isGeometryEquivalent(tri, this.getScalarOperator()))
-				return true;
-		}
-		return false;
+	public boolean containsElt(final Triangle3D tri) { // Dag
+		final ScalarOperator sop = this.getScalarOperator();
+		return !this.getSAM().intersects(tri.getMBB(), new SAM.Visitor() {
+			public boolean visit(Object obj) {
+				return !((TriangleElt3D) obj).isGeometryEquivalent(tri, sop);
+			}
+		});
 	}
 
 	/**
@@ -1059,19 +1101,13 @@ public class TriangleNet3DComp implements PersistentObject, ComplexGeoObj,
 	 *             originates in the method normalize(ScalarOperator) of the
 	 *             class Vector3D.
 	 */
-	public boolean intersects(Plane3D plane) {// Dag
-		SimpleGeoObj sgo = this.getMBB().intersection(plane,
-				this.getScalarOperator());
-		if (sgo == null)
-			return false;
-		Set<Equivalentable> set = this.getSAM().intersects(sgo.getMBB());
-		Iterator<Equivalentable> it = set.iterator();
-		while (it.hasNext()) {
-			TriangleElt3D tri = (TriangleElt3D) it.next();
-			if (tri.intersects(plane, this.getScalarOperator()))
-				return true;
-		}
-		return false;
+	public boolean intersects(final Plane3D plane) {// Dag
+		final ScalarOperator sop = this.getScalarOperator();
+		return !this.getSAM().intersects(plane, new SAM.Visitor() {
+			public boolean visit(Object obj) {
+				return !((TriangleElt3D) obj).intersects(plane, sop);
+			}
+		});
 	}
 
 	/**
@@ -1241,19 +1277,17 @@ public class TriangleNet3DComp implements PersistentObject, ComplexGeoObj,
 	 *             originates in the method normalize(ScalarOperator) of the
 	 *             class Vector3D.
 	 */
-	public boolean contains(Point3D point) { // Dag
+	public boolean contains(final Point3D point) { // Dag
 		// tests whether a triangle of this contains point until one is found
 		// (or all if not)
-		// get spatial objects from SAM which contain point
-		Set<?> triangles = this.getSAM().contains(point);
-
-		Iterator<?> it = triangles.iterator();
-		while (it.hasNext()) {
-			TriangleElt3D triElt = (TriangleElt3D) it.next();
-			if (triElt.contains(point, this.getScalarOperator()))
-				return true;
-		}
-		return false;
+		// visit spatial objects from SAM which contain point - the query is
+		// terminated by the first triangle containing point
+		final ScalarOperator sop = this.getScalarOperator();
+		return !this.getSAM().contains(point, new SAM.Visitor() {
+			public boolean visit(Object obj) {
+				return !((TriangleElt3D) obj).contains(point, sop);
+			}
+		});
 	}
 
 	/**
@@ -1543,6 +1577,61 @@ public class TriangleNet3DComp implements PersistentObject, ComplexGeoObj,
 		this.oriented = oriented;
 	}
 
+	/**
+	 * Returns the <code>number</code> pairs of elements of this and the given
+	 * component with the smallest distances, e.g. to measure the gap between
+	 * two bodies. The distance of a pair is the distance of the closest
+	 * points of the two elements.<br>
+	 * The SAMs of the components are traversed simultaneously, see
+	 * {@link RStar#closestPairs(RStar, int)}. A SAM which is no RStar is
+	 * copied into a temporary RStar on every call. If comp is this, pairs of
+	 * an element with itself are skipped and every other pair is returned in
+	 * both orders.
+	 * 
+	 * @param comp
+	 *            the TriangleNet3DComp
+	 * @param number
+	 *            number of pairs to search
+	 * @return ClosestPairResult[] - pairs sorted by distance, the first
+	 *         element of a pair is an element of this.
+	 * @throws IllegalArgumentException
+	 *             if number is less than 1.
+	 */
+	public ClosestPairResult[] closestPairs(TriangleNet3DComp comp, int number) {
+		RStar rstar = this.toRStar();
+		return rstar.closestPairs(comp == this ? rstar : comp.toRStar(),
+				number);
+	}
+
+	/**
+	 * Returns the <code>number</code> pairs of elements of this and the given
+	 * component with the smallest distances.<br>
+	 * See {@link #closestPairs(TriangleNet3DComp, int)}.
+	 * 
+	 * @param comp
+	 *            the TetrahedronNet3DComp
+	 * @param number
+	 *            number of pairs to search
+	 * @return ClosestPairResult[] - pairs sorted by distance, the first
+	 *         element of a pair is an element of this.
+	 * @throws IllegalArgumentException
+	 *             if number is less than 1.
+	 */
+	public ClosestPairResult[] closestPairs(TetrahedronNet3DComp comp, int number) {
+		return this.toRStar().closestPairs(comp.toRStar(), number);
+	}
+
+	/*
+	 * Returns the SAM of this as RStar, see
+	 * {@link RStar#toRStar(SAM, int, ScalarOperator)}. SAMs of other types are
+	 * copied on every call.
+	 * 
+	 * @return RStar - SAM of this or a RStar with its elements.
+	 */
+	RStar toRStar() {
+		return RStar.toRStar(this.getSAM(), MAX_SAM, this.getScalarOperator());
+	}
+
 	/**
 	 * Returns the internal spatial access method object (SAM) to the elements
 	 * of the component.
@@ -1582,6 +1671,21 @@ public class TriangleNet3DComp implements PersistentObject, ComplexGeoObj,
 		this.connected = con;
 	}
 
+	/*
+	 * Creates the SAM of a component with the given provider.
+	 * 
+	 * @param provider SAMProvider, null for DEFAULT_SAM_PROVIDER
+	 * 
+	 * @param sop ScalarOperator
+	 * 
+	 * @return SAM - new empty SAM.
+	 */
+	private static SAM createSAM(SAMProvider provider, ScalarOperator sop) {
+		if (provider == null)
+			provider = DEFAULT_SAM_PROVIDER;
+		return provider.createSAM(sop);
+	}
+
 	/*
 	 * Loads the sam at construction time and counts the vertices.
 	 * 
@@ -1591,6 +1695,11 @@ public class TriangleNet3DComp implements PersistentObject, ComplexGeoObj,
 	 * MBB3D whose maximum point is not greater than its minimum point.
 	 */
 	private void loadSAM(TriangleElt3D[] elements) {
+		if (this.sam instanceof RStar) {
+			// packed bulk load instead of single inserts
+			((RStar) this.sam).bulkLoad(elements);
+			return;
+		}
 		for (int i = 0; i < elements.length; i++)
 			this.sam.insert(elements[i]);
 	}
@@ -1613,10 +1722,19 @@ public class TriangleNet3DComp implements PersistentObject, ComplexGeoObj,
 	public void buildNetTopology(TriangleElt3D[] elts) {
 		ScalarOperator so = getScalarOperator();
 
+		SAM sa = this.getSAM();
+		Set[] queries = null;
+
 		for (int i = 0; i < elts.length; i++) {
+			// the neighbour candidates are queried in batches
+			if (i % BATCH_SAM == 0) {
+				MBB3D[] mbbs = new MBB3D[Math.min(BATCH_SAM, elts.length - i)];
+				for (int j = 0; j < mbbs.length; j++)
+					mbbs[j] = elts[i + j].getMBB();
+				queries = sa.intersects(mbbs);
+			}
 			if (elts[i].isInterior() != true) {
-				SAM sa = this.getSAM();
-				Set<Equivalentable> query = sa.intersects(elts[i].getMBB());
+				Set<Equivalentable> query = queries[i % BATCH_SAM];
 				query.remove(elts[i]);
 
 				Point3D po = null;
@@ -2242,11 +2360,20 @@ public class TriangleNet3DComp implements PersistentObject, ComplexGeoObj,
 		return outerSegments;
 	}
 
+	/**
+	 * This method returns the segments of all triangles of this component that
+	 * the given <code>point</code> is part of. A segment shared by two of these
+	 * triangles is contained twice.
+	 * 
+	 * @param point
+	 *            the point that has to be part of the searched segments
+	 * @return the search result as a list of segments. The list may be empty
+	 *         but is never <code>null</code>.
+	 */
 	public Collection<Segment3D> getAllSegmentsWithPoint(Point3D point) {
 		LinkedList<Segment3D> resultSet = new LinkedList<Segment3D>();
-		Collection<TriangleElt3D> allTrianglesWithPoint = getAllTrianglesWithPoint2(point);
 		Segment3D seg;
-		for (TriangleElt3D tri : allTrianglesWithPoint) {
+		for (TriangleElt3D tri : this.getStar(point)) {
 			for (int i = 0; i < 3; i++) {
 				seg = tri.getSegment(i);
 				if (seg.contains(point, sop)) {
@@ -2259,99 +2386,135 @@ public class TriangleNet3DComp implements PersistentObject, ComplexGeoObj,
 
 	/**
 	 * This method returns all triangles of this component that the given
-	 * <code>point</code> is part of.
+	 * <code>point</code> is part of.<br>
+	 * The triangles are taken from the index of the vertices of this
+	 * component, so the effort depends on the number of triangles at the point
+	 * only.
 	 * 
 	 * @param point
 	 *            the point that has to be part of the searched triangles
 	 * @return the search result as a set of triangles. The set may be empty but
 	 *         is never <code>null</code>.
-	 * @throws IllegalArgumentException
-	 *             - if index of a triangle point is not 0, 1 or 2. The
-	 *             exception originates in the method getPoint(int) of the class
-	 *             Triangle3D.
-	 * @throws ArithmeticException
-	 *             - if norm equals zero in epsilon range. This exception
-	 *             originates in the method normalize(ScalarOperator) of the
-	 *             class Vector3D.
 	 */
 	public Set<TriangleElt3D> getAllTrianglesWithPoint(Point3D point) {
-		Set<TriangleElt3D> resultSet = new HashSet<TriangleElt3D>();
+		return new HashSet<TriangleElt3D>(this.getStar(point));
+	}
 
-		TriangleElt3D first = (TriangleElt3D) this.getSAM().nearest(1, point)[0]
-				.getObjectRef();
-		TriangleElt3D current = null;
-		TriangleElt3D prev = first;
+	/**
+	 * This method returns all triangles of this component that the given
+	 * <code>point</code> is part of as a list.<br>
+	 * The triangles are taken from the index of the vertices of this
+	 * component, so the effort depends on the number of triangles at the point
+	 * only.
+	 * 
+	 * @param point
+	 *            the point that has to be part of the searched triangles
+	 * @return the search result as a list of triangles. The list may be empty
+	 *         but is never <code>null</code>.
+	 */
+	public Collection<TriangleElt3D> getAllTrianglesWithPoint2(Point3D point) {
+		return new LinkedList<TriangleElt3D>(this.getStar(point));
+	}
 
-		// if current is null, then the selected point lies on the border, so
-		// all triangles will have to be searched
-		while (current != first && current != null) {
+	/*
+	 * Returns the elements of this which have the given point as corner. The
+	 * returned list must not be modified.
+	 * 
+	 * @param point Point3D
+	 * 
+	 * @return List - TriangleElt3Ds at point.
+	 */
+	private List<TriangleElt3D> getStar(Point3D point) {
+		if (this.stars == null) {
+			this.stars = new EquivalentableHashMap(sop,
+					Equivalentable.STRICT_EQUAL);
+			Iterator it = this.getElementsViaSAM().iterator();
+			while (it.hasNext())
+				this.addToStars((TriangleElt3D) it.next());
+		}
+		List<TriangleElt3D> star = this.findStar(point);
+		if (star != null)
+			return star;
+		return new ArrayList<TriangleElt3D>(0); // point is no vertex
+	}
 
-			TriangleElt3D nb = null;
+	/*
+	 * Searches the list of the elements at the given point in the index.<br>
+	 * The hash buckets are chosen by rounded coordinates, so points equal to a
+	 * vertex can be rounded into different buckets. Every bucket of a vertex
+	 * holds an entry with the same list. A missing entry is searched via the
+	 * corners of the elements at the point and added for the bucket of the
+	 * point. Empty lists are left by removed vertices and are dropped.
+	 * 
+	 * @param point Point3D
+	 * 
+	 * @return List - TriangleElt3Ds at point, null if there is none.
+	 */
+	private List<TriangleElt3D> findStar(Point3D point) {
+		List<TriangleElt3D> star = (List<TriangleElt3D>) this.stars.get(point);
+		if (star != null) {
+			if (!star.isEmpty())
+				return star;
+			this.stars.remove(point);
+		}
+		for (Triangle3D tri : this.getAllTrianglesWithPoint3(point)) {
 			for (int i = 0; i < 3; i++) {
-				if (prev.getNeighbour(i) != null
-						&& prev.getNeighbour(i) != first
-						&& prev.getNeighbour(i).hasCorner(point, sop)) {
-					nb = prev.getNeighbour(i);
+				Point3D corner = tri.getPoint(i);
+				if (!corner.isEqual(point, sop))
+					continue;
+				star = (List<TriangleElt3D>) this.stars.get(corner);
+				if (star != null && !star.isEmpty()) {
+					this.stars.put(point, star);
+					return star;
 				}
 			}
-
-			prev = current;
-			current = nb;
-			resultSet.add(current);
 		}
+		return null;
+	}
 
-		// IF THE SEARCHED POINT LIES ON THE COMPONENT BORDER:
-		if (current == null) {
-			resultSet = new HashSet<TriangleElt3D>();
-			boolean goon = true;
-			// goon is true until the next nearest neighbor does not contain
-			// point
-
-			int iterationNumber = 1;
-			while (goon) {
-				int end = 10 * iterationNumber;
-				int start = end - 10;
-
-				// get the next 10 nearest triangles:
-				NNResult[] nearestResult = this.getSAM().nearest(end, point);
-				TriangleElt3D[] nearestTris = new TriangleElt3D[nearestResult.length];
-				for (int i = 0; i < nearestResult.length; i++) {
-					nearestTris[i] = (TriangleElt3D) nearestResult[i]
-							.getObjectRef();
-				}
-
-				// check if the found nearest triangles contain the point (if
-				// not, break the loop):
-				for (int i = start; i < end && goon; i++) {
-					if (nearestTris[i].hasCorner(point, sop)) {
-						resultSet.add(nearestTris[i]);
-					} else {
-						goon = false;
-					}
-				}
-				iterationNumber++;
+	/*
+	 * Adds the given element to the lists of its vertices in the index, if the
+	 * index is already built.
+	 * 
+	 * @param element TriangleElt3D
+	 */
+	private void addToStars(TriangleElt3D element) {
+		if (this.stars == null)
+			return;
+		for (int i = 0; i < 3; i++) {
+			Point3D point = element.getPoint(i);
+			List<TriangleElt3D> star = this.findStar(point);
+			if (star == null) {
+				star = new ArrayList<TriangleElt3D>(6);
+				this.stars.put(point, star);
 			}
+			star.add(element);
 		}
-
-		return resultSet;
 	}
 
-	public Collection<TriangleElt3D> getAllTrianglesWithPoint2(Point3D point) {
-
-		LinkedList<TriangleElt3D> result = new LinkedList<TriangleElt3D>();
-
-		TriangleElt3DIterator triEltsIt = this.getElementsIterator();
-
-		TriangleElt3D nextTri;
-		while (triEltsIt.hasNext()) {
-			nextTri = triEltsIt.next();
-			if (nextTri.hasCorner(point, sop)) {
-				result.add(nextTri);
-			}
-
+	/*
+	 * Removes the given element from the lists of its vertices in the index,
+	 * if the index is already built.
+	 * 
+	 * @param element TriangleElt3D
+	 */
+	private void removeFromStars(TriangleElt3D element) {
+		if (this.stars == null)
+			return;
+		for (int i = 0; i < 3; i++) {
+			Point3D point = element.getPoint(i);
+			List<TriangleElt3D> star = (List<TriangleElt3D>) this.stars
+					.get(point);
+			if (star == null)
+				continue;
+			for (int j = 0; j < star.size(); j++)
+				if (star.get(j) == element) {
+					star.remove(j);
+					break;
+				}
+			if (star.isEmpty())
+				this.stars.remove(point);
 		}
-
-		return result;
 	}
 
 	public Collection<Triangle3D> getAllTrianglesWithPoint3(Point3D point) {
@@ -13,6 +13,7 @@ import java.util.Set;
 import de.uos.igf.db3d.dbms.geom.Point3D;
 import de.uos.igf.db3d.dbms.geom.ScalarOperator;
 import de.uos.igf.db3d.dbms.structure.Space3D;
+import de.uos.igf.db3d.dbms.util.SAMProvider;
 import de.uos.igf.db3d.dbms.util.TriangleServices;
 
 /**
@@ -32,6 +33,9 @@ public class TriangleNetBuilder {
 	/* the ScalarOperator to be used if build in Workspace */
 	private ScalarOperator wsSOP;
 
+	/* SAM provider of the components - null for the one of the space */
+	private SAMProvider samProvider;
+
 	/** the components for the net */
 	protected List<TriangleNet3DComp> components;
 
@@ -86,6 +90,32 @@ public class TriangleNetBuilder {
 		this.compIDCounter = counter;
 	}
 
+	/**
+	 * Returns the provider for the SAMs of the components built.
+	 * 
+	 * @return SAMProvider - the provider set on this builder, otherwise the
+	 *         one of the SpaceDefinition of the space - null for the default
+	 *         provider of the component type.
+	 */
+	public SAMProvider getSAMProvider() {
+		if (samProvider != null)
+			return samProvider;
+		if (space != null && space.getSpaceDefinition() != null)
+			return space.getSpaceDefinition().getSAMProvider();
+		return null;
+	}
+
+	/**
+	 * Sets the provider for the SAMs of the components built with this
+	 * builder and of the new components of the built net.
+	 * 
+	 * @param provider
+	 *            SAMProvider, null for the provider of the space
+	 */
+	public void setSAMProvider(SAMProvider provider) {
+		this.samProvider = provider;
+	}
+
 	/**
 	 * Returns a ScalarOperator copy.
 	 * 
@@ -120,7 +150,7 @@ public class TriangleNetBuilder {
 
 		// Build a new Component and fill the SAM
 		TriangleNet3DComp comp = new TriangleNet3DComp(getScalarOperator(),
-				elements);
+				elements, getSAMProvider());
 		// Here an IllegalArgumentException can be thrown.
 
 		for (int i = 0; i < elements.length; i++) {
@@ -155,7 +185,7 @@ public class TriangleNetBuilder {
 	 */
 	public void addComponent(TriangleElt3D[] elements, int id) {
 		TriangleNet3DComp comp = new TriangleNet3DComp(getScalarOperator(),
-				elements);
+				elements, getSAMProvider());
 		// Here an IllegalArgumentException can be thrown.
 		comp.setComponentID(id);
 
@@ -192,6 +222,7 @@ public class TriangleNetBuilder {
 		// instantiation of the net
 		TriangleNet3D net = new TriangleNet3D(compnet, getScalarOperator());
 		// Here an IllegalArgumentException can be thrown.
+		net.setSAMProvider(getSAMProvider());
 
 		// set component counter
 		net.setComponentID(this.compIDCounter);
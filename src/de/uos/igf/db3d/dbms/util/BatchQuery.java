@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.dbms.util;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import de.uos.igf.db3d.dbms.geom.MBB3D;
+import de.uos.igf.db3d.dbms.geom.Point3D;
+
+/**
+ * BatchQuery - helper for answering a batch of range queries together.<br>
+ * The queries are ordered along the Z-order (Morton) curve of the centers of
+ * their MBB3Ds and split into runs of neighbouring queries. A SAM answers
+ * each run with one traversal, so the nodes shared by the queries of a run
+ * are visited once. Large batches are distributed over the common
+ * ForkJoinPool, the runs must therefore only read the SAM.
+ */
+final class BatchQuery {
+
+	/* number of queries answered by one traversal */
+	private final static int RUN_LENGTH = 64;
+
+	/* minimal number of queries for the parallel execution */
+	private final static int PARALLEL_THRESHOLD = 1024;
+
+	/* resolution of the Z-order curve per axis in bits */
+	private final static int CURVE_BITS = 10;
+
+	/*
+	 * Not instantiable.
+	 */
+	private BatchQuery() {
+	}
+
+	/**
+	 * Answers a run of queries of a batch.
+	 */
+	interface Run {
+
+		/**
+		 * Answers the given queries. The result of a query has to be stored at
+		 * its index in the batch.
+		 * 
+		 * @param queries
+		 *            indexes of the queries in the batch
+		 * @param number
+		 *            number of valid indexes in queries
+		 */
+		void query(int[] queries, int number);
+	}
+
+	/**
+	 * Creates the result array with an empty Set for every query.
+	 * 
+	 * @param number
+	 *            number of queries
+	 * @return Set[] - result array.
+	 */
+	static Set[] createResult(int number) {
+		Set[] result = new Set[number];
+		for (int i = 0; i < number; i++)
+			result[i] = new HashSet();
+		return result;
+	}
+
+	/**
+	 * Orders the given queries along the Z-order curve and passes them in
+	 * runs to the given Run.
+	 * 
+	 * @param mbbs
+	 *            query MBB3Ds
+	 * @param run
+	 *            Run answering the queries
+	 */
+	static void run(MBB3D[] mbbs, Run run) {
+		run(mbbs, run, true);
+	}
+
+	/**
+	 * Orders the given queries along the Z-order curve and passes them in
+	 * runs to the given Run.
+	 * 
+	 * @param mbbs
+	 *            query MBB3Ds
+	 * @param run
+	 *            Run answering the queries
+	 * @param parallel
+	 *            false if all runs must be answered in the calling thread
+	 */
+	static void run(MBB3D[] mbbs, Run run, boolean parallel) {
+		if (mbbs.length == 0)
+			return;
+		int[] order = order(mbbs);
+		if (!parallel || mbbs.length < PARALLEL_THRESHOLD)
+			runs(order, 0, order.length, run);
+		else
+			ForkJoinPool.commonPool().invoke(
+					new RunTask(order, 0, order.length, run));
+	}
+
+	/*
+	 * Passes the queries of the given range in runs to the given Run.
+	 * 
+	 * @param order query indexes in curve order
+	 * 
+	 * @param from first position in order
+	 * 
+	 * @param to position after the last one in order
+	 * 
+	 * @param run Run answering the queries
+	 */
+	private static void runs(int[] order, int from, int to, Run run) {
+		int[] queries = new int[RUN_LENGTH];
+		for (int i = from; i < to; i += RUN_LENGTH) {
+			int number = Math.min(RUN_LENGTH, to - i);
+			System.arraycopy(order, i, queries, 0, number);
+			run.query(queries, number);
+		}
+	}
+
+	/*
+	 * Returns the indexes of the given MBB3Ds sorted by the Z-order value of
+	 * their centers. The centers are mapped to a grid of 2^CURVE_BITS cells
+	 * per axis over the bounds of all centers.
+	 * 
+	 * @param mbbs MBB3D objects
+	 * 
+	 * @return int[] - indexes in curve order.
+	 */
+	private static int[] order(MBB3D[] mbbs) {
+		int n = mbbs.length;
+		double[] centers = new double[n * 3];
+		double[] min = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+				Double.POSITIVE_INFINITY };
+		double[] max = { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY,
+				Double.NEGATIVE_INFINITY };
+		for (int i = 0; i < n; i++) {
+			Point3D pMin = mbbs[i].getPMin();
+			Point3D pMax = mbbs[i].getPMax();
+			for (int k = 0; k < 3; k++) {
+				double c = (pMin.getCoord(k) + pMax.getCoord(k)) / 2;
+				centers[i * 3 + k] = c;
+				min[k] = Math.min(min[k], c);
+				max[k] = Math.max(max[k], c);
+			}
+		}
+
+		int cells = 1 << CURVE_BITS;
+		long[] keys = new long[n];
+		for (int i = 0; i < n; i++) {
+			long code = 0;
+			for (int k = 0; k < 3; k++) {
+				double extent = max[k] - min[k];
+				int cell = extent > 0 ? (int) ((centers[i * 3 + k] - min[k])
+						/ extent * (cells - 1)) : 0;
+				code |= spread(cell) << k;
+			}
+			// curve value in the high bits, query index in the low bits
+			keys[i] = (code << 32) | i;
+		}
+		Arrays.sort(keys);
+
+		int[] order = new int[n];
+		for (int i = 0; i < n; i++)
+			order[i] = (int) (keys[i] & 0xffffffffL);
+		return order;
+	}
+
+	/*
+	 * Spreads the lower CURVE_BITS bits of the given value to every third
+	 * bit.
+	 * 
+	 * @param value grid cell index
+	 * 
+	 * @return long - spread bits.
+	 */
+	private static long spread(int value) {
+		long result = 0;
+		for (int b = 0; b < CURVE_BITS; b++)
+			result |= (long) ((value >> b) & 1) << (3 * b);
+		return result;
+	}
+
+	/*
+	 * Task answering a range of the ordered queries. Ranges longer than a few
+	 * runs are split in halves.<br> <br> Transient class
+	 */
+	private final static class RunTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		/* query indexes in curve order */
+		private final int[] order;
+
+		/* first position in order */
+		private final int from;
+
+		/* position after the last one in order */
+		private final int to;
+
+		/* Run answering the queries */
+		private final Run run;
+
+		/*
+		 * Constructor.
+		 * 
+		 * @param order query indexes in curve order
+		 * 
+		 * @param from first position in order
+		 * 
+		 * @param to position after the last one in order
+		 * 
+		 * @param run Run answering the queries
+		 */
+		private RunTask(int[] order, int from, int to, Run run) {
+			this.order = order;
+			this.from = from;
+			this.to = to;
+			this.run = run;
+		}
+
+		/*
+		 * Answers the range or splits it.
+		 * 
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		protected void compute() {
+			if (to - from <= 4 * RUN_LENGTH) {
+				runs(order, from, to, run);
+				return;
+			}
+			// split at a run boundary
+			int middle = from + ((to - from) / (2 * RUN_LENGTH)) * RUN_LENGTH;
+			invokeAll(new RunTask(order, from, middle, run), new RunTask(order,
+					middle, to, run));
+		}
+	}
+
+}
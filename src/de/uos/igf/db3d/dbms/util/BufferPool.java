@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.dbms.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * BufferPool - LRU cache of the fixed size pages of a file.<br>
+ * A page must be pinned while it is used and unpinned afterwards. Only
+ * unpinned pages are evicted, the least recently used one first. Dirty pages
+ * are written back when they are evicted or the pool is flushed. If all
+ * pages are pinned the pool grows beyond its capacity until pages are
+ * unpinned again.<br>
+ * <br>
+ * This class is not synchronized.
+ */
+final class BufferPool {
+
+	/* file of the pages */
+	private final FileChannel channel;
+
+	/* size of a page in bytes */
+	private final int pageSize;
+
+	/* number of pages kept in memory */
+	private final int capacity;
+
+	/* frames by page number in access order */
+	private final LinkedHashMap frames;
+
+	/* number of pin calls served from memory */
+	private long hits;
+
+	/* number of pin calls which read the page from the file */
+	private long misses;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param channel
+	 *            FileChannel of the page file
+	 * @param pageSize
+	 *            size of a page in bytes
+	 * @param capacity
+	 *            number of pages kept in memory (must be 1 or more)
+	 * @throws IllegalArgumentException
+	 *             if capacity is less than 1.
+	 */
+	BufferPool(FileChannel channel, int pageSize, int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("IllegalParameters");
+		this.channel = channel;
+		this.pageSize = pageSize;
+		this.capacity = capacity;
+		this.frames = new LinkedHashMap(capacity * 2, 0.75f, true);
+	}
+
+	/**
+	 * Pins the given page and returns its buffer. The page is read from the
+	 * file if it is not in memory. Pages behind the end of the file are
+	 * empty.
+	 * 
+	 * @param page
+	 *            page number
+	 * @return ByteBuffer - buffer of the page, valid until it is unpinned.
+	 * @throws UncheckedIOException
+	 *             if the page could not be read.
+	 */
+	ByteBuffer pin(int page) {
+		Integer key = Integer.valueOf(page);
+		Frame frame = (Frame) frames.get(key);
+		if (frame != null) {
+			hits++;
+		} else {
+			misses++;
+			evict();
+			frame = new Frame(ByteBuffer.allocate(pageSize));
+			read(page, frame.buffer);
+			frames.put(key, frame);
+		}
+		frame.pins++;
+		return frame.buffer;
+	}
+
+	/**
+	 * Pins a new page without reading it from the file. The page is empty and
+	 * marked dirty.
+	 * 
+	 * @param page
+	 *            page number
+	 * @return ByteBuffer - buffer of the page, valid until it is unpinned.
+	 */
+	ByteBuffer pinNew(int page) {
+		Integer key = Integer.valueOf(page);
+		Frame frame = (Frame) frames.get(key);
+		if (frame == null) {
+			evict();
+			frame = new Frame(ByteBuffer.allocate(pageSize));
+			frames.put(key, frame);
+		} else {
+			ByteBuffer buffer = frame.buffer;
+			for (int i = 0; i < pageSize; i++)
+				buffer.put(i, (byte) 0);
+		}
+		frame.dirty = true;
+		frame.pins++;
+		return frame.buffer;
+	}
+
+	/**
+	 * Unpins the given page.
+	 * 
+	 * @param page
+	 *            page number
+	 * @param dirty
+	 *            true if the page was changed
+	 * @throws IllegalStateException
+	 *             if the page is not pinned.
+	 */
+	void unpin(int page, boolean dirty) {
+		Frame frame = (Frame) frames.get(Integer.valueOf(page));
+		if (frame == null || frame.pins == 0)
+			throw new IllegalStateException("Page " + page + " is not pinned.");
+		frame.pins--;
+		if (dirty)
+			frame.dirty = true;
+	}
+
+	/**
+	 * Writes all dirty pages to the file.
+	 * 
+	 * @throws UncheckedIOException
+	 *             if a page could not be written.
+	 */
+	void flush() {
+		Iterator it = frames.entrySet().iterator();
+		while (it.hasNext()) {
+			java.util.Map.Entry entry = (java.util.Map.Entry) it.next();
+			Frame frame = (Frame) entry.getValue();
+			if (frame.dirty) {
+				write(((Integer) entry.getKey()).intValue(), frame.buffer);
+				frame.dirty = false;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of pinned pages.
+	 * 
+	 * @return int - number of pinned pages.
+	 */
+	int getPinnedCount() {
+		int pinned = 0;
+		Iterator it = frames.values().iterator();
+		while (it.hasNext())
+			if (((Frame) it.next()).pins > 0)
+				pinned++;
+		return pinned;
+	}
+
+	/**
+	 * Returns the number of pin calls served from memory.
+	 * 
+	 * @return long - number of hits.
+	 */
+	long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of pin calls which read the page from the file.
+	 * 
+	 * @return long - number of misses.
+	 */
+	long getMisses() {
+		return misses;
+	}
+
+	/*
+	 * Evicts the least recently used unpinned page if the pool is full.
+	 */
+	private void evict() {
+		if (frames.size() < capacity)
+			return;
+		Iterator it = frames.entrySet().iterator();
+		while (it.hasNext()) {
+			java.util.Map.Entry entry = (java.util.Map.Entry) it.next();
+			Frame frame = (Frame) entry.getValue();
+			if (frame.pins == 0) {
+				if (frame.dirty)
+					write(((Integer) entry.getKey()).intValue(), frame.buffer);
+				it.remove();
+				return;
+			}
+		}
+	}
+
+	/*
+	 * Reads the given page into the given buffer.
+	 * 
+	 * @param page page number
+	 * 
+	 * @param buffer page buffer
+	 */
+	private void read(int page, ByteBuffer buffer) {
+		try {
+			long position = (long) page * pageSize;
+			buffer.clear();
+			while (buffer.hasRemaining()) {
+				int n = channel.read(buffer, position + buffer.position());
+				if (n < 0)
+					break;
+			}
+			buffer.clear();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/*
+	 * Writes the given buffer to the given page.
+	 * 
+	 * @param page page number
+	 * 
+	 * @param buffer page buffer
+	 */
+	private void write(int page, ByteBuffer buffer) {
+		try {
+			long position = (long) page * pageSize;
+			buffer.clear();
+			while (buffer.hasRemaining())
+				channel.write(buffer, position + buffer.position());
+			buffer.clear();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/*
+	 * Page in memory.
+	 */
+	private final static class Frame {
+
+		/* content of the page */
+		private final ByteBuffer buffer;
+
+		/* number of pins */
+		private int pins;
+
+		/* flag if the page was changed */
+		private boolean dirty;
+
+		/*
+		 * Constructor.
+		 * 
+		 * @param buffer content of the page
+		 */
+		private Frame(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+	}
+
+}
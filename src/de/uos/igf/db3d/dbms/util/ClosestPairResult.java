@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.dbms.util;
+
+/**
+ * The class ClosestPairResult models a value object for holding a result pair
+ * of a closest pairs query together with the distance of the two objects. The
+ * first part of the pair always comes from the <code>this</code> object as
+ * given through the performed method call.<br>
+ * <br>
+ * Transient result value class ! <br>
+ * <br>
+ */
+public final class ClosestPairResult {
+
+	/** object of <code>this</code> in closest pairs query */
+	private final Object thisObject;
+
+	/** object of the argument RStar tree in query */
+	private final Object argObject;
+
+	/** distance of the two objects */
+	private final double distance;
+
+	/**
+	 * Constructor.
+	 */
+	public ClosestPairResult(Object thisObject, Object argObject,
+			double distance) {
+		this.thisObject = thisObject;
+		this.argObject = argObject;
+		this.distance = distance;
+	}
+
+	/**
+	 * Returns the first object of this result pair.<br>
+	 * Returned object is an entry from the <code>this</code> RStar.
+	 * 
+	 * @return Object - first object.
+	 */
+	public Object getFirst() {
+		return thisObject;
+	}
+
+	/**
+	 * Returns the second object of this result pair.<br>
+	 * Returned object is an entry from the argument RStar.
+	 * 
+	 * @return Object - second object.
+	 */
+	public Object getSecond() {
+		return argObject;
+	}
+
+	/**
+	 * Returns the distance of the two objects.
+	 * 
+	 * @return double - distance.
+	 */
+	public double getDistance() {
+		return distance;
+	}
+
+}
@@ -0,0 +1,1095 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.dbms.util;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import de.uos.igf.db3d.dbms.geom.GeomUtils;
+import de.uos.igf.db3d.dbms.geom.MBB3D;
+import de.uos.igf.db3d.dbms.geom.Plane3D;
+import de.uos.igf.db3d.dbms.geom.Point3D;
+import de.uos.igf.db3d.dbms.geom.ScalarOperator;
+import de.uos.igf.db3d.dbms.structure.GeoObj;
+
+/**
+ * DOPTree - read only bounding volume hierarchy of 18-DOPs (discrete oriented
+ * polytopes) implementing the SAM interface.<br>
+ * <br>
+ * An 18-DOP bounds an object by the slabs along the 3 coordinate axes and
+ * the 6 diagonals x+y, x-y, x+z, x-z, y+z and y-z. For thin slanted surfaces
+ * like faults or horizons the diagonal slabs cut away most of the empty
+ * corners of the axis aligned boxes. Every DOP is stored as 18 doubles: the
+ * minimum and maximum of the coordinate axes in the layout of the
+ * PackedRStar (min x, y, z, max x, y, z), followed by the minima and the
+ * maxima of the 6 diagonals. The coordinate part of an object is its MBB3D.<br>
+ * <br>
+ * The tree is built top-down. A node is split at the median of the centers
+ * of its objects along the axis of the largest extent of the centers, until
+ * it holds at most <code>leafSize</code> objects. The nodes are numbered in
+ * depth first order, so the left son of node n is n + 1 and the objects of
+ * the subtree of a node are stored contiguously.<br>
+ * <br>
+ * The SAM queries keep the MBB3D semantics of the RStar and return the same
+ * results. The additional overlaps queries test the 18-DOP of a query object
+ * against the 18-DOPs of the tree and return much fewer false candidates for
+ * an exact intersection test than a query with the MBB3D of the object.<br>
+ * <br>
+ * The methods insert and remove throw an UnsupportedOperationException.<br>
+ * <br>
+ * Default Serialization (Serializable)
+ */
+public final class DOPTree implements SAM {
+
+	private static final long serialVersionUID = 1L;
+
+	/* number of doubles of a DOP */
+	private final static int DOP_SIZE = 18;
+
+	/* number of diagonal axes */
+	private final static int DIAGONALS = 6;
+
+	/* node DOPs - 18 doubles per node */
+	private final double[] nodeDop;
+
+	/* index of the right son for inner nodes, -1 for leaves */
+	private final int[] right;
+
+	/* index of the first object in the subtree of every node */
+	private final int[] first;
+
+	/* index after the last object in the subtree of every node */
+	private final int[] end;
+
+	/* object DOPs - 18 doubles per object */
+	private final double[] objectDop;
+
+	/* indexed objects in tree order */
+	private final Object[] objects;
+
+	/* maximum number of objects of a leaf */
+	private final int leafSize;
+
+	/* ScalarOperator */
+	private final ScalarOperator sop;
+
+	/* number of nodes */
+	private int nodes;
+
+	/**
+	 * Constructor.<br>
+	 * Builds the tree for the given objects.
+	 *
+	 * @param objects
+	 *            GeoObj objects to index
+	 * @param leafSize
+	 *            maximum number of objects of a leaf (must be 1 or more)
+	 * @param sop
+	 *            ScalarOperator
+	 * @throws IllegalArgumentException
+	 *             if leafSize is less than 1, ScalarOperator = null or the
+	 *             MBB3D of an object is null.
+	 */
+	public DOPTree(Collection objects, int leafSize, ScalarOperator sop)
+			throws IllegalArgumentException {
+		if (leafSize < 1 || sop == null)
+			throw new IllegalArgumentException("IllegalParameters");
+		this.leafSize = leafSize;
+		this.sop = sop;
+
+		int n = objects.size();
+		Object[] input = objects.toArray();
+		double[] dops = new double[DOP_SIZE * n];
+		double[] centers = new double[3 * n];
+		int[] order = new int[n];
+		for (int i = 0; i < n; i++) {
+			GeoObj go = (GeoObj) input[i];
+			if (go.getMBB() == null)
+				throw new IllegalArgumentException(
+						"MBB3D of given GeoObject is null.");
+			dop(go, dops, DOP_SIZE * i);
+			for (int a = 0; a < 3; a++)
+				centers[3 * i + a] = (dops[DOP_SIZE * i + a] + dops[DOP_SIZE
+						* i + a + 3]) / 2;
+			order[i] = i;
+		}
+
+		int maxNodes = Math.max(1, 2 * n);
+		double[] helpDop = new double[DOP_SIZE * maxNodes];
+		int[] helpRight = new int[maxNodes];
+		int[] helpFirst = new int[maxNodes];
+		int[] helpEnd = new int[maxNodes];
+		this.nodes = 0;
+		if (n > 0)
+			build(order, 0, n, centers, dops, helpDop, helpRight, helpFirst,
+					helpEnd);
+
+		this.nodeDop = new double[DOP_SIZE * nodes];
+		this.right = new int[nodes];
+		this.first = new int[nodes];
+		this.end = new int[nodes];
+		System.arraycopy(helpDop, 0, nodeDop, 0, nodeDop.length);
+		System.arraycopy(helpRight, 0, right, 0, nodes);
+		System.arraycopy(helpFirst, 0, first, 0, nodes);
+		System.arraycopy(helpEnd, 0, end, 0, nodes);
+
+		// store the objects and their DOPs in tree order
+		this.objects = new Object[n];
+		this.objectDop = new double[DOP_SIZE * n];
+		for (int i = 0; i < n; i++) {
+			this.objects[i] = input[order[i]];
+			System.arraycopy(dops, DOP_SIZE * order[i], objectDop, DOP_SIZE
+					* i, DOP_SIZE);
+		}
+	}
+
+	/**
+	 * Returns the number of objects in the DOPTree.
+	 *
+	 * @return int - number of objects.
+	 */
+	public int getCount() {
+		return objects.length;
+	}
+
+	/**
+	 * Returns the number of nodes of the DOPTree.
+	 *
+	 * @return int - number of nodes.
+	 */
+	public int getNodeCount() {
+		return nodes;
+	}
+
+	/**
+	 * Returns the maximum number of objects of a leaf.
+	 *
+	 * @return int - leaf size.
+	 */
+	public int getLeafSize() {
+		return leafSize;
+	}
+
+	/**
+	 * Returns the MBB3D of the objects in this.
+	 *
+	 * @return MBB3D - MBB3D of this, <code>null</code> if empty.
+	 */
+	public MBB3D getMBB() {
+		if (objects.length == 0)
+			return null;
+		return new MBB3D(new Point3D(nodeDop[0], nodeDop[1], nodeDop[2]),
+				new Point3D(nodeDop[3], nodeDop[4], nodeDop[5]));
+	}
+
+	/**
+	 * Retrieves all entries in the DOPTree.
+	 *
+	 * @return Set - all entries.
+	 */
+	public Set getEntries() {
+		Set set = new HashSet(objects.length * 2);
+		for (int i = 0; i < objects.length; i++)
+			set.add(objects[i]);
+		return set;
+	}
+
+	/**
+	 * Not supported - a DOPTree is read only.
+	 *
+	 * @throws UnsupportedOperationException
+	 *             always.
+	 */
+	public boolean insert(GeoObj go) {
+		throw new UnsupportedOperationException("DOPTree is read only.");
+	}
+
+	/**
+	 * Not supported - a DOPTree is read only.
+	 *
+	 * @throws UnsupportedOperationException
+	 *             always.
+	 */
+	public boolean remove(GeoObj go) {
+		throw new UnsupportedOperationException("DOPTree is read only.");
+	}
+
+	/**
+	 * Returns the set of objects which intersect the given MBB3D strict.
+	 *
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set intersectsStrict(MBB3D mbb) {
+		return retrieve(mbb, PackedRStar.INTERSECTS_STRICT_PREDICATE);
+	}
+
+	/**
+	 * Returns the set of objects which intersect the given MBB3D.
+	 *
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set intersects(MBB3D mbb) {
+		return retrieve(mbb, PackedRStar.INTERSECTS_PREDICATE);
+	}
+
+	/**
+	 * Returns the set of objects which contain the given MBB3D strict.
+	 *
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set containsStrict(MBB3D mbb) {
+		return retrieve(mbb, PackedRStar.CONTAINS_STRICT_PREDICATE);
+	}
+
+	/**
+	 * Returns the set of objects which contain the given MBB3D.
+	 *
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set contains(MBB3D mbb) {
+		return retrieve(mbb, PackedRStar.CONTAINS_PREDICATE);
+	}
+
+	/**
+	 * Returns the set of objects which are inside the given MBB3D strict.
+	 *
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set insideStrict(MBB3D mbb) {
+		return retrieve(mbb, PackedRStar.INSIDE_STRICT_PREDICATE);
+	}
+
+	/**
+	 * Returns the set of objects which are inside the given MBB3D.
+	 *
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set inside(MBB3D mbb) {
+		return retrieve(mbb, PackedRStar.INSIDE_PREDICATE);
+	}
+
+	/**
+	 * Returns the set of objects which contain the given point.
+	 *
+	 * @param point
+	 *            the Point3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set contains(Point3D point) {
+		Set set = new HashSet();
+		retrieve(box(new MBB3D(point, point)), PackedRStar.CONTAINS_PREDICATE,
+				set, null);
+		return set;
+	}
+
+	/**
+	 * Passes the objects which intersect the given MBB3D strict to the given
+	 * visitor.
+	 *
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean intersectsStrict(MBB3D mbb, Visitor visitor) {
+		return retrieve(box(mbb), PackedRStar.INTERSECTS_STRICT_PREDICATE,
+				null, visitor);
+	}
+
+	/**
+	 * Passes the objects which intersect the given MBB3D to the given visitor.
+	 *
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean intersects(MBB3D mbb, Visitor visitor) {
+		return retrieve(box(mbb), PackedRStar.INTERSECTS_PREDICATE, null,
+				visitor);
+	}
+
+	/**
+	 * Passes the objects which contain the given MBB3D strict to the given
+	 * visitor.
+	 *
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean containsStrict(MBB3D mbb, Visitor visitor) {
+		return retrieve(box(mbb), PackedRStar.CONTAINS_STRICT_PREDICATE, null,
+				visitor);
+	}
+
+	/**
+	 * Passes the objects which contain the given MBB3D to the given visitor.
+	 *
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean contains(MBB3D mbb, Visitor visitor) {
+		return retrieve(box(mbb), PackedRStar.CONTAINS_PREDICATE, null,
+				visitor);
+	}
+
+	/**
+	 * Passes the objects which are inside the given MBB3D strict to the given
+	 * visitor.
+	 *
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean insideStrict(MBB3D mbb, Visitor visitor) {
+		return retrieve(box(mbb), PackedRStar.INSIDE_STRICT_PREDICATE, null,
+				visitor);
+	}
+
+	/**
+	 * Passes the objects which are inside the given MBB3D to the given visitor.
+	 *
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean inside(MBB3D mbb, Visitor visitor) {
+		return retrieve(box(mbb), PackedRStar.INSIDE_PREDICATE, null, visitor);
+	}
+
+	/**
+	 * Passes the objects which contain the given point to the given visitor.
+	 *
+	 * @param point
+	 *            the Point3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean contains(Point3D point, Visitor visitor) {
+		return retrieve(box(new MBB3D(point, point)),
+				PackedRStar.CONTAINS_PREDICATE, null, visitor);
+	}
+
+	/**
+	 * Returns for each of the given MBB3D objects the set of objects which
+	 * intersect it. The Set for <code>mbbs[i]</code> is stored at index
+	 * <code>i</code> of the result.<br>
+	 * The queries are ordered along a space filling curve and each run of
+	 * neighbouring queries is answered with one traversal of the tree.
+	 *
+	 * @param mbbs
+	 *            the MBB3D objects for test
+	 * @return Set[] - a Set object containing the result for every MBB3D.
+	 */
+	public Set[] intersects(MBB3D[] mbbs) {
+		final Set[] result = BatchQuery.createResult(mbbs.length);
+		if (objects.length == 0)
+			return result;
+		final double[][] boxes = new double[mbbs.length][];
+		for (int i = 0; i < mbbs.length; i++)
+			boxes[i] = box(mbbs[i]);
+		BatchQuery.run(mbbs, new BatchQuery.Run() {
+			public void query(int[] queries, int number) {
+				intersects(0, boxes, queries, number, result);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Returns the set of objects whose MBB3D intersects the given plane.
+	 *
+	 * @param plane
+	 *            the Plane3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set intersects(Plane3D plane) {
+		return intersects(new Plane3D[] { plane })[0];
+	}
+
+	/**
+	 * Passes the objects whose MBB3D intersects the given plane to the given
+	 * visitor.
+	 *
+	 * @param plane
+	 *            the Plane3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean intersects(Plane3D plane, Visitor visitor) {
+		if (objects.length == 0)
+			return true;
+		return intersects(0, new PlaneQuery(new Plane3D[] { plane }, sop), 0,
+				1, null, visitor);
+	}
+
+	/**
+	 * Returns for each of the given parallel planes the set of objects whose
+	 * MBB3D intersects it. The Set for <code>planes[i]</code> is stored at
+	 * index <code>i</code> of the result.<br>
+	 * The planes are answered with one traversal of the tree.
+	 *
+	 * @param planes
+	 *            parallel Plane3D objects for test
+	 * @return Set[] - a Set object containing the result for every plane.
+	 * @throws IllegalArgumentException
+	 *             if the planes are not parallel.
+	 */
+	public Set[] intersects(Plane3D[] planes) {
+		PlaneQuery query = new PlaneQuery(planes, sop);
+		Set[] result = BatchQuery.createResult(planes.length);
+		if (objects.length != 0)
+			intersects(0, query, 0, planes.length, result, null);
+		return result;
+	}
+
+	/**
+	 * Returns the set of objects whose 18-DOP overlaps the 18-DOP of the given
+	 * object. The result contains every object intersecting the given one and
+	 * is the candidate set for an exact intersection test.
+	 *
+	 * @param obj
+	 *            the GeoObj object for test
+	 * @return Set - a Set object containing the result.
+	 * @throws IllegalArgumentException
+	 *             if the MBB3D of the given object is null.
+	 */
+	public Set overlaps(GeoObj obj) {
+		Set set = new HashSet();
+		overlaps(obj, set, null);
+		return set;
+	}
+
+	/**
+	 * Passes the objects whose 18-DOP overlaps the 18-DOP of the given object
+	 * to the given visitor.
+	 *
+	 * @param obj
+	 *            the GeoObj object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 * @throws IllegalArgumentException
+	 *             if the MBB3D of the given object is null.
+	 */
+	public boolean overlaps(GeoObj obj, Visitor visitor) {
+		return overlaps(obj, null, visitor);
+	}
+
+	/**
+	 * Returns the <code>number</code> nearest neighbours of the given point.
+	 * <br>
+	 * The result array is sorted in ascending order based on the distance
+	 * value. If less than <code>number</code> objects are indexed the
+	 * remaining result objects have a <code>null</code> reference and an
+	 * infinite distance.
+	 *
+	 * @param number
+	 *            number of nearest neighbours to search
+	 * @param point
+	 *            the Point3D object for test
+	 * @return NNResult[] - an array of NNResult objects sorted by distance.
+	 */
+	public NNResult[] nearest(int number, Point3D point) {
+		NNResult[] result = new NNResult[number];
+		Iterator it = nearestIterator(point);
+		for (int i = 0; i < number; i++)
+			result[i] = it.hasNext() ? (NNResult) it.next()
+					: new DOPNNResult(Double.POSITIVE_INFINITY, null);
+		return result;
+	}
+
+	/**
+	 * Returns an Iterator over the objects in ascending order of their
+	 * distance to the given point. Each call of next() returns a NNResult
+	 * object. The neighbours are computed lazily by distance browsing.
+	 *
+	 * @param point
+	 *            the Point3D object for test
+	 * @return Iterator - Iterator over NNResult objects.
+	 */
+	public Iterator nearestIterator(Point3D point) {
+		return new DOPNNIterator(new double[] { point.getX(), point.getY(),
+				point.getZ() });
+	}
+
+	/**
+	 * Returns the <code>number</code> objects which are nearest to the given
+	 * point with respect to their exact geometry.
+	 *
+	 * @param number
+	 *            number of nearest neighbours to search
+	 * @param point
+	 *            the Point3D object for test
+	 * @return NNResult[] - an array of NNResult objects sorted by distance.
+	 */
+	public NNResult[] nearestExact(int number, Point3D point) {
+		return ExactDistanceSearch.nearest(nearestIterator(point), number,
+				point);
+	}
+
+	/**
+	 * Returns the objects whose exact geometry has at most the given distance
+	 * to the given point.
+	 *
+	 * @param point
+	 *            the Point3D object for test
+	 * @param distance
+	 *            the maximal distance
+	 * @return NNResult[] - an array of NNResult objects sorted by distance.
+	 * @throws IllegalArgumentException
+	 *             if distance is negative.
+	 */
+	public NNResult[] withinDistance(Point3D point, double distance) {
+		return ExactDistanceSearch.within(nearestIterator(point), point,
+				distance);
+	}
+
+	/**
+	 * Returns the ScalarOperator of this.
+	 *
+	 * @return ScalarOperator of this.
+	 */
+	public ScalarOperator getScalarOperator() {
+		return sop;
+	}
+
+	/*
+	 * Builds the subtree for the objects order[from] to order[to - 1] and
+	 * returns the index of its root. The order array is permuted into tree
+	 * order.
+	 */
+	private int build(int[] order, int from, int to, double[] centers,
+			double[] dops, double[] helpDop, int[] helpRight,
+			int[] helpFirst, int[] helpEnd) {
+		int node = nodes++;
+		helpFirst[node] = from;
+		helpEnd[node] = to;
+		int d = DOP_SIZE * node;
+		System.arraycopy(dops, DOP_SIZE * order[from], helpDop, d, DOP_SIZE);
+		for (int i = from + 1; i < to; i++)
+			union(helpDop, d, dops, DOP_SIZE * order[i]);
+
+		if (to - from <= leafSize) {
+			helpRight[node] = -1;
+			return node;
+		}
+
+		// split axis - largest extent of the centers
+		double[] min = new double[] { Double.POSITIVE_INFINITY,
+				Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+		double[] max = new double[] { Double.NEGATIVE_INFINITY,
+				Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		for (int i = from; i < to; i++) {
+			for (int a = 0; a < 3; a++) {
+				double c = centers[3 * order[i] + a];
+				min[a] = Math.min(min[a], c);
+				max[a] = Math.max(max[a], c);
+			}
+		}
+		int axis = 0;
+		for (int a = 1; a < 3; a++)
+			if (max[a] - min[a] > max[axis] - min[axis])
+				axis = a;
+
+		int middle = (from + to) >>> 1;
+		select(order, from, to - 1, middle, centers, axis);
+		build(order, from, middle, centers, dops, helpDop, helpRight,
+				helpFirst, helpEnd);
+		helpRight[node] = build(order, middle, to, centers, dops, helpDop,
+				helpRight, helpFirst, helpEnd);
+		return node;
+	}
+
+	/*
+	 * Partially sorts order[low] to order[high] by the center coordinate on
+	 * the given axis, so that the element at position k is in its sorted
+	 * place (Hoare's selection).
+	 */
+	private static void select(int[] order, int low, int high, int k,
+			double[] centers, int axis) {
+		while (low < high) {
+			double pivot = centers[3 * order[(low + high) >>> 1] + axis];
+			int i = low;
+			int j = high;
+			while (i <= j) {
+				while (centers[3 * order[i] + axis] < pivot)
+					i++;
+				while (centers[3 * order[j] + axis] > pivot)
+					j--;
+				if (i <= j) {
+					int help = order[i];
+					order[i] = order[j];
+					order[j] = help;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j)
+				high = j;
+			else if (k >= i)
+				low = i;
+			else
+				return;
+		}
+	}
+
+	/*
+	 * Computes the 18-DOP of the given object into dops at offset d. The
+	 * diagonals are computed from the vertices of simplexes and from the
+	 * corners of the MBB3D for other objects.
+	 */
+	private static void dop(GeoObj obj, double[] dops, int d) {
+		MBB3D mbb = obj.getMBB();
+		Point3D min = mbb.getPMin();
+		Point3D max = mbb.getPMax();
+		dops[d] = min.getX();
+		dops[d + 1] = min.getY();
+		dops[d + 2] = min.getZ();
+		dops[d + 3] = max.getX();
+		dops[d + 4] = max.getY();
+		dops[d + 5] = max.getZ();
+
+		Point3D[] points = GeomUtils.vertices(obj);
+		if (points == null) {
+			points = new Point3D[8];
+			for (int i = 0; i < 8; i++)
+				points[i] = new Point3D((i & 1) == 0 ? min.getX() : max
+						.getX(), (i & 2) == 0 ? min.getY() : max.getY(),
+						(i & 4) == 0 ? min.getZ() : max.getZ());
+		}
+		for (int k = 0; k < DIAGONALS; k++) {
+			dops[d + 6 + k] = Double.POSITIVE_INFINITY;
+			dops[d + 12 + k] = Double.NEGATIVE_INFINITY;
+		}
+		for (int i = 0; i < points.length; i++) {
+			double x = points[i].getX();
+			double y = points[i].getY();
+			double z = points[i].getZ();
+			diagonal(dops, d, 0, x + y);
+			diagonal(dops, d, 1, x - y);
+			diagonal(dops, d, 2, x + z);
+			diagonal(dops, d, 3, x - z);
+			diagonal(dops, d, 4, y + z);
+			diagonal(dops, d, 5, y - z);
+		}
+	}
+
+	/*
+	 * Extends the diagonal k of the DOP at offset d to the given value.
+	 */
+	private static void diagonal(double[] dops, int d, int k, double value) {
+		dops[d + 6 + k] = Math.min(dops[d + 6 + k], value);
+		dops[d + 12 + k] = Math.max(dops[d + 12 + k], value);
+	}
+
+	/*
+	 * Extends the DOP at offset d to the DOP in source at offset s.
+	 */
+	private static void union(double[] dops, int d, double[] source, int s) {
+		for (int i = 0; i < 3; i++) {
+			dops[d + i] = Math.min(dops[d + i], source[s + i]);
+			dops[d + i + 3] = Math.max(dops[d + i + 3], source[s + i + 3]);
+		}
+		for (int k = 0; k < DIAGONALS; k++) {
+			dops[d + 6 + k] = Math.min(dops[d + 6 + k], source[s + 6 + k]);
+			dops[d + 12 + k] = Math
+					.max(dops[d + 12 + k], source[s + 12 + k]);
+		}
+	}
+
+	/*
+	 * Tests whether the DOP in dops at offset d and the query DOP q overlap.
+	 * The coordinates of a point on a diagonal are summed up, so the
+	 * diagonals are compared with twice the epsilon.
+	 */
+	private boolean overlap(double[] dops, int d, double[] q) {
+		double eps = sop.getEpsilon();
+		for (int i = 0; i < 3; i++)
+			if (dops[d + i] - q[i + 3] >= eps || q[i] - dops[d + i + 3] >= eps)
+				return false;
+		for (int k = 0; k < DIAGONALS; k++)
+			if (dops[d + 6 + k] - q[12 + k] >= 2 * eps
+					|| q[6 + k] - dops[d + 12 + k] >= 2 * eps)
+				return false;
+		return true;
+	}
+
+	/*
+	 * Returns the coordinates of the given MBB3D as 6 doubles.
+	 */
+	private static double[] box(MBB3D mbb) {
+		Point3D min = mbb.getPMin();
+		Point3D max = mbb.getPMax();
+		return new double[] { min.getX(), min.getY(), min.getZ(), max.getX(),
+				max.getY(), max.getZ() };
+	}
+
+	/*
+	 * Retrieves the objects for the given MBB3D and predicate.
+	 */
+	private Set retrieve(MBB3D mbb, int predicate) {
+		Set set = new HashSet();
+		retrieve(box(mbb), predicate, set, null);
+		return set;
+	}
+
+	/*
+	 * Passes the objects for the given query box and predicate to the given
+	 * visitor, or adds them to the given Set if the visitor is null. The tree
+	 * is traversed iteratively with an explicit stack of node indexes.
+	 *
+	 * @param q query box as 6 doubles
+	 *
+	 * @param predicate predicate constant of the PackedRStar
+	 *
+	 * @param set Set for the result, used if visitor is null
+	 *
+	 * @param visitor Visitor receiving the result objects or null
+	 *
+	 * @return boolean - false if the visitor terminated the query, true
+	 * otherwise.
+	 */
+	private boolean retrieve(double[] q, int predicate, Set set,
+			Visitor visitor) {
+		if (objects.length == 0)
+			return true;
+		double eps = sop.getEpsilon();
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = 0;
+
+		while (top > 0) {
+			int node = stack[--top];
+			if (!PackedRStar.test(nodeDop, DOP_SIZE * node, q, predicate,
+					false, eps))
+				continue;
+			if (right[node] == -1) {
+				for (int i = first[node]; i < end[node]; i++) {
+					if (!PackedRStar.test(objectDop, DOP_SIZE * i, q,
+							predicate, true, eps))
+						continue;
+					if (visitor == null)
+						set.add(objects[i]);
+					else if (!visitor.visit(objects[i]))
+						return false;
+				}
+			} else {
+				if (top + 2 > stack.length) {
+					int[] help = new int[stack.length * 2];
+					System.arraycopy(stack, 0, help, 0, top);
+					stack = help;
+				}
+				stack[top++] = right[node];
+				stack[top++] = node + 1;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Passes the objects whose DOP overlaps the DOP of the given object to
+	 * the given visitor, or adds them to the given Set if the visitor is null.
+	 */
+	private boolean overlaps(GeoObj obj, Set set, Visitor visitor) {
+		if (obj.getMBB() == null)
+			throw new IllegalArgumentException(
+					"MBB3D of given GeoObject is null.");
+		if (objects.length == 0)
+			return true;
+		double[] q = new double[DOP_SIZE];
+		dop(obj, q, 0);
+
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int node = stack[--top];
+			if (!overlap(nodeDop, DOP_SIZE * node, q))
+				continue;
+			if (right[node] == -1) {
+				for (int i = first[node]; i < end[node]; i++) {
+					if (!overlap(objectDop, DOP_SIZE * i, q))
+						continue;
+					if (visitor == null)
+						set.add(objects[i]);
+					else if (!visitor.visit(objects[i]))
+						return false;
+				}
+			} else {
+				if (top + 2 > stack.length) {
+					int[] help = new int[stack.length * 2];
+					System.arraycopy(stack, 0, help, 0, top);
+					stack = help;
+				}
+				stack[top++] = right[node];
+				stack[top++] = node + 1;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Answers the given intersects queries for the subtree of the given node.
+	 * The queries intersecting the node are passed down together.
+	 *
+	 * @param node node index
+	 *
+	 * @param boxes query boxes of the batch
+	 *
+	 * @param queries indexes of the queries to answer
+	 *
+	 * @param number number of valid indexes in queries
+	 *
+	 * @param result Sets of the batch
+	 */
+	private void intersects(int node, double[][] boxes, int[] queries,
+			int number, Set[] result) {
+		double eps = sop.getEpsilon();
+		int[] sub = new int[number];
+		int k = 0;
+		for (int j = 0; j < number; j++)
+			if (PackedRStar.test(nodeDop, DOP_SIZE * node, boxes[queries[j]],
+					PackedRStar.INTERSECTS_PREDICATE, false, eps))
+				sub[k++] = queries[j];
+		if (k == 0)
+			return;
+		if (right[node] != -1) {
+			intersects(node + 1, boxes, sub, k, result);
+			intersects(right[node], boxes, sub, k, result);
+			return;
+		}
+		for (int i = first[node]; i < end[node]; i++)
+			for (int j = 0; j < k; j++)
+				if (PackedRStar.test(objectDop, DOP_SIZE * i, boxes[sub[j]],
+						PackedRStar.INTERSECTS_PREDICATE, true, eps))
+					result[sub[j]].add(objects[i]);
+	}
+
+	/*
+	 * Answers the planes [from; to) of the given query for the subtree of the
+	 * given node. The planes cutting the node are passed down together.
+	 *
+	 * @param node node index
+	 *
+	 * @param query sorted parallel planes
+	 *
+	 * @param from first sorted plane
+	 *
+	 * @param to position after the last sorted plane
+	 *
+	 * @param result Sets of the planes, or null if the visitor is used
+	 *
+	 * @param visitor Visitor receiving the objects
+	 *
+	 * @return boolean - false if the visitor terminated the query, true
+	 * otherwise.
+	 */
+	private boolean intersects(int node, PlaneQuery query, int from, int to,
+			Set[] result, Visitor visitor) {
+		int lower = query.lower(nodeDop, DOP_SIZE * node, from, to);
+		int upper = query.upper(nodeDop, DOP_SIZE * node, lower, to);
+		if (lower == upper)
+			return true;
+		if (right[node] != -1)
+			return intersects(node + 1, query, lower, upper, result, visitor)
+					&& intersects(right[node], query, lower, upper, result,
+							visitor);
+		for (int i = first[node]; i < end[node]; i++) {
+			int l = query.lower(objectDop, DOP_SIZE * i, lower, upper);
+			int u = query.upper(objectDop, DOP_SIZE * i, l, upper);
+			if (l == u)
+				continue;
+			if (result == null) {
+				if (!visitor.visit(objects[i]))
+					return false;
+			} else {
+				for (int j = l; j < u; j++)
+					result[query.getPlane(j)].add(objects[i]);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Converts this to string.
+	 *
+	 * @return String with the information of this.
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return "<DOPTree nodes=\"" + nodes + "\" objects=\"" + objects.length
+				+ "\"/>";
+	}
+
+	/*
+	 * Iterator for the incremental nearest neighbour search (distance
+	 * browsing). The queue holds node indexes n >= 0 and object indexes i
+	 * coded as -(i + 1), objects come before nodes on equal distances. <br>
+	 * <br> Transient class
+	 */
+	private final class DOPNNIterator implements Iterator {
+
+		/* query point coordinates */
+		private final double[] p;
+
+		/* candidates ordered by distance - pairs of distance and id */
+		private final PriorityQueue queue;
+
+		/*
+		 * Constructor.
+		 *
+		 * @param p query point coordinates
+		 */
+		private DOPNNIterator(double[] p) {
+			this.p = p;
+			this.queue = new PriorityQueue(32, new Comparator() {
+				public int compare(Object o1, Object o2) {
+					double[] c1 = (double[]) o1;
+					double[] c2 = (double[]) o2;
+					if (c1[0] != c2[0])
+						return c1[0] < c2[0] ? -1 : 1;
+					if ((c1[1] < 0) != (c2[1] < 0))
+						return c1[1] < 0 ? -1 : 1;
+					return 0;
+				}
+			});
+			if (objects.length > 0)
+				queue.add(new double[] { 0.0, 0 });
+		}
+
+		/*
+		 * Tests whether a further neighbour exists.
+		 *
+		 * @see java.util.Iterator#hasNext()
+		 */
+		public boolean hasNext() {
+			double eps = sop.getEpsilon();
+			// replace nodes at the head by their sons or objects
+			while (!queue.isEmpty() && ((double[]) queue.peek())[1] >= 0) {
+				int node = (int) ((double[]) queue.poll())[1];
+				if (right[node] == -1) {
+					for (int i = first[node]; i < end[node]; i++)
+						queue.add(new double[] {
+								PackedRStar.minDistSquare(objectDop, DOP_SIZE
+										* i, p, eps), -(i + 1) });
+				} else {
+					queue.add(new double[] {
+							PackedRStar.minDistSquare(nodeDop, DOP_SIZE
+									* (node + 1), p, eps), node + 1 });
+					queue.add(new double[] {
+							PackedRStar.minDistSquare(nodeDop, DOP_SIZE
+									* right[node], p, eps), right[node] });
+				}
+			}
+			return !queue.isEmpty();
+		}
+
+		/*
+		 * Returns the next neighbour as NNResult object.
+		 *
+		 * @see java.util.Iterator#next()
+		 */
+		public Object next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			double[] c = (double[]) queue.poll();
+			return new DOPNNResult(Math.sqrt(c[0]),
+					objects[-(int) c[1] - 1]);
+		}
+
+		/*
+		 * Not supported.
+		 *
+		 * @see java.util.Iterator#remove()
+		 */
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/*
+	 * Implementation for SAM.NNResult of the DOPTree. <br> <br> Transient
+	 * result value class
+	 */
+	private final static class DOPNNResult implements SAM.NNResult {
+
+		/* distance to the query point */
+		private final double distance;
+
+		/* result object */
+		private final Object reference;
+
+		/*
+		 * Constructor.
+		 *
+		 * @param distance distance to the query point
+		 *
+		 * @param reference result object
+		 */
+		private DOPNNResult(double distance, Object reference) {
+			this.distance = distance;
+			this.reference = reference;
+		}
+
+		/**
+		 * Returns the distance of this result object.
+		 *
+		 * @return double - distance as double.
+		 */
+		public double getDistance() {
+			return distance;
+		}
+
+		/**
+		 * Returns the reference to the object.
+		 *
+		 * @return Object - reference.
+		 */
+		public Object getObjectRef() {
+			return reference;
+		}
+	}
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.dbms.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import de.uos.igf.db3d.dbms.geom.GeomUtils;
+import de.uos.igf.db3d.dbms.geom.Point3D;
+import de.uos.igf.db3d.dbms.structure.GeoObj;
+
+/**
+ * Nearest neighbour and distance range search on the exact geometry of the
+ * indexed objects (filter and refine). The candidates are taken from a
+ * nearest neighbour iterator of a SAM in ascending order of their MBB3D
+ * distance. This distance is a lower bound of the exact distance, so the
+ * search stops as soon as the next MBB3D is farther away than the current
+ * result. Every candidate is refined with
+ * {@link GeomUtils#euclideanDistanceSQR(GeoObj, Point3D)}. Objects without
+ * supported geometry keep their MBB3D distance.
+ */
+final class ExactDistanceSearch {
+
+	private ExactDistanceSearch() {
+		// static methods only
+	}
+
+	/**
+	 * Returns the <code>number</code> objects nearest to the given point.
+	 * 
+	 * @param browser
+	 *            nearest neighbour Iterator of the SAM for point
+	 * @param number
+	 *            number of nearest neighbours to search
+	 * @param point
+	 *            query Point3D
+	 * @return NNResult[] - array of length number sorted by exact distance.
+	 *         Missing results have a null reference and an infinite distance.
+	 */
+	static SAM.NNResult[] nearest(Iterator browser, int number, Point3D point) {
+		double[] dist = new double[number];
+		Object[] obj = new Object[number];
+		Arrays.fill(dist, Double.POSITIVE_INFINITY);
+		int last = number - 1;
+
+		while (number > 0 && browser.hasNext()) {
+			SAM.NNResult candidate = (SAM.NNResult) browser.next();
+			// all further candidates are at least as far away
+			if (candidate.getDistance() > dist[last])
+				break;
+			double d = exactDistance(candidate, point);
+			if (d < dist[last]) {
+				// insertion into the sorted result
+				int i = last;
+				while (i > 0 && dist[i - 1] > d) {
+					dist[i] = dist[i - 1];
+					obj[i] = obj[i - 1];
+					i--;
+				}
+				dist[i] = d;
+				obj[i] = candidate.getObjectRef();
+			}
+		}
+
+		SAM.NNResult[] result = new SAM.NNResult[number];
+		for (int i = 0; i < number; i++)
+			result[i] = new ExactNNResult(dist[i], obj[i]);
+		return result;
+	}
+
+	/**
+	 * Returns all objects whose distance to the given point is less or equal
+	 * to the given distance.
+	 * 
+	 * @param browser
+	 *            nearest neighbour Iterator of the SAM for point
+	 * @param point
+	 *            query Point3D
+	 * @param distance
+	 *            maximal distance
+	 * @return NNResult[] - array of the results sorted by exact distance.
+	 * @throws IllegalArgumentException
+	 *             if distance is negative.
+	 */
+	static SAM.NNResult[] within(Iterator browser, Point3D point,
+			double distance) {
+		if (distance < 0)
+			throw new IllegalArgumentException("Negative distance.");
+
+		List list = new ArrayList();
+		while (browser.hasNext()) {
+			SAM.NNResult candidate = (SAM.NNResult) browser.next();
+			if (candidate.getDistance() > distance)
+				break;
+			double d = exactDistance(candidate, point);
+			if (d <= distance)
+				list.add(new ExactNNResult(d, candidate.getObjectRef()));
+		}
+
+		ExactNNResult[] result = (ExactNNResult[]) list
+				.toArray(new ExactNNResult[list.size()]);
+		Arrays.sort(result);
+		return result;
+	}
+
+	/*
+	 * Computes the exact distance of the candidate object to the point.
+	 * 
+	 * @param candidate NNResult with the MBB3D distance
+	 * 
+	 * @param point query point
+	 * 
+	 * @return double - exact distance or the MBB3D distance if the geometry
+	 * of the object is not supported.
+	 */
+	private static double exactDistance(SAM.NNResult candidate, Point3D point) {
+		Object obj = candidate.getObjectRef();
+		if (obj instanceof GeoObj) {
+			double d = GeomUtils.euclideanDistanceSQR((GeoObj) obj, point);
+			if (!Double.isNaN(d))
+				return Math.sqrt(d);
+		}
+		return candidate.getDistance();
+	}
+
+	/*
+	 * Implementation for SAM.NNResult with exact distance. <br> <br>
+	 * Transient result value class
+	 */
+	private final static class ExactNNResult implements SAM.NNResult,
+			Comparable {
+
+		/* exact distance to the query point */
+		private final double distance;
+
+		/* result object */
+		private final Object reference;
+
+		/*
+		 * Constructor.
+		 * 
+		 * @param distance exact distance to the query point
+		 * 
+		 * @param reference result object
+		 */
+		private ExactNNResult(double distance, Object reference) {
+			this.distance = distance;
+			this.reference = reference;
+		}
+
+		/**
+		 * Returns the distance of this result object.
+		 * 
+		 * @return double - distance as double.
+		 */
+		public double getDistance() {
+			return distance;
+		}
+
+		/**
+		 * Returns the reference to the object.
+		 * 
+		 * @return Object - reference.
+		 */
+		public Object getObjectRef() {
+			return reference;
+		}
+
+		/*
+		 * Compares the distances.
+		 * 
+		 * @see java.lang.Comparable#compareTo(java.lang.Object)
+		 */
+		public int compareTo(Object o) {
+			return Double.compare(this.distance, ((ExactNNResult) o).distance);
+		}
+	}
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.dbms.util;
+
+/**
+ * Receiver of the result pairs of a parallel spatial join. Passes the pairs
+ * one at a time as JoinResult objects to a visitor and remembers if the
+ * visitor terminated the join.<br>
+ * <br>
+ * Transient class
+ */
+final class JoinSink {
+
+	/* visitor receiving the JoinResult objects */
+	private final SAM.Visitor visitor;
+
+	/* flag if the visitor terminated the join */
+	private volatile boolean stopped;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param visitor
+	 *            SAM.Visitor receiving the JoinResult objects
+	 */
+	JoinSink(SAM.Visitor visitor) {
+		this.visitor = visitor;
+		this.stopped = false;
+	}
+
+	/**
+	 * Passes the given pair to the visitor.
+	 * 
+	 * @param first
+	 *            object of the first join partner
+	 * @param second
+	 *            object of the second join partner
+	 */
+	synchronized void report(Object first, Object second) {
+		if (stopped)
+			return;
+		if (!visitor.visit(new JoinResult(first, second)))
+			stopped = true;
+	}
+
+	/**
+	 * Tests whether the visitor terminated the join.
+	 * 
+	 * @return boolean - true if terminated, false otherwise.
+	 */
+	boolean isStopped() {
+		return stopped;
+	}
+
+}
@@ -0,0 +1,1221 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.dbms.util;
+
+import java.io.Serializable;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import de.uos.igf.db3d.dbms.geom.MBB3D;
+import de.uos.igf.db3d.dbms.geom.Plane3D;
+import de.uos.igf.db3d.dbms.geom.Point3D;
+import de.uos.igf.db3d.dbms.geom.ScalarOperator;
+import de.uos.igf.db3d.dbms.structure.GeoObj;
+
+/**
+ * Octree - loose bucket octree implementation of the SAM interface.<br>
+ * Every node covers a cube, its loose bounds are the cube enlarged by half
+ * its edge length on every side. An object is stored in the deepest node
+ * whose cube contains the center of its MBB3D and whose edge length is not
+ * smaller than the largest extent of its MBB3D, so the object always lies in
+ * the loose bounds of its node. A node is split into eight sons if it holds
+ * more than <code>capacity</code> objects and its depth is below
+ * <code>maxDepth</code>. The root cube is doubled when an object outside of
+ * it is inserted, so the extent of the data need not be known in advance.<br>
+ * <br>
+ * Compared to the RStar an insertion only follows one path without any
+ * reorganization, which makes the octree a good choice for dense and evenly
+ * distributed meshes. For strongly clustered data the RStar adapts better.<br>
+ * <br>
+ * Ulrich, T. : Loose Octrees - In Game Programming Gems, Charles River Media
+ * 2000, pages 444 - 453.<br>
+ * <br>
+ * This class is not synchronized.
+ */
+public class Octree implements SAM {
+
+	private static final long serialVersionUID = 1L;
+
+	/* predicate constants */
+	private final static int INTERSECTS_STRICT = 0;
+
+	private final static int CONTAINS_STRICT = 1;
+
+	private final static int INSIDE_STRICT = 2;
+
+	private final static int INTERSECTS = 10;
+
+	private final static int CONTAINS = 11;
+
+	private final static int INSIDE = 12;
+
+	/* maximum number of objects of a node before it is split */
+	private final int capacity;
+
+	/* maximum depth of a split node */
+	private final int maxDepth;
+
+	/* ScalarOperator */
+	private final ScalarOperator sop;
+
+	/* root node - null if empty */
+	private Node root;
+
+	/* number of objects */
+	private int count;
+
+	/* cached MBB3D of all objects - null if not computed */
+	private MBB3D mbb;
+
+	/* number of structural modifications for the nearest neighbour iterator */
+	private transient int modCount;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param capacity
+	 *            maximum number of objects of a node before it is split (must
+	 *            be 1 or more)
+	 * @param maxDepth
+	 *            maximum depth of the tree (must be 1 or more)
+	 * @param sop
+	 *            ScalarOperator
+	 * @throws IllegalArgumentException
+	 *             if capacity or maxDepth is less than 1 or ScalarOperator =
+	 *             null.
+	 */
+	public Octree(int capacity, int maxDepth, ScalarOperator sop)
+			throws IllegalArgumentException {
+		if (capacity < 1 || maxDepth < 1 || sop == null)
+			throw new IllegalArgumentException("IllegalParameters");
+		this.capacity = capacity;
+		this.maxDepth = maxDepth;
+		this.sop = sop;
+		this.root = null;
+		this.count = 0;
+		this.mbb = null;
+	}
+
+	/**
+	 * Returns the number of objects in the Octree.
+	 * 
+	 * @return int - number of objects.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the MBB3D of all objects in the Octree.
+	 * 
+	 * @return MBB3D - MBB of all objects, null if the Octree is empty.
+	 * @throws IllegalArgumentException
+	 *             if an attempt is made to construct a MBB3D whose maximum
+	 *             point is not greater than its minimum point.
+	 */
+	public MBB3D getMBB() {
+		if (count == 0)
+			return null;
+		if (mbb == null) {
+			Set entries = getEntries();
+			for (Iterator it = entries.iterator(); it.hasNext();) {
+				MBB3D help = ((GeoObj) it.next()).getMBB();
+				mbb = mbb == null ? help : mbb.union(help, sop);
+				// Here an IllegalArgumentException can be thrown.
+			}
+		}
+		return mbb;
+	}
+
+	/**
+	 * Retrieves all entries in the Octree.
+	 * 
+	 * @return Set - all entries.
+	 */
+	public Set getEntries() {
+		Set set = new HashSet(count * 2);
+		if (root != null)
+			root.retrieveAll(set);
+		return set;
+	}
+
+	/**
+	 * Inserts the given GeoObj into the Octree.
+	 * 
+	 * @param go
+	 *            GeoObj to insert.
+	 * @return boolean - true if successful.
+	 * @throws IllegalArgumentException
+	 *             if mbb of given GeoObject is null.
+	 * @throws IllegalArgumentException
+	 *             if an attempt is made to construct a MBB3D whose maximum
+	 *             point is not greater than its minimum point.
+	 */
+	public boolean insert(GeoObj go) {
+		MBB3D box = go.getMBB();
+		if (box == null)
+			throw new IllegalArgumentException(
+					"MBB3D of given GeoObject is null.");
+
+		double[] center = center(box);
+		double size = size(box);
+		if (root == null)
+			root = new Node(center[0], center[1], center[2],
+					size > 0 ? size : 1.0);
+		grow(center, size);
+
+		Node node = root;
+		int depth = 0;
+		while (node.sons != null && size <= node.half) {
+			int index = node.sonIndex(center);
+			if (node.sons[index] == null)
+				node.sons[index] = node.createSon(index);
+			node = node.sons[index];
+			depth++;
+		}
+		node.add(go, box);
+		if (node.sons == null && node.used > capacity && depth < maxDepth)
+			split(node, depth);
+
+		if (mbb != null)
+			mbb = mbb.union(box, sop);
+		// Here an IllegalArgumentException can be thrown.
+		count++;
+		modCount++;
+		return true;
+	}
+
+	/**
+	 * Removes the given GeoObj from the Octree.
+	 * 
+	 * @param go
+	 *            GeoObj to remove.
+	 * @return boolean - true if successful, false if the object was not found.
+	 * @throws IllegalArgumentException
+	 *             if mbb of given GeoObject is null.
+	 */
+	public boolean remove(GeoObj go) {
+		MBB3D box = go.getMBB();
+		if (box == null)
+			throw new IllegalArgumentException(
+					"MBB3D of given GeoObject is null.");
+		if (root == null)
+			return false;
+
+		double[] center = center(box);
+		double size = size(box);
+		Node[] path = new Node[64];
+		int[] sonIndex = new int[64];
+		int depth = 0;
+		Node node = root;
+		while (true) {
+			int i = node.indexOf(go);
+			if (i >= 0) {
+				node.remove(i);
+				break;
+			}
+			if (node.sons == null || size > node.half)
+				return false;
+			int index = node.sonIndex(center);
+			if (node.sons[index] == null)
+				return false;
+			if (depth == path.length) {
+				Node[] helpPath = new Node[path.length * 2];
+				int[] helpIndex = new int[path.length * 2];
+				System.arraycopy(path, 0, helpPath, 0, path.length);
+				System.arraycopy(sonIndex, 0, helpIndex, 0, path.length);
+				path = helpPath;
+				sonIndex = helpIndex;
+			}
+			path[depth] = node;
+			sonIndex[depth] = index;
+			depth++;
+			node = node.sons[index];
+		}
+
+		// prune empty nodes
+		while (node.isEmpty()) {
+			if (depth == 0) {
+				root = null;
+				break;
+			}
+			depth--;
+			path[depth].sons[sonIndex[depth]] = null;
+			node = path[depth];
+			if (node.used == 0 && node.sonCount() == 0)
+				node.sons = null;
+		}
+
+		mbb = null;
+		count--;
+		modCount++;
+		return true;
+	}
+
+	/**
+	 * Returns the set of objects which intersect the given MBB3D strict.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set intersectsStrict(MBB3D mbb) {
+		return retrieve(mbb, INTERSECTS_STRICT);
+	}
+
+	/**
+	 * Returns the set of objects which intersect the given MBB3D.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set intersects(MBB3D mbb) {
+		return retrieve(mbb, INTERSECTS);
+	}
+
+	/**
+	 * Returns the set of objects which contain the given MBB3D strict.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set containsStrict(MBB3D mbb) {
+		return retrieve(mbb, CONTAINS_STRICT);
+	}
+
+	/**
+	 * Returns the set of objects which contain the given MBB3D.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set contains(MBB3D mbb) {
+		return retrieve(mbb, CONTAINS);
+	}
+
+	/**
+	 * Returns the set of objects which are strict inside of the given MBB3D.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set insideStrict(MBB3D mbb) {
+		return retrieve(mbb, INSIDE_STRICT);
+	}
+
+	/**
+	 * Returns the set of objects which are inside of the given MBB3D.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set inside(MBB3D mbb) {
+		return retrieve(mbb, INSIDE);
+	}
+
+	/**
+	 * Returns the set of objects which contain the given point.
+	 * 
+	 * @param point
+	 *            the Point3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set contains(Point3D point) {
+		return retrieve(new MBB3D(point, point), CONTAINS);
+	}
+
+	/**
+	 * Passes the objects which intersect the given MBB3D strict to the given
+	 * visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean intersectsStrict(MBB3D mbb, Visitor visitor) {
+		return retrieve(mbb, INTERSECTS_STRICT, null, visitor);
+	}
+
+	/**
+	 * Passes the objects which intersect the given MBB3D to the given visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean intersects(MBB3D mbb, Visitor visitor) {
+		return retrieve(mbb, INTERSECTS, null, visitor);
+	}
+
+	/**
+	 * Passes the objects which contain the given MBB3D strict to the given
+	 * visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean containsStrict(MBB3D mbb, Visitor visitor) {
+		return retrieve(mbb, CONTAINS_STRICT, null, visitor);
+	}
+
+	/**
+	 * Passes the objects which contain the given MBB3D to the given visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean contains(MBB3D mbb, Visitor visitor) {
+		return retrieve(mbb, CONTAINS, null, visitor);
+	}
+
+	/**
+	 * Passes the objects which are strict inside of the given MBB3D to the
+	 * given visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean insideStrict(MBB3D mbb, Visitor visitor) {
+		return retrieve(mbb, INSIDE_STRICT, null, visitor);
+	}
+
+	/**
+	 * Passes the objects which are inside of the given MBB3D to the given
+	 * visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean inside(MBB3D mbb, Visitor visitor) {
+		return retrieve(mbb, INSIDE, null, visitor);
+	}
+
+	/**
+	 * Passes the objects which contain the given point to the given visitor.
+	 * 
+	 * @param point
+	 *            the Point3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean contains(Point3D point, Visitor visitor) {
+		return retrieve(new MBB3D(point, point), CONTAINS, null, visitor);
+	}
+
+	/**
+	 * Returns for each of the given MBB3D objects the set of objects which
+	 * intersect it. The Set for <code>mbbs[i]</code> is stored at index
+	 * <code>i</code> of the result.<br>
+	 * The queries are ordered along a space filling curve and each run of
+	 * neighbouring queries is answered with one traversal of the tree, large
+	 * batches in parallel.
+	 * 
+	 * @param mbbs
+	 *            the MBB3D objects for test
+	 * @return Set[] - a Set object containing the result for every MBB3D.
+	 */
+	public Set[] intersects(final MBB3D[] mbbs) {
+		final Set[] result = BatchQuery.createResult(mbbs.length);
+		if (root == null)
+			return result;
+		double eps = sop.getEpsilon();
+		final double[][] boxes = new double[mbbs.length][];
+		for (int i = 0; i < mbbs.length; i++)
+			boxes[i] = new double[] { mbbs[i].getPMin().getX() - eps,
+					mbbs[i].getPMin().getY() - eps,
+					mbbs[i].getPMin().getZ() - eps,
+					mbbs[i].getPMax().getX() + eps,
+					mbbs[i].getPMax().getY() + eps,
+					mbbs[i].getPMax().getZ() + eps };
+		BatchQuery.run(mbbs, new BatchQuery.Run() {
+			public void query(int[] queries, int number) {
+				intersects(root, mbbs, boxes, queries, number, result);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Returns the set of objects whose MBB3D intersects the given plane.
+	 * 
+	 * @param plane
+	 *            the Plane3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set intersects(Plane3D plane) {
+		return intersects(new Plane3D[] { plane })[0];
+	}
+
+	/**
+	 * Passes the objects whose MBB3D intersects the given plane to the given
+	 * visitor.
+	 * 
+	 * @param plane
+	 *            the Plane3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean intersects(Plane3D plane, Visitor visitor) {
+		if (root == null)
+			return true;
+		return root.intersects(new PlaneQuery(new Plane3D[] { plane }, sop),
+				0, 1, null, visitor);
+	}
+
+	/**
+	 * Returns for each of the given parallel planes the set of objects whose
+	 * MBB3D intersects it. The Set for <code>planes[i]</code> is stored at
+	 * index <code>i</code> of the result.<br>
+	 * The planes are answered with one traversal of the tree, the sons are
+	 * pruned by their loose bounds.
+	 * 
+	 * @param planes
+	 *            parallel Plane3D objects for test
+	 * @return Set[] - a Set object containing the result for every plane.
+	 * @throws IllegalArgumentException
+	 *             if the planes are not parallel.
+	 */
+	public Set[] intersects(Plane3D[] planes) {
+		PlaneQuery query = new PlaneQuery(planes, sop);
+		Set[] result = BatchQuery.createResult(planes.length);
+		if (root != null)
+			root.intersects(query, 0, planes.length, result, null);
+		return result;
+	}
+
+	/**
+	 * Returns the <code>number</code> nearest neighbours of the given point.
+	 * <br>
+	 * The result array is sorted in ascending order based on the distance
+	 * value. If less than <code>number</code> objects are indexed the
+	 * remaining result objects have a <code>null</code> reference and an
+	 * infinite distance.
+	 * 
+	 * @param number
+	 *            number of nearest neighbours to search
+	 * @param point
+	 *            the Point3D object for test
+	 * @return NNResult[] - an array of NNResult objects sorted by distance.
+	 */
+	public NNResult[] nearest(int number, Point3D point) {
+		NNResult[] result = new NNResult[number];
+		Iterator it = nearestIterator(point);
+		for (int i = 0; i < number; i++)
+			result[i] = it.hasNext() ? (NNResult) it.next() : new Element(
+					null, Double.POSITIVE_INFINITY);
+		return result;
+	}
+
+	/**
+	 * Returns the <code>number</code> objects which are nearest to the given
+	 * point with respect to their exact geometry.
+	 * 
+	 * @param number
+	 *            number of nearest neighbours to search
+	 * @param point
+	 *            the Point3D object for test
+	 * @return NNResult[] - an array of NNResult objects sorted by distance.
+	 */
+	public NNResult[] nearestExact(int number, Point3D point) {
+		return ExactDistanceSearch.nearest(nearestIterator(point), number,
+				point);
+	}
+
+	/**
+	 * Returns the objects whose exact geometry has at most the given distance
+	 * to the given point.
+	 * 
+	 * @param point
+	 *            the Point3D object for test
+	 * @param distance
+	 *            the maximal distance
+	 * @return NNResult[] - an array of NNResult objects sorted by distance.
+	 * @throws IllegalArgumentException
+	 *             if distance is negative.
+	 */
+	public NNResult[] withinDistance(Point3D point, double distance) {
+		return ExactDistanceSearch.within(nearestIterator(point), point,
+				distance);
+	}
+
+	/**
+	 * Returns an Iterator over the objects in ascending order of their
+	 * distance to the given point. Each call of next() returns a NNResult
+	 * object. The neighbours are computed lazily by distance browsing.<br>
+	 * The Iterator throws a ConcurrentModificationException if this Octree
+	 * was changed after its creation.
+	 * 
+	 * @param point
+	 *            the Point3D object for test
+	 * @return Iterator - Iterator over NNResult objects.
+	 */
+	public Iterator nearestIterator(Point3D point) {
+		return new NNIterator(point);
+	}
+
+	/**
+	 * Returns the ScalarOperator of this.
+	 * 
+	 * @return ScalarOperator of this.
+	 */
+	public ScalarOperator getScalarOperator() {
+		return sop;
+	}
+
+	/*
+	 * Retrieves the objects qualifying for the given predicate into a new
+	 * Set.
+	 * 
+	 * @param mbb test MBB3D
+	 * 
+	 * @param predicate predicate constant
+	 * 
+	 * @return Set - result Set.
+	 */
+	private Set retrieve(MBB3D mbb, int predicate) {
+		Set set = new HashSet();
+		retrieve(mbb, predicate, set, null);
+		return set;
+	}
+
+	/*
+	 * Retrieves the objects qualifying for the given predicate. The objects
+	 * are added to the given Set, or passed to the visitor if the Set is
+	 * null.
+	 * 
+	 * @param mbb test MBB3D
+	 * 
+	 * @param predicate predicate constant
+	 * 
+	 * @param set result Set or null
+	 * 
+	 * @param visitor Visitor or null
+	 * 
+	 * @return boolean - false if the visitor terminated the query.
+	 */
+	private boolean retrieve(MBB3D mbb, int predicate, Set set,
+			Visitor visitor) {
+		if (root == null)
+			return true;
+		double eps = sop.getEpsilon();
+		double[] query = new double[] { mbb.getPMin().getX() - eps,
+				mbb.getPMin().getY() - eps, mbb.getPMin().getZ() - eps,
+				mbb.getPMax().getX() + eps, mbb.getPMax().getY() + eps,
+				mbb.getPMax().getZ() + eps };
+		return root.retrieve(query, mbb, predicate, set, visitor);
+	}
+
+	/*
+	 * Answers the given intersects queries for the subtree of the given node.
+	 * The queries intersecting the loose bounds of a son are passed down
+	 * together.
+	 * 
+	 * @param node root of the subtree
+	 * 
+	 * @param mbbs query MBB3Ds of the batch
+	 * 
+	 * @param boxes query boxes enlarged by epsilon
+	 * 
+	 * @param queries indexes of the queries to answer
+	 * 
+	 * @param number number of valid indexes in queries
+	 * 
+	 * @param result Sets of the batch
+	 */
+	private void intersects(Node node, MBB3D[] mbbs, double[][] boxes,
+			int[] queries, int number, Set[] result) {
+		for (int i = 0; i < node.used; i++)
+			for (int j = 0; j < number; j++)
+				if (node.mbbs[i].intersects(mbbs[queries[j]], sop))
+					result[queries[j]].add(node.objects[i]);
+		if (node.sons == null)
+			return;
+		int[] sub = new int[number];
+		for (int s = 0; s < 8; s++) {
+			Node son = node.sons[s];
+			if (son == null)
+				continue;
+			int k = 0;
+			for (int j = 0; j < number; j++)
+				if (son.looseIntersects(boxes[queries[j]]))
+					sub[k++] = queries[j];
+			if (k > 0)
+				intersects(son, mbbs, boxes, sub, k, result);
+		}
+	}
+
+	/*
+	 * Tests the MBB3D of an object against the query MBB3D.
+	 * 
+	 * @param objMBB MBB3D of the object
+	 * 
+	 * @param mbb test MBB3D
+	 * 
+	 * @param predicate predicate constant
+	 * 
+	 * @return boolean - true if the object qualifies.
+	 */
+	private boolean matches(MBB3D objMBB, MBB3D mbb, int predicate) {
+		switch (predicate) {
+		case INTERSECTS_STRICT:
+			return objMBB.intersectsStrict(mbb, sop);
+		case INTERSECTS:
+			return objMBB.intersects(mbb, sop);
+		case CONTAINS_STRICT:
+			return objMBB.containsStrict(mbb, sop);
+		case CONTAINS:
+			return objMBB.contains(mbb, sop);
+		case INSIDE_STRICT:
+			return objMBB.insideStrict(mbb, sop);
+		case INSIDE:
+			return objMBB.inside(mbb, sop);
+		}
+		return false;
+	}
+
+	/*
+	 * Enlarges the root until its cube contains the given center and its edge
+	 * is not smaller than the given size. The old root becomes a son of the
+	 * new root.
+	 * 
+	 * @param center center of the object MBB3D
+	 * 
+	 * @param size largest extent of the object MBB3D
+	 */
+	private void grow(double[] center, double size) {
+		while (!root.covers(center) || size > 2 * root.half) {
+			double[] c = new double[3];
+			for (int k = 0; k < 3; k++)
+				c[k] = root.center[k]
+						+ (center[k] >= root.center[k] ? root.half : -root.half);
+			Node help = new Node(c[0], c[1], c[2], root.half * 2);
+			help.sons = new Node[8];
+			help.sons[help.sonIndex(root.center)] = root;
+			root = help;
+		}
+	}
+
+	/*
+	 * Splits the given node and moves every object into the son whose cube
+	 * contains its center if it fits into the son. Sons holding too many
+	 * objects are split as well.
+	 * 
+	 * @param node Node to split
+	 * 
+	 * @param depth depth of node
+	 */
+	private void split(Node node, int depth) {
+		node.sons = new Node[8];
+		GeoObj[] objects = node.objects;
+		MBB3D[] mbbs = node.mbbs;
+		int used = node.used;
+		node.objects = new GeoObj[capacity + 1];
+		node.mbbs = new MBB3D[capacity + 1];
+		node.used = 0;
+		for (int i = 0; i < used; i++) {
+			double[] center = center(mbbs[i]);
+			if (size(mbbs[i]) <= node.half) {
+				int index = node.sonIndex(center);
+				if (node.sons[index] == null)
+					node.sons[index] = node.createSon(index);
+				node.sons[index].add(objects[i], mbbs[i]);
+			} else
+				node.add(objects[i], mbbs[i]);
+		}
+		for (int i = 0; i < 8; i++)
+			if (node.sons[i] != null && node.sons[i].used > capacity
+					&& depth + 1 < maxDepth)
+				split(node.sons[i], depth + 1);
+	}
+
+	/*
+	 * Returns the center of the given MBB3D.
+	 * 
+	 * @param mbb MBB3D
+	 * 
+	 * @return double[] - center coordinates.
+	 */
+	private static double[] center(MBB3D mbb) {
+		return new double[] {
+				(mbb.getPMin().getX() + mbb.getPMax().getX()) / 2,
+				(mbb.getPMin().getY() + mbb.getPMax().getY()) / 2,
+				(mbb.getPMin().getZ() + mbb.getPMax().getZ()) / 2 };
+	}
+
+	/*
+	 * Returns the largest extent of the given MBB3D.
+	 * 
+	 * @param mbb MBB3D
+	 * 
+	 * @return double - largest extent.
+	 */
+	private static double size(MBB3D mbb) {
+		return Math.max(mbb.getPMax().getX() - mbb.getPMin().getX(), Math.max(
+				mbb.getPMax().getY() - mbb.getPMin().getY(), mbb.getPMax()
+						.getZ() - mbb.getPMin().getZ()));
+	}
+
+	/*
+	 * Node of the Octree covering a cube. The objects are held in the arrays
+	 * objects and mbbs, the sons are null until the node is split.
+	 */
+	private final class Node implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		/* center of the cube */
+		private final double[] center;
+
+		/* half edge length of the cube */
+		private final double half;
+
+		/* sons - null if not split, missing sons are null */
+		private Node[] sons;
+
+		/* objects of this node */
+		private GeoObj[] objects;
+
+		/* MBB3Ds of the objects */
+		private MBB3D[] mbbs;
+
+		/* number of objects */
+		private int used;
+
+		/*
+		 * Constructor.
+		 * 
+		 * @param x x coordinate of the center
+		 * 
+		 * @param y y coordinate of the center
+		 * 
+		 * @param z z coordinate of the center
+		 * 
+		 * @param half half edge length
+		 */
+		private Node(double x, double y, double z, double half) {
+			this.center = new double[] { x, y, z };
+			this.half = half;
+			this.sons = null;
+			this.objects = new GeoObj[capacity + 1];
+			this.mbbs = new MBB3D[capacity + 1];
+			this.used = 0;
+		}
+
+		/*
+		 * Creates the son with the given index.
+		 * 
+		 * @param index son index - bit 0 for x, bit 1 for y and bit 2 for z
+		 * 
+		 * @return Node - new son.
+		 */
+		private Node createSon(int index) {
+			double h = half / 2;
+			return new Node(center[0] + ((index & 1) != 0 ? h : -h), center[1]
+					+ ((index & 2) != 0 ? h : -h), center[2]
+					+ ((index & 4) != 0 ? h : -h), h);
+		}
+
+		/*
+		 * Returns the index of the son whose cube contains the given point.
+		 * 
+		 * @param p point coordinates
+		 * 
+		 * @return int - son index.
+		 */
+		private int sonIndex(double[] p) {
+			return (p[0] >= center[0] ? 1 : 0) | (p[1] >= center[1] ? 2 : 0)
+					| (p[2] >= center[2] ? 4 : 0);
+		}
+
+		/*
+		 * Tests whether the cube of this contains the given point.
+		 * 
+		 * @param p point coordinates
+		 * 
+		 * @return boolean - true if contained.
+		 */
+		private boolean covers(double[] p) {
+			for (int k = 0; k < 3; k++)
+				if (p[k] < center[k] - half || p[k] >= center[k] + half)
+					return false;
+			return true;
+		}
+
+		/*
+		 * Tests whether the loose bounds of this intersect the given box.
+		 * 
+		 * @param box minX, minY, minZ, maxX, maxY, maxZ
+		 * 
+		 * @return boolean - true if they intersect.
+		 */
+		private boolean looseIntersects(double[] box) {
+			double loose = half * 2;
+			for (int k = 0; k < 3; k++)
+				if (box[k] > center[k] + loose || box[k + 3] < center[k] - loose)
+					return false;
+			return true;
+		}
+
+		/*
+		 * Returns the squared distance of the loose bounds of this to the
+		 * given point.
+		 * 
+		 * @param p point coordinates
+		 * 
+		 * @return double - squared distance.
+		 */
+		private double looseDistSquare(double[] p) {
+			double loose = half * 2;
+			double dist = 0;
+			for (int k = 0; k < 3; k++) {
+				double d = Math.abs(p[k] - center[k]) - loose;
+				if (d > 0)
+					dist += d * d;
+			}
+			return dist;
+		}
+
+		/*
+		 * Adds the given object.
+		 * 
+		 * @param go GeoObj
+		 * 
+		 * @param box MBB3D of go
+		 */
+		private void add(GeoObj go, MBB3D box) {
+			if (used == objects.length) {
+				GeoObj[] helpObjects = new GeoObj[used * 2];
+				MBB3D[] helpMBBs = new MBB3D[used * 2];
+				System.arraycopy(objects, 0, helpObjects, 0, used);
+				System.arraycopy(mbbs, 0, helpMBBs, 0, used);
+				objects = helpObjects;
+				mbbs = helpMBBs;
+			}
+			objects[used] = go;
+			mbbs[used] = box;
+			used++;
+		}
+
+		/*
+		 * Returns the index of the given object or -1.
+		 * 
+		 * @param go GeoObj
+		 * 
+		 * @return int - index of go, -1 if not found.
+		 */
+		private int indexOf(GeoObj go) {
+			for (int i = 0; i < used; i++)
+				if (objects[i].equals(go))
+					return i;
+			return -1;
+		}
+
+		/*
+		 * Removes the object with the given index.
+		 * 
+		 * @param index index of the object
+		 */
+		private void remove(int index) {
+			used--;
+			objects[index] = objects[used];
+			mbbs[index] = mbbs[used];
+			objects[used] = null;
+			mbbs[used] = null;
+		}
+
+		/*
+		 * Returns the number of existing sons.
+		 * 
+		 * @return int - number of sons.
+		 */
+		private int sonCount() {
+			int n = 0;
+			if (sons != null)
+				for (int i = 0; i < 8; i++)
+					if (sons[i] != null)
+						n++;
+			return n;
+		}
+
+		/*
+		 * Tests whether this node holds no objects and has no sons.
+		 * 
+		 * @return boolean - true if empty.
+		 */
+		private boolean isEmpty() {
+			return used == 0 && sonCount() == 0;
+		}
+
+		/*
+		 * Adds all objects of this subtree to the given Set.
+		 * 
+		 * @param set result Set
+		 */
+		private void retrieveAll(Set set) {
+			for (int i = 0; i < used; i++)
+				set.add(objects[i]);
+			if (sons != null)
+				for (int i = 0; i < 8; i++)
+					if (sons[i] != null)
+						sons[i].retrieveAll(set);
+		}
+
+		/*
+		 * Retrieves the objects of this subtree qualifying for the given
+		 * predicate.
+		 * 
+		 * @param box query box enlarged by epsilon
+		 * 
+		 * @param mbb test MBB3D
+		 * 
+		 * @param predicate predicate constant
+		 * 
+		 * @param set result Set or null
+		 * 
+		 * @param visitor Visitor or null
+		 * 
+		 * @return boolean - false if the visitor terminated the query.
+		 */
+		private boolean retrieve(double[] box, MBB3D mbb, int predicate,
+				Set set, Visitor visitor) {
+			for (int i = 0; i < used; i++) {
+				if (matches(mbbs[i], mbb, predicate)) {
+					if (set != null)
+						set.add(objects[i]);
+					else if (!visitor.visit(objects[i]))
+						return false;
+				}
+			}
+			if (sons != null)
+				for (int i = 0; i < 8; i++)
+					if (sons[i] != null && sons[i].looseIntersects(box)
+							&& !sons[i].retrieve(box, mbb, predicate, set,
+									visitor))
+						return false;
+			return true;
+		}
+
+		/*
+		 * Answers the planes [from; to) of the given query for this subtree.
+		 * The sons are tested with their loose bounds.
+		 * 
+		 * @param query sorted parallel planes
+		 * 
+		 * @param from first sorted plane
+		 * 
+		 * @param to position after the last sorted plane
+		 * 
+		 * @param result Sets of the planes, or null if the visitor is used
+		 * 
+		 * @param visitor Visitor receiving the objects
+		 * 
+		 * @return boolean - false if the visitor terminated the query.
+		 */
+		private boolean intersects(PlaneQuery query, int from, int to,
+				Set[] result, Visitor visitor) {
+			for (int i = 0; i < used; i++) {
+				int lower = query.lower(mbbs[i], from, to);
+				int upper = query.upper(mbbs[i], lower, to);
+				if (lower == upper)
+					continue;
+				if (result == null) {
+					if (!visitor.visit(objects[i]))
+						return false;
+				} else {
+					for (int j = lower; j < upper; j++)
+						result[query.getPlane(j)].add(objects[i]);
+				}
+			}
+			if (sons == null)
+				return true;
+			for (int i = 0; i < 8; i++) {
+				Node son = sons[i];
+				if (son == null)
+					continue;
+				int lower = query.lower(son.center, son.half * 2, from, to);
+				int upper = query.upper(son.center, son.half * 2, lower, to);
+				if (lower < upper
+						&& !son.intersects(query, lower, upper, result, visitor))
+					return false;
+			}
+			return true;
+		}
+	}
+
+	/*
+	 * Element of the priority queue of the nearest neighbour iterator - a
+	 * node or an object with its squared distance to the query point.
+	 */
+	private final static class Element implements Comparable, NNResult {
+
+		/* Node or GeoObj */
+		private final Object ref;
+
+		/* squared distance to the query point */
+		private final double distSquare;
+
+		/*
+		 * Constructor.
+		 * 
+		 * @param ref Node or GeoObj
+		 * 
+		 * @param distSquare squared distance to the query point
+		 */
+		private Element(Object ref, double distSquare) {
+			this.ref = ref;
+			this.distSquare = distSquare;
+		}
+
+		/**
+		 * Returns the distance of this result object.
+		 * 
+		 * @return double - distance as double.
+		 */
+		public double getDistance() {
+			return Math.sqrt(distSquare);
+		}
+
+		/**
+		 * Returns the reference to the object.
+		 * 
+		 * @return Object - reference.
+		 */
+		public Object getObjectRef() {
+			return ref;
+		}
+
+		/*
+		 * Orders by distance, objects before nodes at equal distance.
+		 * 
+		 * @see java.lang.Comparable#compareTo(java.lang.Object)
+		 */
+		public int compareTo(Object o) {
+			Element e = (Element) o;
+			if (distSquare < e.distSquare)
+				return -1;
+			if (distSquare > e.distSquare)
+				return 1;
+			boolean node = ref instanceof Node;
+			if (node == e.ref instanceof Node)
+				return 0;
+			return node ? 1 : -1;
+		}
+	}
+
+	/*
+	 * Iterator for the incremental nearest neighbour search (distance
+	 * browsing) over the loose bounds of the nodes.
+	 */
+	private final class NNIterator implements Iterator {
+
+		/* query point */
+		private final Point3D point;
+
+		/* query point coordinates */
+		private final double[] p;
+
+		/* priority queue of nodes and objects */
+		private final PriorityQueue queue;
+
+		/* expected modification count */
+		private final int expectedModCount;
+
+		/*
+		 * Constructor.
+		 * 
+		 * @param point query point
+		 */
+		private NNIterator(Point3D point) {
+			this.point = point;
+			this.p = new double[] { point.getX(), point.getY(), point.getZ() };
+			this.queue = new PriorityQueue();
+			this.expectedModCount = modCount;
+			if (root != null)
+				queue.add(new Element(root, 0));
+		}
+
+		/*
+		 * Expands nodes until an object is at the head of the queue.
+		 * 
+		 * @see java.util.Iterator#hasNext()
+		 */
+		public boolean hasNext() {
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			while (!queue.isEmpty()) {
+				Element head = (Element) queue.peek();
+				if (!(head.ref instanceof Node))
+					return true;
+				queue.poll();
+				Node node = (Node) head.ref;
+				for (int i = 0; i < node.used; i++)
+					queue.add(new Element(node.objects[i], node.mbbs[i]
+							.minDistSquare(point, sop)));
+				if (node.sons != null)
+					for (int i = 0; i < 8; i++)
+						if (node.sons[i] != null)
+							queue.add(new Element(node.sons[i], node.sons[i]
+									.looseDistSquare(p)));
+			}
+			return false;
+		}
+
+		/*
+		 * Returns the next nearest object as NNResult.
+		 * 
+		 * @see java.util.Iterator#next()
+		 */
+		public Object next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			return queue.poll();
+		}
+
+		/*
+		 * Not supported.
+		 * 
+		 * @see java.util.Iterator#remove()
+		 */
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+}
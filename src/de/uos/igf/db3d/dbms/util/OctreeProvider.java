@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.dbms.util;
+
+import de.uos.igf.db3d.dbms.geom.ScalarOperator;
+
+/**
+ * SAMProvider creating Octree objects.
+ */
+public final class OctreeProvider implements SAMProvider {
+
+	private static final long serialVersionUID = 1L;
+
+	/* maximum number of objects of a node before it is split */
+	private final int capacity;
+
+	/* maximum depth of the tree */
+	private final int maxDepth;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param capacity
+	 *            maximum number of objects of a node before it is split (must
+	 *            be 1 or more)
+	 * @param maxDepth
+	 *            maximum depth of the tree (must be 1 or more)
+	 * @throws IllegalArgumentException
+	 *             if capacity or maxDepth is less than 1.
+	 */
+	public OctreeProvider(int capacity, int maxDepth)
+			throws IllegalArgumentException {
+		if (capacity < 1 || maxDepth < 1)
+			throw new IllegalArgumentException("IllegalParameters");
+		this.capacity = capacity;
+		this.maxDepth = maxDepth;
+	}
+
+	/**
+	 * Creates a new empty Octree.
+	 * 
+	 * @param sop
+	 *            ScalarOperator of the indexed objects
+	 * @return SAM - new empty Octree.
+	 * @throws IllegalArgumentException
+	 *             if ScalarOperator = null.
+	 */
+	public SAM createSAM(ScalarOperator sop) {
+		return new Octree(capacity, maxDepth, sop);
+	}
+
+	/**
+	 * Returns the maximum number of objects of a node before it is split.
+	 * 
+	 * @return int - node capacity.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns the maximum depth of the tree.
+	 * 
+	 * @return int - maximum depth.
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+}
@@ -0,0 +1,1088 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.dbms.util;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import de.uos.igf.db3d.dbms.geom.MBB3D;
+import de.uos.igf.db3d.dbms.geom.Plane3D;
+import de.uos.igf.db3d.dbms.geom.Point3D;
+import de.uos.igf.db3d.dbms.geom.ScalarOperator;
+import de.uos.igf.db3d.dbms.structure.GeoObj;
+import de.uos.igf.db3d.dbms.structure.PersistentObject;
+
+/**
+ * Class PackedRStar - read only snapshot of a RStar stored in flat primitive
+ * arrays. <br>
+ * <br>
+ * The nodes of the tree are numbered in breadth first order. The entries of
+ * node n are stored contiguously at the indexes nodeFirst[n] to nodeFirst[n +
+ * 1] - 1. For every entry the bounding box is kept as six doubles (min x, y, z
+ * and max x, y, z) in the bounds array, and the ref array holds the index of
+ * the son node for inner entries or the index into the objects array for leaf
+ * entries. As the tree is balanced all nodes from index firstLeaf on are
+ * leaves. <br>
+ * The query methods follow the semantics of the RStar (epsilon comparisons
+ * of the ScalarOperator) but do not touch any MBB3D or Point3D object during
+ * traversal. <br>
+ * Instances are created by {@link RStar#freeze()}. The methods insert and
+ * remove throw an UnsupportedOperationException. <br>
+ * <br>
+ * Default Serialization (Serializable)
+ */
+public final class PackedRStar implements SAM, PersistentObject {
+
+	private static final long serialVersionUID = 1L;
+
+	/* entry bounds - 6 doubles per entry */
+	private final double[] bounds;
+
+	/* index of son node or object for every entry */
+	private final int[] ref;
+
+	/* index of the first entry for every node, last field is entry count */
+	private final int[] nodeFirst;
+
+	/* index of the first leaf node */
+	private final int firstLeaf;
+
+	/* indexed objects */
+	private final Object[] objects;
+
+	/* scalar operator */
+	private final ScalarOperator sop;
+
+	final static int INTERSECTS_STRICT_PREDICATE = 0;
+	final static int CONTAINS_STRICT_PREDICATE = 1;
+	final static int INSIDE_STRICT_PREDICATE = 2;
+
+	final static int INTERSECTS_PREDICATE = 10;
+	final static int CONTAINS_PREDICATE = 11;
+	final static int INSIDE_PREDICATE = 12;
+
+	/**
+	 * Constructor.<br>
+	 * Called by RStar.freeze().
+	 *
+	 * @param bounds
+	 *            entry bounds - 6 doubles per entry
+	 * @param ref
+	 *            son node or object index of every entry
+	 * @param nodeFirst
+	 *            first entry index of every node plus the number of entries
+	 * @param firstLeaf
+	 *            index of the first leaf node
+	 * @param objects
+	 *            indexed objects
+	 * @param sop
+	 *            ScalarOperator
+	 */
+	PackedRStar(double[] bounds, int[] ref, int[] nodeFirst, int firstLeaf,
+			Object[] objects, ScalarOperator sop) {
+		this.bounds = bounds;
+		this.ref = ref;
+		this.nodeFirst = nodeFirst;
+		this.firstLeaf = firstLeaf;
+		this.objects = objects;
+		this.sop = sop;
+	}
+
+	/**
+	 * Returns the number of objects in the PackedRStar.
+	 *
+	 * @return int - number of objects.
+	 */
+	public int getCount() {
+		return objects.length;
+	}
+
+	/**
+	 * Returns the MBB3D of the objects in this.
+	 *
+	 * @return MBB3D - MBB3D of this, <code>null</code> if empty.
+	 */
+	public MBB3D getMBB() {
+		if (objects.length == 0)
+			return null;
+
+		double[] box = new double[6];
+		System.arraycopy(bounds, 6 * nodeFirst[0], box, 0, 6);
+		for (int e = nodeFirst[0] + 1; e < nodeFirst[1]; e++) {
+			int b = 6 * e;
+			for (int i = 0; i < 3; i++) {
+				box[i] = Math.min(box[i], bounds[b + i]);
+				box[i + 3] = Math.max(box[i + 3], bounds[b + i + 3]);
+			}
+		}
+		return new MBB3D(new Point3D(box[0], box[1], box[2]), new Point3D(
+				box[3], box[4], box[5]));
+	}
+
+	/**
+	 * Retrieves all entries in the PackedRStar.
+	 *
+	 * @return Set - all entries.
+	 */
+	public Set getEntries() {
+		Set set = new HashSet(objects.length * 2);
+		for (int i = 0; i < objects.length; i++)
+			set.add(objects[i]);
+		return set;
+	}
+
+	/**
+	 * Not supported - a PackedRStar is read only.
+	 *
+	 * @throws UnsupportedOperationException
+	 *             always.
+	 */
+	public boolean insert(GeoObj go) {
+		throw new UnsupportedOperationException(
+				"PackedRStar is a read only snapshot.");
+	}
+
+	/**
+	 * Not supported - a PackedRStar is read only.
+	 *
+	 * @throws UnsupportedOperationException
+	 *             always.
+	 */
+	public boolean remove(GeoObj go) {
+		throw new UnsupportedOperationException(
+				"PackedRStar is a read only snapshot.");
+	}
+
+	/**
+	 * Returns the set of objects which intersect the given MBB3D strict.
+	 *
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set intersectsStrict(MBB3D mbb) {
+		return retrieve(mbb, INTERSECTS_STRICT_PREDICATE);
+	}
+
+	/**
+	 * Returns the set of objects which intersect the given MBB3D.
+	 *
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set intersects(MBB3D mbb) {
+		return retrieve(mbb, INTERSECTS_PREDICATE);
+	}
+
+	/**
+	 * Returns the set of objects which contain the given MBB3D strict.
+	 *
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set containsStrict(MBB3D mbb) {
+		return retrieve(mbb, CONTAINS_STRICT_PREDICATE);
+	}
+
+	/**
+	 * Returns the set of objects which contain the given MBB3D.
+	 *
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set contains(MBB3D mbb) {
+		return retrieve(mbb, CONTAINS_PREDICATE);
+	}
+
+	/**
+	 * Returns the set of objects which are inside the given MBB3D strict.
+	 *
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set insideStrict(MBB3D mbb) {
+		return retrieve(mbb, INSIDE_STRICT_PREDICATE);
+	}
+
+	/**
+	 * Returns the set of objects which are inside the given MBB3D.
+	 *
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set inside(MBB3D mbb) {
+		return retrieve(mbb, INSIDE_PREDICATE);
+	}
+
+	/**
+	 * Returns the set of objects which contain the given point.
+	 *
+	 * @param point
+	 *            the Point3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set contains(Point3D point) {
+		double[] q = new double[] { point.getX(), point.getY(), point.getZ(),
+				point.getX(), point.getY(), point.getZ() };
+		return retrieve(q, CONTAINS_PREDICATE);
+	}
+
+	/**
+	 * Passes the objects which intersect the given MBB3D strict to the given visitor.
+	 *
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean intersectsStrict(MBB3D mbb, Visitor visitor) {
+		return retrieve(mbb, INTERSECTS_STRICT_PREDICATE, visitor);
+	}
+
+	/**
+	 * Passes the objects which intersect the given MBB3D to the given visitor.
+	 *
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean intersects(MBB3D mbb, Visitor visitor) {
+		return retrieve(mbb, INTERSECTS_PREDICATE, visitor);
+	}
+
+	/**
+	 * Passes the objects which contain the given MBB3D strict to the given visitor.
+	 *
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean containsStrict(MBB3D mbb, Visitor visitor) {
+		return retrieve(mbb, CONTAINS_STRICT_PREDICATE, visitor);
+	}
+
+	/**
+	 * Passes the objects which contain the given MBB3D to the given visitor.
+	 *
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean contains(MBB3D mbb, Visitor visitor) {
+		return retrieve(mbb, CONTAINS_PREDICATE, visitor);
+	}
+
+	/**
+	 * Passes the objects which are inside the given MBB3D strict to the given visitor.
+	 *
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean insideStrict(MBB3D mbb, Visitor visitor) {
+		return retrieve(mbb, INSIDE_STRICT_PREDICATE, visitor);
+	}
+
+	/**
+	 * Passes the objects which are inside the given MBB3D to the given visitor.
+	 *
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean inside(MBB3D mbb, Visitor visitor) {
+		return retrieve(mbb, INSIDE_PREDICATE, visitor);
+	}
+
+	/**
+	 * Passes the objects which contain the given point to the given visitor.
+	 *
+	 * @param point
+	 *            the Point3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean contains(Point3D point, Visitor visitor) {
+		double[] q = new double[] { point.getX(), point.getY(), point.getZ(),
+				point.getX(), point.getY(), point.getZ() };
+		return retrieve(q, CONTAINS_PREDICATE, null, visitor);
+	}
+
+	/**
+	 * Returns for each of the given MBB3D objects the set of objects which
+	 * intersect it. The Set for <code>mbbs[i]</code> is stored at index
+	 * <code>i</code> of the result.<br>
+	 * The queries are ordered along a space filling curve and each run of
+	 * neighbouring queries is answered with one traversal of the tree, large
+	 * batches in parallel.
+	 *
+	 * @param mbbs
+	 *            the MBB3D objects for test
+	 * @return Set[] - a Set object containing the result for every MBB3D.
+	 */
+	public Set[] intersects(MBB3D[] mbbs) {
+		final Set[] result = BatchQuery.createResult(mbbs.length);
+		if (objects.length == 0)
+			return result;
+		final double[][] boxes = new double[mbbs.length][];
+		for (int i = 0; i < mbbs.length; i++) {
+			Point3D min = mbbs[i].getPMin();
+			Point3D max = mbbs[i].getPMax();
+			boxes[i] = new double[] { min.getX(), min.getY(), min.getZ(),
+					max.getX(), max.getY(), max.getZ() };
+		}
+		BatchQuery.run(mbbs, new BatchQuery.Run() {
+			public void query(int[] queries, int number) {
+				intersects(0, boxes, queries, number, result);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Returns the set of objects whose MBB3D intersects the given plane.
+	 *
+	 * @param plane
+	 *            the Plane3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set intersects(Plane3D plane) {
+		return intersects(new Plane3D[] { plane })[0];
+	}
+
+	/**
+	 * Passes the objects whose MBB3D intersects the given plane to the given
+	 * visitor.
+	 *
+	 * @param plane
+	 *            the Plane3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean intersects(Plane3D plane, Visitor visitor) {
+		if (objects.length == 0)
+			return true;
+		return intersects(0, new PlaneQuery(new Plane3D[] { plane }, sop), 0,
+				1, null, visitor);
+	}
+
+	/**
+	 * Returns for each of the given parallel planes the set of objects whose
+	 * MBB3D intersects it. The Set for <code>planes[i]</code> is stored at
+	 * index <code>i</code> of the result.<br>
+	 * The planes are answered with one traversal of the tree.
+	 *
+	 * @param planes
+	 *            parallel Plane3D objects for test
+	 * @return Set[] - a Set object containing the result for every plane.
+	 * @throws IllegalArgumentException
+	 *             if the planes are not parallel.
+	 */
+	public Set[] intersects(Plane3D[] planes) {
+		PlaneQuery query = new PlaneQuery(planes, sop);
+		Set[] result = BatchQuery.createResult(planes.length);
+		if (objects.length != 0)
+			intersects(0, query, 0, planes.length, result, null);
+		return result;
+	}
+
+	/**
+	 * Returns the <code>number</code> nearest neighbours of the given point.
+	 * <br>
+	 * The result array is sorted in ascending order based on the distance
+	 * value. If less than <code>number</code> objects are indexed the
+	 * remaining result objects have a <code>null</code> reference and an
+	 * infinite distance.
+	 *
+	 * @param number
+	 *            number of nearest neighbours to search
+	 * @param point
+	 *            the Point3D object for test
+	 * @return NNResult[] - an array of NNResult objects containing the result.
+	 */
+	public NNResult[] nearest(int number, Point3D point) {
+		double[] p = new double[] { point.getX(), point.getY(), point.getZ() };
+		double[] dist = new double[number];
+		int[] obj = new int[number];
+		for (int i = 0; i < number; i++) {
+			dist[i] = Double.POSITIVE_INFINITY;
+			obj[i] = -1;
+		}
+		if (objects.length > 0 && number > 0)
+			nearest(0, p, dist, obj);
+
+		NNResult[] result = new NNResult[number];
+		for (int i = 0; i < number; i++)
+			result[i] = new PackedNNResult(Math.sqrt(dist[i]),
+					obj[i] == -1 ? null : objects[obj[i]]);
+		return result;
+	}
+
+	/**
+	 * Returns an Iterator over the objects in ascending order of their
+	 * distance to the given point. Each call of next() returns a NNResult
+	 * object. The neighbours are computed lazily by distance browsing.
+	 *
+	 * @param point
+	 *            the Point3D object for test
+	 * @return Iterator - Iterator over NNResult objects.
+	 */
+	public Iterator nearestIterator(Point3D point) {
+		return new PackedNNIterator(new double[] { point.getX(),
+				point.getY(), point.getZ() });
+	}
+
+	/**
+	 * Returns the <code>number</code> objects which are nearest to the given
+	 * point with respect to their exact geometry.
+	 *
+	 * @param number
+	 *            number of nearest neighbours to search
+	 * @param point
+	 *            the Point3D object for test
+	 * @return NNResult[] - an array of NNResult objects sorted by distance.
+	 */
+	public NNResult[] nearestExact(int number, Point3D point) {
+		return ExactDistanceSearch.nearest(nearestIterator(point), number,
+				point);
+	}
+
+	/**
+	 * Returns the objects whose exact geometry has at most the given distance
+	 * to the given point.
+	 *
+	 * @param point
+	 *            the Point3D object for test
+	 * @param distance
+	 *            the maximal distance
+	 * @return NNResult[] - an array of NNResult objects sorted by distance.
+	 * @throws IllegalArgumentException
+	 *             if distance is negative.
+	 */
+	public NNResult[] withinDistance(Point3D point, double distance) {
+		return ExactDistanceSearch.within(nearestIterator(point), point,
+				distance);
+	}
+
+	/*
+	 * Depth first branch and bound search for the nearest neighbours in the
+	 * subtree of the given node. The sons are visited in order of their
+	 * minimal distance.
+	 *
+	 * @param node index of the node
+	 *
+	 * @param p query point coordinates
+	 *
+	 * @param dist sorted squared distances of the current result
+	 *
+	 * @param obj object indexes of the current result
+	 */
+	private void nearest(int node, double[] p, double[] dist, int[] obj) {
+		int first = nodeFirst[node];
+		int size = nodeFirst[node + 1] - first;
+		int last = dist.length - 1;
+
+		if (node >= firstLeaf) {
+			for (int e = first; e < first + size; e++) {
+				double d = minDistSquare(e, p);
+				if (d < dist[last]) {
+					// insertion into the sorted result
+					int i = last;
+					while (i > 0 && dist[i - 1] > d) {
+						dist[i] = dist[i - 1];
+						obj[i] = obj[i - 1];
+						i--;
+					}
+					dist[i] = d;
+					obj[i] = ref[e];
+				}
+			}
+			return;
+		}
+
+		// active branch list sorted by minimal distance
+		double[] ablDist = new double[size];
+		int[] ablEntry = new int[size];
+		for (int k = 0; k < size; k++) {
+			double d = minDistSquare(first + k, p);
+			int i = k;
+			while (i > 0 && ablDist[i - 1] > d) {
+				ablDist[i] = ablDist[i - 1];
+				ablEntry[i] = ablEntry[i - 1];
+				i--;
+			}
+			ablDist[i] = d;
+			ablEntry[i] = first + k;
+		}
+		for (int k = 0; k < size; k++) {
+			if (ablDist[k] > dist[last])
+				break;
+			nearest(ref[ablEntry[k]], p, dist, obj);
+		}
+	}
+
+	/*
+	 * Passes the objects for the given MBB3D and predicate to the visitor.
+	 *
+	 * @param mbb query MBB3D
+	 *
+	 * @param predicate predicate constant
+	 *
+	 * @param visitor Visitor receiving the result objects
+	 *
+	 * @return boolean - false if the visitor terminated the query, true
+	 * otherwise.
+	 */
+	private boolean retrieve(MBB3D mbb, int predicate, Visitor visitor) {
+		Point3D min = mbb.getPMin();
+		Point3D max = mbb.getPMax();
+		return retrieve(new double[] { min.getX(), min.getY(), min.getZ(),
+				max.getX(), max.getY(), max.getZ() }, predicate, null, visitor);
+	}
+
+	/*
+	 * Retrieves the objects for the given MBB3D and predicate.
+	 *
+	 * @param mbb query MBB3D
+	 *
+	 * @param predicate predicate constant
+	 *
+	 * @return Set - result Set.
+	 */
+	private Set retrieve(MBB3D mbb, int predicate) {
+		Point3D min = mbb.getPMin();
+		Point3D max = mbb.getPMax();
+		return retrieve(new double[] { min.getX(), min.getY(), min.getZ(),
+				max.getX(), max.getY(), max.getZ() }, predicate);
+	}
+
+	/*
+	 * Retrieves the objects for the given query box and predicate. The tree
+	 * is traversed iteratively with an explicit stack of node indexes.
+	 *
+	 * @param q query box as 6 doubles
+	 *
+	 * @param predicate predicate constant
+	 *
+	 * @return Set - result Set.
+	 */
+	private Set retrieve(double[] q, int predicate) {
+		Set set = new HashSet();
+		retrieve(q, predicate, set, null);
+		return set;
+	}
+
+	/*
+	 * Passes the objects for the given query box and predicate to the given
+	 * visitor, or adds them to the given Set if the visitor is null.
+	 *
+	 * @param q query box as 6 doubles
+	 *
+	 * @param predicate predicate constant
+	 *
+	 * @param set Set for the result, used if visitor is null
+	 *
+	 * @param visitor Visitor receiving the result objects or null
+	 *
+	 * @return boolean - false if the visitor terminated the query, true
+	 * otherwise.
+	 */
+	private boolean retrieve(double[] q, int predicate, Set set,
+			Visitor visitor) {
+		if (objects.length == 0)
+			return true;
+
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = 0;
+
+		while (top > 0) {
+			int node = stack[--top];
+			boolean leaf = node >= firstLeaf;
+			for (int e = nodeFirst[node]; e < nodeFirst[node + 1]; e++) {
+				if (!test(e, q, predicate, leaf))
+					continue;
+				if (leaf) {
+					if (visitor == null)
+						set.add(objects[ref[e]]);
+					else if (!visitor.visit(objects[ref[e]]))
+						return false;
+				} else {
+					if (top == stack.length) {
+						int[] help = new int[stack.length * 2];
+						System.arraycopy(stack, 0, help, 0, top);
+						stack = help;
+					}
+					stack[top++] = ref[e];
+				}
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Answers the given intersects queries for the subtree of the given node.
+	 * The queries intersecting an entry are passed down together.
+	 *
+	 * @param node node index
+	 *
+	 * @param boxes query boxes of the batch
+	 *
+	 * @param queries indexes of the queries to answer
+	 *
+	 * @param number number of valid indexes in queries
+	 *
+	 * @param result Sets of the batch
+	 */
+	private void intersects(int node, double[][] boxes, int[] queries,
+			int number, Set[] result) {
+		boolean leaf = node >= firstLeaf;
+		int[] sub = new int[number];
+		for (int e = nodeFirst[node]; e < nodeFirst[node + 1]; e++) {
+			int k = 0;
+			for (int j = 0; j < number; j++)
+				if (test(e, boxes[queries[j]], INTERSECTS_PREDICATE, leaf))
+					sub[k++] = queries[j];
+			if (k == 0)
+				continue;
+			if (leaf) {
+				for (int j = 0; j < k; j++)
+					result[sub[j]].add(objects[ref[e]]);
+			} else
+				intersects(ref[e], boxes, sub, k, result);
+		}
+	}
+
+	/*
+	 * Answers the planes [from; to) of the given query for the subtree of the
+	 * given node. The planes cutting an entry are passed down together.
+	 *
+	 * @param node node index
+	 *
+	 * @param query sorted parallel planes
+	 *
+	 * @param from first sorted plane
+	 *
+	 * @param to position after the last sorted plane
+	 *
+	 * @param result Sets of the planes, or null if the visitor is used
+	 *
+	 * @param visitor Visitor receiving the objects
+	 *
+	 * @return boolean - false if the visitor terminated the query, true
+	 * otherwise.
+	 */
+	private boolean intersects(int node, PlaneQuery query, int from, int to,
+			Set[] result, Visitor visitor) {
+		boolean leaf = node >= firstLeaf;
+		for (int e = nodeFirst[node]; e < nodeFirst[node + 1]; e++) {
+			int lower = query.lower(bounds, 6 * e, from, to);
+			int upper = query.upper(bounds, 6 * e, lower, to);
+			if (lower == upper)
+				continue;
+			if (!leaf) {
+				if (!intersects(ref[e], query, lower, upper, result, visitor))
+					return false;
+			} else if (result == null) {
+				if (!visitor.visit(objects[ref[e]]))
+					return false;
+			} else {
+				for (int j = lower; j < upper; j++)
+					result[query.getPlane(j)].add(objects[ref[e]]);
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Tests the entry at the given index against the query box. Inner entries
+	 * are tested with the predicate needed to reach qualifying leaf entries.
+	 *
+	 * @param e entry index
+	 *
+	 * @param q query box
+	 *
+	 * @param predicate predicate constant
+	 *
+	 * @param leaf leaf flag of the node of the entry
+	 *
+	 * @return boolean - true if the entry qualifies.
+	 */
+	private boolean test(int e, double[] q, int predicate, boolean leaf) {
+		return test(bounds, 6 * e, q, predicate, leaf, sop.getEpsilon());
+	}
+
+	/**
+	 * Tests the box at the given offset against the query box. Inner entries
+	 * are tested with the predicate needed to reach qualifying leaf entries.
+	 * Shared with PagedRStar.
+	 *
+	 * @param bounds
+	 *            boxes - 6 doubles per box
+	 * @param b
+	 *            offset of the box in bounds
+	 * @param q
+	 *            query box
+	 * @param predicate
+	 *            predicate constant
+	 * @param leaf
+	 *            leaf flag of the node of the entry
+	 * @param eps
+	 *            epsilon of the ScalarOperator
+	 * @return boolean - true if the entry qualifies.
+	 */
+	static boolean test(double[] bounds, int b, double[] q, int predicate,
+			boolean leaf, double eps) {
+		switch (predicate) {
+		case INTERSECTS_STRICT_PREDICATE:
+			for (int i = 0; i < 3; i++)
+				if (bounds[b + i] - q[i + 3] > -eps
+						|| q[i] - bounds[b + i + 3] > -eps)
+					return false;
+			return true;
+
+		case CONTAINS_STRICT_PREDICATE:
+			for (int i = 0; i < 3; i++)
+				if (bounds[b + i] - q[i] > -eps
+						|| q[i + 3] - bounds[b + i + 3] > -eps)
+					return false;
+			return true;
+
+		case CONTAINS_PREDICATE:
+			for (int i = 0; i < 3; i++)
+				if (bounds[b + i] - q[i] >= eps
+						|| q[i + 3] - bounds[b + i + 3] >= eps)
+					return false;
+			return true;
+
+		case INSIDE_STRICT_PREDICATE:
+			if (!leaf) // inner nodes are tested with intersects
+				return intersects(bounds, b, q, eps);
+			for (int i = 0; i < 3; i++)
+				if (q[i] - bounds[b + i] > -eps
+						|| bounds[b + i + 3] - q[i + 3] > -eps)
+					return false;
+			return true;
+
+		case INSIDE_PREDICATE:
+			if (!leaf) // inner nodes are tested with intersects
+				return intersects(bounds, b, q, eps);
+			for (int i = 0; i < 3; i++)
+				if (q[i] - bounds[b + i] >= eps
+						|| bounds[b + i + 3] - q[i + 3] >= eps)
+					return false;
+			return true;
+
+		case INTERSECTS_PREDICATE:
+			return intersects(bounds, b, q, eps);
+
+		default:
+			return false;
+		}
+	}
+
+	/*
+	 * Tests if the box at the given offset intersects the query box.
+	 *
+	 * @param bounds boxes - 6 doubles per box
+	 *
+	 * @param b offset of the box in bounds
+	 *
+	 * @param q query box
+	 *
+	 * @param eps epsilon of the ScalarOperator
+	 *
+	 * @return boolean - true if the boxes intersect.
+	 */
+	private static boolean intersects(double[] bounds, int b, double[] q,
+			double eps) {
+		for (int i = 0; i < 3; i++)
+			if (bounds[b + i] - q[i + 3] >= eps
+					|| q[i] - bounds[b + i + 3] >= eps)
+				return false;
+		return true;
+	}
+
+	/*
+	 * Computes the minimal distance square between the box of the given entry
+	 * and the given point. According to Roussopoulos Nick: Nearest Neighbor
+	 * Queries - MINDIST
+	 *
+	 * @param e entry index
+	 *
+	 * @param p point coordinates
+	 *
+	 * @return double - minimal distance square.
+	 */
+	private double minDistSquare(int e, double[] p) {
+		return minDistSquare(bounds, 6 * e, p, sop.getEpsilon());
+	}
+
+	/**
+	 * Computes the minimal distance square between the box at the given
+	 * offset and the given point. Shared with PagedRStar.
+	 *
+	 * @param bounds
+	 *            boxes - 6 doubles per box
+	 * @param b
+	 *            offset of the box in bounds
+	 * @param p
+	 *            point coordinates
+	 * @param eps
+	 *            epsilon of the ScalarOperator
+	 * @return double - minimal distance square.
+	 */
+	static double minDistSquare(double[] bounds, int b, double[] p, double eps) {
+		double min = 0.0;
+		for (int i = 0; i < 3; i++) {
+			double ri;
+			if (bounds[b + i] - p[i] >= eps)
+				ri = bounds[b + i];
+			else if (p[i] - bounds[b + i + 3] >= eps)
+				ri = bounds[b + i + 3];
+			else
+				ri = p[i];
+			min += (p[i] - ri) * (p[i] - ri);
+		}
+		return min;
+	}
+
+	/**
+	 * Creates a QuantizedRStar with the structure of this. Called by
+	 * RStar.compress(int).
+	 *
+	 * @param bits
+	 *            bits per coordinate - 8 or 16
+	 * @return QuantizedRStar - compressed snapshot.
+	 * @throws IllegalArgumentException
+	 *             if bits is not 8 or 16.
+	 */
+	QuantizedRStar quantize(int bits) {
+		return new QuantizedRStar(bounds, nodeFirst, firstLeaf, objects, sop,
+				bits);
+	}
+
+	/**
+	 * Converts this to string.
+	 *
+	 * @return String with the information of this.
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return "<PackedRStar nodes=\"" + (nodeFirst.length - 1)
+				+ "\" objects=\"" + objects.length + "\"/>";
+	}
+
+	/*
+	 * Iterator for the incremental nearest neighbour search (distance
+	 * browsing) on the packed arrays. The queue is a binary heap of squared
+	 * distances and ids - a node index n >= 0 or a leaf entry index e coded as
+	 * -(e + 1). <br> <br> Transient class
+	 */
+	private final class PackedNNIterator implements Iterator {
+
+		/* query point coordinates */
+		private final double[] p;
+
+		/* heap keys - squared minimal distances */
+		private double[] keys;
+
+		/* heap ids */
+		private int[] ids;
+
+		/* heap size */
+		private int size;
+
+		/*
+		 * Constructor.
+		 *
+		 * @param p query point coordinates
+		 */
+		private PackedNNIterator(double[] p) {
+			this.p = p;
+			this.keys = new double[32];
+			this.ids = new int[32];
+			this.size = 0;
+			if (objects.length > 0)
+				push(0.0, 0);
+		}
+
+		/*
+		 * Tests whether a further neighbour exists.
+		 *
+		 * @see java.util.Iterator#hasNext()
+		 */
+		public boolean hasNext() {
+			// replace nodes at the head by their entries
+			while (size > 0 && ids[0] >= 0) {
+				int node = pop();
+				boolean leaf = node >= firstLeaf;
+				for (int e = nodeFirst[node]; e < nodeFirst[node + 1]; e++)
+					push(minDistSquare(e, p), leaf ? -(e + 1) : ref[e]);
+			}
+			return size > 0;
+		}
+
+		/*
+		 * Returns the next neighbour as NNResult object.
+		 *
+		 * @see java.util.Iterator#next()
+		 */
+		public Object next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			double d = keys[0];
+			int e = -pop() - 1;
+			return new PackedNNResult(Math.sqrt(d), objects[ref[e]]);
+		}
+
+		/*
+		 * Not supported.
+		 *
+		 * @see java.util.Iterator#remove()
+		 */
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		/*
+		 * Tests whether heap position i is ordered before position j. On equal
+		 * distances objects come before nodes.
+		 */
+		private boolean before(int i, int j) {
+			if (keys[i] != keys[j])
+				return keys[i] < keys[j];
+			return ids[i] < 0 && ids[j] >= 0;
+		}
+
+		/*
+		 * Adds an id with the given key to the heap.
+		 */
+		private void push(double key, int id) {
+			if (size == keys.length) {
+				double[] k = new double[size * 2];
+				int[] v = new int[size * 2];
+				System.arraycopy(keys, 0, k, 0, size);
+				System.arraycopy(ids, 0, v, 0, size);
+				keys = k;
+				ids = v;
+			}
+			int i = size++;
+			keys[i] = key;
+			ids[i] = id;
+			while (i > 0 && before(i, (i - 1) / 2)) {
+				swap(i, (i - 1) / 2);
+				i = (i - 1) / 2;
+			}
+		}
+
+		/*
+		 * Removes the head of the heap and returns its id.
+		 */
+		private int pop() {
+			int id = ids[0];
+			size--;
+			keys[0] = keys[size];
+			ids[0] = ids[size];
+			int i = 0;
+			while (true) {
+				int c = 2 * i + 1;
+				if (c >= size)
+					break;
+				if (c + 1 < size && before(c + 1, c))
+					c++;
+				if (!before(c, i))
+					break;
+				swap(i, c);
+				i = c;
+			}
+			return id;
+		}
+
+		/*
+		 * Swaps two heap positions.
+		 */
+		private void swap(int i, int j) {
+			double k = keys[i];
+			keys[i] = keys[j];
+			keys[j] = k;
+			int v = ids[i];
+			ids[i] = ids[j];
+			ids[j] = v;
+		}
+	}
+
+	/*
+	 * Implementation for SAM.NNResult of the PackedRStar. <br> <br> Transient
+	 * result value class
+	 */
+	private final static class PackedNNResult implements SAM.NNResult {
+
+		/* distance to the query point */
+		private final double distance;
+
+		/* result object */
+		private final Object reference;
+
+		/*
+		 * Constructor.
+		 *
+		 * @param distance distance to the query point
+		 *
+		 * @param reference result object
+		 */
+		private PackedNNResult(double distance, Object reference) {
+			this.distance = distance;
+			this.reference = reference;
+		}
+
+		/**
+		 * Returns the distance of this result object.
+		 *
+		 * @return double - distance as double.
+		 */
+		public double getDistance() {
+			return distance;
+		}
+
+		/**
+		 * Returns the reference to the object.
+		 *
+		 * @return Object - reference.
+		 */
+		public Object getObjectRef() {
+			return reference;
+		}
+	}
+
+}
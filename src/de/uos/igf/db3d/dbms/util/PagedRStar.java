@@ -0,0 +1,1718 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.dbms.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import de.uos.igf.db3d.dbms.geom.Equivalentable;
+import de.uos.igf.db3d.dbms.geom.MBB3D;
+import de.uos.igf.db3d.dbms.geom.Plane3D;
+import de.uos.igf.db3d.dbms.geom.Point3D;
+import de.uos.igf.db3d.dbms.geom.ScalarOperator;
+import de.uos.igf.db3d.dbms.structure.GeoObj;
+
+/**
+ * Class PagedRStar - disk resident R*-tree.<br>
+ * <br>
+ * The nodes of the tree are stored as fixed size pages in a file and are read
+ * through an LRU buffer pool, so only the pages in the pool are kept in
+ * memory. Page 0 holds the header of the tree. A node page starts with the
+ * number of entries and the level of the node (0 for leaves), followed by the
+ * entries - six doubles for the bounding box and a long reference, which is
+ * the page of the son node for inner entries and the position of the object
+ * in the object file for leaf entries. Pages of removed nodes are kept in a
+ * free list and reused. <br>
+ * The indexed objects must be Serializable. They are appended to a second
+ * file with the name of the page file plus ".obj"; the space of removed
+ * objects is not reclaimed. Queries return the deserialized copies of the
+ * objects, so the objects must implement equals and hashCode. <br>
+ * The tree uses the R* ChooseSubtree and split algorithms. Forced
+ * reinsertion is not done, as it would touch a large number of pages for
+ * every overflow. The query methods follow the semantics of the RStar
+ * (epsilon comparisons of the ScalarOperator). <br>
+ * Changes are written to the files on flush() and close(). A closed tree is
+ * reopened with the constructor and the same file, without rebuilding.<br>
+ * <br>
+ * The public methods are synchronized. Serialization is not supported - the
+ * tree is persistent in its files.
+ */
+public class PagedRStar implements SAM {
+
+	private static final long serialVersionUID = 1L;
+
+	/** default size of a page in bytes */
+	public final static int DEFAULT_PAGE_SIZE = 4096;
+
+	/** minimal size of a page in bytes */
+	public final static int MIN_PAGE_SIZE = 256;
+
+	/* magic number of the header page */
+	private final static int MAGIC = 0x52535450;
+
+	/* size of the node header - entry count and level */
+	private final static int NODE_HEADER = 8;
+
+	/* size of an entry - six doubles and a long */
+	private final static int ENTRY_SIZE = 56;
+
+	/* size of the header fields on page 0 */
+	private final static int HEADER_SIZE = 36;
+
+	/* page file */
+	private transient FileChannel pages;
+
+	/* object file */
+	private transient FileChannel objects;
+
+	/* buffer pool of the page file */
+	private transient BufferPool pool;
+
+	/* scalar operator */
+	private final transient ScalarOperator sop;
+
+	/* size of a page in bytes */
+	private final int pageSize;
+
+	/* maximum number of entries in a node */
+	private final int maxEntries;
+
+	/* minimum number of entries in a node */
+	private final int minEntries;
+
+	/* page of the root node */
+	private int root;
+
+	/* number of levels */
+	private int height;
+
+	/* number of objects */
+	private int count;
+
+	/* number of pages in the page file */
+	private int pageCount;
+
+	/* first page of the free list, -1 if empty */
+	private int freeHead;
+
+	/* end of the object file */
+	private long objectEnd;
+
+	/* number of structural modifications, checked by the iterators */
+	private transient int modCount;
+
+	/**
+	 * Constructor.<br>
+	 * Opens the tree stored in the given file, or creates a new tree if the
+	 * file does not exist or is empty. The page size of an existing tree is
+	 * read from the file, the given page size is then ignored.
+	 * 
+	 * @param file
+	 *            page file
+	 * @param pageSize
+	 *            size of a page in bytes for a new tree, at least
+	 *            MIN_PAGE_SIZE
+	 * @param bufferPages
+	 *            number of pages kept in memory
+	 * @param sop
+	 *            ScalarOperator
+	 * @throws IOException
+	 *             if the files could not be opened or do not contain a tree.
+	 * @throws IllegalArgumentException
+	 *             if pageSize is less than MIN_PAGE_SIZE or bufferPages is
+	 *             less than 1.
+	 */
+	public PagedRStar(File file, int pageSize, int bufferPages,
+			ScalarOperator sop) throws IOException {
+		if (pageSize < MIN_PAGE_SIZE || bufferPages < 1)
+			throw new IllegalArgumentException("IllegalParameters");
+		this.sop = sop;
+		this.pages = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+		try {
+			this.objects = FileChannel.open(new File(file.getPath() + ".obj")
+					.toPath(), StandardOpenOption.READ,
+					StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+			if (pages.size() > 0) {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				while (header.hasRemaining())
+					if (pages.read(header, header.position()) < 0)
+						throw new IOException("Truncated header in " + file);
+				if (header.getInt(0) != MAGIC)
+					throw new IOException("No PagedRStar in " + file);
+				pageSize = header.getInt(4);
+				this.root = header.getInt(8);
+				this.height = header.getInt(12);
+				this.count = header.getInt(16);
+				this.pageCount = header.getInt(20);
+				this.freeHead = header.getInt(24);
+				this.objectEnd = header.getLong(28);
+				this.pool = new BufferPool(pages, pageSize, bufferPages);
+			} else {
+				this.pool = new BufferPool(pages, pageSize, bufferPages);
+				this.root = 1;
+				this.height = 1;
+				this.count = 0;
+				this.pageCount = 2;
+				this.freeHead = -1;
+				this.objectEnd = 0;
+				// empty root leaf
+				pool.pinNew(root);
+				pool.unpin(root, true);
+				writeHeader();
+			}
+		} catch (IOException e) {
+			pages.close();
+			if (objects != null)
+				objects.close();
+			throw e;
+		}
+		this.pageSize = pageSize;
+		this.maxEntries = (pageSize - NODE_HEADER) / ENTRY_SIZE;
+		this.minEntries = Math.max(2, maxEntries * 2 / 5);
+	}
+
+	/**
+	 * Constructor.<br>
+	 * Opens or creates a tree with DEFAULT_PAGE_SIZE.
+	 * 
+	 * @param file
+	 *            page file
+	 * @param bufferPages
+	 *            number of pages kept in memory
+	 * @param sop
+	 *            ScalarOperator
+	 * @throws IOException
+	 *             if the files could not be opened or do not contain a tree.
+	 */
+	public PagedRStar(File file, int bufferPages, ScalarOperator sop)
+			throws IOException {
+		this(file, DEFAULT_PAGE_SIZE, bufferPages, sop);
+	}
+
+	/**
+	 * Returns the size of a page in bytes.
+	 * 
+	 * @return int - page size.
+	 */
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * Returns the maximum number of entries in a node.
+	 * 
+	 * @return int - maximum number of entries.
+	 */
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	/**
+	 * Returns the number of levels of the tree.
+	 * 
+	 * @return int - height.
+	 */
+	public synchronized int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the number of objects in the PagedRStar.
+	 * 
+	 * @return int - number of objects.
+	 */
+	public synchronized int getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the MBB3D of the objects in this.
+	 * 
+	 * @return MBB3D - MBB3D of this, <code>null</code> if empty.
+	 */
+	public synchronized MBB3D getMBB() {
+		if (count == 0)
+			return null;
+		double[] box = cover(load(root));
+		return new MBB3D(new Point3D(box[0], box[1], box[2]), new Point3D(
+				box[3], box[4], box[5]));
+	}
+
+	/**
+	 * Retrieves all entries in the PagedRStar.
+	 * 
+	 * @return Set - all entries.
+	 */
+	public synchronized Set getEntries() {
+		Set set = new HashSet(count * 2);
+		double[] all = { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY,
+				Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY,
+				Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+		retrieve(all, PackedRStar.INTERSECTS_PREDICATE, set, null);
+		return set;
+	}
+
+	/**
+	 * Inserts the given GeoObj into the PagedRStar. The object is serialized
+	 * to the object file.
+	 * 
+	 * @param obj
+	 *            GeoObj to insert.
+	 * @return boolean - true if successful, false if null or already
+	 *         contained.
+	 * @throws IllegalArgumentException
+	 *             if the object is not Serializable or its MBB3D is null.
+	 * @throws UncheckedIOException
+	 *             if the files could not be written.
+	 */
+	public synchronized boolean insert(GeoObj obj) {
+		if (obj == null)
+			return false;
+		if (!(obj instanceof Serializable))
+			throw new IllegalArgumentException("IllegalParameters");
+		MBB3D mbb = obj.getMBB();
+		if (mbb == null)
+			throw new IllegalArgumentException(
+					"MBB3D of given GeoObject is null.");
+		double[] box = toBox(mbb);
+
+		if (findLeaf(load(root), box, obj, new ArrayList()))
+			return false;
+
+		long ref = writeObject(obj);
+		insert(box, ref, 0);
+		count++;
+		modCount++;
+		return true;
+	}
+
+	/**
+	 * Removes the given GeoObj from the PagedRStar. Underfull nodes are
+	 * dissolved and their entries reinserted.
+	 * 
+	 * @param obj
+	 *            GeoObj to remove.
+	 * @return boolean - true if successful, false otherwise
+	 * @throws IllegalArgumentException
+	 *             if the MBB3D of the object is null.
+	 * @throws UncheckedIOException
+	 *             if the files could not be accessed.
+	 */
+	public synchronized boolean remove(GeoObj obj) {
+		if (obj == null)
+			return false;
+		MBB3D mbb = obj.getMBB();
+		if (mbb == null)
+			throw new IllegalArgumentException(
+					"MBB3D of given GeoObject is null.");
+
+		List path = new ArrayList();
+		if (!findLeaf(load(root), toBox(mbb), obj, path))
+			return false;
+
+		// condense the path bottom up
+		Node leaf = (Node) path.get(path.size() - 1);
+		leaf.removeEntry(leaf.index);
+		List orphans = new ArrayList();
+		for (int i = path.size() - 1; i > 0; i--) {
+			Node node = (Node) path.get(i);
+			Node parent = (Node) path.get(i - 1);
+			if (node.used < minEntries) {
+				for (int k = 0; k < node.used; k++)
+					orphans.add(new Orphan(node.getBox(k), node.refs[k],
+							node.level));
+				freePage(node.page);
+				parent.removeEntry(parent.index);
+			} else {
+				store(node);
+				parent.setBox(parent.index, cover(node));
+			}
+		}
+		store((Node) path.get(0));
+
+		for (int i = 0; i < orphans.size(); i++) {
+			Orphan o = (Orphan) orphans.get(i);
+			insert(o.box, o.ref, o.level);
+		}
+
+		// shrink the tree while the root has only one son
+		while (height > 1) {
+			Node node = load(root);
+			if (node.used != 1)
+				break;
+			freePage(root);
+			root = (int) node.refs[0];
+			height--;
+		}
+		count--;
+		modCount++;
+		return true;
+	}
+
+	/**
+	 * Returns a Set containing all objects whose MBB3D strictly intersects
+	 * the given MBB3D.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set intersectsStrict(MBB3D mbb) {
+		return retrieve(mbb, PackedRStar.INTERSECTS_STRICT_PREDICATE);
+	}
+
+	/**
+	 * Returns a Set containing all objects whose MBB3D intersects the given
+	 * MBB3D.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set intersects(MBB3D mbb) {
+		return retrieve(mbb, PackedRStar.INTERSECTS_PREDICATE);
+	}
+
+	/**
+	 * Returns a Set containing all objects whose MBB3D strictly contains the
+	 * given MBB3D.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set containsStrict(MBB3D mbb) {
+		return retrieve(mbb, PackedRStar.CONTAINS_STRICT_PREDICATE);
+	}
+
+	/**
+	 * Returns a Set containing all objects whose MBB3D contains the given
+	 * MBB3D.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set contains(MBB3D mbb) {
+		return retrieve(mbb, PackedRStar.CONTAINS_PREDICATE);
+	}
+
+	/**
+	 * Returns a Set containing all objects whose MBB3D is strictly inside the
+	 * given MBB3D.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set insideStrict(MBB3D mbb) {
+		return retrieve(mbb, PackedRStar.INSIDE_STRICT_PREDICATE);
+	}
+
+	/**
+	 * Returns a Set containing all objects whose MBB3D is inside the given
+	 * MBB3D.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set inside(MBB3D mbb) {
+		return retrieve(mbb, PackedRStar.INSIDE_PREDICATE);
+	}
+
+	/**
+	 * Returns a Set containing all objects whose MBB3D contains the given
+	 * point.
+	 * 
+	 * @param point
+	 *            the Point3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public synchronized Set contains(Point3D point) {
+		Set set = new HashSet();
+		retrieve(toBox(point), PackedRStar.CONTAINS_PREDICATE, set, null);
+		return set;
+	}
+
+	/**
+	 * Passes all objects whose MBB3D strictly intersects the given MBB3D to
+	 * the visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            Visitor receiving the result objects
+	 * @return boolean - false if the visitor terminated the query, true
+	 *         otherwise.
+	 */
+	public synchronized boolean intersectsStrict(MBB3D mbb, Visitor visitor) {
+		return retrieve(toBox(mbb), PackedRStar.INTERSECTS_STRICT_PREDICATE,
+				null, visitor);
+	}
+
+	/**
+	 * Passes all objects whose MBB3D intersects the given MBB3D to the
+	 * visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            Visitor receiving the result objects
+	 * @return boolean - false if the visitor terminated the query, true
+	 *         otherwise.
+	 */
+	public synchronized boolean intersects(MBB3D mbb, Visitor visitor) {
+		return retrieve(toBox(mbb), PackedRStar.INTERSECTS_PREDICATE, null,
+				visitor);
+	}
+
+	/**
+	 * Passes all objects whose MBB3D strictly contains the given MBB3D to the
+	 * visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            Visitor receiving the result objects
+	 * @return boolean - false if the visitor terminated the query, true
+	 *         otherwise.
+	 */
+	public synchronized boolean containsStrict(MBB3D mbb, Visitor visitor) {
+		return retrieve(toBox(mbb), PackedRStar.CONTAINS_STRICT_PREDICATE,
+				null, visitor);
+	}
+
+	/**
+	 * Passes all objects whose MBB3D contains the given MBB3D to the visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            Visitor receiving the result objects
+	 * @return boolean - false if the visitor terminated the query, true
+	 *         otherwise.
+	 */
+	public synchronized boolean contains(MBB3D mbb, Visitor visitor) {
+		return retrieve(toBox(mbb), PackedRStar.CONTAINS_PREDICATE, null,
+				visitor);
+	}
+
+	/**
+	 * Passes all objects whose MBB3D is strictly inside the given MBB3D to
+	 * the visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            Visitor receiving the result objects
+	 * @return boolean - false if the visitor terminated the query, true
+	 *         otherwise.
+	 */
+	public synchronized boolean insideStrict(MBB3D mbb, Visitor visitor) {
+		return retrieve(toBox(mbb), PackedRStar.INSIDE_STRICT_PREDICATE,
+				null, visitor);
+	}
+
+	/**
+	 * Passes all objects whose MBB3D is inside the given MBB3D to the
+	 * visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            Visitor receiving the result objects
+	 * @return boolean - false if the visitor terminated the query, true
+	 *         otherwise.
+	 */
+	public synchronized boolean inside(MBB3D mbb, Visitor visitor) {
+		return retrieve(toBox(mbb), PackedRStar.INSIDE_PREDICATE, null,
+				visitor);
+	}
+
+	/**
+	 * Passes all objects whose MBB3D contains the given point to the visitor.
+	 * 
+	 * @param point
+	 *            the Point3D object for test
+	 * @param visitor
+	 *            Visitor receiving the result objects
+	 * @return boolean - false if the visitor terminated the query, true
+	 *         otherwise.
+	 */
+	public synchronized boolean contains(Point3D point, Visitor visitor) {
+		return retrieve(toBox(point), PackedRStar.CONTAINS_PREDICATE, null,
+				visitor);
+	}
+
+	/**
+	 * Returns for each of the given MBB3D objects the set of objects which
+	 * intersect it. The Set for <code>mbbs[i]</code> is stored at index
+	 * <code>i</code> of the result.<br>
+	 * The queries are ordered along a space filling curve and each run of
+	 * neighbouring queries is answered with one traversal of the tree, so
+	 * every page is read once per run.
+	 * 
+	 * @param mbbs
+	 *            the MBB3D objects for test
+	 * @return Set[] - a Set object containing the result for every MBB3D.
+	 */
+	public synchronized Set[] intersects(MBB3D[] mbbs) {
+		final Set[] result = BatchQuery.createResult(mbbs.length);
+		if (count == 0)
+			return result;
+		final double[][] boxes = new double[mbbs.length][];
+		for (int i = 0; i < mbbs.length; i++)
+			boxes[i] = toBox(mbbs[i]);
+		// the buffer pool is not thread safe - answer all runs in this thread
+		BatchQuery.run(mbbs, new BatchQuery.Run() {
+			public void query(int[] queries, int number) {
+				intersects(root, boxes, queries, number, result);
+			}
+		}, false);
+		return result;
+	}
+
+	/**
+	 * Returns the set of objects whose MBB3D intersects the given plane.
+	 * 
+	 * @param plane
+	 *            the Plane3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set intersects(Plane3D plane) {
+		return intersects(new Plane3D[] { plane })[0];
+	}
+
+	/**
+	 * Passes the objects whose MBB3D intersects the given plane to the given
+	 * visitor.
+	 * 
+	 * @param plane
+	 *            the Plane3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public synchronized boolean intersects(Plane3D plane, Visitor visitor) {
+		if (count == 0)
+			return true;
+		return intersects(root, new PlaneQuery(new Plane3D[] { plane }, sop),
+				0, 1, null, visitor);
+	}
+
+	/**
+	 * Returns for each of the given parallel planes the set of objects whose
+	 * MBB3D intersects it. The Set for <code>planes[i]</code> is stored at
+	 * index <code>i</code> of the result.<br>
+	 * The planes are answered with one traversal of the tree, so every page
+	 * is read at most once.
+	 * 
+	 * @param planes
+	 *            parallel Plane3D objects for test
+	 * @return Set[] - a Set object containing the result for every plane.
+	 * @throws IllegalArgumentException
+	 *             if the planes are not parallel.
+	 */
+	public synchronized Set[] intersects(Plane3D[] planes) {
+		PlaneQuery query = new PlaneQuery(planes, sop);
+		Set[] result = BatchQuery.createResult(planes.length);
+		if (count != 0)
+			intersects(root, query, 0, planes.length, result, null);
+		return result;
+	}
+
+	/**
+	 * Returns the <code>number</code> nearest neighbours of the given point.
+	 * <br>
+	 * The result array is sorted in ascending order based on the distance
+	 * value. If less than <code>number</code> objects are indexed the
+	 * remaining result objects have a <code>null</code> reference and an
+	 * infinite distance.
+	 * 
+	 * @param number
+	 *            number of nearest neighbours to search
+	 * @param point
+	 *            the Point3D object for test
+	 * @return NNResult[] - an array of NNResult objects containing the result.
+	 */
+	public synchronized NNResult[] nearest(int number, Point3D point) {
+		NNResult[] result = new NNResult[number];
+		Iterator it = nearestIterator(point);
+		for (int i = 0; i < number; i++)
+			result[i] = it.hasNext() ? (NNResult) it.next()
+					: new PagedNNResult(Double.POSITIVE_INFINITY, null);
+		return result;
+	}
+
+	/**
+	 * Returns an Iterator over the objects in ascending order of their
+	 * distance to the given point. Each call of next() returns a NNResult
+	 * object. The neighbours are computed lazily by distance browsing, the
+	 * Iterator throws a ConcurrentModificationException if this is modified
+	 * during the iteration.
+	 * 
+	 * @param point
+	 *            the Point3D object for test
+	 * @return Iterator - Iterator over NNResult objects.
+	 */
+	public Iterator nearestIterator(Point3D point) {
+		return new PagedNNIterator(new double[] { point.getX(), point.getY(),
+				point.getZ() });
+	}
+
+	/**
+	 * Returns the <code>number</code> objects which are nearest to the given
+	 * point with respect to their exact geometry.
+	 * 
+	 * @param number
+	 *            number of nearest neighbours to search
+	 * @param point
+	 *            the Point3D object for test
+	 * @return NNResult[] - an array of NNResult objects sorted by distance.
+	 */
+	public synchronized NNResult[] nearestExact(int number, Point3D point) {
+		return ExactDistanceSearch.nearest(nearestIterator(point), number,
+				point);
+	}
+
+	/**
+	 * Returns the objects whose exact geometry has at most the given distance
+	 * to the given point.
+	 * 
+	 * @param point
+	 *            the Point3D object for test
+	 * @param distance
+	 *            the maximal distance
+	 * @return NNResult[] - an array of NNResult objects sorted by distance.
+	 * @throws IllegalArgumentException
+	 *             if distance is negative.
+	 */
+	public synchronized NNResult[] withinDistance(Point3D point,
+			double distance) {
+		return ExactDistanceSearch.within(nearestIterator(point), point,
+				distance);
+	}
+
+	/**
+	 * Writes all changes to the files.
+	 * 
+	 * @throws UncheckedIOException
+	 *             if the files could not be written.
+	 */
+	public synchronized void flush() {
+		writeHeader();
+		pool.flush();
+		try {
+			pages.force(false);
+			objects.force(false);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Writes all changes to the files and closes them. This must not be used
+	 * afterwards.
+	 * 
+	 * @throws IOException
+	 *             if the files could not be written or closed.
+	 */
+	public synchronized void close() throws IOException {
+		try {
+			flush();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			pages.close();
+			objects.close();
+		}
+	}
+
+	/**
+	 * Converts this to string.
+	 * 
+	 * @return String with the information of this.
+	 * @see java.lang.Object#toString()
+	 */
+	public synchronized String toString() {
+		return "<PagedRStar pageSize=\"" + pageSize + "\" pages=\""
+				+ pageCount + "\" height=\"" + height + "\" objects=\""
+				+ count + "\"/>";
+	}
+
+	/*
+	 * Serialization is not supported.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		throw new NotSerializableException(getClass().getName());
+	}
+
+	/*
+	 * Inserts the given entry into a node of the given level. Splits are
+	 * propagated upwards, a split of the root adds a new root.
+	 * 
+	 * @param box entry box
+	 * 
+	 * @param ref son page or object position
+	 * 
+	 * @param level level of the node receiving the entry
+	 */
+	private void insert(double[] box, long ref, int level) {
+		Node node = load(root);
+		Node sibling = insert(node, box, ref, level);
+		if (sibling != null) {
+			Node newRoot = new Node(allocatePage(), node.level + 1,
+					maxEntries);
+			newRoot.append(cover(node), node.page);
+			newRoot.append(cover(sibling), sibling.page);
+			store(newRoot);
+			root = newRoot.page;
+			height++;
+		}
+	}
+
+	/*
+	 * Inserts the given entry into the subtree of the given node.
+	 * 
+	 * @param node root of the subtree
+	 * 
+	 * @param box entry box
+	 * 
+	 * @param ref son page or object position
+	 * 
+	 * @param level level of the node receiving the entry
+	 * 
+	 * @return Node - the new sibling if the node was split, null otherwise.
+	 */
+	private Node insert(Node node, double[] box, long ref, int level) {
+		if (node.level == level) {
+			node.append(box, ref);
+		} else {
+			int i = chooseSubtree(node, box);
+			Node son = load((int) node.refs[i]);
+			Node sibling = insert(son, box, ref, level);
+			node.setBox(i, cover(son));
+			if (sibling != null)
+				node.append(cover(sibling), sibling.page);
+		}
+		if (node.used > maxEntries)
+			return split(node);
+		store(node);
+		return null;
+	}
+
+	/*
+	 * Chooses the entry of the given node to insert the given box into.
+	 * Above the leaves the entry needing the least overlap enlargement is
+	 * chosen, otherwise the entry needing the least volume enlargement. Ties
+	 * are resolved by the smaller volume.
+	 * 
+	 * @param node inner node
+	 * 
+	 * @param box box to insert
+	 * 
+	 * @return int - index of the chosen entry.
+	 */
+	private int chooseSubtree(Node node, double[] box) {
+		double[] enlarged = new double[6];
+		int best = 0;
+		double bestOverlap = Double.POSITIVE_INFINITY;
+		double bestEnlargement = Double.POSITIVE_INFINITY;
+		double bestVolume = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < node.used; i++) {
+			int b = 6 * i;
+			for (int k = 0; k < 3; k++) {
+				enlarged[k] = Math.min(node.boxes[b + k], box[k]);
+				enlarged[k + 3] = Math.max(node.boxes[b + k + 3], box[k + 3]);
+			}
+			double volume = volume(node.boxes, b);
+			double enlargement = volume(enlarged, 0) - volume;
+			double overlap = 0;
+			if (node.level == 1) {
+				for (int j = 0; j < node.used; j++)
+					if (j != i)
+						overlap += overlap(enlarged, 0, node.boxes, 6 * j)
+								- overlap(node.boxes, b, node.boxes, 6 * j);
+			}
+			boolean better;
+			if (overlap != bestOverlap)
+				better = overlap < bestOverlap;
+			else if (enlargement != bestEnlargement)
+				better = enlargement < bestEnlargement;
+			else
+				better = volume < bestVolume;
+			if (better) {
+				best = i;
+				bestOverlap = overlap;
+				bestEnlargement = enlargement;
+				bestVolume = volume;
+			}
+		}
+		return best;
+	}
+
+	/*
+	 * Splits the given overfull node with the R* split. The split axis is
+	 * the one with the least sum of margins over all distributions, the
+	 * distribution on this axis is the one with the least overlap, ties are
+	 * resolved by the least volume. Both nodes are stored.
+	 * 
+	 * @param node overfull node
+	 * 
+	 * @return Node - the new sibling.
+	 */
+	private Node split(final Node node) {
+		int n = node.used;
+		Integer[][][] orders = new Integer[3][2][];
+		int bestAxis = 0;
+		double bestMargin = Double.POSITIVE_INFINITY;
+		double[] lower = new double[6 * n];
+		double[] upper = new double[6 * n];
+		for (int axis = 0; axis < 3; axis++) {
+			double margin = 0;
+			for (int side = 0; side < 2; side++) {
+				final int key = axis + 3 * side;
+				Integer[] order = new Integer[n];
+				for (int i = 0; i < n; i++)
+					order[i] = Integer.valueOf(i);
+				Arrays.sort(order, new Comparator() {
+					public int compare(Object o1, Object o2) {
+						return Double.compare(node.boxes[6
+								* ((Integer) o1).intValue() + key],
+								node.boxes[6 * ((Integer) o2).intValue() + key]);
+					}
+				});
+				orders[axis][side] = order;
+				covers(node, order, lower, upper);
+				for (int k = minEntries; k <= n - minEntries; k++)
+					margin += margin(lower, 6 * (k - 1))
+							+ margin(upper, 6 * k);
+			}
+			if (margin < bestMargin) {
+				bestMargin = margin;
+				bestAxis = axis;
+			}
+		}
+
+		Integer[] bestOrder = null;
+		int bestK = 0;
+		double bestOverlap = Double.POSITIVE_INFINITY;
+		double bestVolume = Double.POSITIVE_INFINITY;
+		for (int side = 0; side < 2; side++) {
+			Integer[] order = orders[bestAxis][side];
+			covers(node, order, lower, upper);
+			for (int k = minEntries; k <= n - minEntries; k++) {
+				double overlap = overlap(lower, 6 * (k - 1), upper, 6 * k);
+				double volume = volume(lower, 6 * (k - 1))
+						+ volume(upper, 6 * k);
+				if (overlap < bestOverlap
+						|| (overlap == bestOverlap && volume < bestVolume)) {
+					bestOrder = order;
+					bestK = k;
+					bestOverlap = overlap;
+					bestVolume = volume;
+				}
+			}
+		}
+
+		double[] boxes = node.boxes.clone();
+		long[] refs = node.refs.clone();
+		Node sibling = new Node(allocatePage(), node.level, maxEntries);
+		node.used = 0;
+		for (int i = 0; i < n; i++) {
+			int e = bestOrder[i].intValue();
+			double[] box = new double[6];
+			System.arraycopy(boxes, 6 * e, box, 0, 6);
+			if (i < bestK)
+				node.append(box, refs[e]);
+			else
+				sibling.append(box, refs[e]);
+		}
+		store(node);
+		store(sibling);
+		return sibling;
+	}
+
+	/*
+	 * Computes the covering boxes of all prefixes and suffixes of the given
+	 * entry order. lower[6 * k] covers the entries 0 to k, upper[6 * k] the
+	 * entries k to n - 1.
+	 * 
+	 * @param node node
+	 * 
+	 * @param order entry order
+	 * 
+	 * @param lower prefix boxes
+	 * 
+	 * @param upper suffix boxes
+	 */
+	private static void covers(Node node, Integer[] order, double[] lower,
+			double[] upper) {
+		int n = order.length;
+		for (int i = 0; i < n; i++) {
+			int b = 6 * order[i].intValue();
+			for (int k = 0; k < 3; k++) {
+				lower[6 * i + k] = i == 0 ? node.boxes[b + k] : Math.min(
+						lower[6 * (i - 1) + k], node.boxes[b + k]);
+				lower[6 * i + k + 3] = i == 0 ? node.boxes[b + k + 3] : Math
+						.max(lower[6 * (i - 1) + k + 3], node.boxes[b + k + 3]);
+			}
+		}
+		for (int i = n - 1; i >= 0; i--) {
+			int b = 6 * order[i].intValue();
+			for (int k = 0; k < 3; k++) {
+				upper[6 * i + k] = i == n - 1 ? node.boxes[b + k] : Math.min(
+						upper[6 * (i + 1) + k], node.boxes[b + k]);
+				upper[6 * i + k + 3] = i == n - 1 ? node.boxes[b + k + 3]
+						: Math.max(upper[6 * (i + 1) + k + 3],
+								node.boxes[b + k + 3]);
+			}
+		}
+	}
+
+	/*
+	 * Searches the leaf entry of the given object in the subtree of the given
+	 * node. The nodes on the path are appended to the path list, the index
+	 * field of each node is set to the entry on the path.
+	 * 
+	 * @param node root of the subtree
+	 * 
+	 * @param box box of the object
+	 * 
+	 * @param obj object to search
+	 * 
+	 * @param path list receiving the path
+	 * 
+	 * @return boolean - true if the object was found.
+	 */
+	private boolean findLeaf(Node node, double[] box, Object obj, List path) {
+		double eps = sop.getEpsilon();
+		path.add(node);
+		for (int i = 0; i < node.used; i++) {
+			if (node.level == 0) {
+				if (equal(node.boxes, 6 * i, box, eps)
+						&& isEqual(obj, readObject(node.refs[i]))) {
+					node.index = i;
+					return true;
+				}
+			} else if (PackedRStar.test(node.boxes, 6 * i, box,
+					PackedRStar.CONTAINS_PREDICATE, false, eps)) {
+				node.index = i;
+				if (findLeaf(load((int) node.refs[i]), box, obj, path))
+					return true;
+			}
+		}
+		path.remove(path.size() - 1);
+		return false;
+	}
+
+	/*
+	 * Tests if the given object equals the stored object. Equivalentable
+	 * objects are compared by their geometry, because the stored object is a
+	 * deserialized copy.
+	 * 
+	 * @param obj object to search
+	 * 
+	 * @param stored stored object
+	 * 
+	 * @return boolean - true if the objects are equal.
+	 */
+	private boolean isEqual(Object obj, Object stored) {
+		if (obj instanceof Equivalentable)
+			return stored instanceof Equivalentable
+					&& ((Equivalentable) stored).isGeometryEquivalent(
+							(Equivalentable) obj, sop);
+		return obj.equals(stored);
+	}
+
+	/*
+	 * Passes the objects for the given query box and predicate to the given
+	 * visitor, or adds them to the given Set if the visitor is null.
+	 * 
+	 * @param q query box as 6 doubles
+	 * 
+	 * @param predicate predicate constant of PackedRStar
+	 * 
+	 * @param set Set for the result, used if visitor is null
+	 * 
+	 * @param visitor Visitor receiving the result objects or null
+	 * 
+	 * @return boolean - false if the visitor terminated the query, true
+	 * otherwise.
+	 */
+	private boolean retrieve(double[] q, int predicate, Set set,
+			Visitor visitor) {
+		if (count == 0)
+			return true;
+		double eps = sop.getEpsilon();
+		double[] box = new double[6];
+		long[] found = new long[maxEntries];
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = root;
+
+		while (top > 0) {
+			int page = stack[--top];
+			ByteBuffer buffer = pool.pin(page);
+			int used = buffer.getInt(0);
+			boolean leaf = buffer.getInt(4) == 0;
+			int number = 0;
+			for (int i = 0; i < used; i++) {
+				readBox(buffer, i, box);
+				if (!PackedRStar.test(box, 0, q, predicate, leaf, eps))
+					continue;
+				long ref = buffer.getLong(NODE_HEADER + i * ENTRY_SIZE + 48);
+				if (leaf) {
+					found[number++] = ref;
+				} else {
+					if (top == stack.length) {
+						int[] help = new int[stack.length * 2];
+						System.arraycopy(stack, 0, help, 0, top);
+						stack = help;
+					}
+					stack[top++] = (int) ref;
+				}
+			}
+			pool.unpin(page, false);
+
+			for (int i = 0; i < number; i++) {
+				Object obj = readObject(found[i]);
+				if (visitor == null)
+					set.add(obj);
+				else if (!visitor.visit(obj))
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Retrieves the objects for the given MBB3D and predicate.
+	 * 
+	 * @param mbb query MBB3D
+	 * 
+	 * @param predicate predicate constant of PackedRStar
+	 * 
+	 * @return Set - result Set.
+	 */
+	private synchronized Set retrieve(MBB3D mbb, int predicate) {
+		Set set = new HashSet();
+		retrieve(toBox(mbb), predicate, set, null);
+		return set;
+	}
+
+	/*
+	 * Answers the given intersects queries for the subtree of the given node.
+	 * The queries intersecting an entry are passed down together.
+	 * 
+	 * @param page page of the node
+	 * 
+	 * @param boxes query boxes of the batch
+	 * 
+	 * @param queries indexes of the queries to answer
+	 * 
+	 * @param number number of valid indexes in queries
+	 * 
+	 * @param result Sets of the batch
+	 */
+	private void intersects(int page, double[][] boxes, int[] queries,
+			int number, Set[] result) {
+		Node node = load(page);
+		boolean leaf = node.level == 0;
+		double eps = sop.getEpsilon();
+		int[] sub = new int[number];
+		for (int e = 0; e < node.used; e++) {
+			int k = 0;
+			for (int j = 0; j < number; j++)
+				if (PackedRStar.test(node.boxes, 6 * e, boxes[queries[j]],
+						PackedRStar.INTERSECTS_PREDICATE, leaf, eps))
+					sub[k++] = queries[j];
+			if (k == 0)
+				continue;
+			if (leaf) {
+				Object obj = readObject(node.refs[e]);
+				for (int j = 0; j < k; j++)
+					result[sub[j]].add(obj);
+			} else
+				intersects((int) node.refs[e], boxes, sub, k, result);
+		}
+	}
+
+	/*
+	 * Answers the planes [from; to) of the given query for the subtree of the
+	 * given node. The planes cutting an entry are passed down together.
+	 * 
+	 * @param page page of the node
+	 * 
+	 * @param query sorted parallel planes
+	 * 
+	 * @param from first sorted plane
+	 * 
+	 * @param to position after the last sorted plane
+	 * 
+	 * @param result Sets of the planes, or null if the visitor is used
+	 * 
+	 * @param visitor Visitor receiving the objects
+	 * 
+	 * @return boolean - false if the visitor terminated the query, true
+	 * otherwise.
+	 */
+	private boolean intersects(int page, PlaneQuery query, int from, int to,
+			Set[] result, Visitor visitor) {
+		Node node = load(page);
+		boolean leaf = node.level == 0;
+		for (int e = 0; e < node.used; e++) {
+			int lower = query.lower(node.boxes, 6 * e, from, to);
+			int upper = query.upper(node.boxes, 6 * e, lower, to);
+			if (lower == upper)
+				continue;
+			if (!leaf) {
+				if (!intersects((int) node.refs[e], query, lower, upper,
+						result, visitor))
+					return false;
+				continue;
+			}
+			Object obj = readObject(node.refs[e]);
+			if (result == null) {
+				if (!visitor.visit(obj))
+					return false;
+			} else {
+				for (int j = lower; j < upper; j++)
+					result[query.getPlane(j)].add(obj);
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Reads the node stored in the given page.
+	 * 
+	 * @param page page number
+	 * 
+	 * @return Node - copy of the node.
+	 */
+	private Node load(int page) {
+		ByteBuffer buffer = pool.pin(page);
+		Node node = new Node(page, buffer.getInt(4), maxEntries);
+		node.used = buffer.getInt(0);
+		for (int i = 0; i < node.used; i++) {
+			int o = NODE_HEADER + i * ENTRY_SIZE;
+			for (int k = 0; k < 6; k++)
+				node.boxes[6 * i + k] = buffer.getDouble(o + 8 * k);
+			node.refs[i] = buffer.getLong(o + 48);
+		}
+		pool.unpin(page, false);
+		return node;
+	}
+
+	/*
+	 * Writes the given node to its page.
+	 * 
+	 * @param node node with at most maxEntries entries
+	 */
+	private void store(Node node) {
+		ByteBuffer buffer = pool.pin(node.page);
+		buffer.putInt(0, node.used);
+		buffer.putInt(4, node.level);
+		for (int i = 0; i < node.used; i++) {
+			int o = NODE_HEADER + i * ENTRY_SIZE;
+			for (int k = 0; k < 6; k++)
+				buffer.putDouble(o + 8 * k, node.boxes[6 * i + k]);
+			buffer.putLong(o + 48, node.refs[i]);
+		}
+		pool.unpin(node.page, true);
+	}
+
+	/*
+	 * Returns a free page, taken from the free list or appended to the file.
+	 * 
+	 * @return int - page number.
+	 */
+	private int allocatePage() {
+		int page;
+		if (freeHead != -1) {
+			page = freeHead;
+			ByteBuffer buffer = pool.pin(page);
+			freeHead = buffer.getInt(0);
+			pool.unpin(page, false);
+		} else
+			page = pageCount++;
+		pool.pinNew(page);
+		pool.unpin(page, true);
+		return page;
+	}
+
+	/*
+	 * Adds the given page to the free list.
+	 * 
+	 * @param page page number
+	 */
+	private void freePage(int page) {
+		ByteBuffer buffer = pool.pinNew(page);
+		buffer.putInt(0, freeHead);
+		pool.unpin(page, true);
+		freeHead = page;
+	}
+
+	/*
+	 * Writes the header fields to page 0.
+	 */
+	private void writeHeader() {
+		ByteBuffer buffer = pool.pin(0);
+		buffer.putInt(0, MAGIC);
+		buffer.putInt(4, buffer.capacity());
+		buffer.putInt(8, root);
+		buffer.putInt(12, height);
+		buffer.putInt(16, count);
+		buffer.putInt(20, pageCount);
+		buffer.putInt(24, freeHead);
+		buffer.putLong(28, objectEnd);
+		pool.unpin(0, true);
+	}
+
+	/*
+	 * Appends the given object to the object file.
+	 * 
+	 * @param obj Serializable object
+	 * 
+	 * @return long - position of the object.
+	 */
+	private long writeObject(Object obj) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(obj);
+			out.close();
+			ByteBuffer buffer = ByteBuffer.allocate(4 + bytes.size());
+			buffer.putInt(bytes.size());
+			buffer.put(bytes.toByteArray());
+			buffer.flip();
+			long position = objectEnd;
+			while (buffer.hasRemaining())
+				objects.write(buffer, position + buffer.position());
+			objectEnd += buffer.capacity();
+			return position;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/*
+	 * Reads the object at the given position of the object file.
+	 * 
+	 * @param position position of the object
+	 * 
+	 * @return Object - deserialized object.
+	 */
+	private Object readObject(long position) {
+		try {
+			ByteBuffer length = ByteBuffer.allocate(4);
+			read(objects, length, position);
+			ByteBuffer buffer = ByteBuffer.allocate(length.getInt(0));
+			read(objects, buffer, position + 4);
+			ObjectInputStream in = new ObjectInputStream(
+					new ByteArrayInputStream(buffer.array()));
+			try {
+				return in.readObject();
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (ClassNotFoundException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/*
+	 * Fills the given buffer from the given position of the channel.
+	 * 
+	 * @param channel FileChannel
+	 * 
+	 * @param buffer buffer to fill
+	 * 
+	 * @param position file position
+	 */
+	private static void read(FileChannel channel, ByteBuffer buffer,
+			long position) throws IOException {
+		while (buffer.hasRemaining())
+			if (channel.read(buffer, position + buffer.position()) < 0)
+				throw new IOException("Unexpected end of file");
+	}
+
+	/*
+	 * Reads the box of the given entry from a node page.
+	 * 
+	 * @param buffer page buffer
+	 * 
+	 * @param i entry index
+	 * 
+	 * @param box array receiving the box
+	 */
+	private static void readBox(ByteBuffer buffer, int i, double[] box) {
+		int o = NODE_HEADER + i * ENTRY_SIZE;
+		for (int k = 0; k < 6; k++)
+			box[k] = buffer.getDouble(o + 8 * k);
+	}
+
+	/*
+	 * Returns the covering box of all entries of the given node.
+	 * 
+	 * @param node node with at least one entry
+	 * 
+	 * @return double[] - covering box.
+	 */
+	private static double[] cover(Node node) {
+		double[] box = new double[6];
+		System.arraycopy(node.boxes, 0, box, 0, 6);
+		for (int i = 1; i < node.used; i++)
+			for (int k = 0; k < 3; k++) {
+				box[k] = Math.min(box[k], node.boxes[6 * i + k]);
+				box[k + 3] = Math.max(box[k + 3], node.boxes[6 * i + k + 3]);
+			}
+		return box;
+	}
+
+	/*
+	 * Returns the volume of the box at the given offset.
+	 */
+	private static double volume(double[] boxes, int b) {
+		return (boxes[b + 3] - boxes[b]) * (boxes[b + 4] - boxes[b + 1])
+				* (boxes[b + 5] - boxes[b + 2]);
+	}
+
+	/*
+	 * Returns the margin (sum of the edge lengths) of the box at the given
+	 * offset.
+	 */
+	private static double margin(double[] boxes, int b) {
+		return (boxes[b + 3] - boxes[b]) + (boxes[b + 4] - boxes[b + 1])
+				+ (boxes[b + 5] - boxes[b + 2]);
+	}
+
+	/*
+	 * Returns the volume of the intersection of two boxes.
+	 */
+	private static double overlap(double[] a, int ia, double[] b, int ib) {
+		double volume = 1;
+		for (int k = 0; k < 3; k++) {
+			double extent = Math.min(a[ia + k + 3], b[ib + k + 3])
+					- Math.max(a[ia + k], b[ib + k]);
+			if (extent <= 0)
+				return 0;
+			volume *= extent;
+		}
+		return volume;
+	}
+
+	/*
+	 * Tests two boxes for equality within eps.
+	 */
+	private static boolean equal(double[] a, int ia, double[] b, double eps) {
+		for (int k = 0; k < 6; k++)
+			if (Math.abs(a[ia + k] - b[k]) >= eps)
+				return false;
+		return true;
+	}
+
+	/*
+	 * Converts the given MBB3D to a box of six doubles.
+	 */
+	private static double[] toBox(MBB3D mbb) {
+		Point3D min = mbb.getPMin();
+		Point3D max = mbb.getPMax();
+		return new double[] { min.getX(), min.getY(), min.getZ(), max.getX(),
+				max.getY(), max.getZ() };
+	}
+
+	/*
+	 * Converts the given point to a degenerated box of six doubles.
+	 */
+	private static double[] toBox(Point3D point) {
+		return new double[] { point.getX(), point.getY(), point.getZ(),
+				point.getX(), point.getY(), point.getZ() };
+	}
+
+	/*
+	 * Node copied from its page, with room for one entry more than a page
+	 * can hold for the split. <br> <br> Transient class
+	 */
+	private final static class Node {
+
+		/* page of the node */
+		private final int page;
+
+		/* level of the node, 0 for leaves */
+		private final int level;
+
+		/* number of entries */
+		private int used;
+
+		/* entry boxes - 6 doubles per entry */
+		private final double[] boxes;
+
+		/* son pages or object positions */
+		private final long[] refs;
+
+		/* entry on the search path, set by findLeaf */
+		private int index;
+
+		/*
+		 * Constructor.
+		 * 
+		 * @param page page of the node
+		 * 
+		 * @param level level of the node
+		 * 
+		 * @param maxEntries maximum number of entries of a page
+		 */
+		private Node(int page, int level, int maxEntries) {
+			this.page = page;
+			this.level = level;
+			this.boxes = new double[6 * (maxEntries + 1)];
+			this.refs = new long[maxEntries + 1];
+		}
+
+		/*
+		 * Appends an entry.
+		 */
+		private void append(double[] box, long ref) {
+			System.arraycopy(box, 0, boxes, 6 * used, 6);
+			refs[used++] = ref;
+		}
+
+		/*
+		 * Removes the entry at the given index, the last entry takes its
+		 * place.
+		 */
+		private void removeEntry(int i) {
+			used--;
+			System.arraycopy(boxes, 6 * used, boxes, 6 * i, 6);
+			refs[i] = refs[used];
+		}
+
+		/*
+		 * Returns a copy of the box of the given entry.
+		 */
+		private double[] getBox(int i) {
+			double[] box = new double[6];
+			System.arraycopy(boxes, 6 * i, box, 0, 6);
+			return box;
+		}
+
+		/*
+		 * Sets the box of the given entry.
+		 */
+		private void setBox(int i, double[] box) {
+			System.arraycopy(box, 0, boxes, 6 * i, 6);
+		}
+	}
+
+	/*
+	 * Entry of a dissolved node, waiting for reinsertion. <br> <br> Transient
+	 * class
+	 */
+	private final static class Orphan {
+
+		/* entry box */
+		private final double[] box;
+
+		/* son page or object position */
+		private final long ref;
+
+		/* level of the dissolved node */
+		private final int level;
+
+		/*
+		 * Constructor.
+		 */
+		private Orphan(double[] box, long ref, int level) {
+			this.box = box;
+			this.ref = ref;
+			this.level = level;
+		}
+	}
+
+	/*
+	 * Candidate of the incremental nearest neighbour search - a node page or
+	 * an object position with its minimal distance square. <br> <br>
+	 * Transient class
+	 */
+	private final static class Candidate {
+
+		/* squared minimal distance */
+		private final double distance;
+
+		/* node page or object position */
+		private final long ref;
+
+		/* true for an object, false for a node */
+		private final boolean object;
+
+		/*
+		 * Constructor.
+		 */
+		private Candidate(double distance, long ref, boolean object) {
+			this.distance = distance;
+			this.ref = ref;
+			this.object = object;
+		}
+	}
+
+	/*
+	 * Iterator for the incremental nearest neighbour search (distance
+	 * browsing). Objects come before nodes on equal distances. <br> <br>
+	 * Transient class
+	 */
+	private final class PagedNNIterator implements Iterator {
+
+		/* query point coordinates */
+		private final double[] p;
+
+		/* candidates ordered by distance */
+		private final PriorityQueue queue;
+
+		/* expected modification count */
+		private final int expectedModCount;
+
+		/*
+		 * Constructor.
+		 * 
+		 * @param p query point coordinates
+		 */
+		private PagedNNIterator(double[] p) {
+			this.p = p;
+			this.queue = new PriorityQueue(32, new Comparator() {
+				public int compare(Object o1, Object o2) {
+					Candidate c1 = (Candidate) o1;
+					Candidate c2 = (Candidate) o2;
+					if (c1.distance != c2.distance)
+						return c1.distance < c2.distance ? -1 : 1;
+					if (c1.object != c2.object)
+						return c1.object ? -1 : 1;
+					return 0;
+				}
+			});
+			synchronized (PagedRStar.this) {
+				this.expectedModCount = modCount;
+				if (count > 0)
+					queue.add(new Candidate(0.0, root, false));
+			}
+		}
+
+		/*
+		 * Tests whether a further neighbour exists.
+		 * 
+		 * @see java.util.Iterator#hasNext()
+		 */
+		public boolean hasNext() {
+			synchronized (PagedRStar.this) {
+				if (modCount != expectedModCount)
+					throw new ConcurrentModificationException();
+				double eps = sop.getEpsilon();
+				// replace nodes at the head by their entries
+				while (!queue.isEmpty() && !((Candidate) queue.peek()).object) {
+					Node node = load((int) ((Candidate) queue.poll()).ref);
+					for (int i = 0; i < node.used; i++)
+						queue.add(new Candidate(PackedRStar.minDistSquare(
+								node.boxes, 6 * i, p, eps), node.refs[i],
+								node.level == 0));
+				}
+				return !queue.isEmpty();
+			}
+		}
+
+		/*
+		 * Returns the next neighbour as NNResult object.
+		 * 
+		 * @see java.util.Iterator#next()
+		 */
+		public Object next() {
+			synchronized (PagedRStar.this) {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				Candidate c = (Candidate) queue.poll();
+				return new PagedNNResult(Math.sqrt(c.distance),
+						readObject(c.ref));
+			}
+		}
+
+		/*
+		 * Not supported.
+		 * 
+		 * @see java.util.Iterator#remove()
+		 */
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/*
+	 * Implementation for SAM.NNResult of the PagedRStar. <br> <br> Transient
+	 * result value class
+	 */
+	private final static class PagedNNResult implements SAM.NNResult {
+
+		/* distance to the query point */
+		private final double distance;
+
+		/* result object */
+		private final Object reference;
+
+		/*
+		 * Constructor.
+		 * 
+		 * @param distance distance to the query point
+		 * 
+		 * @param reference result object
+		 */
+		private PagedNNResult(double distance, Object reference) {
+			this.distance = distance;
+			this.reference = reference;
+		}
+
+		/**
+		 * Returns the distance of this result object.
+		 * 
+		 * @return double - distance as double.
+		 */
+		public double getDistance() {
+			return distance;
+		}
+
+		/**
+		 * Returns the reference to the object.
+		 * 
+		 * @return Object - reference.
+		 */
+		public Object getObjectRef() {
+			return reference;
+		}
+	}
+
+}
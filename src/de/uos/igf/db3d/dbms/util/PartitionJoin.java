@@ -0,0 +1,556 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.dbms.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import de.uos.igf.db3d.dbms.geom.MBB3D;
+import de.uos.igf.db3d.dbms.geom.ScalarOperator;
+import de.uos.igf.db3d.dbms.geom.Tetrahedron3D;
+import de.uos.igf.db3d.dbms.geom.Triangle3D;
+import de.uos.igf.db3d.dbms.structure.GeoObj;
+
+/**
+ * Spatial intersection join of two unindexed sets of objects by partition
+ * based spatial merge (PBSM). The region common to both sets is divided into
+ * a regular grid, every object is assigned to all cells its MBB3D overlaps.
+ * The cells are joined in parallel on the common ForkJoinPool by a plane
+ * sweep along the x axis. A pair found in several cells is only reported in
+ * the cell containing the minimum corner of the intersection of their MBB3Ds
+ * (reference point rule).<br>
+ * The candidate pairs are refined with the exact intersects methods of
+ * Triangle3D and Tetrahedron3D. Pairs of other objects are reported if their
+ * MBB3Ds intersect.<br>
+ * <br>
+ * Patel, J. M. / DeWitt, D. J. : Partition Based Spatial-Merge Join - In
+ * Proceedings of the ACM SIGMOD 1996, pages 259 - 270.
+ */
+public final class PartitionJoin {
+
+	/* average number of objects per grid cell */
+	private final static int OBJECTS_PER_CELL = 32;
+
+	/* maximum number of grid cells */
+	private final static int MAX_CELLS = 1 << 18;
+
+	/* number of cells joined sequentially by one task */
+	private final static int CELLS_PER_TASK = 8;
+
+	private PartitionJoin() {
+		// static methods only
+	}
+
+	/**
+	 * Computes all pairs of intersecting objects of the given arrays.
+	 * 
+	 * @param first
+	 *            GeoObj array of the first join partner
+	 * @param second
+	 *            GeoObj array of the second join partner
+	 * @param sop
+	 *            ScalarOperator
+	 * @return JoinResult[] - result of intersection join as JoinResult array.
+	 *         The first object of a JoinResult is an object of first.
+	 * @throws ArithmeticException
+	 *             - if norm equals zero in epsilon range. This exception
+	 *             originates in the exact intersects methods of the classes
+	 *             Triangle3D and Tetrahedron3D.
+	 */
+	public static JoinResult[] intersectionJoin(GeoObj[] first,
+			GeoObj[] second, ScalarOperator sop) {
+		final List list = new ArrayList();
+		intersectionJoin(first, second, sop, new SAM.Visitor() {
+			public boolean visit(Object obj) {
+				list.add(obj);
+				return true;
+			}
+		});
+		return (JoinResult[]) list.toArray(new JoinResult[list.size()]);
+	}
+
+	/**
+	 * Computes all pairs of intersecting objects of the given arrays and
+	 * passes them as JoinResult objects to the given visitor. The first object
+	 * of a JoinResult is an object of first.<br>
+	 * The visitor is never called by two threads at the same time. The order
+	 * of the result pairs is undefined.
+	 * 
+	 * @param first
+	 *            GeoObj array of the first join partner
+	 * @param second
+	 *            GeoObj array of the second join partner
+	 * @param sop
+	 *            ScalarOperator
+	 * @param visitor
+	 *            SAM.Visitor receiving the JoinResult objects
+	 * @return boolean - true if the join was completed, false if it was
+	 *         terminated by the visitor.
+	 * @throws ArithmeticException
+	 *             - if norm equals zero in epsilon range. This exception
+	 *             originates in the exact intersects methods of the classes
+	 *             Triangle3D and Tetrahedron3D.
+	 */
+	public static boolean intersectionJoin(GeoObj[] first, GeoObj[] second,
+			ScalarOperator sop, SAM.Visitor visitor) {
+		JoinSink sink = new JoinSink(visitor);
+		if (first.length == 0 || second.length == 0)
+			return true;
+
+		double[] boundsA = bounds(first, sop.getEpsilon());
+		double[] boundsB = bounds(second, sop.getEpsilon());
+
+		// region common to both sets
+		double[] regionA = region(boundsA);
+		double[] regionB = region(boundsB);
+		double[] region = new double[6];
+		for (int i = 0; i < 3; i++) {
+			region[i] = Math.max(regionA[i], regionB[i]);
+			region[i + 3] = Math.min(regionA[i + 3], regionB[i + 3]);
+			if (region[i] > region[i + 3])
+				return true;
+		}
+
+		Grid grid = new Grid(region, first.length + second.length);
+		Partition partA = new Partition(grid, boundsA);
+		Partition partB = new Partition(grid, boundsB);
+
+		ForkJoinPool.commonPool().invoke(
+				new CellTask(first, second, boundsA, boundsB, partA, partB,
+						grid, sop, sink, 0, grid.size()));
+		return !sink.isStopped();
+	}
+
+	/*
+	 * Tests the exact intersection of the given objects.
+	 * 
+	 * @param a first object
+	 * 
+	 * @param b second object
+	 * 
+	 * @param sop ScalarOperator
+	 * 
+	 * @return boolean - true if they intersect, false otherwise.
+	 */
+	private static boolean refine(GeoObj a, GeoObj b, ScalarOperator sop) {
+		if (a instanceof Triangle3D) {
+			if (b instanceof Triangle3D)
+				return ((Triangle3D) a).intersects((Triangle3D) b, sop);
+			if (b instanceof Tetrahedron3D)
+				return ((Tetrahedron3D) b).intersects((Triangle3D) a, sop);
+		} else if (a instanceof Tetrahedron3D) {
+			if (b instanceof Triangle3D)
+				return ((Tetrahedron3D) a).intersects((Triangle3D) b, sop);
+			if (b instanceof Tetrahedron3D)
+				return ((Tetrahedron3D) a).intersects((Tetrahedron3D) b, sop);
+		}
+		return a.getMBB().intersects(b.getMBB(), sop);
+	}
+
+	/*
+	 * Returns the MBB3D bounds of the given objects enlarged by epsilon as
+	 * array of minX, minY, minZ, maxX, maxY, maxZ per object.
+	 * 
+	 * @param objects GeoObj array
+	 * 
+	 * @param eps epsilon of the ScalarOperator
+	 * 
+	 * @return double[] - bounds of the objects.
+	 */
+	private static double[] bounds(GeoObj[] objects, double eps) {
+		double[] bounds = new double[objects.length * 6];
+		for (int i = 0; i < objects.length; i++) {
+			MBB3D mbb = objects[i].getMBB();
+			for (int k = 0; k < 3; k++) {
+				bounds[i * 6 + k] = mbb.getPMin().getCoord(k) - eps;
+				bounds[i * 6 + k + 3] = mbb.getPMax().getCoord(k) + eps;
+			}
+		}
+		return bounds;
+	}
+
+	/*
+	 * Returns the union of the given bounds.
+	 * 
+	 * @param bounds bounds of the objects
+	 * 
+	 * @return double[] - minX, minY, minZ, maxX, maxY, maxZ of all objects.
+	 */
+	private static double[] region(double[] bounds) {
+		double[] region = new double[] { Double.POSITIVE_INFINITY,
+				Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+				Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY,
+				Double.NEGATIVE_INFINITY };
+		for (int i = 0; i < bounds.length; i += 6) {
+			for (int k = 0; k < 3; k++) {
+				region[k] = Math.min(region[k], bounds[i + k]);
+				region[k + 3] = Math.max(region[k + 3], bounds[i + k + 3]);
+			}
+		}
+		return region;
+	}
+
+	/*
+	 * Regular grid over the common region. The cell edge length is the same
+	 * for all axes, axes with an extent below the edge length get a single
+	 * cell.<br> <br> Transient class
+	 */
+	private final static class Grid {
+
+		/* region of the grid as minX, minY, minZ, maxX, maxY, maxZ */
+		private final double[] region;
+
+		/* minimum corner of the grid */
+		private final double[] origin;
+
+		/* cell edge length per axis */
+		private final double[] edge;
+
+		/* number of cells per axis */
+		private final int[] cells;
+
+		/*
+		 * Constructor.
+		 * 
+		 * @param region common region as minX, minY, minZ, maxX, maxY, maxZ
+		 * 
+		 * @param objects number of objects of both sets
+		 */
+		private Grid(double[] region, int objects) {
+			this.region = region;
+			this.origin = new double[3];
+			this.edge = new double[3];
+			this.cells = new int[] { 1, 1, 1 };
+			double target = Math.min(MAX_CELLS, Math.max(1, objects
+					/ OBJECTS_PER_CELL));
+
+			double[] extent = new double[3];
+			boolean[] active = new boolean[3];
+			for (int k = 0; k < 3; k++) {
+				origin[k] = region[k];
+				extent[k] = region[k + 3] - region[k];
+				active[k] = extent[k] > 0;
+			}
+
+			// edge length with about target cells, flat axes are dropped
+			double length = 0;
+			boolean changed = true;
+			while (changed) {
+				changed = false;
+				double volume = 1;
+				int dims = 0;
+				for (int k = 0; k < 3; k++) {
+					if (active[k]) {
+						volume *= extent[k];
+						dims++;
+					}
+				}
+				if (dims == 0)
+					break;
+				length = Math.pow(volume / target, 1.0 / dims);
+				for (int k = 0; k < 3; k++) {
+					if (active[k] && extent[k] < length) {
+						active[k] = false;
+						changed = true;
+					}
+				}
+			}
+
+			for (int k = 0; k < 3; k++) {
+				if (active[k])
+					cells[k] = (int) Math.min(Math.ceil(extent[k] / length),
+							MAX_CELLS);
+				edge[k] = cells[k] == 1 ? 0 : extent[k] / cells[k];
+			}
+		}
+
+		/*
+		 * Returns the number of cells.
+		 * 
+		 * @return int - number of cells.
+		 */
+		private int size() {
+			return cells[0] * cells[1] * cells[2];
+		}
+
+		/*
+		 * Returns the cell index of the given coordinate along the given
+		 * axis. Coordinates outside the grid are clamped to the border cells.
+		 * 
+		 * @param axis axis index
+		 * 
+		 * @param coord coordinate
+		 * 
+		 * @return int - cell index along axis.
+		 */
+		private int index(int axis, double coord) {
+			if (edge[axis] == 0)
+				return 0;
+			int i = (int) Math.floor((coord - origin[axis]) / edge[axis]);
+			if (i < 0)
+				return 0;
+			if (i >= cells[axis])
+				return cells[axis] - 1;
+			return i;
+		}
+
+		/*
+		 * Returns the number of the cell with the given indices.
+		 * 
+		 * @param x cell index along the x axis
+		 * 
+		 * @param y cell index along the y axis
+		 * 
+		 * @param z cell index along the z axis
+		 * 
+		 * @return int - cell number.
+		 */
+		private int cell(int x, int y, int z) {
+			return (z * cells[1] + y) * cells[0] + x;
+		}
+	}
+
+	/*
+	 * Assignment of the objects of one set to the grid cells. The object
+	 * indices of cell c are items[start[c]] to items[start[c + 1] - 1].<br>
+	 * <br> Transient class
+	 */
+	private final static class Partition {
+
+		/* offsets of the cells in items */
+		private final int[] start;
+
+		/* object indices ordered by cell */
+		private final int[] items;
+
+		/*
+		 * Constructor. Objects outside the grid region are not assigned.
+		 * 
+		 * @param grid Grid
+		 * 
+		 * @param bounds bounds of the objects
+		 */
+		private Partition(Grid grid, double[] bounds) {
+			int n = bounds.length / 6;
+			int[] range = new int[n * 6];
+			int[] count = new int[grid.size() + 1];
+			double[] region = grid.region;
+
+			// first pass - count the objects per cell
+			for (int i = 0; i < n; i++) {
+				boolean outside = false;
+				for (int k = 0; k < 3; k++) {
+					if (bounds[i * 6 + k] > region[k + 3]
+							|| bounds[i * 6 + k + 3] < region[k]) {
+						outside = true;
+						break;
+					}
+					range[i * 6 + k] = grid.index(k, bounds[i * 6 + k]);
+					range[i * 6 + k + 3] = grid.index(k, bounds[i * 6 + k + 3]);
+				}
+				if (outside) {
+					range[i * 6] = -1;
+					continue;
+				}
+				for (int z = range[i * 6 + 2]; z <= range[i * 6 + 5]; z++)
+					for (int y = range[i * 6 + 1]; y <= range[i * 6 + 4]; y++)
+						for (int x = range[i * 6]; x <= range[i * 6 + 3]; x++)
+							count[grid.cell(x, y, z) + 1]++;
+			}
+
+			this.start = new int[count.length];
+			for (int c = 1; c < count.length; c++)
+				start[c] = start[c - 1] + count[c];
+
+			// second pass - fill the cells
+			this.items = new int[start[start.length - 1]];
+			int[] fill = new int[grid.size()];
+			System.arraycopy(start, 0, fill, 0, fill.length);
+			for (int i = 0; i < n; i++) {
+				if (range[i * 6] == -1)
+					continue;
+				for (int z = range[i * 6 + 2]; z <= range[i * 6 + 5]; z++)
+					for (int y = range[i * 6 + 1]; y <= range[i * 6 + 4]; y++)
+						for (int x = range[i * 6]; x <= range[i * 6 + 3]; x++)
+							items[fill[grid.cell(x, y, z)]++] = i;
+			}
+		}
+
+		/*
+		 * Returns the object indices of the given cell sorted by the minimum
+		 * x coordinate of their bounds.
+		 * 
+		 * @param c cell number
+		 * 
+		 * @param bounds bounds of the objects
+		 * 
+		 * @return Integer[] - sorted object indices.
+		 */
+		private Integer[] sorted(int c, final double[] bounds) {
+			Integer[] result = new Integer[start[c + 1] - start[c]];
+			for (int i = 0; i < result.length; i++)
+				result[i] = Integer.valueOf(items[start[c] + i]);
+			Arrays.sort(result, new Comparator() {
+				public int compare(Object o1, Object o2) {
+					return Double.compare(bounds[((Integer) o1).intValue() * 6],
+							bounds[((Integer) o2).intValue() * 6]);
+				}
+			});
+			return result;
+		}
+
+		/*
+		 * Tests whether the given cell is empty.
+		 * 
+		 * @param c cell number
+		 * 
+		 * @return boolean - true if empty, false otherwise.
+		 */
+		private boolean isEmpty(int c) {
+			return start[c] == start[c + 1];
+		}
+	}
+
+	/*
+	 * Task joining a range of grid cells. Large ranges are split in halves.<br>
+	 * <br> Transient class
+	 */
+	private final static class CellTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		/* objects of the first set */
+		private final GeoObj[] first;
+
+		/* objects of the second set */
+		private final GeoObj[] second;
+
+		/* bounds of the first set */
+		private final double[] boundsA;
+
+		/* bounds of the second set */
+		private final double[] boundsB;
+
+		/* partition of the first set */
+		private final Partition partA;
+
+		/* partition of the second set */
+		private final Partition partB;
+
+		/* grid of the partitions */
+		private final Grid grid;
+
+		/* ScalarOperator for the refinement */
+		private final ScalarOperator sop;
+
+		/* receiver of the result pairs */
+		private final JoinSink sink;
+
+		/* first cell of the range */
+		private final int from;
+
+		/* end of the range (exclusive) */
+		private final int to;
+
+		/*
+		 * Constructor.
+		 */
+		private CellTask(GeoObj[] first, GeoObj[] second, double[] boundsA,
+				double[] boundsB, Partition partA, Partition partB, Grid grid,
+				ScalarOperator sop, JoinSink sink, int from, int to) {
+			this.first = first;
+			this.second = second;
+			this.boundsA = boundsA;
+			this.boundsB = boundsB;
+			this.partA = partA;
+			this.partB = partB;
+			this.grid = grid;
+			this.sop = sop;
+			this.sink = sink;
+			this.from = from;
+			this.to = to;
+		}
+
+		/*
+		 * Joins the cells of the range or splits the range.
+		 * 
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		protected void compute() {
+			if (to - from > CELLS_PER_TASK) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new CellTask(first, second, boundsA, boundsB, partA,
+						partB, grid, sop, sink, from, middle), new CellTask(
+						first, second, boundsA, boundsB, partA, partB, grid,
+						sop, sink, middle, to));
+				return;
+			}
+			for (int c = from; c < to && !sink.isStopped(); c++)
+				if (!partA.isEmpty(c) && !partB.isEmpty(c))
+					join(c);
+		}
+
+		/*
+		 * Joins the objects of the given cell by a plane sweep along the x
+		 * axis.
+		 * 
+		 * @param c cell number
+		 */
+		private void join(int c) {
+			Integer[] as = partA.sorted(c, boundsA);
+			Integer[] bs = partB.sorted(c, boundsB);
+			int i = 0;
+			int j = 0;
+			while (i < as.length && j < bs.length && !sink.isStopped()) {
+				int a = as[i].intValue();
+				int b = bs[j].intValue();
+				if (boundsA[a * 6] <= boundsB[b * 6]) {
+					double maxX = boundsA[a * 6 + 3];
+					for (int k = j; k < bs.length
+							&& boundsB[bs[k].intValue() * 6] <= maxX; k++)
+						pair(c, a, bs[k].intValue());
+					i++;
+				} else {
+					double maxX = boundsB[b * 6 + 3];
+					for (int k = i; k < as.length
+							&& boundsA[as[k].intValue() * 6] <= maxX; k++)
+						pair(c, as[k].intValue(), b);
+					j++;
+				}
+			}
+		}
+
+		/*
+		 * Processes a candidate pair of the plane sweep.
+		 * 
+		 * @param c cell number
+		 * 
+		 * @param a index of the object of the first set
+		 * 
+		 * @param b index of the object of the second set
+		 */
+		private void pair(int c, int a, int b) {
+			int[] ref = new int[3];
+			for (int k = 0; k < 3; k++) {
+				double min = Math.max(boundsA[a * 6 + k], boundsB[b * 6 + k]);
+				double max = Math.min(boundsA[a * 6 + k + 3],
+						boundsB[b * 6 + k + 3]);
+				if (min > max)
+					return;
+				ref[k] = grid.index(k, min);
+			}
+			// reference point rule - report the pair in one cell only
+			if (grid.cell(ref[0], ref[1], ref[2]) != c)
+				return;
+			if (refine(first[a], second[b], sop))
+				sink.report(first[a], second[b]);
+		}
+	}
+
+}
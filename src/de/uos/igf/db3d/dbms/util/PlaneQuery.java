@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.dbms.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import de.uos.igf.db3d.dbms.geom.MBB3D;
+import de.uos.igf.db3d.dbms.geom.Plane3D;
+import de.uos.igf.db3d.dbms.geom.Point3D;
+import de.uos.igf.db3d.dbms.geom.ScalarOperator;
+import de.uos.igf.db3d.dbms.geom.Vector3D;
+
+/**
+ * PlaneQuery - helper for the plane stabbing queries of the SAMs.<br>
+ * The query holds one or more parallel planes as their common unit normal
+ * and their sorted offsets along it. A box with the center c and the half
+ * extents h is cut by the planes whose offset lies in [n*c - r; n*c + r],
+ * where r = |n.x|*h.x + |n.y|*h.y + |n.z|*h.z is the reach of the box along
+ * the normal. The planes of a box are found by binary search, and as the box
+ * of a son lies in the box of its father, the range of planes only narrows
+ * while descending a tree.
+ */
+final class PlaneQuery {
+
+	/* unit normal */
+	private final double nx, ny, nz;
+
+	/* sorted plane offsets along the normal */
+	private final double[] offsets;
+
+	/* original plane index of every sorted offset */
+	private final int[] planes;
+
+	/* epsilon of the ScalarOperator */
+	private final double eps;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param planes
+	 *            parallel Plane3D objects
+	 * @param sop
+	 *            ScalarOperator
+	 * @throws IllegalArgumentException
+	 *             if the planes are not parallel.
+	 */
+	PlaneQuery(Plane3D[] planes, ScalarOperator sop) {
+		this.eps = sop.getEpsilon();
+		this.offsets = new double[planes.length];
+		this.planes = new int[planes.length];
+		if (planes.length == 0) {
+			nx = ny = nz = 0;
+			return;
+		}
+		Vector3D n = planes[0].getNormalVector();
+		double norm = n.getNorm();
+		nx = n.getX() / norm;
+		ny = n.getY() / norm;
+		nz = n.getZ() / norm;
+
+		double[] help = new double[planes.length];
+		for (int i = 0; i < planes.length; i++) {
+			if (i > 0 && !planes[i].isParallel(planes[0], sop))
+				throw new IllegalArgumentException("IllegalParameters");
+			Vector3D p = planes[i].getPositionVector();
+			help[i] = nx * p.getX() + ny * p.getY() + nz * p.getZ();
+		}
+		// sort the plane indexes by offset
+		Integer[] order = new Integer[planes.length];
+		for (int i = 0; i < order.length; i++)
+			order[i] = Integer.valueOf(i);
+		final double[] h = help;
+		Arrays.sort(order, new Comparator() {
+			public int compare(Object o1, Object o2) {
+				return Double.compare(h[((Integer) o1).intValue()],
+						h[((Integer) o2).intValue()]);
+			}
+		});
+		for (int i = 0; i < order.length; i++) {
+			this.planes[i] = order[i].intValue();
+			this.offsets[i] = help[this.planes[i]];
+		}
+	}
+
+	/**
+	 * Returns the number of planes.
+	 * 
+	 * @return int - number of planes.
+	 */
+	int getNumber() {
+		return offsets.length;
+	}
+
+	/**
+	 * Returns the original index of the plane at the given sorted position.
+	 * 
+	 * @param i
+	 *            sorted position
+	 * @return int - index of the plane in the query array.
+	 */
+	int getPlane(int i) {
+		return planes[i];
+	}
+
+	/**
+	 * Returns the first sorted position in [from; to) of a plane cutting the
+	 * given box, or the first position after the box.
+	 * 
+	 * @param box
+	 *            boxes - 6 doubles per box
+	 * @param b
+	 *            offset of the box
+	 * @param from
+	 *            first sorted position
+	 * @param to
+	 *            position after the last one
+	 * @return int - first sorted position.
+	 */
+	int lower(double[] box, int b, int from, int to) {
+		return search(projection(box[b] + box[b + 3], box[b + 1] + box[b + 4],
+				box[b + 2] + box[b + 5])
+				- reach(box[b + 3] - box[b], box[b + 4] - box[b + 1],
+						box[b + 5] - box[b + 2]) - eps, false, from, to);
+	}
+
+	/**
+	 * Returns the sorted position after the last plane in [from; to) cutting
+	 * the given box.
+	 * 
+	 * @param box
+	 *            boxes - 6 doubles per box
+	 * @param b
+	 *            offset of the box
+	 * @param from
+	 *            first sorted position
+	 * @param to
+	 *            position after the last one
+	 * @return int - position after the last plane.
+	 */
+	int upper(double[] box, int b, int from, int to) {
+		return search(projection(box[b] + box[b + 3], box[b + 1] + box[b + 4],
+				box[b + 2] + box[b + 5])
+				+ reach(box[b + 3] - box[b], box[b + 4] - box[b + 1],
+						box[b + 5] - box[b + 2]) + eps, true, from, to);
+	}
+
+	/**
+	 * Returns the first sorted position in [from; to) of a plane cutting the
+	 * given MBB3D, or the first position after the MBB3D.
+	 * 
+	 * @param mbb
+	 *            MBB3D
+	 * @param from
+	 *            first sorted position
+	 * @param to
+	 *            position after the last one
+	 * @return int - first sorted position.
+	 */
+	int lower(MBB3D mbb, int from, int to) {
+		Point3D min = mbb.getPMin();
+		Point3D max = mbb.getPMax();
+		return search(projection(min.getX() + max.getX(), min.getY()
+				+ max.getY(), min.getZ() + max.getZ())
+				- reach(max.getX() - min.getX(), max.getY() - min.getY(),
+						max.getZ() - min.getZ()) - eps, false, from, to);
+	}
+
+	/**
+	 * Returns the sorted position after the last plane in [from; to) cutting
+	 * the given MBB3D.
+	 * 
+	 * @param mbb
+	 *            MBB3D
+	 * @param from
+	 *            first sorted position
+	 * @param to
+	 *            position after the last one
+	 * @return int - position after the last plane.
+	 */
+	int upper(MBB3D mbb, int from, int to) {
+		Point3D min = mbb.getPMin();
+		Point3D max = mbb.getPMax();
+		return search(projection(min.getX() + max.getX(), min.getY()
+				+ max.getY(), min.getZ() + max.getZ())
+				+ reach(max.getX() - min.getX(), max.getY() - min.getY(),
+						max.getZ() - min.getZ()) + eps, true, from, to);
+	}
+
+	/**
+	 * Returns the first sorted position in [from; to) of a plane cutting the
+	 * given cube, or the first position after the cube.
+	 * 
+	 * @param center
+	 *            center of the cube
+	 * @param half
+	 *            half edge length of the cube
+	 * @param from
+	 *            first sorted position
+	 * @param to
+	 *            position after the last one
+	 * @return int - first sorted position.
+	 */
+	int lower(double[] center, double half, int from, int to) {
+		return search(projection(2 * center[0], 2 * center[1], 2 * center[2])
+				- reach(2 * half, 2 * half, 2 * half) - eps, false, from, to);
+	}
+
+	/**
+	 * Returns the sorted position after the last plane in [from; to) cutting
+	 * the given cube.
+	 * 
+	 * @param center
+	 *            center of the cube
+	 * @param half
+	 *            half edge length of the cube
+	 * @param from
+	 *            first sorted position
+	 * @param to
+	 *            position after the last one
+	 * @return int - position after the last plane.
+	 */
+	int upper(double[] center, double half, int from, int to) {
+		return search(projection(2 * center[0], 2 * center[1], 2 * center[2])
+				+ reach(2 * half, 2 * half, 2 * half) + eps, true, from, to);
+	}
+
+	/*
+	 * Returns the offset of the point at half the given coordinates along the
+	 * normal.
+	 */
+	private double projection(double x2, double y2, double z2) {
+		return (nx * x2 + ny * y2 + nz * z2) / 2;
+	}
+
+	/*
+	 * Returns the reach along the normal of a box with the given edge
+	 * lengths.
+	 */
+	private double reach(double dx, double dy, double dz) {
+		return (Math.abs(nx) * dx + Math.abs(ny) * dy + Math.abs(nz) * dz) / 2;
+	}
+
+	/*
+	 * Binary search in the sorted offsets.
+	 * 
+	 * @param value search value
+	 * 
+	 * @param after false for the first offset >= value, true for the first
+	 * offset > value
+	 * 
+	 * @param from first sorted position
+	 * 
+	 * @param to position after the last one
+	 * 
+	 * @return int - sorted position in [from; to].
+	 */
+	private int search(double value, boolean after, int from, int to) {
+		int low = from;
+		int high = to;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (offsets[middle] < value || (after && offsets[middle] == value))
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+}
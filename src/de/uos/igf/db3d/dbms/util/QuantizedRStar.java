@@ -0,0 +1,1011 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.dbms.util;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import de.uos.igf.db3d.dbms.geom.MBB3D;
+import de.uos.igf.db3d.dbms.geom.Plane3D;
+import de.uos.igf.db3d.dbms.geom.Point3D;
+import de.uos.igf.db3d.dbms.geom.ScalarOperator;
+import de.uos.igf.db3d.dbms.structure.GeoObj;
+import de.uos.igf.db3d.dbms.structure.PersistentObject;
+
+/**
+ * Class QuantizedRStar - read only snapshot of a RStar with compressed
+ * nodes. <br>
+ * <br>
+ * The nodes are numbered in breadth first order like in the PackedRStar, but
+ * the box of an entry is not stored in doubles. Every coordinate is stored as
+ * an 8 or 16 bit grid index relative to the box of the node containing the
+ * entry, the minimum rounded down and the maximum rounded up. The decoded
+ * boxes therefore contain the exact boxes, and a query on the decoded boxes
+ * never misses a result. The exact box of a candidate object is tested at the
+ * leaves, using the MBB3D of the object. <br>
+ * The son node of an inner entry and the object of a leaf entry follow from
+ * the breadth first numbering, so no references are stored. An entry takes 6
+ * bytes with 8 bit and 12 bytes with 16 bit coordinates, compared to 52 bytes
+ * in the PackedRStar. 8 bit coordinates give a smaller index but looser boxes
+ * and more exact tests at the leaves. <br>
+ * Instances are created by {@link RStar#compress(int)}. The methods insert
+ * and remove throw an UnsupportedOperationException. <br>
+ * <br>
+ * Default Serialization (Serializable)
+ */
+public final class QuantizedRStar implements SAM, PersistentObject {
+
+	private static final long serialVersionUID = 1L;
+
+	/* quantized entry boxes - 6 codes of 1 or 2 bytes per entry */
+	private final byte[] codes;
+
+	/* bits per coordinate - 8 or 16 */
+	private final int bits;
+
+	/* index of the first entry for every node, last field is entry count */
+	private final int[] nodeFirst;
+
+	/* index of the first leaf node */
+	private final int firstLeaf;
+
+	/* exact box of the root node */
+	private final double[] rootBox;
+
+	/* indexed objects in the order of the leaf entries */
+	private final Object[] objects;
+
+	/* scalar operator */
+	private final ScalarOperator sop;
+
+	/**
+	 * Constructor.<br>
+	 * Quantizes the given packed tree. Called by PackedRStar.quantize(int).
+	 * 
+	 * @param bounds
+	 *            entry bounds - 6 doubles per entry
+	 * @param nodeFirst
+	 *            first entry index of every node plus the number of entries
+	 * @param firstLeaf
+	 *            index of the first leaf node
+	 * @param objects
+	 *            indexed objects in the order of the leaf entries
+	 * @param sop
+	 *            ScalarOperator
+	 * @param bits
+	 *            bits per coordinate - 8 or 16
+	 * @throws IllegalArgumentException
+	 *             if bits is not 8 or 16.
+	 */
+	QuantizedRStar(double[] bounds, int[] nodeFirst, int firstLeaf,
+			Object[] objects, ScalarOperator sop, int bits) {
+		if (bits != 8 && bits != 16)
+			throw new IllegalArgumentException("IllegalParameters");
+		this.bits = bits;
+		this.nodeFirst = nodeFirst;
+		this.firstLeaf = firstLeaf;
+		this.objects = objects;
+		this.sop = sop;
+
+		int entries = nodeFirst[nodeFirst.length - 1];
+		this.codes = new byte[entries * 6 * (bits / 8)];
+		this.rootBox = new double[6];
+		if (objects.length == 0)
+			return;
+
+		// exact root box
+		System.arraycopy(bounds, 6 * nodeFirst[0], rootBox, 0, 6);
+		for (int e = nodeFirst[0] + 1; e < nodeFirst[1]; e++)
+			for (int k = 0; k < 3; k++) {
+				rootBox[k] = Math.min(rootBox[k], bounds[6 * e + k]);
+				rootBox[k + 3] = Math.max(rootBox[k + 3],
+						bounds[6 * e + k + 3]);
+			}
+
+		// the frame of a node is the decoded box of its entry in the father
+		double[] frames = new double[6 * (nodeFirst.length - 1)];
+		System.arraycopy(rootBox, 0, frames, 0, 6);
+		double[] box = new double[6];
+		for (int n = 0; n < nodeFirst.length - 1; n++) {
+			for (int e = nodeFirst[n]; e < nodeFirst[n + 1]; e++) {
+				encode(e, bounds, 6 * e, frames, 6 * n);
+				if (n < firstLeaf) {
+					decode(e, frames, 6 * n, box);
+					System.arraycopy(box, 0, frames, 6 * (e + 1), 6);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of bits per coordinate.
+	 * 
+	 * @return int - 8 or 16.
+	 */
+	public int getBits() {
+		return bits;
+	}
+
+	/**
+	 * Returns the size of the node arrays in bytes, without the objects.
+	 * 
+	 * @return long - size in bytes.
+	 */
+	public long getIndexSize() {
+		return codes.length + 4L * nodeFirst.length + 8L * rootBox.length;
+	}
+
+	/**
+	 * Returns the number of objects in the QuantizedRStar.
+	 * 
+	 * @return int - number of objects.
+	 */
+	public int getCount() {
+		return objects.length;
+	}
+
+	/**
+	 * Returns the MBB3D of the objects in this.
+	 * 
+	 * @return MBB3D - MBB3D of this, <code>null</code> if empty.
+	 */
+	public MBB3D getMBB() {
+		if (objects.length == 0)
+			return null;
+		return new MBB3D(new Point3D(rootBox[0], rootBox[1], rootBox[2]),
+				new Point3D(rootBox[3], rootBox[4], rootBox[5]));
+	}
+
+	/**
+	 * Retrieves all entries in the QuantizedRStar.
+	 * 
+	 * @return Set - all entries.
+	 */
+	public Set getEntries() {
+		Set set = new HashSet(objects.length * 2);
+		for (int i = 0; i < objects.length; i++)
+			set.add(objects[i]);
+		return set;
+	}
+
+	/**
+	 * Not supported - a QuantizedRStar is read only.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             always.
+	 */
+	public boolean insert(GeoObj go) {
+		throw new UnsupportedOperationException(
+				"QuantizedRStar is a read only snapshot.");
+	}
+
+	/**
+	 * Not supported - a QuantizedRStar is read only.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             always.
+	 */
+	public boolean remove(GeoObj go) {
+		throw new UnsupportedOperationException(
+				"QuantizedRStar is a read only snapshot.");
+	}
+
+	/**
+	 * Returns the set of objects which intersect the given MBB3D strict.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set intersectsStrict(MBB3D mbb) {
+		return retrieve(mbb, PackedRStar.INTERSECTS_STRICT_PREDICATE);
+	}
+
+	/**
+	 * Returns the set of objects which intersect the given MBB3D.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set intersects(MBB3D mbb) {
+		return retrieve(mbb, PackedRStar.INTERSECTS_PREDICATE);
+	}
+
+	/**
+	 * Returns the set of objects which contain the given MBB3D strict.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set containsStrict(MBB3D mbb) {
+		return retrieve(mbb, PackedRStar.CONTAINS_STRICT_PREDICATE);
+	}
+
+	/**
+	 * Returns the set of objects which contain the given MBB3D.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set contains(MBB3D mbb) {
+		return retrieve(mbb, PackedRStar.CONTAINS_PREDICATE);
+	}
+
+	/**
+	 * Returns the set of objects which are inside the given MBB3D strict.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set insideStrict(MBB3D mbb) {
+		return retrieve(mbb, PackedRStar.INSIDE_STRICT_PREDICATE);
+	}
+
+	/**
+	 * Returns the set of objects which are inside the given MBB3D.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set inside(MBB3D mbb) {
+		return retrieve(mbb, PackedRStar.INSIDE_PREDICATE);
+	}
+
+	/**
+	 * Returns the set of objects which contain the given point.
+	 * 
+	 * @param point
+	 *            the Point3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set contains(Point3D point) {
+		Set set = new HashSet();
+		retrieve(toBox(point), PackedRStar.CONTAINS_PREDICATE, set, null);
+		return set;
+	}
+
+	/**
+	 * Passes the objects which intersect the given MBB3D strict to the
+	 * visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            Visitor receiving the result objects
+	 * @return boolean - false if the visitor terminated the query, true
+	 *         otherwise.
+	 */
+	public boolean intersectsStrict(MBB3D mbb, Visitor visitor) {
+		return retrieve(toBox(mbb), PackedRStar.INTERSECTS_STRICT_PREDICATE,
+				null, visitor);
+	}
+
+	/**
+	 * Passes the objects which intersect the given MBB3D to the visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            Visitor receiving the result objects
+	 * @return boolean - false if the visitor terminated the query, true
+	 *         otherwise.
+	 */
+	public boolean intersects(MBB3D mbb, Visitor visitor) {
+		return retrieve(toBox(mbb), PackedRStar.INTERSECTS_PREDICATE, null,
+				visitor);
+	}
+
+	/**
+	 * Passes the objects which contain the given MBB3D strict to the visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            Visitor receiving the result objects
+	 * @return boolean - false if the visitor terminated the query, true
+	 *         otherwise.
+	 */
+	public boolean containsStrict(MBB3D mbb, Visitor visitor) {
+		return retrieve(toBox(mbb), PackedRStar.CONTAINS_STRICT_PREDICATE,
+				null, visitor);
+	}
+
+	/**
+	 * Passes the objects which contain the given MBB3D to the visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            Visitor receiving the result objects
+	 * @return boolean - false if the visitor terminated the query, true
+	 *         otherwise.
+	 */
+	public boolean contains(MBB3D mbb, Visitor visitor) {
+		return retrieve(toBox(mbb), PackedRStar.CONTAINS_PREDICATE, null,
+				visitor);
+	}
+
+	/**
+	 * Passes the objects which are inside the given MBB3D strict to the
+	 * visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            Visitor receiving the result objects
+	 * @return boolean - false if the visitor terminated the query, true
+	 *         otherwise.
+	 */
+	public boolean insideStrict(MBB3D mbb, Visitor visitor) {
+		return retrieve(toBox(mbb), PackedRStar.INSIDE_STRICT_PREDICATE,
+				null, visitor);
+	}
+
+	/**
+	 * Passes the objects which are inside the given MBB3D to the visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            Visitor receiving the result objects
+	 * @return boolean - false if the visitor terminated the query, true
+	 *         otherwise.
+	 */
+	public boolean inside(MBB3D mbb, Visitor visitor) {
+		return retrieve(toBox(mbb), PackedRStar.INSIDE_PREDICATE, null,
+				visitor);
+	}
+
+	/**
+	 * Passes the objects which contain the given point to the visitor.
+	 * 
+	 * @param point
+	 *            the Point3D object for test
+	 * @param visitor
+	 *            Visitor receiving the result objects
+	 * @return boolean - false if the visitor terminated the query, true
+	 *         otherwise.
+	 */
+	public boolean contains(Point3D point, Visitor visitor) {
+		return retrieve(toBox(point), PackedRStar.CONTAINS_PREDICATE, null,
+				visitor);
+	}
+
+	/**
+	 * Returns for each of the given MBB3D objects the set of objects which
+	 * intersect it. The Set for <code>mbbs[i]</code> is stored at index
+	 * <code>i</code> of the result.<br>
+	 * The queries are ordered along a space filling curve and each run of
+	 * neighbouring queries is answered with one traversal of the tree, large
+	 * batches in parallel.
+	 * 
+	 * @param mbbs
+	 *            the MBB3D objects for test
+	 * @return Set[] - a Set object containing the result for every MBB3D.
+	 */
+	public Set[] intersects(MBB3D[] mbbs) {
+		final Set[] result = BatchQuery.createResult(mbbs.length);
+		if (objects.length == 0)
+			return result;
+		final double[][] boxes = new double[mbbs.length][];
+		for (int i = 0; i < mbbs.length; i++)
+			boxes[i] = toBox(mbbs[i]);
+		BatchQuery.run(mbbs, new BatchQuery.Run() {
+			public void query(int[] queries, int number) {
+				intersects(0, rootBox, boxes, queries, number, result);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Returns the set of objects whose MBB3D intersects the given plane.
+	 * 
+	 * @param plane
+	 *            the Plane3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set intersects(Plane3D plane) {
+		return intersects(new Plane3D[] { plane })[0];
+	}
+
+	/**
+	 * Passes the objects whose MBB3D intersects the given plane to the given
+	 * visitor.
+	 * 
+	 * @param plane
+	 *            the Plane3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean intersects(Plane3D plane, Visitor visitor) {
+		if (objects.length == 0)
+			return true;
+		return intersects(0, rootBox, new PlaneQuery(
+				new Plane3D[] { plane }, sop), 0, 1, null, visitor);
+	}
+
+	/**
+	 * Returns for each of the given parallel planes the set of objects whose
+	 * MBB3D intersects it. The Set for <code>planes[i]</code> is stored at
+	 * index <code>i</code> of the result.<br>
+	 * The planes are answered with one traversal of the tree.
+	 * 
+	 * @param planes
+	 *            parallel Plane3D objects for test
+	 * @return Set[] - a Set object containing the result for every plane.
+	 * @throws IllegalArgumentException
+	 *             if the planes are not parallel.
+	 */
+	public Set[] intersects(Plane3D[] planes) {
+		PlaneQuery query = new PlaneQuery(planes, sop);
+		Set[] result = BatchQuery.createResult(planes.length);
+		if (objects.length != 0)
+			intersects(0, rootBox, query, 0, planes.length, result, null);
+		return result;
+	}
+
+	/**
+	 * Returns the <code>number</code> nearest neighbours of the given point.
+	 * <br>
+	 * The result array is sorted in ascending order based on the distance
+	 * value. If less than <code>number</code> objects are indexed the
+	 * remaining result objects have a <code>null</code> reference and an
+	 * infinite distance.
+	 * 
+	 * @param number
+	 *            number of nearest neighbours to search
+	 * @param point
+	 *            the Point3D object for test
+	 * @return NNResult[] - an array of NNResult objects containing the result.
+	 */
+	public NNResult[] nearest(int number, Point3D point) {
+		NNResult[] result = new NNResult[number];
+		Iterator it = nearestIterator(point);
+		for (int i = 0; i < number; i++)
+			result[i] = it.hasNext() ? (NNResult) it.next()
+					: new QuantizedNNResult(Double.POSITIVE_INFINITY, null);
+		return result;
+	}
+
+	/**
+	 * Returns an Iterator over the objects in ascending order of their
+	 * distance to the given point. Each call of next() returns a NNResult
+	 * object. The neighbours are computed lazily by distance browsing, the
+	 * distances are those of the exact MBB3Ds of the objects.
+	 * 
+	 * @param point
+	 *            the Point3D object for test
+	 * @return Iterator - Iterator over NNResult objects.
+	 */
+	public Iterator nearestIterator(Point3D point) {
+		return new QuantizedNNIterator(new double[] { point.getX(),
+				point.getY(), point.getZ() });
+	}
+
+	/**
+	 * Returns the <code>number</code> objects which are nearest to the given
+	 * point with respect to their exact geometry.
+	 * 
+	 * @param number
+	 *            number of nearest neighbours to search
+	 * @param point
+	 *            the Point3D object for test
+	 * @return NNResult[] - an array of NNResult objects sorted by distance.
+	 */
+	public NNResult[] nearestExact(int number, Point3D point) {
+		return ExactDistanceSearch.nearest(nearestIterator(point), number,
+				point);
+	}
+
+	/**
+	 * Returns the objects whose exact geometry has at most the given distance
+	 * to the given point.
+	 * 
+	 * @param point
+	 *            the Point3D object for test
+	 * @param distance
+	 *            the maximal distance
+	 * @return NNResult[] - an array of NNResult objects sorted by distance.
+	 * @throws IllegalArgumentException
+	 *             if distance is negative.
+	 */
+	public NNResult[] withinDistance(Point3D point, double distance) {
+		return ExactDistanceSearch.within(nearestIterator(point), point,
+				distance);
+	}
+
+	/**
+	 * Converts this to string.
+	 * 
+	 * @return String with the information of this.
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return "<QuantizedRStar nodes=\"" + (nodeFirst.length - 1)
+				+ "\" objects=\"" + objects.length + "\" bits=\"" + bits
+				+ "\"/>";
+	}
+
+	/*
+	 * Retrieves the objects for the given MBB3D and predicate.
+	 * 
+	 * @param mbb query MBB3D
+	 * 
+	 * @param predicate predicate constant of PackedRStar
+	 * 
+	 * @return Set - result Set.
+	 */
+	private Set retrieve(MBB3D mbb, int predicate) {
+		Set set = new HashSet();
+		retrieve(toBox(mbb), predicate, set, null);
+		return set;
+	}
+
+	/*
+	 * Passes the objects for the given query box and predicate to the given
+	 * visitor, or adds them to the given Set if the visitor is null.
+	 * 
+	 * @param q query box as 6 doubles
+	 * 
+	 * @param predicate predicate constant of PackedRStar
+	 * 
+	 * @param set Set for the result, used if visitor is null
+	 * 
+	 * @param visitor Visitor receiving the result objects or null
+	 * 
+	 * @return boolean - false if the visitor terminated the query, true
+	 * otherwise.
+	 */
+	private boolean retrieve(double[] q, int predicate, Set set,
+			Visitor visitor) {
+		if (objects.length == 0)
+			return true;
+		return retrieve(0, rootBox, q, predicate, set, visitor);
+	}
+
+	/*
+	 * Recursive part of retrieve for the subtree of the given node. The
+	 * decoded boxes are tested with the predicate of the inner nodes, which
+	 * is conservative for larger boxes, the exact predicate is tested on the
+	 * MBB3D of the objects.
+	 * 
+	 * @param node node index
+	 * 
+	 * @param frame box of the node
+	 * 
+	 * @param q query box as 6 doubles
+	 * 
+	 * @param predicate predicate constant of PackedRStar
+	 * 
+	 * @param set Set for the result, used if visitor is null
+	 * 
+	 * @param visitor Visitor receiving the result objects or null
+	 * 
+	 * @return boolean - false if the visitor terminated the query, true
+	 * otherwise.
+	 */
+	private boolean retrieve(int node, double[] frame, double[] q,
+			int predicate, Set set, Visitor visitor) {
+		double eps = sop.getEpsilon();
+		boolean leaf = node >= firstLeaf;
+		double[] box = new double[6];
+		for (int e = nodeFirst[node]; e < nodeFirst[node + 1]; e++) {
+			decode(e, frame, 0, box);
+			if (!PackedRStar.test(box, 0, q, predicate, false, eps))
+				continue;
+			if (leaf) {
+				Object obj = objects[e - nodeFirst[firstLeaf]];
+				if (!PackedRStar.test(exactBox(obj), 0, q, predicate, true,
+						eps))
+					continue;
+				if (visitor == null)
+					set.add(obj);
+				else if (!visitor.visit(obj))
+					return false;
+			} else {
+				if (!retrieve(e + 1, box, q, predicate, set, visitor))
+					return false;
+				box = new double[6];
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Answers the given intersects queries for the subtree of the given node.
+	 * The queries intersecting an entry are passed down together.
+	 * 
+	 * @param node node index
+	 * 
+	 * @param frame box of the node
+	 * 
+	 * @param boxes query boxes of the batch
+	 * 
+	 * @param queries indexes of the queries to answer
+	 * 
+	 * @param number number of valid indexes in queries
+	 * 
+	 * @param result Sets of the batch
+	 */
+	private void intersects(int node, double[] frame, double[][] boxes,
+			int[] queries, int number, Set[] result) {
+		double eps = sop.getEpsilon();
+		boolean leaf = node >= firstLeaf;
+		int[] sub = new int[number];
+		double[] box = new double[6];
+		for (int e = nodeFirst[node]; e < nodeFirst[node + 1]; e++) {
+			decode(e, frame, 0, box);
+			double[] test = box;
+			Object obj = null;
+			if (leaf) {
+				obj = objects[e - nodeFirst[firstLeaf]];
+				test = exactBox(obj);
+			}
+			int k = 0;
+			for (int j = 0; j < number; j++)
+				if (PackedRStar.test(test, 0, boxes[queries[j]],
+						PackedRStar.INTERSECTS_PREDICATE, leaf, eps))
+					sub[k++] = queries[j];
+			if (k == 0)
+				continue;
+			if (leaf) {
+				for (int j = 0; j < k; j++)
+					result[sub[j]].add(obj);
+			} else {
+				intersects(e + 1, box, boxes, sub, k, result);
+				box = new double[6];
+			}
+		}
+	}
+
+	/*
+	 * Answers the planes [from; to) of the given query for the subtree of the
+	 * given node. The decoded boxes narrow the planes, at the leaves the
+	 * planes are tested against the MBB3D of the objects.
+	 * 
+	 * @param node node index
+	 * 
+	 * @param frame box of the node
+	 * 
+	 * @param query sorted parallel planes
+	 * 
+	 * @param from first sorted plane
+	 * 
+	 * @param to position after the last sorted plane
+	 * 
+	 * @param result Sets of the planes, or null if the visitor is used
+	 * 
+	 * @param visitor Visitor receiving the objects
+	 * 
+	 * @return boolean - false if the visitor terminated the query, true
+	 * otherwise.
+	 */
+	private boolean intersects(int node, double[] frame, PlaneQuery query,
+			int from, int to, Set[] result, Visitor visitor) {
+		boolean leaf = node >= firstLeaf;
+		double[] box = new double[6];
+		for (int e = nodeFirst[node]; e < nodeFirst[node + 1]; e++) {
+			decode(e, frame, 0, box);
+			int lower = query.lower(box, 0, from, to);
+			int upper = query.upper(box, 0, lower, to);
+			if (lower == upper)
+				continue;
+			if (!leaf) {
+				if (!intersects(e + 1, box, query, lower, upper, result,
+						visitor))
+					return false;
+				box = new double[6];
+				continue;
+			}
+			Object obj = objects[e - nodeFirst[firstLeaf]];
+			MBB3D mbb = ((GeoObj) obj).getMBB();
+			lower = query.lower(mbb, lower, upper);
+			upper = query.upper(mbb, lower, upper);
+			if (lower == upper)
+				continue;
+			if (result == null) {
+				if (!visitor.visit(obj))
+					return false;
+			} else {
+				for (int j = lower; j < upper; j++)
+					result[query.getPlane(j)].add(obj);
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Quantizes the box at the given offset relative to the given frame and
+	 * stores the codes of entry e. Minima are rounded down and maxima up, so
+	 * the decoded box contains the box.
+	 * 
+	 * @param e entry index
+	 * 
+	 * @param bounds boxes
+	 * 
+	 * @param b offset of the box in bounds
+	 * 
+	 * @param frames frames
+	 * 
+	 * @param f offset of the frame in frames
+	 */
+	private void encode(int e, double[] bounds, int b, double[] frames, int f) {
+		int levels = (1 << bits) - 1;
+		for (int k = 0; k < 3; k++) {
+			double low = frames[f + k];
+			double high = frames[f + k + 3];
+			double extent = high - low;
+			int qMin = 0;
+			int qMax = levels;
+			if (extent > 0) {
+				qMin = (int) Math.floor((bounds[b + k] - low) / extent * levels);
+				qMin = Math.max(0, Math.min(levels, qMin));
+				while (qMin > 0
+						&& value(qMin, low, high, levels) > bounds[b + k])
+					qMin--;
+				qMax = (int) Math.ceil((bounds[b + k + 3] - low) / extent
+						* levels);
+				qMax = Math.max(0, Math.min(levels, qMax));
+				while (qMax < levels
+						&& value(qMax, low, high, levels) < bounds[b + k + 3])
+					qMax++;
+			}
+			setCode(6 * e + k, qMin);
+			setCode(6 * e + k + 3, qMax);
+		}
+	}
+
+	/*
+	 * Decodes the box of entry e relative to the given frame.
+	 * 
+	 * @param e entry index
+	 * 
+	 * @param frames frames
+	 * 
+	 * @param f offset of the frame in frames
+	 * 
+	 * @param box array receiving the box
+	 */
+	private void decode(int e, double[] frames, int f, double[] box) {
+		int levels = (1 << bits) - 1;
+		for (int k = 0; k < 3; k++) {
+			double low = frames[f + k];
+			double high = frames[f + k + 3];
+			box[k] = value(getCode(6 * e + k), low, high, levels);
+			box[k + 3] = value(getCode(6 * e + k + 3), low, high, levels);
+		}
+	}
+
+	/*
+	 * Returns the coordinate of the given grid index. The ends of the grid
+	 * are returned exactly.
+	 * 
+	 * @param q grid index
+	 * 
+	 * @param low minimum of the frame
+	 * 
+	 * @param high maximum of the frame
+	 * 
+	 * @param levels highest grid index
+	 * 
+	 * @return double - coordinate.
+	 */
+	private static double value(int q, double low, double high, int levels) {
+		if (q == levels)
+			return high;
+		return low + (high - low) * q / levels;
+	}
+
+	/*
+	 * Returns the code at the given index.
+	 */
+	private int getCode(int i) {
+		if (bits == 8)
+			return codes[i] & 0xff;
+		return ((codes[2 * i] & 0xff) << 8) | (codes[2 * i + 1] & 0xff);
+	}
+
+	/*
+	 * Sets the code at the given index.
+	 */
+	private void setCode(int i, int code) {
+		if (bits == 8)
+			codes[i] = (byte) code;
+		else {
+			codes[2 * i] = (byte) (code >> 8);
+			codes[2 * i + 1] = (byte) code;
+		}
+	}
+
+	/*
+	 * Returns the exact box of the given object.
+	 */
+	private static double[] exactBox(Object obj) {
+		return toBox(((GeoObj) obj).getMBB());
+	}
+
+	/*
+	 * Converts the given MBB3D to a box of six doubles.
+	 */
+	private static double[] toBox(MBB3D mbb) {
+		Point3D min = mbb.getPMin();
+		Point3D max = mbb.getPMax();
+		return new double[] { min.getX(), min.getY(), min.getZ(), max.getX(),
+				max.getY(), max.getZ() };
+	}
+
+	/*
+	 * Converts the given point to a degenerated box of six doubles.
+	 */
+	private static double[] toBox(Point3D point) {
+		return new double[] { point.getX(), point.getY(), point.getZ(),
+				point.getX(), point.getY(), point.getZ() };
+	}
+
+	/*
+	 * Candidate of the incremental nearest neighbour search - a node with its
+	 * decoded box or an object. <br> <br> Transient class
+	 */
+	private final static class Candidate {
+
+		/* squared minimal distance */
+		private final double distance;
+
+		/* node index, or object index for objects */
+		private final int id;
+
+		/* decoded box of a node, null for objects */
+		private final double[] box;
+
+		/*
+		 * Constructor.
+		 */
+		private Candidate(double distance, int id, double[] box) {
+			this.distance = distance;
+			this.id = id;
+			this.box = box;
+		}
+	}
+
+	/*
+	 * Iterator for the incremental nearest neighbour search (distance
+	 * browsing). Objects come before nodes on equal distances. <br> <br>
+	 * Transient class
+	 */
+	private final class QuantizedNNIterator implements Iterator {
+
+		/* query point coordinates */
+		private final double[] p;
+
+		/* candidates ordered by distance */
+		private final PriorityQueue queue;
+
+		/*
+		 * Constructor.
+		 * 
+		 * @param p query point coordinates
+		 */
+		private QuantizedNNIterator(double[] p) {
+			this.p = p;
+			this.queue = new PriorityQueue(32, new Comparator() {
+				public int compare(Object o1, Object o2) {
+					Candidate c1 = (Candidate) o1;
+					Candidate c2 = (Candidate) o2;
+					if (c1.distance != c2.distance)
+						return c1.distance < c2.distance ? -1 : 1;
+					if ((c1.box == null) != (c2.box == null))
+						return c1.box == null ? -1 : 1;
+					return 0;
+				}
+			});
+			if (objects.length > 0)
+				queue.add(new Candidate(0.0, 0, rootBox));
+		}
+
+		/*
+		 * Tests whether a further neighbour exists.
+		 * 
+		 * @see java.util.Iterator#hasNext()
+		 */
+		public boolean hasNext() {
+			double eps = sop.getEpsilon();
+			// replace nodes at the head by their entries
+			while (!queue.isEmpty() && ((Candidate) queue.peek()).box != null) {
+				Candidate c = (Candidate) queue.poll();
+				boolean leaf = c.id >= firstLeaf;
+				for (int e = nodeFirst[c.id]; e < nodeFirst[c.id + 1]; e++) {
+					if (leaf) {
+						int o = e - nodeFirst[firstLeaf];
+						queue.add(new Candidate(PackedRStar.minDistSquare(
+								exactBox(objects[o]), 0, p, eps), o, null));
+					} else {
+						double[] box = new double[6];
+						decode(e, c.box, 0, box);
+						queue.add(new Candidate(PackedRStar.minDistSquare(box,
+								0, p, eps), e + 1, box));
+					}
+				}
+			}
+			return !queue.isEmpty();
+		}
+
+		/*
+		 * Returns the next neighbour as NNResult object.
+		 * 
+		 * @see java.util.Iterator#next()
+		 */
+		public Object next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			Candidate c = (Candidate) queue.poll();
+			return new QuantizedNNResult(Math.sqrt(c.distance), objects[c.id]);
+		}
+
+		/*
+		 * Not supported.
+		 * 
+		 * @see java.util.Iterator#remove()
+		 */
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/*
+	 * Implementation for SAM.NNResult of the QuantizedRStar. <br> <br>
+	 * Transient result value class
+	 */
+	private final static class QuantizedNNResult implements SAM.NNResult {
+
+		/* distance to the query point */
+		private final double distance;
+
+		/* result object */
+		private final Object reference;
+
+		/*
+		 * Constructor.
+		 * 
+		 * @param distance distance to the query point
+		 * 
+		 * @param reference result object
+		 */
+		private QuantizedNNResult(double distance, Object reference) {
+			this.distance = distance;
+			this.reference = reference;
+		}
+
+		/**
+		 * Returns the distance of this result object.
+		 * 
+		 * @return double - distance as double.
+		 */
+		public double getDistance() {
+			return distance;
+		}
+
+		/**
+		 * Returns the reference to the object.
+		 * 
+		 * @return Object - reference.
+		 */
+		public Object getObjectRef() {
+			return reference;
+		}
+	}
+
+}
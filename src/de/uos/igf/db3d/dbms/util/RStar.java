@@ -8,13 +8,24 @@ import java.io.PrintStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
 
 import de.uos.igf.db3d.dbms.geom.Equivalentable;
+import de.uos.igf.db3d.dbms.geom.GeomUtils;
 import de.uos.igf.db3d.dbms.geom.MBB3D;
+import de.uos.igf.db3d.dbms.geom.Plane3D;
 import de.uos.igf.db3d.dbms.geom.Point3D;
 import de.uos.igf.db3d.dbms.geom.ScalarOperator;
 import de.uos.igf.db3d.dbms.structure.GeoObj;
@@ -35,6 +46,8 @@ import de.uos.igf.db3d.dbms.structure.PersistentObject;
  * If you have objects indexed which needs a comparison based on geometry
  * equivalence you have to search the object first, test for geometry
  * equivalence and then use the retrieved object for removal !<br>
+ * Queries may run in parallel to a writer if the concurrent mode is switched
+ * on - see {@link #setConcurrent(boolean)}.<br>
  * <br>
  * Default Serialization (Serializable) - WBaer 07082003
  */
@@ -66,6 +79,15 @@ public final class RStar implements SAM, PersistentObject {
 	/* scalar operator */
 	private ScalarOperator sop;
 
+	/* lock for concurrent mode - null if concurrent mode is off */
+	private transient volatile StampedLock lock;
+
+	/* number of changes - checked by the nearest neighbour iterators */
+	private transient int modCount;
+
+	/* operation counters - null if the metrics are disabled */
+	private transient volatile Metrics metrics;
+
 	private final static int INTERSECTS_STRICT_PREDICATE = 0;
 	private final static int CONTAINS_STRICT_PREDICATE = 1;
 	private final static int INSIDE_STRICT_PREDICATE = 2;
@@ -76,6 +98,8 @@ public final class RStar implements SAM, PersistentObject {
 
 	private final static int EQUALS_PREDICATE = 5;
 
+	private final static int DISTANCE_PREDICATE = 6;
+
 	// methods
 
 	/**
@@ -122,6 +146,25 @@ public final class RStar implements SAM, PersistentObject {
 	 *             Triangle3D.
 	 */
 	public synchronized boolean insert(GeoObj obj) {
+		StampedLock l = this.lock;
+		long stamp = l == null ? 0L : l.writeLock();
+		try {
+			return insertPrivate(obj);
+		} finally {
+			if (l != null)
+				l.unlockWrite(stamp);
+		}
+	}
+
+	/*
+	 * Inserts the given GeoObj into the RStar. Called with the write lock
+	 * held in concurrent mode.
+	 * 
+	 * @param obj GeoObj to insert.
+	 * 
+	 * @return boolean - true if successfull, false otherwise
+	 */
+	private boolean insertPrivate(GeoObj obj) {
 		if (obj == null)
 			return false;
 		MBB3D mbb = obj.getMBB();
@@ -153,6 +196,9 @@ public final class RStar implements SAM, PersistentObject {
 
 			// increment counter
 			this.incCount();
+			Metrics m = metrics;
+			if (m != null)
+				m.inserts.increment();
 			return true;
 		} else { // already in entry return false
 			return false;
@@ -180,6 +226,25 @@ public final class RStar implements SAM, PersistentObject {
 	 *             Triangle3D.
 	 */
 	public synchronized boolean remove(GeoObj obj) {
+		StampedLock l = this.lock;
+		long stamp = l == null ? 0L : l.writeLock();
+		try {
+			return removePrivate(obj);
+		} finally {
+			if (l != null)
+				l.unlockWrite(stamp);
+		}
+	}
+
+	/*
+	 * Removes the given GeoObj from the RStar. Called with the write lock
+	 * held in concurrent mode.
+	 * 
+	 * @param obj GeoObj to remove.
+	 * 
+	 * @return boolean - true if successful, false otherwise
+	 */
+	private boolean removePrivate(GeoObj obj) {
 		MBB3D mbb = obj.getMBB();
 		// Here an IllegalArgumentException can be thrown.
 		if (mbb == null)
@@ -227,15 +292,251 @@ public final class RStar implements SAM, PersistentObject {
 							this.adjustHeightDiff(1);
 					}
 				}
+				// shrink the tree while the root has only one son left -
+				// otherwise a later underflow would empty the root
+				Node root = this.getRoot();
+				while (!root.isLeaf() && root.getUsed() == 1) {
+					root = (Node) root.getEntry(0).getSon();
+					root.setFather(null, 0);
+					this.setRoot(root, -1);
+				}
 			}
 		}
 		if (!object_found)
 			return false;
 
 		this.decCount();
+		Metrics m = metrics;
+		if (m != null)
+			m.removes.increment();
 		return true;
 	}
 
+	/**
+	 * Loads the given GeoObj array into the RStar at once.<br>
+	 * If the RStar is empty the tree is packed bottom up after the
+	 * Sort-Tile-Recursive algorithm (STR), which builds nodes that are filled
+	 * up to mMax and have little overlap. If the RStar already contains
+	 * entries, the objects are inserted one by one.<br>
+	 * <br>
+	 * Leutenegger, S. / Lopez, M. / Edgington, J. : STR: A Simple and
+	 * Efficient Algorithm for R-Tree Packing - In Proceedings of the 13th
+	 * ICDE 1997, pages 497 - 506. <br>
+	 * <br>
+	 * NOTE: The packed load does not test for objects already contained. The
+	 * given array must not contain an object twice !
+	 *
+	 * @param objects
+	 *            GeoObj[] to load, <code>null</code> elements are skipped
+	 * @return int - number of loaded objects.
+	 * @throws IllegalArgumentException
+	 *             if mbb of a given GeoObject is null.
+	 * @throws IllegalArgumentException
+	 *             if an attempt is made to construct a MBB3D whose maximum
+	 *             point is not greater than its minimum point.
+	 */
+	public synchronized int bulkLoad(GeoObj[] objects) {
+		StampedLock l = this.lock;
+		long stamp = l == null ? 0L : l.writeLock();
+		try {
+			return bulkLoadPrivate(objects);
+		} finally {
+			if (l != null)
+				l.unlockWrite(stamp);
+		}
+	}
+
+	/*
+	 * Loads the given GeoObj array into the RStar. Called with the write lock
+	 * held in concurrent mode.
+	 * 
+	 * @param objects GeoObj[] to load
+	 * 
+	 * @return int - number of loaded objects.
+	 */
+	private int bulkLoadPrivate(GeoObj[] objects) {
+		if (this.getCount() != 0) {
+			int loaded = 0;
+			for (int i = 0; i < objects.length; i++)
+				if (this.insertPrivate(objects[i]))
+					loaded++;
+			return loaded;
+		}
+
+		// build the leaf level entries
+		List list = new ArrayList(objects.length);
+		for (int i = 0; i < objects.length; i++) {
+			if (objects[i] == null)
+				continue;
+			MBB3D mbb = objects[i].getMBB();
+			if (mbb == null)
+				throw new IllegalArgumentException(
+						"MBB3D of given GeoObject is null.");
+			list.add(new Entry(mbb, objects[i]));
+		}
+		if (list.isEmpty())
+			return 0;
+
+		Entry[] level = (Entry[]) list.toArray(new Entry[list.size()]);
+		int levels = 0;
+		boolean leaf = true;
+
+		// pack level by level until all entries fit into the root
+		while (level.length > getMMax()) {
+			int runSize = strSort(level);
+			int[] ends = new int[2 * (level.length / getMMax()) + 2];
+			int nodes = 0;
+			for (int run = 0; run < level.length; run += runSize) {
+				int runEnd = Math.min(run + runSize, level.length);
+				// cut full nodes along the run
+				for (int start = run; start < runEnd; start += getMMax())
+					ends[nodes++] = Math.min(start + getMMax(), runEnd);
+				// rebalance the last node with its predecessor if it is
+				// underfull - only the last run may be shorter than mMin
+				int last = nodes > 1 ? ends[nodes - 2] : 0;
+				if (runEnd - last < getMMin() && nodes > 1) {
+					int prev = nodes > 2 ? ends[nodes - 3] : 0;
+					if (runEnd - prev <= getMMax()) {
+						nodes--;
+						ends[nodes - 1] = runEnd;
+					} else
+						ends[nodes - 2] = prev + (runEnd - prev) / 2;
+				}
+			}
+			Entry[] upper = new Entry[nodes];
+			int start = 0;
+			for (int i = 0; i < nodes; i++) {
+				Node node = new Node();
+				node.setLeaf(leaf);
+				for (int j = start; j < ends[i]; j++)
+					node.append(level[j]);
+				upper[i] = new Entry(node.computeNodeMBB(), node);
+				start = ends[i];
+			}
+			level = upper;
+			leaf = false;
+			levels++;
+		}
+
+		Node newRoot = new Node();
+		newRoot.setLeaf(leaf);
+		for (int i = 0; i < level.length; i++)
+			newRoot.append(level[i]);
+
+		this.height = 0;
+		this.setRoot(newRoot, levels);
+		this.setCount(list.size());
+		Metrics m = metrics;
+		if (m != null)
+			m.inserts.add(list.size());
+		return list.size();
+	}
+
+	/**
+	 * Creates a read only snapshot of this RStar backed by flat primitive
+	 * arrays.<br>
+	 * The snapshot does not reflect later changes of this RStar. Use it for
+	 * components which are not updated after loading.
+	 *
+	 * @return PackedRStar - packed snapshot of this.
+	 */
+	public synchronized PackedRStar freeze() {
+		// collect the nodes in breadth first order
+		List nodes = new ArrayList();
+		nodes.add(this.getRoot());
+		int entryCount = 0;
+		int firstLeaf = -1;
+		for (int i = 0; i < nodes.size(); i++) {
+			Node node = (Node) nodes.get(i);
+			entryCount += node.getUsed();
+			if (node.isLeaf()) {
+				if (firstLeaf == -1)
+					firstLeaf = i;
+			} else {
+				for (int j = 0; j < node.getUsed(); j++)
+					nodes.add(node.getEntry(j).getSon());
+			}
+		}
+
+		double[] bounds = new double[6 * entryCount];
+		int[] ref = new int[entryCount];
+		int[] nodeFirst = new int[nodes.size() + 1];
+		Object[] objects = new Object[this.getCount()];
+
+		int e = 0;
+		int nextNode = 1; // sons are numbered in the order of their entries
+		int nextObject = 0;
+		for (int i = 0; i < nodes.size(); i++) {
+			Node node = (Node) nodes.get(i);
+			nodeFirst[i] = e;
+			for (int j = 0; j < node.getUsed(); j++, e++) {
+				Entry entry = node.getEntry(j);
+				Point3D min = entry.getMBB().getPMin();
+				Point3D max = entry.getMBB().getPMax();
+				bounds[6 * e] = min.getX();
+				bounds[6 * e + 1] = min.getY();
+				bounds[6 * e + 2] = min.getZ();
+				bounds[6 * e + 3] = max.getX();
+				bounds[6 * e + 4] = max.getY();
+				bounds[6 * e + 5] = max.getZ();
+				if (node.isLeaf()) {
+					objects[nextObject] = entry.getSon();
+					ref[e] = nextObject++;
+				} else
+					ref[e] = nextNode++;
+			}
+		}
+		nodeFirst[nodes.size()] = e;
+
+		return new PackedRStar(bounds, ref, nodeFirst, firstLeaf, objects,
+				getSOP());
+	}
+
+	/**
+	 * Creates a read only snapshot of this RStar with compressed nodes. The
+	 * entry boxes are stored as 8 or 16 bit coordinates relative to the box
+	 * of their node, rounded outward, and the exact MBB3D of an object is
+	 * only tested at the leaves.<br>
+	 * The snapshot does not reflect later changes of this RStar.
+	 * 
+	 * @param bits
+	 *            bits per coordinate - 8 or 16
+	 * @return QuantizedRStar - compressed snapshot of this.
+	 * @throws IllegalArgumentException
+	 *             if bits is not 8 or 16.
+	 */
+	public synchronized QuantizedRStar compress(int bits) {
+		if (bits != 8 && bits != 16)
+			throw new IllegalArgumentException("IllegalParameters");
+		return freeze().quantize(bits);
+	}
+
+	/*
+	 * Sorts the given entries after the Sort-Tile-Recursive order. The entries
+	 * are sorted by the x coordinate of their centers and cut into slabs, every
+	 * slab is sorted by y and cut into runs, every run is sorted by z.
+	 * Consecutive entries of a run can then be packed into nodes.
+	 *
+	 * @param entries Entry[] to sort
+	 * @return int - number of entries of a run.
+	 */
+	private int strSort(Entry[] entries) {
+		int nodes = (entries.length + getMMax() - 1) / getMMax();
+		int slices = (int) Math.ceil(Math.pow(nodes, 1.0 / 3.0));
+		int slabSize = getMMax() * slices * slices;
+		int runSize = getMMax() * slices;
+
+		Arrays.sort(entries, new EntryCenterComparator(0));
+		for (int i = 0; i < entries.length; i += slabSize) {
+			int slabEnd = Math.min(i + slabSize, entries.length);
+			Arrays.sort(entries, i, slabEnd, new EntryCenterComparator(1));
+			for (int j = i; j < slabEnd; j += runSize)
+				Arrays.sort(entries, j, Math.min(j + runSize, slabEnd),
+						new EntryCenterComparator(2));
+		}
+		return runSize;
+	}
+
 	/**
 	 * Retrieves entries based on the retrieve type.<br>
 	 * retrieve type possiblities:<br>
@@ -246,10 +547,47 @@ public final class RStar implements SAM, PersistentObject {
 	 *            int the retrieve type
 	 * @return Set - result Set.
 	 */
-	protected Set retrieve(MBB3D mbb, int retrieveType) {
-		Set set = new HashSet();
-		this.getRoot().retrieve(mbb, retrieveType, set);
-		return set;
+	protected Set retrieve(final MBB3D mbb, final int retrieveType) {
+		Metrics m = metrics;
+		if (m != null)
+			m.queries[queryType(retrieveType)].increment();
+		return (Set) read(new ReadOperation() {
+			public Object read() {
+				Set set = new HashSet();
+				getRoot().retrieve(mbb, retrieveType, set);
+				return set;
+			}
+		});
+	}
+
+	/**
+	 * Passes the entries matching the retrieve type to the given visitor.<br>
+	 * In concurrent mode the query runs under the read lock, because the
+	 * visitor could not be undone for an optimistic retry.
+	 * 
+	 * @param mbb
+	 *            test MBB3D
+	 * @param retrieveType
+	 *            int the retrieve type
+	 * @param visitor
+	 *            Visitor receiving the entries
+	 * @return boolean - false if the visitor terminated the query, true
+	 *         otherwise.
+	 */
+	protected boolean retrieve(MBB3D mbb, int retrieveType, Visitor visitor) {
+		Metrics m = metrics;
+		if (m != null)
+			m.queries[queryType(retrieveType)].increment();
+		StampedLock l = this.lock;
+		if (l == null)
+			return getRoot().retrieve(mbb, retrieveType, visitor);
+
+		long stamp = l.readLock();
+		try {
+			return getRoot().retrieve(mbb, retrieveType, visitor);
+		} finally {
+			l.unlockRead(stamp);
+		}
 	}
 
 	/**
@@ -265,9 +603,22 @@ public final class RStar implements SAM, PersistentObject {
 	 *            -query Point3D object
 	 * @return NNResult[] - array of NNResult objects of length number.
 	 */
-	protected NNResult[] nNNSearch(int number, Point3D point)
+	protected NNResult[] nNNSearch(final int number, final Point3D point)
 			throws IllegalArgumentException {
-		return this.getRoot().nNNSearch(number, point);
+		countNearestQuery();
+		return (NNResult[]) read(new ReadOperation() {
+			public Object read() {
+				NNIterator it = new NNIterator(point, false);
+				NNResult[] result = new NNResult[number];
+				for (int i = 0; i < number; i++) {
+					if (it.expand())
+						result[i] = it.poll();
+					else
+						result[i] = new NNResultImpl();
+				}
+				return result;
+			}
+		});
 	}
 
 	/**
@@ -306,6 +657,7 @@ public final class RStar implements SAM, PersistentObject {
 	 */
 	private void setCount(int value) {
 		this.count = value;
+		this.modCount++;
 	}
 
 	/*
@@ -381,6 +733,201 @@ public final class RStar implements SAM, PersistentObject {
 		return forcedReInsertCount;
 	}
 
+	/**
+	 * Switches the concurrent mode of this RStar on or off.<br>
+	 * In concurrent mode any number of threads may query the RStar while
+	 * another thread inserts or removes objects. Queries first run without
+	 * locking and are validated against the write stamp of the tree. Only if a
+	 * write happened in the meantime the query is repeated under a read lock.
+	 * Writers are serialized and hold the write lock while they change the
+	 * tree.<br>
+	 * The mode must not be switched while queries are running. It is not
+	 * persisted - a deserialized RStar is not in concurrent mode.
+	 * 
+	 * @param concurrent
+	 *            true to switch concurrent mode on, false to switch it off
+	 */
+	public synchronized void setConcurrent(boolean concurrent) {
+		if (concurrent && this.lock == null)
+			this.lock = new StampedLock();
+		if (!concurrent)
+			this.lock = null;
+	}
+
+	/**
+	 * Tests whether this RStar is in concurrent mode.
+	 * 
+	 * @return boolean - true if concurrent mode is on, false otherwise.
+	 */
+	public boolean isConcurrent() {
+		return this.lock != null;
+	}
+
+	/**
+	 * Switches the collection of the operation counters on or off.<br>
+	 * While the metrics are enabled the node splits, forced reinsertions,
+	 * inserts, removes, queries and visited nodes per query type are counted.
+	 * Switching them on resets the counters. While they are disabled the
+	 * operations only test a null reference. The counters are not persisted.
+	 * 
+	 * @param enabled
+	 *            true to collect the counters, false otherwise
+	 */
+	public synchronized void setMetricsEnabled(boolean enabled) {
+		if (enabled && this.metrics == null)
+			this.metrics = new Metrics();
+		if (!enabled)
+			this.metrics = null;
+	}
+
+	/**
+	 * Tests whether the operation counters are collected.
+	 * 
+	 * @return boolean - true if the metrics are enabled, false otherwise.
+	 */
+	public boolean isMetricsEnabled() {
+		return this.metrics != null;
+	}
+
+	/**
+	 * Resets the operation counters to 0 if the metrics are enabled.
+	 */
+	public synchronized void resetMetrics() {
+		if (this.metrics != null)
+			this.metrics = new Metrics();
+	}
+
+	/**
+	 * Returns the statistics of this RStar.<br>
+	 * The structure values - nodes, fill factors, overlap and dead space -
+	 * are computed by walking the whole tree, so the call is expensive for
+	 * large trees. The operation counters are 0 if the metrics are disabled.
+	 * 
+	 * @return RStarStatistics - snapshot of the statistics.
+	 */
+	public RStarStatistics getStatistics() {
+		return (RStarStatistics) read(new ReadOperation() {
+			public Object read() {
+				RStarStatistics statistics = new RStarStatistics(getCount(),
+						getMMax());
+				collect(getRoot(), statistics);
+				Metrics m = metrics;
+				if (m != null) {
+					long[] queries = new long[RStarStatistics.QUERY_TYPES];
+					long[] visits = new long[RStarStatistics.QUERY_TYPES];
+					for (int i = 0; i < RStarStatistics.QUERY_TYPES; i++) {
+						queries[i] = m.queries[i].sum();
+						visits[i] = m.visits[i].sum();
+					}
+					statistics.setCounters(m.splits.sum(), m.reinserts.sum(),
+							m.inserts.sum(), m.removes.sum(), queries, visits);
+				}
+				return statistics;
+			}
+		});
+	}
+
+	/*
+	 * Adds the given node and its subtree to the given statistics.
+	 * 
+	 * @param node root of the subtree
+	 * 
+	 * @param statistics RStarStatistics to fill
+	 * 
+	 * @return int - level of the node, 0 for leaf nodes.
+	 */
+	private int collect(Node node, RStarStatistics statistics) {
+		int level = 0;
+		double[] boxes = new double[node.getUsed() * 6];
+		for (int i = 0; i < node.getUsed(); i++) {
+			Entry entry = node.getEntry(i);
+			MBB3D mbb = entry.getMBB();
+			for (int k = 0; k < 3; k++) {
+				boxes[i * 6 + k] = mbb.getPMin().getCoord(k);
+				boxes[i * 6 + k + 3] = mbb.getPMax().getCoord(k);
+			}
+			if (!node.isLeaf())
+				level = collect((Node) entry.getSon(), statistics) + 1;
+		}
+		statistics.addNode(level, boxes, node.getUsed());
+		return level;
+	}
+
+	/*
+	 * Returns the query type of the given retrieve type.
+	 * 
+	 * @param retrieveType retrieve type constant
+	 * 
+	 * @return int - query type constant of RStarStatistics.
+	 */
+	private static int queryType(int retrieveType) {
+		switch (retrieveType) {
+		case CONTAINS_STRICT_PREDICATE:
+		case CONTAINS_PREDICATE:
+			return RStarStatistics.QUERY_CONTAINS;
+		case INSIDE_STRICT_PREDICATE:
+		case INSIDE_PREDICATE:
+			return RStarStatistics.QUERY_INSIDE;
+		case EQUALS_PREDICATE:
+			return RStarStatistics.QUERY_EQUALS;
+		default:
+			return RStarStatistics.QUERY_INTERSECTS;
+		}
+	}
+
+	/*
+	 * Runs the given read operation. In concurrent mode the operation is
+	 * first run optimistically and validated afterwards; if a write
+	 * interfered, it is run again under the read lock.
+	 * 
+	 * @param operation ReadOperation to run
+	 * 
+	 * @return Object - result of the operation.
+	 */
+	private Object read(ReadOperation operation) {
+		StampedLock l = this.lock;
+		if (l == null)
+			return operation.read();
+
+		long stamp = l.tryOptimisticRead();
+		if (stamp != 0L) {
+			try {
+				Object result = operation.read();
+				if (l.validate(stamp))
+					return result;
+			} catch (RuntimeException e) {
+				// inconsistent tree seen during a write - retry locked
+			}
+		}
+		stamp = l.readLock();
+		try {
+			return operation.read();
+		} finally {
+			l.unlockRead(stamp);
+		}
+	}
+
+	/*
+	 * Runs the given read operation, in concurrent mode under the read lock.
+	 * Used for operations which cache results in the nodes, since an
+	 * optimistic run could cache values of a tree changed meanwhile.
+	 * 
+	 * @param operation ReadOperation to run
+	 * 
+	 * @return Object - result of the operation.
+	 */
+	private Object readLocked(ReadOperation operation) {
+		StampedLock l = this.lock;
+		if (l == null)
+			return operation.read();
+		long stamp = l.readLock();
+		try {
+			return operation.read();
+		} finally {
+			l.unlockRead(stamp);
+		}
+	}
+
 	/**
 	 * Test method.
 	 * 
@@ -416,10 +963,14 @@ public final class RStar implements SAM, PersistentObject {
 	 *             point is not greater than its minimum point.
 	 */
 	public MBB3D getMBB() {
-		if (this.getCount() == 0)
-			return null;
-		else
-			return this.root.computeNodeMBB();
+		return (MBB3D) read(new ReadOperation() {
+			public Object read() {
+				if (getCount() == 0)
+					return null;
+				else
+					return getRoot().computeNodeMBB();
+			}
+		});
 	}
 
 	/**
@@ -428,9 +979,83 @@ public final class RStar implements SAM, PersistentObject {
 	 * @return Set - all entries.
 	 */
 	public Set getEntries() {
-		Set set = new HashSet();
-		this.root.retrieveAll(set);
-		return set;
+		return (Set) read(new ReadOperation() {
+			public Object read() {
+				Set set = new HashSet();
+				getRoot().retrieveAll(set);
+				return set;
+			}
+		});
+	}
+
+	/**
+	 * Returns the count, length, area and volume totals of all objects in
+	 * this.
+	 * 
+	 * @return SpatialAggregate - totals of all objects.
+	 * @see SpatialAggregate
+	 */
+	public SpatialAggregate getAggregate() {
+		return (SpatialAggregate) readLocked(new ReadOperation() {
+			public Object read() {
+				if (getCount() == 0)
+					return SpatialAggregate.EMPTY;
+				return getRoot().getAggregate();
+			}
+		});
+	}
+
+	/**
+	 * Returns the count, length, area and volume totals of the objects whose
+	 * MBB3D is inside the given MBB3D - the objects of
+	 * <code>inside(mbb)</code>.<br>
+	 * The totals of every node are kept in the node, so subtrees completely
+	 * inside the given MBB3D are not traversed.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return SpatialAggregate - totals of the qualifying objects.
+	 * @see SpatialAggregate
+	 */
+	public SpatialAggregate aggregateInside(MBB3D mbb) {
+		return aggregate(mbb, INSIDE_PREDICATE);
+	}
+
+	/**
+	 * Returns the count, length, area and volume totals of the objects whose
+	 * MBB3D intersects the given MBB3D - the objects of
+	 * <code>intersects(mbb)</code>.<br>
+	 * The totals of every node are kept in the node, so subtrees completely
+	 * inside the given MBB3D are not traversed.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return SpatialAggregate - totals of the qualifying objects.
+	 * @see SpatialAggregate
+	 */
+	public SpatialAggregate aggregateIntersects(MBB3D mbb) {
+		return aggregate(mbb, INTERSECTS_PREDICATE);
+	}
+
+	/*
+	 * Computes the totals of the objects for the given MBB3D and predicate.
+	 * 
+	 * @param mbb query MBB3D
+	 * 
+	 * @param predicate INSIDE_PREDICATE or INTERSECTS_PREDICATE
+	 * 
+	 * @return SpatialAggregate - totals of the qualifying objects.
+	 */
+	private SpatialAggregate aggregate(final MBB3D mbb, final int predicate) {
+		return (SpatialAggregate) readLocked(new ReadOperation() {
+			public Object read() {
+				if (getCount() == 0)
+					return SpatialAggregate.EMPTY;
+				double[] totals = new double[4];
+				getRoot().aggregate(mbb, predicate, totals);
+				return new SpatialAggregate(totals);
+			}
+		});
 	}
 
 	/**
@@ -520,6 +1145,209 @@ public final class RStar implements SAM, PersistentObject {
 		return this.contains(new MBB3D(point, point));
 	}
 
+	/**
+	 * Passes the SpatialObject3D objects which intersect the given MBB3D strict to
+	 * the given visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean intersectsStrict(MBB3D mbb, Visitor visitor) {
+		return this.retrieve(mbb, INTERSECTS_STRICT_PREDICATE, visitor);
+	}
+
+	/**
+	 * Passes the SpatialObject3D objects which intersect the given MBB3D to
+	 * the given visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean intersects(MBB3D mbb, Visitor visitor) {
+		return this.retrieve(mbb, INTERSECTS_PREDICATE, visitor);
+	}
+
+	/**
+	 * Passes the SpatialObject3D objects which contain the given MBB3D strict to
+	 * the given visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean containsStrict(MBB3D mbb, Visitor visitor) {
+		return this.retrieve(mbb, CONTAINS_STRICT_PREDICATE, visitor);
+	}
+
+	/**
+	 * Passes the SpatialObject3D objects which contain the given MBB3D to
+	 * the given visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean contains(MBB3D mbb, Visitor visitor) {
+		return this.retrieve(mbb, CONTAINS_PREDICATE, visitor);
+	}
+
+	/**
+	 * Passes the SpatialObject3D objects which are inside the given MBB3D strict to
+	 * the given visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean insideStrict(MBB3D mbb, Visitor visitor) {
+		return this.retrieve(mbb, INSIDE_STRICT_PREDICATE, visitor);
+	}
+
+	/**
+	 * Passes the SpatialObject3D objects which are inside the given MBB3D to
+	 * the given visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean inside(MBB3D mbb, Visitor visitor) {
+		return this.retrieve(mbb, INSIDE_PREDICATE, visitor);
+	}
+
+	/**
+	 * Passes the SpatialObject3D objects which contain the given point to the
+	 * given visitor.
+	 * 
+	 * @param point
+	 *            the Point3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 * @throws IllegalArgumentException
+	 *             if an attempt is made to construct a MBB3D whose maximum
+	 *             point is not greater than its minimum point.
+	 */
+	public boolean contains(Point3D point, Visitor visitor) {
+		return this.contains(new MBB3D(point, point), visitor);
+	}
+
+	/**
+	 * Returns for each of the given MBB3D objects the set of objects which
+	 * intersect it. The Set for <code>mbbs[i]</code> is stored at index
+	 * <code>i</code> of the result.<br>
+	 * The queries are ordered along a space filling curve and each run of
+	 * neighbouring queries is answered with one traversal of the tree, large
+	 * batches in parallel. In concurrent mode the tree is read locked.
+	 * 
+	 * @param mbbs
+	 *            the MBB3D objects for test
+	 * @return Set[] - a Set object containing the result for every MBB3D.
+	 */
+	public Set[] intersects(final MBB3D[] mbbs) {
+		final Set[] result = BatchQuery.createResult(mbbs.length);
+		Metrics m = metrics;
+		if (m != null)
+			m.queries[RStarStatistics.QUERY_BATCH].add(mbbs.length);
+		StampedLock l = this.lock;
+		long stamp = l == null ? 0L : l.readLock();
+		try {
+			final Node root = getRoot();
+			BatchQuery.run(mbbs, new BatchQuery.Run() {
+				public void query(int[] queries, int number) {
+					intersects(root, mbbs, queries, number, result);
+				}
+			});
+		} finally {
+			if (l != null)
+				l.unlockRead(stamp);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the set of objects whose MBB3D intersects the given plane. The
+	 * entries are classified against the plane by the distances of their
+	 * corners, so subtrees on one side of the plane are pruned.
+	 * 
+	 * @param plane
+	 *            the Plane3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set intersects(Plane3D plane) {
+		return this.intersects(new Plane3D[] { plane })[0];
+	}
+
+	/**
+	 * Passes the objects whose MBB3D intersects the given plane to the given
+	 * visitor. In concurrent mode the query runs under the read lock.
+	 * 
+	 * @param plane
+	 *            the Plane3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean intersects(Plane3D plane, Visitor visitor) {
+		PlaneQuery query = new PlaneQuery(new Plane3D[] { plane }, getSOP());
+		StampedLock l = this.lock;
+		long stamp = l == null ? 0L : l.readLock();
+		try {
+			return getRoot().intersects(query, 0, 1, null, visitor);
+		} finally {
+			if (l != null)
+				l.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Returns for each of the given parallel planes the set of objects whose
+	 * MBB3D intersects it. The Set for <code>planes[i]</code> is stored at
+	 * index <code>i</code> of the result.<br>
+	 * The planes are answered with one traversal of the tree. The planes
+	 * cutting an entry are found by binary search along the common normal and
+	 * passed down together.
+	 * 
+	 * @param planes
+	 *            parallel Plane3D objects for test
+	 * @return Set[] - a Set object containing the result for every plane.
+	 * @throws IllegalArgumentException
+	 *             if the planes are not parallel.
+	 */
+	public Set[] intersects(Plane3D[] planes) {
+		final PlaneQuery query = new PlaneQuery(planes, getSOP());
+		return (Set[]) read(new ReadOperation() {
+			public Object read() {
+				Set[] result = BatchQuery.createResult(query.getNumber());
+				getRoot().intersects(query, 0, query.getNumber(), result,
+						null);
+				return result;
+			}
+		});
+	}
+
 	/**
 	 * Returns the set of the <code>number</code> SpatialObject3D3D objects
 	 * which are the nearest neighbours of the given point.
@@ -534,6 +1362,76 @@ public final class RStar implements SAM, PersistentObject {
 		return this.nNNSearch(number, point);
 	}
 
+	/**
+	 * Returns the <code>number</code> SpatialObject3D objects which are
+	 * nearest to the given point with respect to their exact geometry. The
+	 * MBB3D distance is only used as lower bound for pruning.
+	 * 
+	 * @param number
+	 *            number of nearest neighbours to search
+	 * @param point
+	 *            the Point3D object for test
+	 * @return NNResult[] - an array of NNResult objects sorted by distance.
+	 */
+	public NNResult[] nearestExact(final int number, final Point3D point) {
+		countNearestQuery();
+		return (NNResult[]) read(new ReadOperation() {
+			public Object read() {
+				return ExactDistanceSearch.nearest(new NNIterator(point, false),
+						number, point);
+			}
+		});
+	}
+
+	/**
+	 * Returns the SpatialObject3D objects whose exact geometry has at most the
+	 * given distance to the given point.
+	 * 
+	 * @param point
+	 *            the Point3D object for test
+	 * @param distance
+	 *            the maximal distance
+	 * @return NNResult[] - an array of NNResult objects sorted by distance.
+	 * @throws IllegalArgumentException
+	 *             if distance is negative.
+	 */
+	public NNResult[] withinDistance(final Point3D point, final double distance) {
+		countNearestQuery();
+		return (NNResult[]) read(new ReadOperation() {
+			public Object read() {
+				return ExactDistanceSearch.within(new NNIterator(point, false),
+						point, distance);
+			}
+		});
+	}
+
+	/**
+	 * Returns an Iterator over the SpatialObject3D objects in ascending order
+	 * of their distance to the given point. Each call of next() returns a
+	 * NNResult object. The neighbours are computed lazily by distance
+	 * browsing, so the search is never restarted.<br>
+	 * The Iterator throws a ConcurrentModificationException if this RStar was
+	 * changed after the first call of hasNext() or next().
+	 * 
+	 * @param point
+	 *            the Point3D object for test
+	 * @return Iterator - Iterator over NNResult objects.
+	 */
+	public Iterator nearestIterator(Point3D point) {
+		countNearestQuery();
+		return new NNIterator(point, true);
+	}
+
+	/*
+	 * Counts a nearest neighbour query if the metrics are enabled. Called by
+	 * the public methods, outside of read operations which may be retried.
+	 */
+	private void countNearestQuery() {
+		Metrics m = metrics;
+		if (m != null)
+			m.queries[RStarStatistics.QUERY_NEAREST].increment();
+	}
+
 	/**
 	 * Performs a spatial intersection join on this RStar with the given RStar.<br>
 	 * 
@@ -542,10 +1440,26 @@ public final class RStar implements SAM, PersistentObject {
 	 * @return JoinResult[] - result of intersection join as JoinResult array.
 	 */
 	public JoinResult[] intersectionJoin(RStar rstar) {
-		List resultList = new ArrayList();
-		resultList = this.getRoot().join(rstar.getRoot(), resultList,
-				INTERSECTS_STRICT_PREDICATE);
-		return processJoinResult(resultList);
+		return collect(rstar, INTERSECTS_STRICT_PREDICATE, 0);
+	}
+
+	/**
+	 * Performs a spatial intersection join on this RStar with the given RStar
+	 * and passes every result pair as JoinResult object to the given visitor.
+	 * The first object of a JoinResult is an object of this RStar.<br>
+	 * The join runs in parallel on the common ForkJoinPool. The visitor is
+	 * never called by two threads at the same time, so it needs no
+	 * synchronization of its own. The order of the result pairs is undefined.
+	 * 
+	 * @param rstar
+	 *            RStar object for intersection join computation
+	 * @param visitor
+	 *            the Visitor receiving the JoinResult objects
+	 * @return boolean - true if the join was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean intersectionJoin(RStar rstar, Visitor visitor) {
+		return join(rstar, INTERSECTS_STRICT_PREDICATE, 0, visitor);
 	}
 
 	/**
@@ -556,20 +1470,369 @@ public final class RStar implements SAM, PersistentObject {
 	 * @return JoinResult[] - result of equals join as JoinResult array.
 	 */
 	public JoinResult[] equalsJoin(RStar rstar) {
-		List resultList = new ArrayList();
-		resultList = this.getRoot().join(rstar.getRoot(), resultList,
-				EQUALS_PREDICATE);
-		return processJoinResult(resultList);
+		return collect(rstar, EQUALS_PREDICATE, 0);
+	}
+
+	/**
+	 * Performs a spatial equals join on this RStar with the given RStar and
+	 * passes every result pair as JoinResult object to the given visitor.<br>
+	 * See {@link #intersectionJoin(RStar, SAM.Visitor)}.
+	 * 
+	 * @param rstar
+	 *            RStar object for equals join computation
+	 * @param visitor
+	 *            the Visitor receiving the JoinResult objects
+	 * @return boolean - true if the join was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean equalsJoin(RStar rstar, Visitor visitor) {
+		return join(rstar, EQUALS_PREDICATE, 0, visitor);
+	}
+
+	/**
+	 * Performs a distance join on this RStar with the given RStar. The result
+	 * contains the pairs of objects whose exact geometries have at most the
+	 * given distance.<br>
+	 * See {@link #distanceJoin(RStar, double, SAM.Visitor)}.
+	 * 
+	 * @param rstar
+	 *            RStar object for distance join computation
+	 * @param distance
+	 *            the maximal distance
+	 * @return JoinResult[] - result of distance join as JoinResult array.
+	 * @throws IllegalArgumentException
+	 *             if distance is negative.
+	 */
+	public JoinResult[] distanceJoin(RStar rstar, double distance) {
+		if (!(distance >= 0))
+			throw new IllegalArgumentException("IllegalParameters");
+		return collect(rstar, DISTANCE_PREDICATE, distance);
+	}
+
+	/**
+	 * Performs a distance join on this RStar with the given RStar and passes
+	 * every pair of objects whose exact geometries have at most the given
+	 * distance as JoinResult object to the given visitor.<br>
+	 * The traversal pairs the entries whose MBB3Ds are within the distance,
+	 * the candidate pairs of objects are refined with the distance of their
+	 * closest points, see
+	 * {@link GeomUtils#euclideanDistanceSQR(GeoObj, GeoObj)}.
+	 * Pairs of objects without a supported geometry are reported by the
+	 * distance of their MBB3Ds. The join runs in parallel like
+	 * {@link #intersectionJoin(RStar, SAM.Visitor)}, the pairs are passed to
+	 * the visitor as soon as they are found.
+	 * 
+	 * @param rstar
+	 *            RStar object for distance join computation
+	 * @param distance
+	 *            the maximal distance
+	 * @param visitor
+	 *            the Visitor receiving the JoinResult objects
+	 * @return boolean - true if the join was completed, false if it was
+	 *         terminated by the visitor.
+	 * @throws IllegalArgumentException
+	 *             if distance is negative.
+	 */
+	public boolean distanceJoin(RStar rstar, double distance, Visitor visitor) {
+		if (!(distance >= 0))
+			throw new IllegalArgumentException("IllegalParameters");
+		return join(rstar, DISTANCE_PREDICATE, distance, visitor);
+	}
+
+	/**
+	 * Returns the <code>number</code> pairs of objects of this RStar and the
+	 * given RStar with the smallest distances. The distance of a pair is the
+	 * distance of the closest points of the exact geometries, see
+	 * {@link GeomUtils#euclideanDistanceSQR(GeoObj, GeoObj)}, or the
+	 * distance of the MBB3Ds for objects without a supported geometry.<br>
+	 * Pairs of nodes are visited in the order of the distance of their
+	 * MBB3Ds, so only the nodes near the closest pairs are read. The result
+	 * array is sorted in ascending order based on the distance value. If the
+	 * trees contain less pairs, all pairs are returned.<br>
+	 * A pair of an object with itself is skipped, so the closest pairs of a
+	 * RStar with itself are pairs of distinct objects. Each of them is
+	 * returned in both orders.
+	 * 
+	 * @param rstar
+	 *            RStar object for closest pairs computation
+	 * @param number
+	 *            number of pairs to search
+	 * @return ClosestPairResult[] - pairs sorted by distance, the first object
+	 *         of a pair is an object of this RStar.
+	 * @throws IllegalArgumentException
+	 *             if number is less than 1.
+	 */
+	public ClosestPairResult[] closestPairs(final RStar rstar, final int number) {
+		if (number < 1)
+			throw new IllegalArgumentException("IllegalParameters");
+		return (ClosestPairResult[]) readBoth(rstar, new ReadOperation() {
+			public Object read() {
+				return closestPairs(getRoot(), rstar.getRoot(), number);
+			}
+		});
+	}
+
+	/**
+	 * Returns the given SAM as RStar, e.g. to compute closest pairs of SAMs of
+	 * other types. A SAM which is no RStar is copied into a new RStar by
+	 * {@link #bulkLoad(GeoObj[])}, so every call costs the packing of all
+	 * entries, O(n log n). The copy does not reflect later changes of sam.
+	 * 
+	 * @param sam
+	 *            SAM to convert
+	 * @param mMax
+	 *            maximum entries per node of a new RStar
+	 * @param sop
+	 *            ScalarOperator of a new RStar
+	 * @return RStar - sam itself or a new RStar with the entries of sam.
+	 * @throws IllegalArgumentException
+	 *             if a new RStar is needed and mMax is less than 4 or sop is
+	 *             null.
+	 */
+	public static RStar toRStar(SAM sam, int mMax, ScalarOperator sop) {
+		if (sam instanceof RStar)
+			return (RStar) sam;
+		RStar rstar = new RStar(mMax, sop);
+		Set entries = sam.getEntries();
+		rstar.bulkLoad((GeoObj[]) entries.toArray(new GeoObj[entries.size()]));
+		return rstar;
+	}
+
+	/**
+	 * Returns the pair of objects of this RStar and the given RStar with the
+	 * smallest distance, or null if one of the trees is empty.<br>
+	 * See {@link #closestPairs(RStar, int)}.
+	 * 
+	 * @param rstar
+	 *            RStar object for closest pair computation
+	 * @return ClosestPairResult - closest pair, the first object is an object
+	 *         of this RStar.
+	 */
+	public ClosestPairResult closestPair(RStar rstar) {
+		ClosestPairResult[] pairs = closestPairs(rstar, 1);
+		return pairs.length == 0 ? null : pairs[0];
+	}
+
+	/*
+	 * Performs a spatial join and collects the result pairs in an array.
+	 * 
+	 * @param rstar RStar object for join computation
+	 * 
+	 * @param predicate join predicate
+	 * 
+	 * @param distance maximal distance of the distance join
+	 * 
+	 * @return JoinResult[] - result of join as JoinResult array.
+	 */
+	private JoinResult[] collect(RStar rstar, int predicate, double distance) {
+		final List list = new ArrayList();
+		join(rstar, predicate, distance, new Visitor() {
+			public boolean visit(Object obj) {
+				list.add(obj);
+				return true;
+			}
+		});
+		return (JoinResult[]) list.toArray(new JoinResult[list.size()]);
+	}
+
+	/*
+	 * Performs a spatial join on this RStar with the given RStar. In
+	 * concurrent mode both trees are read locked, the locks are always taken
+	 * in the same order to avoid deadlocks between joins.
+	 * 
+	 * @param rstar RStar object for join computation
+	 * 
+	 * @param predicate join predicate
+	 * 
+	 * @param distance maximal distance of the distance join
+	 * 
+	 * @param visitor Visitor receiving the JoinResult objects
+	 * 
+	 * @return boolean - false if the visitor terminated the join, true
+	 * otherwise.
+	 */
+	private boolean join(final RStar rstar, final int predicate,
+			final double distance, Visitor visitor) {
+		Metrics m = metrics;
+		if (m != null)
+			m.queries[RStarStatistics.QUERY_JOIN].increment();
+		final JoinSink sink = new JoinSink(visitor);
+		readBoth(rstar, new ReadOperation() {
+			public Object read() {
+				Node root1 = getRoot();
+				Node root2 = rstar.getRoot();
+				if (root1.getUsed() > 0 && root2.getUsed() > 0)
+					ForkJoinPool.commonPool().invoke(
+							new JoinTask(root1, root2, predicate, distance,
+									sink));
+				return null;
+			}
+		});
+		return !sink.isStopped();
+	}
+
+	/*
+	 * Runs the given read operation on this and the given RStar. In
+	 * concurrent mode both trees are read locked, the locks are always taken
+	 * in the same order to avoid deadlocks between operations on two trees.
+	 * 
+	 * @param rstar the second RStar
+	 * 
+	 * @param operation ReadOperation to run
+	 * 
+	 * @return Object - result of the operation.
+	 */
+	private Object readBoth(RStar rstar, ReadOperation operation) {
+		boolean thisFirst = System.identityHashCode(this) <= System
+				.identityHashCode(rstar);
+		StampedLock first = thisFirst ? this.lock : rstar.lock;
+		StampedLock second = thisFirst ? rstar.lock : this.lock;
+		if (rstar == this)
+			second = null;
+
+		long firstStamp = first == null ? 0L : first.readLock();
+		try {
+			long secondStamp = second == null ? 0L : second.readLock();
+			try {
+				return operation.read();
+			} finally {
+				if (second != null)
+					second.unlockRead(secondStamp);
+			}
+		} finally {
+			if (first != null)
+				first.unlockRead(firstStamp);
+		}
 	}
 
-	private JoinResult[] processJoinResult(List resultList) {
-		JoinResult[] result = new JoinResult[resultList.size() / 2];
-		int j = 0;
-		for (int i = 0; i < resultList.size(); i = i + 2) {
-			result[j] = new JoinResult(resultList.get(i), resultList.get(i + 1));
-			j++;
+	/*
+	 * Computes the closest pairs of objects of the subtrees of the given
+	 * nodes. The candidate pairs are taken from a priority queue ordered by
+	 * their squared distance: node pairs and pairs of leaf entries by the
+	 * distance of their MBB3Ds, refined pairs of objects by their exact
+	 * distance. A pair of objects at the head of the queue is the next
+	 * result. The number best exact distances found so far bound the
+	 * distance of the candidates which are kept at all.<br> <br> Corral, A.
+	 * / Manolopoulos, Y. / Theodoridis, Y. / Vassilakopoulos, M. : Closest
+	 * Pair Queries in Spatial Databases - In Proceedings of the ACM SIGMOD
+	 * 2000, pages 189 - 200.
+	 * 
+	 * @param a root of this RStar
+	 * 
+	 * @param b root of the other RStar
+	 * 
+	 * @param number number of pairs to search
+	 * 
+	 * @return ClosestPairResult[] - pairs sorted by distance.
+	 */
+	private ClosestPairResult[] closestPairs(Node a, Node b, int number) {
+		List result = new ArrayList();
+		if (a.getUsed() == 0 || b.getUsed() == 0)
+			return new ClosestPairResult[0];
+
+		PriorityQueue queue = new PriorityQueue(11, PAIR_COMPARATOR);
+		PriorityQueue best = new PriorityQueue(number + 1, Collections
+				.reverseOrder());
+		MBB3D mbbA = a.getNodeMBB();
+		MBB3D mbbB = b.getNodeMBB();
+		queue.add(new PairCandidate(mbbA.minDistSquare(mbbB, getSOP()), a,
+				mbbA, b, mbbB, PairCandidate.NODES));
+		double limit = Double.POSITIVE_INFINITY;
+
+		while (!queue.isEmpty() && result.size() < number) {
+			PairCandidate c = (PairCandidate) queue.poll();
+			if (c.distance > limit)
+				break;
+			if (c.kind == PairCandidate.OBJECTS) {
+				result.add(new ClosestPairResult(c.a, c.b, Math
+						.sqrt(c.distance)));
+				continue;
+			}
+			if (c.kind == PairCandidate.ENTRIES) {
+				if (c.a == c.b)
+					continue;
+				double exact = GeomUtils.euclideanDistanceSQR((GeoObj) c.a,
+						(GeoObj) c.b);
+				if (Double.isNaN(exact))
+					exact = c.distance;
+				exact = Math.max(exact, c.distance);
+				queue.add(new PairCandidate(exact, c.a, null, c.b, null,
+						PairCandidate.OBJECTS));
+				best.add(Double.valueOf(exact));
+				if (best.size() > number)
+					best.poll();
+				if (best.size() == number)
+					limit = ((Double) best.peek()).doubleValue();
+				continue;
+			}
+
+			Node nodeA = (Node) c.a;
+			Node nodeB = (Node) c.b;
+			boolean leaf = nodeA.isLeaf() && nodeB.isLeaf();
+			// expand the inner nodes, both leaves are paired entrywise
+			int usedA = nodeA.isLeaf() && !leaf ? 1 : nodeA.getUsed();
+			int usedB = nodeB.isLeaf() && !leaf ? 1 : nodeB.getUsed();
+			for (int i = 0; i < usedA; i++) {
+				Object sonA = nodeA;
+				MBB3D boxA = c.mbbA;
+				if (leaf || !nodeA.isLeaf()) {
+					sonA = nodeA.getEntry(i).getSon();
+					boxA = nodeA.getEntry(i).getMBB();
+				}
+				for (int j = 0; j < usedB; j++) {
+					Object sonB = nodeB;
+					MBB3D boxB = c.mbbB;
+					if (leaf || !nodeB.isLeaf()) {
+						sonB = nodeB.getEntry(j).getSon();
+						boxB = nodeB.getEntry(j).getMBB();
+					}
+					double d = boxA.minDistSquare(boxB, getSOP());
+					if (d <= limit)
+						queue.add(new PairCandidate(d, sonA, boxA, sonB, boxB,
+								leaf ? PairCandidate.ENTRIES
+										: PairCandidate.NODES));
+				}
+			}
+		}
+		return (ClosestPairResult[]) result
+				.toArray(new ClosestPairResult[result.size()]);
+	}
+
+	/*
+	 * Answers the given intersects queries for the subtree of the given node.
+	 * The queries intersecting an entry are passed down together.
+	 * 
+	 * @param node root of the subtree
+	 * 
+	 * @param mbbs query MBB3Ds of the batch
+	 * 
+	 * @param queries indexes of the queries to answer
+	 * 
+	 * @param number number of valid indexes in queries
+	 * 
+	 * @param result Sets of the batch
+	 */
+	private void intersects(Node node, MBB3D[] mbbs, int[] queries,
+			int number, Set[] result) {
+		Metrics m = metrics;
+		if (m != null)
+			m.visits[RStarStatistics.QUERY_BATCH].increment();
+		int[] sub = new int[number];
+		for (int i = 0; i < node.getUsed(); i++) {
+			Entry entry = node.getEntry(i);
+			MBB3D mbb = entry.getMBB();
+			int k = 0;
+			for (int j = 0; j < number; j++)
+				if (mbb.intersects(mbbs[queries[j]], getSOP()))
+					sub[k++] = queries[j];
+			if (k == 0)
+				continue;
+			if (node.isLeaf()) {
+				for (int j = 0; j < k; j++)
+					result[sub[j]].add(entry.getSon());
+			} else
+				intersects((Node) entry.getSon(), mbbs, sub, k, result);
 		}
-		return result;
 	}
 
 	/**
@@ -620,6 +1883,9 @@ public final class RStar implements SAM, PersistentObject {
 		/* leaf flag */
 		private boolean leaf;
 
+		/* totals of the subtree - null if not computed or changed */
+		private transient SpatialAggregate aggregate;
+
 		// Methods
 
 		/*
@@ -633,119 +1899,6 @@ public final class RStar implements SAM, PersistentObject {
 			this.leaf = true;
 		}
 
-		/*
-		 * Performs a join on this node and the given based on given
-		 * PREDICATE.<br> The algorithm tests for PREDICATE if both nodes are
-		 * leafs and puts the resulting object pairs (first is a "this" object,
-		 * second of second node) into the given result List object.
-		 * 
-		 * @param second second Node object
-		 * 
-		 * @param result List object for the result pairs
-		 * 
-		 * @return List - the result List.
-		 */
-		protected List join(Node second, List result, int predicate) {
-			ScalarOperator _sop = getSOP();
-			// both leaf - check for their PREDICATE pairs
-			if (this.isLeaf() && second.isLeaf()) {
-				for (int i = 0; i < this.getUsed(); i++) {
-					for (int j = 0; j < second.getUsed(); j++) {
-						// check for PREDICATE - if put in result list "this"
-						// objects always first
-						switch (predicate) {
-						case EQUALS_PREDICATE:
-							if (this.getEntry(i).getMBB().isEqual(
-									second.getEntry(j).getMBB(), _sop)) {
-								result.add(this.getEntry(i).getSon());
-								result.add(second.getEntry(j).getSon());
-							}
-							break;
-						case INTERSECTS_STRICT_PREDICATE:
-							if (this.getEntry(i).getMBB().intersectsStrict(
-									second.getEntry(j).getMBB(), _sop)) {
-								result.add(this.getEntry(i).getSon());
-								result.add(second.getEntry(j).getSon());
-							}
-							break;
-						default:
-							break;
-						}
-					}
-				}
-			} else {
-				// both inner nodes - check their entries and go recursivly down
-				if (!(this.isLeaf()) && !(second.isLeaf())) {
-					for (int i = 0; i < this.getUsed(); i++) {
-						for (int j = 0; j < second.getUsed(); j++) {
-							// check for intersection - if intersects perform
-							// intersection join on their son nodes
-							if (this.getEntry(i).getMBB().intersectsStrict(
-									second.getEntry(j).getMBB(), _sop))
-								result = ((Node) this.getEntry(i).getSon())
-										.join((Node) second.getEntry(j)
-												.getSon(), result, predicate);
-						}
-					}
-				} else { // one is leaf, the other inner node
-					if (this.isLeaf()) { // this is leaf
-						// check for all leaf entry objects of second inner node
-						// for PREDICATE
-						for (int i = 0; i < this.getUsed(); i++) {
-							Set retrieveSet = new HashSet();
-
-							switch (predicate) {
-							case INTERSECTS_STRICT_PREDICATE:
-
-								second.retrieve(this.getEntry(i).getMBB(),
-										INTERSECTS_STRICT_PREDICATE,
-										retrieveSet);
-								break;
-							case EQUALS_PREDICATE:
-
-								second.retrieve(this.getEntry(i).getMBB(),
-										EQUALS_PREDICATE, retrieveSet);
-								break;
-							default:
-								break;
-							}
-							for (Iterator it = retrieveSet.iterator(); it
-									.hasNext();) {
-								result.add(this.getEntry(i).getSon());
-								result.add(it.next());
-							}
-						}
-					} else { // second is leaf
-						// check for all leaf entry objects of this inner node
-						// for PREDICATE
-						for (int i = 0; i < second.getUsed(); i++) {
-							Set retrieveSet = new HashSet();
-							switch (predicate) {
-							case INTERSECTS_STRICT_PREDICATE:
-								second.retrieve(this.getEntry(i).getMBB(),
-										INTERSECTS_STRICT_PREDICATE,
-										retrieveSet);
-								break;
-							case EQUALS_PREDICATE:
-								second.retrieve(this.getEntry(i).getMBB(),
-										EQUALS_PREDICATE, retrieveSet);
-								break;
-							default:
-								break;
-							}
-
-							for (Iterator it = retrieveSet.iterator(); it
-									.hasNext();) {
-								result.add(it.next());
-								result.add(second.getEntry(i).getSon());
-							}
-						}
-					}
-				}
-			}
-			return result;
-		}
-
 		/*
 		 * Retrieves entries based on the retrieve type.<br> retrieve type
 		 * possibilities:<br> 0 - intersects - result entries mbbs must
@@ -762,6 +1915,9 @@ public final class RStar implements SAM, PersistentObject {
 		 * @throws DB3DException.
 		 */
 		protected void retrieve(MBB3D mbb, int retrieveType, Set set) {
+			Metrics m = metrics;
+			if (m != null)
+				m.visits[queryType(retrieveType)].increment();
 
 			for (int i = 0; i < getUsed(); i++) {
 				Entry iEntry = this.getEntry(i);
@@ -850,132 +2006,189 @@ public final class RStar implements SAM, PersistentObject {
 		}
 
 		/*
-		 * Retrieves the given number of nearest neighbours to the query point.
+		 * Passes the objects of the entries matching the retrieve type to the
+		 * visitor. Uses the same tests as retrieve(MBB3D, int, Set).
+		 * 
+		 * @param mbb test MBB3D
 		 * 
-		 * @param number number of neighbours to retrieve
+		 * @param retrieveType int the retrieve type
 		 * 
-		 * @param point query Point as Point3D
+		 * @param visitor Visitor receiving the objects
 		 * 
-		 * @return NNResult[] - result array of NNResult objects.
+		 * @return boolean - false if the visitor terminated the query, true
+		 * otherwise.
 		 */
-		protected NNResult[] nNNSearch(int number, Point3D point) {
-			if (number == 1)
-				return new NNResult[] { singleNNSearchPrivate(point,
-						new NNResultImpl()) };
-
-			NNResultImpl[] result = new NNResultImpl[number];
-			for (int i = 0; i < number; i++)
-				result[i] = new NNResultImpl();
-
-			return nNNSearchPrivate(point, result);
+		protected boolean retrieve(MBB3D mbb, int retrieveType, Visitor visitor) {
+			Metrics m = metrics;
+			if (m != null)
+				m.visits[queryType(retrieveType)].increment();
+			for (int i = 0; i < getUsed(); i++) {
+				Entry iEntry = this.getEntry(i);
+				if (!matches(iEntry.getMBB(), mbb, retrieveType))
+					continue;
+				if (isLeaf()) {
+					if (!visitor.visit(iEntry.getSon()))
+						return false;
+				} else if (!((Node) iEntry.getSon()).retrieve(mbb,
+						retrieveType, visitor))
+					return false;
+			}
+			return true;
 		}
 
 		/*
-		 * Private method for the n-th nearest neighbour search.
+		 * Answers the planes [from; to) of the given query for the subtree of
+		 * this node. The planes cutting an entry are passed down together.
 		 * 
-		 * @param point query point
+		 * @param query sorted parallel planes
+		 * 
+		 * @param from first sorted plane
+		 * 
+		 * @param to position after the last sorted plane
+		 * 
+		 * @param result Sets of the planes, or null if the visitor is used
 		 * 
-		 * @param result array for result
+		 * @param visitor Visitor receiving the objects
 		 * 
-		 * @return NNResultImpl[] - result.
+		 * @return boolean - false if the visitor terminated the query, true
+		 * otherwise.
 		 */
-		private NNResultImpl[] nNNSearchPrivate(Point3D point,
-				NNResultImpl[] result) {
-
-			if (isLeaf()) {
-				for (int i = 0; i < this.getUsed(); i++) {
-					double dist = this.getEntry(i).getMBB().minDistSquare(
-							point, getSOP());
-					if (dist < result[result.length - 1].getDistance())
-						result[result.length - 1].setNNResult(dist, this
-								.getEntry(i).getSon()); // update nth data entry
-					// sort
-					Arrays.sort(result);
-				}
-			} else {
-				// generate ActiveBranchList of node
-				ABL[] abl = new ABL[this.getUsed()];
-				Node help = null;
-				for (int i = 0; i < this.getUsed(); i++) {
-					help = (Node) this.getEntry(i).getSon();
-					abl[i] = new ABL(help, help.getNodeMBB().minDistSquare(
-							point, getSOP()));
-				}
-				// sort activebranchlist
-				Arrays.sort(abl);
-
-				for (int i = 0; i < abl.length; i++) {
-					// apply heuristic 3
-					if (abl[i].minDist <= result[result.length - 1]
-							.getDistance()) {
-						result = abl[i].node.nNNSearchPrivate(point, result);
-					}
+		protected boolean intersects(PlaneQuery query, int from, int to,
+				Set[] result, Visitor visitor) {
+			for (int i = 0; i < getUsed(); i++) {
+				Entry iEntry = this.getEntry(i);
+				MBB3D thisMBB = iEntry.getMBB();
+				int lower = query.lower(thisMBB, from, to);
+				int upper = query.upper(thisMBB, lower, to);
+				if (lower == upper)
+					continue;
+				if (!isLeaf()) {
+					if (!((Node) iEntry.getSon()).intersects(query, lower,
+							upper, result, visitor))
+						return false;
+				} else if (result == null) {
+					if (!visitor.visit(iEntry.getSon()))
+						return false;
+				} else {
+					for (int j = lower; j < upper; j++)
+						result[query.getPlane(j)].add(iEntry.getSon());
 				}
 			}
-			return result;
+			return true;
 		}
 
 		/*
-		 * Private method for the single nearest neighbour search.
+		 * Tests an entry MBB3D of this node against the query MBB3D. Entries of
+		 * internal nodes are tested with the predicate needed to reach
+		 * qualifying leaf entries.
 		 * 
-		 * @param point query point
+		 * @param thisMBB MBB3D of the entry
 		 * 
-		 * @param result NNResultImpl object
+		 * @param mbb test MBB3D
+		 * 
+		 * @param retrieveType int the retrieve type
 		 * 
-		 * @return NNResultImpl - result.
+		 * @return boolean - true if the entry qualifies.
 		 */
-		private NNResultImpl singleNNSearchPrivate(Point3D point,
-				NNResultImpl result) {
+		private boolean matches(MBB3D thisMBB, MBB3D mbb, int retrieveType) {
+			switch (retrieveType) {
+			case EQUALS_PREDICATE:
+				if (isLeaf())
+					return thisMBB.isEqual(mbb, getSOP());
+				return thisMBB.contains(mbb, getSOP());
+			case INTERSECTS_STRICT_PREDICATE:
+				return thisMBB.intersectsStrict(mbb, getSOP());
+			case CONTAINS_STRICT_PREDICATE:
+				return thisMBB.containsStrict(mbb, getSOP());
+			case INSIDE_STRICT_PREDICATE:
+				if (isLeaf())
+					return thisMBB.insideStrict(mbb, getSOP());
+				return thisMBB.intersects(mbb, getSOP());
+			case INTERSECTS_PREDICATE:
+				return thisMBB.intersects(mbb, getSOP());
+			case CONTAINS_PREDICATE:
+				return thisMBB.contains(mbb, getSOP());
+			case INSIDE_PREDICATE:
+				if (isLeaf())
+					return thisMBB.inside(mbb, getSOP());
+				return thisMBB.intersects(mbb, getSOP());
+			}
+			return false;
+		}
 
-			if (isLeaf()) {
-				for (int i = 0; i < this.getUsed(); i++) {
-					double dist = this.getEntry(i).getMBB().minDistSquare(
-							point, getSOP());
-					if (dist < result.getDistance())
-						result.setNNResult(dist, this.getEntry(i).getSon()); // update
-					// data
-					// entry
-				}
-			} else {
-				// generate ActiveBranchList of node
-				ABL[] abl = new ABL[this.getUsed()];
-				Node help = null;
+		/*
+		 * Retrieves all entries of the node if it is leaf, else goes recursivly
+		 * down the tree.
+		 * 
+		 * @param set - result Set
+		 */
+		protected void retrieveAll(Set set) {
+			for (int i = 0; i < this.getUsed(); i++) {
+				Entry iEntry = this.getEntry(i);
+
+				if (isLeaf())
+					set.add(iEntry.getSon());
+				else
+					((Node) iEntry.getSon()).retrieveAll(set);
+			}
+		}
+
+		/*
+		 * Returns the totals of the subtree of this. The totals are computed
+		 * on demand and kept until an entry of the subtree changes.
+		 * 
+		 * @return SpatialAggregate - totals of the subtree.
+		 */
+		protected SpatialAggregate getAggregate() {
+			SpatialAggregate result = aggregate;
+			if (result == null) {
+				double[] totals = new double[4];
 				for (int i = 0; i < this.getUsed(); i++) {
-					help = (Node) this.getEntry(i).getSon();
-					abl[i] = new ABL(help, help.getNodeMBB().minDistSquare(
-							point, getSOP()));
-				}
-				// sort activebranchlist
-				Arrays.sort(abl);
-
-				for (int i = 0; i < abl.length; i++) {
-					// apply heuristic 3
-					if (abl[i].minDist <= result.getDistance()) {
-						result = abl[i].node.singleNNSearchPrivate(point,
-								result);
-					}
+					if (isLeaf())
+						SpatialAggregate.add(getEntry(i).getSon(), totals);
+					else
+						((Node) getEntry(i).getSon()).getAggregate().addTo(
+								totals);
 				}
+				result = new SpatialAggregate(totals);
+				aggregate = result;
 			}
 			return result;
 		}
 
 		/*
-		 * Retrieves all entries of the node if it is leaf, else goes recursivly
-		 * down the tree.
+		 * Adds the totals of the objects of the subtree which qualify for the
+		 * given MBB3D and predicate to the given accumulator. The totals of
+		 * entries inside the MBB3D are taken without descending.
 		 * 
-		 * @param set - result Set
+		 * @param mbb query MBB3D
+		 * 
+		 * @param predicate INSIDE_PREDICATE or INTERSECTS_PREDICATE
+		 * 
+		 * @param totals count, length, area and volume
 		 */
-		protected void retrieveAll(Set set) {
+		protected void aggregate(MBB3D mbb, int predicate, double[] totals) {
 			for (int i = 0; i < this.getUsed(); i++) {
-				Entry iEntry = this.getEntry(i);
-
-				if (isLeaf())
-					set.add(iEntry.getSon());
-				else
-					((Node) iEntry.getSon()).retrieveAll(set);
+				Entry entry = this.getEntry(i);
+				MBB3D entryMBB = entry.getMBB();
+				if (isLeaf()) {
+					if (matches(entryMBB, mbb, predicate))
+						SpatialAggregate.add(entry.getSon(), totals);
+				} else if (entryMBB.inside(mbb, getSOP()))
+					((Node) entry.getSon()).getAggregate().addTo(totals);
+				else if (entryMBB.intersects(mbb, getSOP()))
+					((Node) entry.getSon()).aggregate(mbb, predicate, totals);
 			}
 		}
 
+		/*
+		 * Discards the totals of this and all ancestors.
+		 */
+		private void invalidateAggregate() {
+			for (Node node = this; node != null; node = node.getFather())
+				node.aggregate = null;
+		}
+
 		/*
 		 * Searches, if the given object is a entry of this.
 		 * 
@@ -1201,12 +2414,18 @@ public final class RStar implements SAM, PersistentObject {
 				if ((levelFRI[currentHeight] == false) && currentHeight > 0) {
 					// forcedReinsert - set levelFRI to happened
 					levelFRI[currentHeight] = true;
+					Metrics m = metrics;
+					if (m != null)
+						m.reinserts.increment();
 					forcedReInsert(levelFRI);
 					// Here an IllegalArgumentException can be thrown.
 				} else {
 					// split
 					newNode = splitNode();
 					split = true;
+					Metrics m = metrics;
+					if (m != null)
+						m.splits.increment();
 
 					// test if Error condition
 					if (getUsed() < getMMin() || newNode.getUsed() < getMMin()) {
@@ -1473,7 +2692,7 @@ public final class RStar implements SAM, PersistentObject {
 		private double computeVolumeEnlargeIndex(MBB3D mbb1, MBB3D mbb2) {
 			// compute before and after volume - return difference
 			double before = mbb1.computeVolume();
-			double after = mbb1.union(mbb2, getSOP()).computeVolume();
+			double after = mbb1.unionVolume(mbb2, getSOP());
 			return after - before;
 		}
 
@@ -1486,14 +2705,15 @@ public final class RStar implements SAM, PersistentObject {
 		 * a MBB3D whose maximum point is not greater than its minimum point.
 		 */
 		protected MBB3D computeNodeMBB() {
-			// compute a union of the mbbs of the entries
-			MBB3D mbb = this.getEntry(0).getMBB();
+			// compute a union of the mbbs of the entries in place
+			double[] box = new double[6];
+			this.getEntry(0).getMBB().getCoordinates(box, 0);
 
 			for (int i = 1; i < this.getUsed(); i++)
-				mbb = mbb.union(this.getEntry(i).getMBB(), getSOP());
-			// Here an IllegalArgumentException can be thrown.
+				this.getEntry(i).getMBB().expand(box, 0, getSOP());
 
-			return mbb;
+			return MBB3D.create(box, 0);
+			// Here an IllegalArgumentException can be thrown.
 		}
 
 		/*
@@ -1679,16 +2899,14 @@ public final class RStar implements SAM, PersistentObject {
 		 * a MBB3D whose maximum point is not greater than its minimum point.
 		 */
 		private MBB3D computeMBBValue(short[] sort, short left, short right) {
-			MBB3D mbb = null;
+			double[] box = new double[6];
+			this.getEntry(sort[left]).getMBB().getCoordinates(box, 0);
 
-			for (short i = left; i <= right; i++) {
-				if (i == left)
-					mbb = this.getEntry(sort[i]).getMBB();
-				else
-					mbb = mbb.union(this.getEntry(sort[i]).getMBB(), getSOP());
-				// Here an IllegalArgumentException can be thrown.
-			}
-			return mbb;
+			for (short i = (short) (left + 1); i <= right; i++)
+				this.getEntry(sort[i]).getMBB().expand(box, 0, getSOP());
+
+			return MBB3D.create(box, 0);
+			// Here an IllegalArgumentException can be thrown.
 		}
 
 		/*
@@ -2134,6 +3352,7 @@ public final class RStar implements SAM, PersistentObject {
 		 */
 		private void setEntry(Entry entry, int index) {
 			this.entries[index] = entry;
+			invalidateAggregate();
 		}
 
 		/*
@@ -2164,6 +3383,7 @@ public final class RStar implements SAM, PersistentObject {
 		 */
 		private void setUsed(int used) {
 			this.used = (short) used;
+			invalidateAggregate();
 		}
 
 		/*
@@ -2227,55 +3447,6 @@ public final class RStar implements SAM, PersistentObject {
 			return b.toString();
 		}
 
-		// inner Class ABL
-
-		/*
-		 * Inner class ABL (Active Branch List) for sorting entries in node
-		 * according to the MINDIST heuristic for nearest neighbour search. <br>
-		 * <br> Transient classes
-		 */
-		private final class ABL implements Comparable {
-
-			/* node */
-			private final Node node;
-
-			/* minimal distance */
-			private final double minDist;
-
-			/*
-			 * Constructor.
-			 * 
-			 * @param node Node
-			 * 
-			 * @param minDist MINDIST value for node
-			 */
-			private ABL(Node node, double minDist) {
-				this.node = node;
-				this.minDist = minDist;
-			}
-
-			/*
-			 * Compares this to the given object.
-			 * 
-			 * @param obj Object to be comared
-			 * 
-			 * @return 0 if the minimal distances are equal, -1 if the minimal
-			 * distance of this is less than of ob, 1 if the minimal distance of
-			 * this is greater than of obj.
-			 * 
-			 * @see java.lang.Comparable#compareTo(java.lang.Object)
-			 */
-			public int compareTo(Object obj) {
-				ABL help = (ABL) obj;
-				if (this.minDist < help.minDist)
-					return -1;
-				if (this.minDist == help.minDist)
-					return 0;
-
-				return 1;
-			}
-		}
-
 	}
 
 	/*
@@ -2388,6 +3559,576 @@ public final class RStar implements SAM, PersistentObject {
 		}
 	}
 
+	/*
+	 * Operation counters of the RStar. The counters are updated concurrently
+	 * by the readers, so they are LongAdders.<br> <br> Transient class
+	 */
+	private final static class Metrics {
+
+		/* number of node splits */
+		private final LongAdder splits = new LongAdder();
+
+		/* number of forced reinsertions */
+		private final LongAdder reinserts = new LongAdder();
+
+		/* number of inserted objects */
+		private final LongAdder inserts = new LongAdder();
+
+		/* number of removed objects */
+		private final LongAdder removes = new LongAdder();
+
+		/* number of queries per query type */
+		private final LongAdder[] queries = new LongAdder[
+				RStarStatistics.QUERY_TYPES];
+
+		/* number of visited nodes per query type */
+		private final LongAdder[] visits = new LongAdder[
+				RStarStatistics.QUERY_TYPES];
+
+		/*
+		 * Constructor.
+		 */
+		private Metrics() {
+			for (int i = 0; i < RStarStatistics.QUERY_TYPES; i++) {
+				queries[i] = new LongAdder();
+				visits[i] = new LongAdder();
+			}
+		}
+	}
+
+	/*
+	 * Query on the tree which is run by RStar.read(ReadOperation). The
+	 * operation may be run twice in concurrent mode and must not have side
+	 * effects outside of its result.
+	 */
+	private interface ReadOperation {
+
+		/*
+		 * Runs the query.
+		 * 
+		 * @return Object - result of the query.
+		 */
+		public Object read();
+	}
+
+	/* comparator for the plane sweep of the join */
+	private final static Comparator MIN_X_COMPARATOR = new Comparator() {
+		public int compare(Object o1, Object o2) {
+			return Double.compare(((Entry) o1).getMBB().getPMin().getX(),
+					((Entry) o2).getMBB().getPMin().getX());
+		}
+	};
+
+	/*
+	 * Comparator for sorting entries by the center of their MBB3D along one
+	 * axis. Used for packing the tree in bulkLoad.<br> <br> Transient class
+	 */
+	private final static class EntryCenterComparator implements Comparator {
+
+		/* axis to compare - 0 = x, 1 = y, 2 = z */
+		private final int axis;
+
+		/*
+		 * Constructor.
+		 *
+		 * @param axis index of the axis to compare
+		 */
+		private EntryCenterComparator(int axis) {
+			this.axis = axis;
+		}
+
+		/*
+		 * Compares the doubled center coordinates of the given entries.
+		 *
+		 * @see java.util.Comparator#compare(java.lang.Object,
+		 * java.lang.Object)
+		 */
+		public int compare(Object o1, Object o2) {
+			MBB3D mbb1 = ((Entry) o1).getMBB();
+			MBB3D mbb2 = ((Entry) o2).getMBB();
+			double c1 = mbb1.getPMin().getCoord(axis)
+					+ mbb1.getPMax().getCoord(axis);
+			double c2 = mbb2.getPMin().getCoord(axis)
+					+ mbb2.getPMax().getCoord(axis);
+			return Double.compare(c1, c2);
+		}
+	}
+
+	/* comparator for the candidates of the closest pairs query */
+	private final static Comparator PAIR_COMPARATOR = new Comparator() {
+		public int compare(Object o1, Object o2) {
+			PairCandidate c1 = (PairCandidate) o1;
+			PairCandidate c2 = (PairCandidate) o2;
+			int comp = Double.compare(c1.distance, c2.distance);
+			if (comp != 0)
+				return comp;
+			// refined pairs first
+			return c2.kind - c1.kind;
+		}
+	};
+
+	/*
+	 * Candidate of the closest pairs query - a pair of nodes, of leaf entries
+	 * or of refined objects with its squared distance.<br> <br> Transient
+	 * class
+	 */
+	private final static class PairCandidate {
+
+		/* pair of nodes */
+		private final static int NODES = 0;
+
+		/* pair of objects with the distance of their MBB3Ds */
+		private final static int ENTRIES = 1;
+
+		/* pair of objects with their exact distance */
+		private final static int OBJECTS = 2;
+
+		/* squared distance */
+		private final double distance;
+
+		/* Node or object of this RStar */
+		private final Object a;
+
+		/* MBB3D of a */
+		private final MBB3D mbbA;
+
+		/* Node or object of the other RStar */
+		private final Object b;
+
+		/* MBB3D of b */
+		private final MBB3D mbbB;
+
+		/* kind of the pair */
+		private final int kind;
+
+		/*
+		 * Constructor.
+		 * 
+		 * @param distance squared distance
+		 * 
+		 * @param a Node or object of this RStar
+		 * 
+		 * @param mbbA MBB3D of a
+		 * 
+		 * @param b Node or object of the other RStar
+		 * 
+		 * @param mbbB MBB3D of b
+		 * 
+		 * @param kind NODES, ENTRIES or OBJECTS
+		 */
+		private PairCandidate(double distance, Object a, MBB3D mbbA,
+				Object b, MBB3D mbbB, int kind) {
+			this.distance = distance;
+			this.a = a;
+			this.mbbA = mbbA;
+			this.b = b;
+			this.mbbB = mbbB;
+			this.kind = kind;
+		}
+	}
+
+	/*
+	 * Task of the spatial join for a pair of nodes - the first of this RStar,
+	 * the second of the joined RStar.<br> Within a node pair only the entries
+	 * intersecting the MBB3D of the other node are considered (search space
+	 * restriction). These entries are sorted by their minimum x coordinate
+	 * and the candidate pairs are found by a plane sweep along the x axis.
+	 * Pairs of inner nodes whose sons are inner nodes as well are forked as
+	 * new tasks, smaller pairs are joined in the current task.<br> <br>
+	 * Brinkhoff, T. / Kriegel, H.-P. / Seeger, B. : Efficient Processing of
+	 * Spatial Joins Using R-trees - In Proceedings of the ACM SIGMOD 1993,
+	 * pages 237 - 246.<br> <br> Transient class
+	 */
+	private final class JoinTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		/* node of this RStar */
+		private final Node first;
+
+		/* node of the joined RStar */
+		private final Node second;
+
+		/* join predicate */
+		private final int predicate;
+
+		/* maximal distance of the distance join, 0 otherwise */
+		private final double distance;
+
+		/* receiver of the result pairs */
+		private final JoinSink sink;
+
+		/*
+		 * Constructor.
+		 * 
+		 * @param first node of this RStar
+		 * 
+		 * @param second node of the joined RStar
+		 * 
+		 * @param predicate join predicate
+		 * 
+		 * @param distance maximal distance of the distance join
+		 * 
+		 * @param sink receiver of the result pairs
+		 */
+		private JoinTask(Node first, Node second, int predicate,
+				double distance, JoinSink sink) {
+			this.first = first;
+			this.second = second;
+			this.predicate = predicate;
+			this.distance = distance;
+			this.sink = sink;
+		}
+
+		/*
+		 * Joins the node pair and waits for the forked subtasks.
+		 * 
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		protected void compute() {
+			List subtasks = new ArrayList();
+			join(first, second, subtasks);
+			invokeAll(subtasks);
+		}
+
+		/*
+		 * Joins the given node pair.
+		 * 
+		 * @param a node of this RStar
+		 * 
+		 * @param b node of the joined RStar
+		 * 
+		 * @param subtasks List for the forked tasks
+		 */
+		private void join(Node a, Node b, List subtasks) {
+			if (sink.isStopped())
+				return;
+			Metrics m = metrics;
+			if (m != null)
+				m.visits[RStarStatistics.QUERY_JOIN].add(2);
+
+			MBB3D mbbA = a.getNodeMBB();
+			MBB3D mbbB = b.getNodeMBB();
+
+			// different heights - descend the inner node only
+			if (a.isLeaf() != b.isLeaf()) {
+				if (a.isLeaf()) {
+					for (int j = 0; j < b.getUsed(); j++)
+						if (near(b.getEntry(j).getMBB(), mbbA))
+							join(a, (Node) b.getEntry(j).getSon(), subtasks);
+				} else {
+					for (int i = 0; i < a.getUsed(); i++)
+						if (near(a.getEntry(i).getMBB(), mbbB))
+							join((Node) a.getEntry(i).getSon(), b, subtasks);
+				}
+				return;
+			}
+
+			Entry[] as = restrict(a, mbbB);
+			Entry[] bs = restrict(b, mbbA);
+			if (as.length == 0 || bs.length == 0)
+				return;
+			Arrays.sort(as, MIN_X_COMPARATOR);
+			Arrays.sort(bs, MIN_X_COMPARATOR);
+
+			// plane sweep along the x axis
+			double reach = getSOP().getEpsilon() + distance;
+			int i = 0;
+			int j = 0;
+			while (i < as.length && j < bs.length && !sink.isStopped()) {
+				if (as[i].getMBB().getPMin().getX() <= bs[j].getMBB().getPMin()
+						.getX()) {
+					double maxX = as[i].getMBB().getPMax().getX() + reach;
+					for (int k = j; k < bs.length
+							&& bs[k].getMBB().getPMin().getX() <= maxX; k++)
+						pair(as[i], bs[k], a.isLeaf(), subtasks);
+					i++;
+				} else {
+					double maxX = bs[j].getMBB().getPMax().getX() + reach;
+					for (int k = i; k < as.length
+							&& as[k].getMBB().getPMin().getX() <= maxX; k++)
+						pair(as[k], bs[j], a.isLeaf(), subtasks);
+					j++;
+				}
+			}
+		}
+
+		/*
+		 * Processes a candidate pair of the plane sweep.
+		 * 
+		 * @param ea entry of this RStar
+		 * 
+		 * @param eb entry of the joined RStar
+		 * 
+		 * @param leaf true if both entries are leaf entries
+		 * 
+		 * @param subtasks List for the forked tasks
+		 */
+		private void pair(Entry ea, Entry eb, boolean leaf, List subtasks) {
+			MBB3D mbbA = ea.getMBB();
+			MBB3D mbbB = eb.getMBB();
+			if (leaf) {
+				boolean hit;
+				if (predicate == EQUALS_PREDICATE)
+					hit = mbbA.isEqual(mbbB, getSOP());
+				else if (predicate == DISTANCE_PREDICATE)
+					hit = near(mbbA, mbbB)
+							&& near((GeoObj) ea.getSon(), (GeoObj) eb.getSon());
+				else
+					hit = mbbA.intersectsStrict(mbbB, getSOP());
+				if (hit)
+					sink.report(ea.getSon(), eb.getSon());
+				return;
+			}
+
+			boolean hit;
+			if (predicate == EQUALS_PREDICATE)
+				hit = mbbA.intersects(mbbB, getSOP());
+			else if (predicate == DISTANCE_PREDICATE)
+				hit = near(mbbA, mbbB);
+			else
+				hit = mbbA.intersectsStrict(mbbB, getSOP());
+			if (!hit)
+				return;
+			Node sonA = (Node) ea.getSon();
+			Node sonB = (Node) eb.getSon();
+			if (!sonA.isLeaf() && !sonB.isLeaf())
+				subtasks.add(new JoinTask(sonA, sonB, predicate, distance,
+						sink));
+			else
+				join(sonA, sonB, subtasks);
+		}
+
+		/*
+		 * Returns the entries of the node intersecting the given MBB3D.
+		 * 
+		 * @param node Node
+		 * 
+		 * @param mbb MBB3D of the other node
+		 * 
+		 * @return Entry[] - entries intersecting mbb.
+		 */
+		private Entry[] restrict(Node node, MBB3D mbb) {
+			Entry[] help = new Entry[node.getUsed()];
+			int n = 0;
+			for (int i = 0; i < node.getUsed(); i++)
+				if (near(node.getEntry(i).getMBB(), mbb))
+					help[n++] = node.getEntry(i);
+			if (n == help.length)
+				return help;
+			Entry[] result = new Entry[n];
+			System.arraycopy(help, 0, result, 0, n);
+			return result;
+		}
+
+		/*
+		 * Tests whether the given MBB3Ds intersect, for the distance join
+		 * whether their distance is at most the join distance.
+		 * 
+		 * @param mbbA MBB3D
+		 * 
+		 * @param mbbB MBB3D
+		 * 
+		 * @return boolean - true if the MBB3Ds are near enough.
+		 */
+		private boolean near(MBB3D mbbA, MBB3D mbbB) {
+			if (predicate != DISTANCE_PREDICATE)
+				return mbbA.intersects(mbbB, getSOP());
+			double limit = distance + getSOP().getEpsilon();
+			return mbbA.minDistSquare(mbbB, getSOP()) <= limit * limit;
+		}
+
+		/*
+		 * Tests whether the exact geometries of the given objects have at most
+		 * the join distance. Objects without a supported geometry pass.
+		 * 
+		 * @param a object of this RStar
+		 * 
+		 * @param b object of the joined RStar
+		 * 
+		 * @return boolean - true if the objects are near enough.
+		 */
+		private boolean near(GeoObj a, GeoObj b) {
+			double square = GeomUtils.euclideanDistanceSQR(a, b);
+			if (Double.isNaN(square))
+				return true;
+			double limit = distance + getSOP().getEpsilon();
+			return square <= limit * limit;
+		}
+	}
+
+	/*
+	 * Iterator for the incremental nearest neighbour search (distance
+	 * browsing). Nodes and objects are kept in one priority queue ordered by
+	 * their minimal distance to the query point. An object at the head of the
+	 * queue is the next neighbour, a node at the head is replaced by its
+	 * entries.<br> <br> Hjaltason, G. R. / Samet, H. : Distance Browsing in
+	 * Spatial Databases - ACM Transactions on Database Systems 24(2), 1999,
+	 * pages 265 - 318.<br> <br> Transient class
+	 */
+	private final class NNIterator implements Iterator {
+
+		/* query point */
+		private final Point3D point;
+
+		/* queue of nodes and objects */
+		private final PriorityQueue queue;
+
+		/* modCount of the RStar at the first access */
+		private int expectedModCount;
+
+		/* flag if the root was put into the queue */
+		private boolean started;
+
+		/* flag if hasNext takes the read lock in concurrent mode */
+		private final boolean locking;
+
+		/*
+		 * Constructor.
+		 * 
+		 * @param point query point
+		 * 
+		 * @param locking true if hasNext should take the read lock in
+		 * concurrent mode, false if the caller holds it or reads optimistically
+		 */
+		private NNIterator(Point3D point, boolean locking) {
+			this.point = point;
+			this.queue = new PriorityQueue();
+			this.started = false;
+			this.locking = locking;
+		}
+
+		/*
+		 * Tests whether a further neighbour exists.
+		 * 
+		 * @see java.util.Iterator#hasNext()
+		 */
+		public boolean hasNext() {
+			StampedLock l = locking ? lock : null;
+			long stamp = l == null ? 0L : l.readLock();
+			try {
+				return expand();
+			} finally {
+				if (l != null)
+					l.unlockRead(stamp);
+			}
+		}
+
+		/*
+		 * Returns the next neighbour as NNResult object.
+		 * 
+		 * @see java.util.Iterator#next()
+		 */
+		public Object next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			return poll();
+		}
+
+		/*
+		 * Not supported.
+		 * 
+		 * @see java.util.Iterator#remove()
+		 */
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		/*
+		 * Replaces the nodes at the head of the queue by their entries until
+		 * an object is at the head. Runs without locking.
+		 * 
+		 * @return boolean - true if an object is at the head, false if the
+		 * queue is empty.
+		 */
+		private boolean expand() {
+			if (!started) {
+				started = true;
+				expectedModCount = modCount;
+				queue.add(new NNQueueElement(0.0, getRoot(), true));
+			} else if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+
+			Metrics m = metrics;
+			NNQueueElement head = (NNQueueElement) queue.peek();
+			while (head != null && head.node) {
+				queue.poll();
+				Node n = (Node) head.obj;
+				if (m != null)
+					m.visits[RStarStatistics.QUERY_NEAREST].increment();
+				boolean sonIsNode = !n.isLeaf();
+				for (int i = 0; i < n.getUsed(); i++) {
+					Entry entry = n.getEntry(i);
+					queue.add(new NNQueueElement(entry.getMBB().minDistSquare(
+							point, getSOP()), entry.getSon(), sonIsNode));
+				}
+				head = (NNQueueElement) queue.peek();
+			}
+			return head != null;
+		}
+
+		/*
+		 * Removes the object at the head of the queue. Must be called after
+		 * expand() returned true.
+		 * 
+		 * @return NNResultImpl - the next neighbour.
+		 */
+		private NNResultImpl poll() {
+			NNQueueElement head = (NNQueueElement) queue.poll();
+			NNResultImpl result = new NNResultImpl();
+			result.setNNResult(head.distance_square, head.obj);
+			return result;
+		}
+	}
+
+	/*
+	 * Element of the NNIterator queue - a node or an object with its minimal
+	 * squared distance to the query point.<br> <br> Transient class
+	 */
+	private final static class NNQueueElement implements Comparable {
+
+		/* minimal squared distance to the query point */
+		private final double distance_square;
+
+		/* node or object */
+		private final Object obj;
+
+		/* flag if obj is a node */
+		private final boolean node;
+
+		/*
+		 * Constructor.
+		 * 
+		 * @param distance_square minimal squared distance
+		 * 
+		 * @param obj node or object
+		 * 
+		 * @param node flag if obj is a node
+		 */
+		private NNQueueElement(double distance_square, Object obj, boolean node) {
+			this.distance_square = distance_square;
+			this.obj = obj;
+			this.node = node;
+		}
+
+		/*
+		 * Compares the distances - on equal distance objects come before
+		 * nodes, so neighbours are reported as early as possible.
+		 * 
+		 * @see java.lang.Comparable#compareTo(java.lang.Object)
+		 */
+		public int compareTo(Object o) {
+			NNQueueElement e = (NNQueueElement) o;
+			if (this.distance_square < e.distance_square)
+				return -1;
+			if (this.distance_square > e.distance_square)
+				return 1;
+			if (this.node == e.node)
+				return 0;
+			return this.node ? 1 : -1;
+		}
+	}
+
 	/**
 	 * Implementation for SAM.NNResult
 	 */
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.dbms.util;
+
+import java.util.Map;
+
+/**
+ * Management interface of a RStar for JMX.<br>
+ * The attributes are those of RStarStatistics. The maps of the query
+ * counters are keyed by the query type names.
+ * 
+ * @see RStarMonitor
+ * @see RStarStatistics
+ */
+public interface RStarMXBean {
+
+	/**
+	 * Returns the number of objects.
+	 * 
+	 * @return int - number of objects.
+	 */
+	public int getCount();
+
+	/**
+	 * Returns the number of levels of the tree.
+	 * 
+	 * @return int - height.
+	 */
+	public int getHeight();
+
+	/**
+	 * Returns the number of nodes.
+	 * 
+	 * @return int - number of nodes.
+	 */
+	public int getNodeCount();
+
+	/**
+	 * Returns the number of leaf nodes.
+	 * 
+	 * @return int - number of leaf nodes.
+	 */
+	public int getLeafCount();
+
+	/**
+	 * Returns the average fill factor of all nodes.
+	 * 
+	 * @return double - fill factor in [0;1].
+	 */
+	public double getFillFactor();
+
+	/**
+	 * Returns the average fill factor of the leaf nodes.
+	 * 
+	 * @return double - fill factor in [0;1].
+	 */
+	public double getLeafFillFactor();
+
+	/**
+	 * Returns the average fill factor of the inner nodes.
+	 * 
+	 * @return double - fill factor in [0;1].
+	 */
+	public double getInnerFillFactor();
+
+	/**
+	 * Returns the overlap volume per level, index 0 is the leaf level.
+	 * 
+	 * @return double[] - overlap volumes.
+	 */
+	public double[] getOverlap();
+
+	/**
+	 * Returns the overlap volume of all levels.
+	 * 
+	 * @return double - overlap volume.
+	 */
+	public double getTotalOverlap();
+
+	/**
+	 * Returns the dead space volume of all nodes.
+	 * 
+	 * @return double - dead space volume.
+	 */
+	public double getDeadSpace();
+
+	/**
+	 * Returns the number of node splits.
+	 * 
+	 * @return long - number of splits.
+	 */
+	public long getSplitCount();
+
+	/**
+	 * Returns the number of forced reinsertions.
+	 * 
+	 * @return long - number of forced reinsertions.
+	 */
+	public long getReinsertCount();
+
+	/**
+	 * Returns the number of inserted objects.
+	 * 
+	 * @return long - number of inserted objects.
+	 */
+	public long getInsertCount();
+
+	/**
+	 * Returns the number of removed objects.
+	 * 
+	 * @return long - number of removed objects.
+	 */
+	public long getRemoveCount();
+
+	/**
+	 * Returns the number of queries per query type.
+	 * 
+	 * @return Map - query type name to number of queries.
+	 */
+	public Map<String, Long> getQueryCounts();
+
+	/**
+	 * Returns the number of visited nodes per query type.
+	 * 
+	 * @return Map - query type name to number of visited nodes.
+	 */
+	public Map<String, Long> getNodeVisits();
+
+	/**
+	 * Tests whether the operation counters are collected.
+	 * 
+	 * @return boolean - true if the metrics are enabled, false otherwise.
+	 */
+	public boolean isMetricsEnabled();
+
+	/**
+	 * Switches the collection of the operation counters on or off.
+	 * 
+	 * @param enabled
+	 *            true to collect the counters, false otherwise
+	 */
+	public void setMetricsEnabled(boolean enabled);
+
+	/**
+	 * Resets the operation counters to 0.
+	 */
+	public void resetMetrics();
+
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.dbms.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * RStarMonitor - RStarMXBean implementation for a RStar.<br>
+ * JMX clients read the attributes one by one, so the statistics of the tree
+ * are kept for MAX_AGE milliseconds before the tree is walked again.<br>
+ * <br>
+ * Usage: <code>RStarMonitor.register(rstar, "component 4711")</code>
+ * registers the monitor at the platform MBeanServer under the name
+ * <code>de.uos.igf.db3d:type=RStar,name="component 4711"</code>.
+ */
+public final class RStarMonitor implements RStarMXBean {
+
+	/** maximum age of the cached statistics in milliseconds */
+	public static final long MAX_AGE = 1000;
+
+	/* monitored RStar */
+	private final RStar rstar;
+
+	/* cached statistics */
+	private RStarStatistics statistics;
+
+	/* time of the cached statistics */
+	private long time;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param rstar
+	 *            RStar to monitor
+	 * @throws IllegalArgumentException
+	 *             if rstar is null.
+	 */
+	public RStarMonitor(RStar rstar) throws IllegalArgumentException {
+		if (rstar == null)
+			throw new IllegalArgumentException("IllegalParameters");
+		this.rstar = rstar;
+	}
+
+	/**
+	 * Registers a monitor for the given RStar at the platform MBeanServer.
+	 * 
+	 * @param rstar
+	 *            RStar to monitor
+	 * @param name
+	 *            name of the RStar, quoted in the ObjectName
+	 * @return ObjectName - name under which the monitor was registered.
+	 * @throws JMException
+	 *             if the registration failed.
+	 * @throws IllegalArgumentException
+	 *             if rstar or name is null.
+	 */
+	public static ObjectName register(RStar rstar, String name)
+			throws JMException {
+		if (name == null)
+			throw new IllegalArgumentException("IllegalParameters");
+		ObjectName objectName = new ObjectName(
+				"de.uos.igf.db3d:type=RStar,name=" + ObjectName.quote(name));
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		server.registerMBean(new RStarMonitor(rstar), objectName);
+		return objectName;
+	}
+
+	/**
+	 * Removes the monitor with the given name from the platform MBeanServer.
+	 * 
+	 * @param objectName
+	 *            name returned by register
+	 * @throws JMException
+	 *             if the monitor was not registered.
+	 */
+	public static void unregister(ObjectName objectName) throws JMException {
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+	}
+
+	/**
+	 * Returns the statistics of the monitored RStar, computed at most
+	 * MAX_AGE milliseconds ago.
+	 * 
+	 * @return RStarStatistics - statistics.
+	 */
+	public synchronized RStarStatistics getStatistics() {
+		long now = System.currentTimeMillis();
+		if (statistics == null || now - time > MAX_AGE) {
+			statistics = rstar.getStatistics();
+			time = now;
+		}
+		return statistics;
+	}
+
+	/**
+	 * Returns the number of objects.
+	 * 
+	 * @return int - number of objects.
+	 */
+	public int getCount() {
+		return getStatistics().getCount();
+	}
+
+	/**
+	 * Returns the number of levels of the tree.
+	 * 
+	 * @return int - height.
+	 */
+	public int getHeight() {
+		return getStatistics().getHeight();
+	}
+
+	/**
+	 * Returns the number of nodes.
+	 * 
+	 * @return int - number of nodes.
+	 */
+	public int getNodeCount() {
+		return getStatistics().getNodeCount();
+	}
+
+	/**
+	 * Returns the number of leaf nodes.
+	 * 
+	 * @return int - number of leaf nodes.
+	 */
+	public int getLeafCount() {
+		return getStatistics().getLeafCount();
+	}
+
+	/**
+	 * Returns the average fill factor of all nodes.
+	 * 
+	 * @return double - fill factor in [0;1].
+	 */
+	public double getFillFactor() {
+		return getStatistics().getFillFactor();
+	}
+
+	/**
+	 * Returns the average fill factor of the leaf nodes.
+	 * 
+	 * @return double - fill factor in [0;1].
+	 */
+	public double getLeafFillFactor() {
+		return getStatistics().getLeafFillFactor();
+	}
+
+	/**
+	 * Returns the average fill factor of the inner nodes.
+	 * 
+	 * @return double - fill factor in [0;1].
+	 */
+	public double getInnerFillFactor() {
+		return getStatistics().getInnerFillFactor();
+	}
+
+	/**
+	 * Returns the overlap volume per level, index 0 is the leaf level.
+	 * 
+	 * @return double[] - overlap volumes.
+	 */
+	public double[] getOverlap() {
+		RStarStatistics s = getStatistics();
+		double[] overlap = new double[s.getHeight()];
+		for (int i = 0; i < overlap.length; i++)
+			overlap[i] = s.getOverlap(i);
+		return overlap;
+	}
+
+	/**
+	 * Returns the overlap volume of all levels.
+	 * 
+	 * @return double - overlap volume.
+	 */
+	public double getTotalOverlap() {
+		return getStatistics().getTotalOverlap();
+	}
+
+	/**
+	 * Returns the dead space volume of all nodes.
+	 * 
+	 * @return double - dead space volume.
+	 */
+	public double getDeadSpace() {
+		return getStatistics().getDeadSpace();
+	}
+
+	/**
+	 * Returns the number of node splits.
+	 * 
+	 * @return long - number of splits.
+	 */
+	public long getSplitCount() {
+		return getStatistics().getSplitCount();
+	}
+
+	/**
+	 * Returns the number of forced reinsertions.
+	 * 
+	 * @return long - number of forced reinsertions.
+	 */
+	public long getReinsertCount() {
+		return getStatistics().getReinsertCount();
+	}
+
+	/**
+	 * Returns the number of inserted objects.
+	 * 
+	 * @return long - number of inserted objects.
+	 */
+	public long getInsertCount() {
+		return getStatistics().getInsertCount();
+	}
+
+	/**
+	 * Returns the number of removed objects.
+	 * 
+	 * @return long - number of removed objects.
+	 */
+	public long getRemoveCount() {
+		return getStatistics().getRemoveCount();
+	}
+
+	/**
+	 * Returns the number of queries per query type.
+	 * 
+	 * @return Map - query type name to number of queries.
+	 */
+	public Map<String, Long> getQueryCounts() {
+		RStarStatistics s = getStatistics();
+		Map<String, Long> map = new LinkedHashMap<String, Long>();
+		for (int i = 0; i < RStarStatistics.QUERY_TYPES; i++)
+			map.put(RStarStatistics.getQueryTypeName(i), Long.valueOf(s
+					.getQueryCount(i)));
+		return map;
+	}
+
+	/**
+	 * Returns the number of visited nodes per query type.
+	 * 
+	 * @return Map - query type name to number of visited nodes.
+	 */
+	public Map<String, Long> getNodeVisits() {
+		RStarStatistics s = getStatistics();
+		Map<String, Long> map = new LinkedHashMap<String, Long>();
+		for (int i = 0; i < RStarStatistics.QUERY_TYPES; i++)
+			map.put(RStarStatistics.getQueryTypeName(i), Long.valueOf(s
+					.getNodeVisits(i)));
+		return map;
+	}
+
+	/**
+	 * Tests whether the operation counters are collected.
+	 * 
+	 * @return boolean - true if the metrics are enabled, false otherwise.
+	 */
+	public boolean isMetricsEnabled() {
+		return rstar.isMetricsEnabled();
+	}
+
+	/**
+	 * Switches the collection of the operation counters on or off.
+	 * 
+	 * @param enabled
+	 *            true to collect the counters, false otherwise
+	 */
+	public synchronized void setMetricsEnabled(boolean enabled) {
+		rstar.setMetricsEnabled(enabled);
+		statistics = null;
+	}
+
+	/**
+	 * Resets the operation counters to 0.
+	 */
+	public synchronized void resetMetrics() {
+		rstar.resetMetrics();
+		statistics = null;
+	}
+
+}
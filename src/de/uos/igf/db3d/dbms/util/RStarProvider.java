@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.dbms.util;
+
+import de.uos.igf.db3d.dbms.geom.ScalarOperator;
+
+/**
+ * SAMProvider creating RStar objects with a fixed fanout.
+ */
+public final class RStarProvider implements SAMProvider {
+
+	private static final long serialVersionUID = 1L;
+
+	/* maximum entries per node */
+	private final int maxEntries;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param maxEntries
+	 *            maximum entries per node (must be 4 or more)
+	 * @throws IllegalArgumentException
+	 *             if maxEntries is less than 4.
+	 */
+	public RStarProvider(int maxEntries) throws IllegalArgumentException {
+		if (maxEntries < 4)
+			throw new IllegalArgumentException("IllegalParameters");
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * Creates a new empty RStar.
+	 * 
+	 * @param sop
+	 *            ScalarOperator of the indexed objects
+	 * @return SAM - new empty RStar.
+	 * @throws IllegalArgumentException
+	 *             if ScalarOperator = null.
+	 */
+	public SAM createSAM(ScalarOperator sop) {
+		return new RStar(maxEntries, sop);
+	}
+
+	/**
+	 * Returns the maximum entries per node.
+	 * 
+	 * @return int - maximum entries per node.
+	 */
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+}
@@ -0,0 +1,552 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.dbms.util;
+
+import java.util.Arrays;
+
+/**
+ * RStarStatistics - snapshot of the structure and the operation counters of
+ * a RStar.<br>
+ * The structure values are computed by walking the whole tree in
+ * RStar.getStatistics(). The counters are only collected while the metrics
+ * of the RStar are enabled, otherwise they are 0.<br>
+ * Levels are counted from the leaves - level 0 is the leaf level.
+ */
+public final class RStarStatistics {
+
+	/** query type of the intersects and intersectsStrict queries */
+	public static final int QUERY_INTERSECTS = 0;
+
+	/** query type of the contains and containsStrict queries */
+	public static final int QUERY_CONTAINS = 1;
+
+	/** query type of the inside and insideStrict queries */
+	public static final int QUERY_INSIDE = 2;
+
+	/** query type of the queries for equal MBB3Ds */
+	public static final int QUERY_EQUALS = 3;
+
+	/** query type of the nearest neighbour searches */
+	public static final int QUERY_NEAREST = 4;
+
+	/** query type of the spatial joins */
+	public static final int QUERY_JOIN = 5;
+
+	/** query type of the batched intersects queries */
+	public static final int QUERY_BATCH = 6;
+
+	/** number of query types */
+	public static final int QUERY_TYPES = 7;
+
+	/* names of the query types */
+	private final static String[] QUERY_NAMES = { "intersects", "contains",
+			"inside", "equals", "nearest", "join", "batch" };
+
+	/* maximum entries per node */
+	private final int mMax;
+
+	/* number of objects */
+	private final int count;
+
+	/* number of nodes */
+	private int nodeCount;
+
+	/* number of leaf nodes */
+	private int leafCount;
+
+	/* number of entries of the leaf nodes */
+	private long leafEntries;
+
+	/* number of entries of the inner nodes */
+	private long innerEntries;
+
+	/* overlap volume per level */
+	private double[] overlap;
+
+	/* dead space volume of all nodes */
+	private double deadSpace;
+
+	/* number of node splits */
+	private long splitCount;
+
+	/* number of forced reinsertions */
+	private long reinsertCount;
+
+	/* number of inserted objects */
+	private long insertCount;
+
+	/* number of removed objects */
+	private long removeCount;
+
+	/* number of queries per query type */
+	private final long[] queryCount;
+
+	/* number of visited nodes per query type */
+	private final long[] nodeVisits;
+
+	/**
+	 * Constructor.<br>
+	 * Called by RStar.getStatistics().
+	 * 
+	 * @param count
+	 *            number of objects
+	 * @param mMax
+	 *            maximum entries per node
+	 */
+	RStarStatistics(int count, int mMax) {
+		this.count = count;
+		this.mMax = mMax;
+		this.overlap = new double[0];
+		this.queryCount = new long[QUERY_TYPES];
+		this.nodeVisits = new long[QUERY_TYPES];
+	}
+
+	/**
+	 * Returns the name of the given query type.
+	 * 
+	 * @param type
+	 *            query type constant
+	 * @return String - name of the query type.
+	 * @throws IllegalArgumentException
+	 *             if type is not a query type constant.
+	 */
+	public static String getQueryTypeName(int type) {
+		if (type < 0 || type >= QUERY_TYPES)
+			throw new IllegalArgumentException("IllegalParameters");
+		return QUERY_NAMES[type];
+	}
+
+	/**
+	 * Returns the number of objects.
+	 * 
+	 * @return int - number of objects.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the number of levels of the tree.
+	 * 
+	 * @return int - height.
+	 */
+	public int getHeight() {
+		return overlap.length;
+	}
+
+	/**
+	 * Returns the number of nodes.
+	 * 
+	 * @return int - number of nodes.
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Returns the number of leaf nodes.
+	 * 
+	 * @return int - number of leaf nodes.
+	 */
+	public int getLeafCount() {
+		return leafCount;
+	}
+
+	/**
+	 * Returns the average fill factor of all nodes - the number of entries
+	 * divided by the maximum number of entries.
+	 * 
+	 * @return double - fill factor in [0;1].
+	 */
+	public double getFillFactor() {
+		return fill(leafEntries + innerEntries, nodeCount);
+	}
+
+	/**
+	 * Returns the average fill factor of the leaf nodes.
+	 * 
+	 * @return double - fill factor in [0;1].
+	 */
+	public double getLeafFillFactor() {
+		return fill(leafEntries, leafCount);
+	}
+
+	/**
+	 * Returns the average fill factor of the inner nodes.
+	 * 
+	 * @return double - fill factor in [0;1], 0 if there are no inner nodes.
+	 */
+	public double getInnerFillFactor() {
+		return fill(innerEntries, nodeCount - leafCount);
+	}
+
+	/**
+	 * Returns the overlap volume of the given level - the sum of the
+	 * intersection volumes of all entry pairs of the nodes of the level.
+	 * 
+	 * @param level
+	 *            level, 0 for the leaf level
+	 * @return double - overlap volume.
+	 * @throws IllegalArgumentException
+	 *             if level is not in [0;getHeight()-1].
+	 */
+	public double getOverlap(int level) {
+		if (level < 0 || level >= overlap.length)
+			throw new IllegalArgumentException("IllegalParameters");
+		return overlap[level];
+	}
+
+	/**
+	 * Returns the overlap volume of all levels.
+	 * 
+	 * @return double - overlap volume.
+	 */
+	public double getTotalOverlap() {
+		double total = 0;
+		for (int i = 0; i < overlap.length; i++)
+			total += overlap[i];
+		return total;
+	}
+
+	/**
+	 * Returns the dead space of all nodes - the volume of the MBB3D of a node
+	 * not covered by the MBB3Ds of its entries.
+	 * 
+	 * @return double - dead space volume.
+	 */
+	public double getDeadSpace() {
+		return deadSpace;
+	}
+
+	/**
+	 * Returns the number of node splits.
+	 * 
+	 * @return long - number of splits.
+	 */
+	public long getSplitCount() {
+		return splitCount;
+	}
+
+	/**
+	 * Returns the number of forced reinsertions.
+	 * 
+	 * @return long - number of forced reinsertions.
+	 */
+	public long getReinsertCount() {
+		return reinsertCount;
+	}
+
+	/**
+	 * Returns the number of inserted objects, bulk loaded ones included.
+	 * 
+	 * @return long - number of inserted objects.
+	 */
+	public long getInsertCount() {
+		return insertCount;
+	}
+
+	/**
+	 * Returns the number of removed objects.
+	 * 
+	 * @return long - number of removed objects.
+	 */
+	public long getRemoveCount() {
+		return removeCount;
+	}
+
+	/**
+	 * Returns the number of queries of the given type.
+	 * 
+	 * @param type
+	 *            query type constant
+	 * @return long - number of queries.
+	 * @throws IllegalArgumentException
+	 *             if type is not a query type constant.
+	 */
+	public long getQueryCount(int type) {
+		if (type < 0 || type >= QUERY_TYPES)
+			throw new IllegalArgumentException("IllegalParameters");
+		return queryCount[type];
+	}
+
+	/**
+	 * Returns the number of nodes visited by the queries of the given type.
+	 * For joins every node of a visited node pair is counted.
+	 * 
+	 * @param type
+	 *            query type constant
+	 * @return long - number of visited nodes.
+	 * @throws IllegalArgumentException
+	 *             if type is not a query type constant.
+	 */
+	public long getNodeVisits(int type) {
+		if (type < 0 || type >= QUERY_TYPES)
+			throw new IllegalArgumentException("IllegalParameters");
+		return nodeVisits[type];
+	}
+
+	/**
+	 * Converts this to string.
+	 * 
+	 * @return String with the information of this.
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		StringBuffer b = new StringBuffer("RStarStatistics(count=" + count
+				+ ", height=" + getHeight() + ", nodes=" + nodeCount
+				+ ", leafs=" + leafCount + ", fill=" + getFillFactor()
+				+ ", overlap=" + Arrays.toString(overlap) + ", deadSpace="
+				+ deadSpace + ", splits=" + splitCount + ", reinserts="
+				+ reinsertCount);
+		for (int i = 0; i < QUERY_TYPES; i++)
+			b.append(", " + QUERY_NAMES[i] + "=" + queryCount[i] + "/"
+					+ nodeVisits[i]);
+		b.append(")");
+		return b.toString();
+	}
+
+	/**
+	 * Adds a node of the tree.<br>
+	 * Called by RStar.getStatistics().
+	 * 
+	 * @param level
+	 *            level of the node, 0 for leaf nodes
+	 * @param boxes
+	 *            MBB3Ds of the entries - minX, minY, minZ, maxX, maxY, maxZ
+	 *            per entry
+	 * @param used
+	 *            number of entries
+	 */
+	void addNode(int level, double[] boxes, int used) {
+		nodeCount++;
+		if (level == 0) {
+			leafCount++;
+			leafEntries += used;
+		} else
+			innerEntries += used;
+
+		if (level >= overlap.length) {
+			double[] help = new double[level + 1];
+			System.arraycopy(overlap, 0, help, 0, overlap.length);
+			overlap = help;
+		}
+		for (int i = 0; i < used; i++)
+			for (int j = i + 1; j < used; j++)
+				overlap[level] += intersectionVolume(boxes, i, j);
+
+		if (used > 0) {
+			double[] node = new double[] { Double.POSITIVE_INFINITY,
+					Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+					Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY,
+					Double.NEGATIVE_INFINITY };
+			for (int i = 0; i < used; i++) {
+				for (int k = 0; k < 3; k++) {
+					node[k] = Math.min(node[k], boxes[i * 6 + k]);
+					node[k + 3] = Math.max(node[k + 3], boxes[i * 6 + k + 3]);
+				}
+			}
+			double volume = (node[3] - node[0]) * (node[4] - node[1])
+					* (node[5] - node[2]);
+			deadSpace += Math.max(0, volume - unionVolume(boxes, used));
+		}
+	}
+
+	/**
+	 * Sets the operation counters.<br>
+	 * Called by RStar.getStatistics().
+	 * 
+	 * @param splits
+	 *            number of node splits
+	 * @param reinserts
+	 *            number of forced reinsertions
+	 * @param inserts
+	 *            number of inserted objects
+	 * @param removes
+	 *            number of removed objects
+	 * @param queries
+	 *            number of queries per query type
+	 * @param visits
+	 *            number of visited nodes per query type
+	 */
+	void setCounters(long splits, long reinserts, long inserts, long removes,
+			long[] queries, long[] visits) {
+		this.splitCount = splits;
+		this.reinsertCount = reinserts;
+		this.insertCount = inserts;
+		this.removeCount = removes;
+		System.arraycopy(queries, 0, queryCount, 0, QUERY_TYPES);
+		System.arraycopy(visits, 0, nodeVisits, 0, QUERY_TYPES);
+	}
+
+	/*
+	 * Returns the fill factor of the given number of entries in the given
+	 * number of nodes.
+	 * 
+	 * @param entries number of entries
+	 * 
+	 * @param nodes number of nodes
+	 * 
+	 * @return double - fill factor, 0 if nodes is 0.
+	 */
+	private double fill(long entries, int nodes) {
+		if (nodes == 0)
+			return 0;
+		return (double) entries / ((double) nodes * mMax);
+	}
+
+	/*
+	 * Returns the intersection volume of two boxes.
+	 * 
+	 * @param boxes boxes - 6 doubles per box
+	 * 
+	 * @param i index of the first box
+	 * 
+	 * @param j index of the second box
+	 * 
+	 * @return double - intersection volume.
+	 */
+	private static double intersectionVolume(double[] boxes, int i, int j) {
+		double volume = 1;
+		for (int k = 0; k < 3; k++) {
+			double length = Math.min(boxes[i * 6 + k + 3], boxes[j * 6 + k + 3])
+					- Math.max(boxes[i * 6 + k], boxes[j * 6 + k]);
+			if (length <= 0)
+				return 0;
+			volume *= length;
+		}
+		return volume;
+	}
+
+	/*
+	 * Returns the volume of the union of the given boxes. The x axis is cut
+	 * into slabs at the box bounds, in every slab the area of the union in
+	 * the yz plane is computed the same way with slabs along the y axis and
+	 * merged intervals along the z axis.
+	 * 
+	 * @param boxes boxes - 6 doubles per box
+	 * 
+	 * @param used number of boxes
+	 * 
+	 * @return double - union volume.
+	 */
+	private static double unionVolume(double[] boxes, int used) {
+		double[] xs = bounds(boxes, used, 0, null);
+		int[] active = new int[used];
+		double volume = 0;
+		for (int s = 0; s + 1 < xs.length; s++) {
+			double width = xs[s + 1] - xs[s];
+			if (width <= 0)
+				continue;
+			int n = 0;
+			for (int i = 0; i < used; i++)
+				if (boxes[i * 6] <= xs[s] && boxes[i * 6 + 3] >= xs[s + 1])
+					active[n++] = i;
+			if (n > 0)
+				volume += width * unionArea(boxes, active, n);
+		}
+		return volume;
+	}
+
+	/*
+	 * Returns the area of the union of the yz projections of the given
+	 * boxes.
+	 * 
+	 * @param boxes boxes - 6 doubles per box
+	 * 
+	 * @param active indexes of the boxes
+	 * 
+	 * @param n number of valid indexes in active
+	 * 
+	 * @return double - union area.
+	 */
+	private static double unionArea(double[] boxes, int[] active, int n) {
+		double[] ys = bounds(boxes, n, 1, active);
+		double[] intervals = new double[n * 2];
+		double area = 0;
+		for (int s = 0; s + 1 < ys.length; s++) {
+			double width = ys[s + 1] - ys[s];
+			if (width <= 0)
+				continue;
+			int m = 0;
+			for (int a = 0; a < n; a++) {
+				int i = active[a];
+				if (boxes[i * 6 + 1] <= ys[s] && boxes[i * 6 + 4] >= ys[s + 1]) {
+					intervals[m * 2] = boxes[i * 6 + 2];
+					intervals[m * 2 + 1] = boxes[i * 6 + 5];
+					m++;
+				}
+			}
+			area += width * unionLength(intervals, m);
+		}
+		return area;
+	}
+
+	/*
+	 * Returns the length of the union of the given intervals.
+	 * 
+	 * @param intervals intervals - minimum and maximum per interval, sorted in
+	 * place
+	 * 
+	 * @param m number of intervals
+	 * 
+	 * @return double - union length.
+	 */
+	private static double unionLength(double[] intervals, int m) {
+		// insertion sort by minimum - m is at most the node capacity
+		for (int i = 1; i < m; i++) {
+			double min = intervals[i * 2];
+			double max = intervals[i * 2 + 1];
+			int j = i - 1;
+			while (j >= 0 && intervals[j * 2] > min) {
+				intervals[(j + 1) * 2] = intervals[j * 2];
+				intervals[(j + 1) * 2 + 1] = intervals[j * 2 + 1];
+				j--;
+			}
+			intervals[(j + 1) * 2] = min;
+			intervals[(j + 1) * 2 + 1] = max;
+		}
+		if (m == 0)
+			return 0;
+		double length = 0;
+		double start = intervals[0];
+		double end = intervals[1];
+		for (int i = 1; i < m; i++) {
+			if (intervals[i * 2] > end) {
+				length += end - start;
+				start = intervals[i * 2];
+				end = intervals[i * 2 + 1];
+			} else
+				end = Math.max(end, intervals[i * 2 + 1]);
+		}
+		return length + end - start;
+	}
+
+	/*
+	 * Returns the sorted minimum and maximum coordinates of the given boxes
+	 * along the given axis.
+	 * 
+	 * @param boxes boxes - 6 doubles per box
+	 * 
+	 * @param n number of boxes
+	 * 
+	 * @param axis axis index
+	 * 
+	 * @param index indexes of the boxes, null for the first n boxes
+	 * 
+	 * @return double[] - sorted coordinates.
+	 */
+	private static double[] bounds(double[] boxes, int n, int axis,
+			int[] index) {
+		double[] coords = new double[n * 2];
+		for (int a = 0; a < n; a++) {
+			int i = index == null ? a : index[a];
+			coords[a * 2] = boxes[i * 6 + axis];
+			coords[a * 2 + 1] = boxes[i * 6 + axis + 3];
+		}
+		Arrays.sort(coords);
+		return coords;
+	}
+
+}
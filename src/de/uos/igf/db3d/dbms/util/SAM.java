@@ -5,9 +5,11 @@
 package de.uos.igf.db3d.dbms.util;
 
 import java.io.Serializable;
+import java.util.Iterator;
 import java.util.Set;
 
 import de.uos.igf.db3d.dbms.geom.MBB3D;
+import de.uos.igf.db3d.dbms.geom.Plane3D;
 import de.uos.igf.db3d.dbms.geom.Point3D;
 import de.uos.igf.db3d.dbms.structure.GeoObj;
 
@@ -43,6 +45,24 @@ public interface SAM extends Serializable {
 		public Object getObjectRef();
 	}
 
+	/**
+	 * The Interface Visitor defines the callback for range queries which hand
+	 * over their result objects one by one instead of collecting them in a
+	 * Set. The query stops as soon as the visitor returns false.
+	 */
+	public interface Visitor {
+
+		/**
+		 * Visits an object of the query result. Every result object is
+		 * visited once.
+		 * 
+		 * @param obj
+		 *            result object
+		 * @return boolean - true to continue the query, false to terminate it.
+		 */
+		public boolean visit(Object obj);
+	}
+
 	/**
 	 * Returns the number of objects in the SAM
 	 * 
@@ -149,6 +169,149 @@ public interface SAM extends Serializable {
 	 */
 	public Set contains(Point3D point);
 
+	/**
+	 * Passes the SpatialObject objects which <b>strictly</b> intersect the
+	 * given MBB3D to the given visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean intersectsStrict(MBB3D mbb, Visitor visitor);
+
+	/**
+	 * Passes the SpatialObject objects which intersect the given MBB3D to the
+	 * given visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean intersects(MBB3D mbb, Visitor visitor);
+
+	/**
+	 * Passes the SpatialObject objects which <b>strictly</b> contain the given
+	 * MBB3D to the given visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean containsStrict(MBB3D mbb, Visitor visitor);
+
+	/**
+	 * Passes the SpatialObject objects which contain the given MBB3D to the
+	 * given visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean contains(MBB3D mbb, Visitor visitor);
+
+	/**
+	 * Passes the SpatialObject objects which are <b>strictly</b> inside the
+	 * given MBB3D to the given visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean insideStrict(MBB3D mbb, Visitor visitor);
+
+	/**
+	 * Passes the SpatialObject objects which are inside the given MBB3D to the
+	 * given visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean inside(MBB3D mbb, Visitor visitor);
+
+	/**
+	 * Passes the SpatialObject objects which contain the given point to the
+	 * given visitor.
+	 * 
+	 * @param point
+	 *            the Point3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean contains(Point3D point, Visitor visitor);
+
+	/**
+	 * Returns for each of the given MBB3D objects the set of objects which
+	 * intersect it. The Set for <code>mbbs[i]</code> is stored at index
+	 * <code>i</code> of the result.<br>
+	 * The queries are answered together, which is faster than single queries
+	 * for large batches of neighbouring boxes.
+	 * 
+	 * @param mbbs
+	 *            the MBB3D objects for test
+	 * @return Set[] - a Set object containing the result for every MBB3D.
+	 */
+	public Set[] intersects(MBB3D[] mbbs);
+
+	/**
+	 * Returns the set of objects whose MBB3D intersects the given plane. The
+	 * nodes of the index are classified against the plane by the distances
+	 * of their corners, so subtrees on one side of the plane are pruned.
+	 * 
+	 * @param plane
+	 *            the Plane3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set intersects(Plane3D plane);
+
+	/**
+	 * Passes the objects whose MBB3D intersects the given plane to the
+	 * visitor.
+	 * 
+	 * @param plane
+	 *            the Plane3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean intersects(Plane3D plane, Visitor visitor);
+
+	/**
+	 * Returns for each of the given parallel planes the set of objects whose
+	 * MBB3D intersects it. The Set for <code>planes[i]</code> is stored at
+	 * index <code>i</code> of the result.<br>
+	 * The planes are answered with one traversal of the index, every node is
+	 * matched against the planes by a binary search along the common normal.
+	 * 
+	 * @param planes
+	 *            parallel Plane3D objects for test
+	 * @return Set[] - a Set object containing the result for every plane.
+	 * @throws IllegalArgumentException
+	 *             if the planes are not parallel.
+	 */
+	public Set[] intersects(Plane3D[] planes);
+
 	/**
 	 * Returns the set of the <code>number</code> SpatialObject objects which
 	 * are the nearest neighbours of the given point.<br>
@@ -163,5 +326,47 @@ public interface SAM extends Serializable {
 	 */
 	public NNResult[] nearest(int number, Point3D point);
 
+	/**
+	 * Returns the <code>number</code> SpatialObject objects which are nearest
+	 * to the given point with respect to their exact geometry. The MBB3D
+	 * distance is only used as lower bound, the candidates are refined with
+	 * the exact distance of points, segments, triangles and tetrahedrons.
+	 * Other objects are ranked by their MBB3D distance.
+	 * 
+	 * @param number
+	 *            number of nearest neighbours to search
+	 * @param point
+	 *            the Point3D object for test
+	 * @return NNResult[] - an array of NNResult objects sorted by distance.
+	 */
+	public NNResult[] nearestExact(int number, Point3D point);
+
+	/**
+	 * Returns the SpatialObject objects whose exact geometry has at most the
+	 * given distance to the given point.
+	 * 
+	 * @param point
+	 *            the Point3D object for test
+	 * @param distance
+	 *            the maximal distance
+	 * @return NNResult[] - an array of NNResult objects sorted by distance.
+	 * @throws IllegalArgumentException
+	 *             if distance is negative.
+	 */
+	public NNResult[] withinDistance(Point3D point, double distance);
+
+	/**
+	 * Returns an Iterator over the SpatialObject objects in ascending order of
+	 * their distance to the given point. Each call of next() returns a
+	 * NNResult object. The neighbours are computed lazily, so the caller can
+	 * take as many of them as needed without restarting the search.<br>
+	 * The SAM must not be changed while the Iterator is in use.
+	 * 
+	 * @param point
+	 *            the Point3D object for test
+	 * @return Iterator - Iterator over NNResult objects.
+	 */
+	public Iterator nearestIterator(Point3D point);
+
 } // end SAM
 
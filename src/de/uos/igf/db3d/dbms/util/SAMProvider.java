@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.dbms.util;
+
+import java.io.Serializable;
+
+import de.uos.igf.db3d.dbms.geom.ScalarOperator;
+
+/**
+ * Interface SAMProvider creates the spatial access methods of the net
+ * components. A provider can be set on a SpaceDefinition, a net builder or a
+ * net, so every net can choose its index implementation and parameters like
+ * the fanout.
+ * 
+ * @see RStarProvider
+ * @see OctreeProvider
+ */
+public interface SAMProvider extends Serializable {
+
+	/**
+	 * Creates a new empty SAM.
+	 * 
+	 * @param sop
+	 *            ScalarOperator of the indexed objects
+	 * @return SAM - new empty SAM.
+	 */
+	public SAM createSAM(ScalarOperator sop);
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.dbms.util;
+
+import de.uos.igf.db3d.dbms.geom.Segment3D;
+import de.uos.igf.db3d.dbms.geom.Tetrahedron3D;
+import de.uos.igf.db3d.dbms.geom.Triangle3D;
+
+/**
+ * SpatialAggregate - additive totals of a set of indexed objects.<br>
+ * The number of objects is counted for all objects, the length for Segment3D
+ * objects, the area for Triangle3D objects and the volume for Tetrahedron3D
+ * objects (including the net elements derived from them). Other objects
+ * only contribute to the count.<br>
+ * <br>
+ * Instances are immutable. Transient value class
+ * 
+ * @see RStar#aggregateInside(de.uos.igf.db3d.dbms.geom.MBB3D)
+ * @see RStar#aggregateIntersects(de.uos.igf.db3d.dbms.geom.MBB3D)
+ */
+public final class SpatialAggregate {
+
+	/** aggregate of no objects */
+	public final static SpatialAggregate EMPTY = new SpatialAggregate(0, 0,
+			0, 0);
+
+	/* number of objects */
+	private final int count;
+
+	/* total length of the segments */
+	private final double length;
+
+	/* total area of the triangles */
+	private final double area;
+
+	/* total volume of the tetrahedrons */
+	private final double volume;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param count
+	 *            number of objects
+	 * @param length
+	 *            total length
+	 * @param area
+	 *            total area
+	 * @param volume
+	 *            total volume
+	 */
+	SpatialAggregate(int count, double length, double area, double volume) {
+		this.count = count;
+		this.length = length;
+		this.area = area;
+		this.volume = volume;
+	}
+
+	/**
+	 * Constructor.<br>
+	 * Creates the aggregate from the totals accumulated by add.
+	 * 
+	 * @param totals
+	 *            count, length, area and volume
+	 */
+	SpatialAggregate(double[] totals) {
+		this((int) totals[0], totals[1], totals[2], totals[3]);
+	}
+
+	/**
+	 * Adds the totals of this to the given accumulator.
+	 * 
+	 * @param totals
+	 *            count, length, area and volume
+	 */
+	void addTo(double[] totals) {
+		totals[0] += count;
+		totals[1] += length;
+		totals[2] += area;
+		totals[3] += volume;
+	}
+
+	/**
+	 * Adds the measures of the given object to the given accumulator.
+	 * 
+	 * @param obj
+	 *            indexed object
+	 * @param totals
+	 *            count, length, area and volume
+	 */
+	static void add(Object obj, double[] totals) {
+		totals[0]++;
+		if (obj instanceof Segment3D)
+			totals[1] += ((Segment3D) obj).getLength();
+		else if (obj instanceof Triangle3D)
+			totals[2] += ((Triangle3D) obj).getArea();
+		else if (obj instanceof Tetrahedron3D)
+			totals[3] += ((Tetrahedron3D) obj).getVolume();
+	}
+
+	/**
+	 * Returns the number of objects.
+	 * 
+	 * @return int - number of objects.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the total length of the Segment3D objects.
+	 * 
+	 * @return double - total length.
+	 */
+	public double getLength() {
+		return length;
+	}
+
+	/**
+	 * Returns the total area of the Triangle3D objects.
+	 * 
+	 * @return double - total area.
+	 */
+	public double getArea() {
+		return area;
+	}
+
+	/**
+	 * Returns the total volume of the Tetrahedron3D objects.
+	 * 
+	 * @return double - total volume.
+	 */
+	public double getVolume() {
+		return volume;
+	}
+
+	/**
+	 * Converts this to string.
+	 * 
+	 * @return String with the information of this.
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return "<SpatialAggregate count=\"" + count + "\" length=\"" + length
+				+ "\" area=\"" + area + "\" volume=\"" + volume + "\"/>";
+	}
+
+}
@@ -0,0 +1,1351 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.dbms.util;
+
+import java.io.Serializable;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import de.uos.igf.db3d.dbms.geom.MBB3D;
+import de.uos.igf.db3d.dbms.geom.Plane3D;
+import de.uos.igf.db3d.dbms.geom.Point3D;
+import de.uos.igf.db3d.dbms.geom.ScalarOperator;
+import de.uos.igf.db3d.dbms.structure.GeoObj;
+
+/**
+ * SpatialHash - uniform grid implementation of the SAM interface for point
+ * sets.<br>
+ * Every object is stored in the grid cell containing the center of its
+ * MBB3D. Only occupied cells exist, they are kept in an open addressing hash
+ * table, so insert and remove take constant time and the extent of the data
+ * need not be known in advance. The coordinates of Point3D objects are read
+ * directly, no MBB3D is created for them.<br>
+ * The cell size adapts to the data: if the cells hold more than 16 objects on
+ * average the cell size is halved, if they hold less than 1.5 it is doubled.
+ * The check is done whenever the number of objects has doubled or halved
+ * since the last check, so the rehashing cost is amortized constant per
+ * object.<br>
+ * Objects with an extent are supported, the queries are widened by the
+ * largest half extent of all objects. For sets of large objects the RStar or
+ * the Octree are the better choice.<br>
+ * <br>
+ * This class is not synchronized.
+ */
+public class SpatialHash implements SAM {
+
+	private static final long serialVersionUID = 1L;
+
+	/* predicate constants */
+	private final static int INTERSECTS_STRICT = 0;
+
+	private final static int CONTAINS_STRICT = 1;
+
+	private final static int INSIDE_STRICT = 2;
+
+	private final static int INTERSECTS = 10;
+
+	private final static int CONTAINS = 11;
+
+	private final static int INSIDE = 12;
+
+	/* average objects per cell above which the cell size is halved */
+	private final static double MAX_OCCUPANCY = 16;
+
+	/* average objects per cell below which the cell size is doubled */
+	private final static double MIN_OCCUPANCY = 1.5;
+
+	/* minimum number of objects for adapting the cell size */
+	private final static int MIN_ADAPT_COUNT = 64;
+
+	/* maximum number of cell size changes per adaption */
+	private final static int MAX_ADAPT_STEPS = 8;
+
+	/* ScalarOperator */
+	private final ScalarOperator sop;
+
+	/* edge length of the cells */
+	private double cellSize;
+
+	/* cell keys - three indices per slot */
+	private int[] keys;
+
+	/* cells of the hash table - null for free slots */
+	private Cell[] cells;
+
+	/* number of occupied cells */
+	private int occupied;
+
+	/* number of objects */
+	private int count;
+
+	/* number of objects at the last adaption of the cell size */
+	private int adaptCount;
+
+	/* largest half extent of the MBB3Ds of the objects */
+	private double maxHalfExtent;
+
+	/* bounds of all objects - minX, minY, minZ, maxX, maxY, maxZ */
+	private final double[] bounds;
+
+	/* flag if bounds is valid */
+	private boolean boundsValid;
+
+	/* number of structural modifications for the nearest neighbour iterator */
+	private transient int modCount;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param cellSize
+	 *            initial edge length of the grid cells (must be greater than
+	 *            0)
+	 * @param sop
+	 *            ScalarOperator
+	 * @throws IllegalArgumentException
+	 *             if cellSize is not greater than 0 or ScalarOperator = null.
+	 */
+	public SpatialHash(double cellSize, ScalarOperator sop)
+			throws IllegalArgumentException {
+		if (!(cellSize > 0) || sop == null)
+			throw new IllegalArgumentException("IllegalParameters");
+		this.sop = sop;
+		this.cellSize = cellSize;
+		this.keys = new int[16 * 3];
+		this.cells = new Cell[16];
+		this.occupied = 0;
+		this.count = 0;
+		this.adaptCount = 0;
+		this.maxHalfExtent = 0;
+		this.bounds = new double[6];
+		this.boundsValid = true;
+		clearBounds();
+	}
+
+	/**
+	 * Returns the number of objects in the SpatialHash.
+	 * 
+	 * @return int - number of objects.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the current edge length of the grid cells.
+	 * 
+	 * @return double - cell size.
+	 */
+	public double getCellSize() {
+		return cellSize;
+	}
+
+	/**
+	 * Returns the MBB3D of all objects in the SpatialHash.
+	 * 
+	 * @return MBB3D - MBB of all objects, null if the SpatialHash is empty.
+	 */
+	public MBB3D getMBB() {
+		if (count == 0)
+			return null;
+		if (!boundsValid) {
+			clearBounds();
+			double[] b = new double[6];
+			for (int s = 0; s < cells.length; s++) {
+				Cell cell = cells[s];
+				if (cell == null)
+					continue;
+				for (int i = 0; i < cell.used; i++) {
+					bounds(cell.objects[i], b);
+					extendBounds(b);
+				}
+			}
+			boundsValid = true;
+		}
+		return new MBB3D(new Point3D(bounds[0], bounds[1], bounds[2]),
+				new Point3D(bounds[3], bounds[4], bounds[5]));
+	}
+
+	/**
+	 * Retrieves all entries in the SpatialHash.
+	 * 
+	 * @return Set - all entries.
+	 */
+	public Set getEntries() {
+		Set set = new HashSet(count * 2);
+		for (int s = 0; s < cells.length; s++)
+			if (cells[s] != null)
+				for (int i = 0; i < cells[s].used; i++)
+					set.add(cells[s].objects[i]);
+		return set;
+	}
+
+	/**
+	 * Inserts the given GeoObj into the SpatialHash.
+	 * 
+	 * @param go
+	 *            GeoObj to insert.
+	 * @return boolean - true if successful.
+	 * @throws IllegalArgumentException
+	 *             if mbb of given GeoObject is null.
+	 */
+	public boolean insert(GeoObj go) {
+		double[] b = new double[6];
+		bounds(go, b);
+		for (int k = 0; k < 3; k++)
+			maxHalfExtent = Math.max(maxHalfExtent, (b[k + 3] - b[k]) / 2);
+		add(go, b);
+		if (boundsValid)
+			extendBounds(b);
+		count++;
+		modCount++;
+		adapt();
+		return true;
+	}
+
+	/**
+	 * Removes the given GeoObj from the SpatialHash.
+	 * 
+	 * @param go
+	 *            GeoObj to remove.
+	 * @return boolean - true if successful, false if the object was not found.
+	 * @throws IllegalArgumentException
+	 *             if mbb of given GeoObject is null.
+	 */
+	public boolean remove(GeoObj go) {
+		double[] b = new double[6];
+		bounds(go, b);
+		int slot = find(index(b[0], b[3]), index(b[1], b[4]),
+				index(b[2], b[5]));
+		if (slot < 0)
+			return false;
+		Cell cell = cells[slot];
+		int i = cell.indexOf(go);
+		if (i < 0)
+			return false;
+		cell.remove(i);
+		if (cell.used == 0)
+			removeSlot(slot);
+		boundsValid = false;
+		count--;
+		modCount++;
+		adapt();
+		return true;
+	}
+
+	/**
+	 * Returns the set of objects which intersect the given MBB3D strict.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set intersectsStrict(MBB3D mbb) {
+		return retrieve(mbb, INTERSECTS_STRICT);
+	}
+
+	/**
+	 * Returns the set of objects which intersect the given MBB3D.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set intersects(MBB3D mbb) {
+		return retrieve(mbb, INTERSECTS);
+	}
+
+	/**
+	 * Returns the set of objects which contain the given MBB3D strict.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set containsStrict(MBB3D mbb) {
+		return retrieve(mbb, CONTAINS_STRICT);
+	}
+
+	/**
+	 * Returns the set of objects which contain the given MBB3D.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set contains(MBB3D mbb) {
+		return retrieve(mbb, CONTAINS);
+	}
+
+	/**
+	 * Returns the set of objects which are strict inside of the given MBB3D.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set insideStrict(MBB3D mbb) {
+		return retrieve(mbb, INSIDE_STRICT);
+	}
+
+	/**
+	 * Returns the set of objects which are inside of the given MBB3D.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set inside(MBB3D mbb) {
+		return retrieve(mbb, INSIDE);
+	}
+
+	/**
+	 * Returns the set of objects which contain the given point.
+	 * 
+	 * @param point
+	 *            the Point3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set contains(Point3D point) {
+		Set set = new HashSet();
+		retrieve(point(point), CONTAINS, set, null);
+		return set;
+	}
+
+	/**
+	 * Passes the objects which intersect the given MBB3D strict to the given
+	 * visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean intersectsStrict(MBB3D mbb, Visitor visitor) {
+		return retrieve(box(mbb), INTERSECTS_STRICT, null, visitor);
+	}
+
+	/**
+	 * Passes the objects which intersect the given MBB3D to the given visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean intersects(MBB3D mbb, Visitor visitor) {
+		return retrieve(box(mbb), INTERSECTS, null, visitor);
+	}
+
+	/**
+	 * Passes the objects which contain the given MBB3D strict to the given
+	 * visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean containsStrict(MBB3D mbb, Visitor visitor) {
+		return retrieve(box(mbb), CONTAINS_STRICT, null, visitor);
+	}
+
+	/**
+	 * Passes the objects which contain the given MBB3D to the given visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean contains(MBB3D mbb, Visitor visitor) {
+		return retrieve(box(mbb), CONTAINS, null, visitor);
+	}
+
+	/**
+	 * Passes the objects which are strict inside of the given MBB3D to the
+	 * given visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean insideStrict(MBB3D mbb, Visitor visitor) {
+		return retrieve(box(mbb), INSIDE_STRICT, null, visitor);
+	}
+
+	/**
+	 * Passes the objects which are inside of the given MBB3D to the given
+	 * visitor.
+	 * 
+	 * @param mbb
+	 *            the MBB3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean inside(MBB3D mbb, Visitor visitor) {
+		return retrieve(box(mbb), INSIDE, null, visitor);
+	}
+
+	/**
+	 * Passes the objects which contain the given point to the given visitor.
+	 * 
+	 * @param point
+	 *            the Point3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean contains(Point3D point, Visitor visitor) {
+		return retrieve(point(point), CONTAINS, null, visitor);
+	}
+
+	/**
+	 * Returns for each of the given MBB3D objects the set of objects which
+	 * intersect it. The Set for <code>mbbs[i]</code> is stored at index
+	 * <code>i</code> of the result.<br>
+	 * The cells are looked up for every query, the queries are ordered along
+	 * a space filling curve so that neighbouring queries hit the same cells
+	 * one after the other. Large batches are answered in parallel.
+	 * 
+	 * @param mbbs
+	 *            the MBB3D objects for test
+	 * @return Set[] - a Set object containing the result for every MBB3D.
+	 */
+	public Set[] intersects(final MBB3D[] mbbs) {
+		final Set[] result = BatchQuery.createResult(mbbs.length);
+		BatchQuery.run(mbbs, new BatchQuery.Run() {
+			public void query(int[] queries, int number) {
+				for (int j = 0; j < number; j++)
+					retrieve(box(mbbs[queries[j]]), INTERSECTS,
+							result[queries[j]], null);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Returns the set of objects whose MBB3D intersects the given plane.
+	 * 
+	 * @param plane
+	 *            the Plane3D object for test
+	 * @return Set - a Set object containing the result.
+	 */
+	public Set intersects(Plane3D plane) {
+		return intersects(new Plane3D[] { plane })[0];
+	}
+
+	/**
+	 * Passes the objects whose MBB3D intersects the given plane to the given
+	 * visitor.
+	 * 
+	 * @param plane
+	 *            the Plane3D object for test
+	 * @param visitor
+	 *            the Visitor receiving the result objects
+	 * @return boolean - true if the query was completed, false if it was
+	 *         terminated by the visitor.
+	 */
+	public boolean intersects(Plane3D plane, Visitor visitor) {
+		return intersects(new PlaneQuery(new Plane3D[] { plane }, sop), null,
+				visitor);
+	}
+
+	/**
+	 * Returns for each of the given parallel planes the set of objects whose
+	 * MBB3D intersects it. The Set for <code>planes[i]</code> is stored at
+	 * index <code>i</code> of the result.<br>
+	 * The occupied cells are scanned once. Cells whose objects can not reach
+	 * any of the planes are skipped as a whole.
+	 * 
+	 * @param planes
+	 *            parallel Plane3D objects for test
+	 * @return Set[] - a Set object containing the result for every plane.
+	 * @throws IllegalArgumentException
+	 *             if the planes are not parallel.
+	 */
+	public Set[] intersects(Plane3D[] planes) {
+		Set[] result = BatchQuery.createResult(planes.length);
+		intersects(new PlaneQuery(planes, sop), result, null);
+		return result;
+	}
+
+	/**
+	 * Returns the <code>number</code> nearest neighbours of the given point.
+	 * <br>
+	 * The result array is sorted in ascending order based on the distance
+	 * value. If less than <code>number</code> objects are indexed the
+	 * remaining result objects have a <code>null</code> reference and an
+	 * infinite distance.
+	 * 
+	 * @param number
+	 *            number of nearest neighbours to search
+	 * @param point
+	 *            the Point3D object for test
+	 * @return NNResult[] - an array of NNResult objects sorted by distance.
+	 */
+	public NNResult[] nearest(int number, Point3D point) {
+		NNResult[] result = new NNResult[number];
+		Iterator it = nearestIterator(point);
+		for (int i = 0; i < number; i++)
+			result[i] = it.hasNext() ? (NNResult) it.next() : new Element(
+					null, Double.POSITIVE_INFINITY);
+		return result;
+	}
+
+	/**
+	 * Returns the <code>number</code> objects which are nearest to the given
+	 * point with respect to their exact geometry.
+	 * 
+	 * @param number
+	 *            number of nearest neighbours to search
+	 * @param point
+	 *            the Point3D object for test
+	 * @return NNResult[] - an array of NNResult objects sorted by distance.
+	 */
+	public NNResult[] nearestExact(int number, Point3D point) {
+		return ExactDistanceSearch.nearest(nearestIterator(point), number,
+				point);
+	}
+
+	/**
+	 * Returns the objects whose exact geometry has at most the given distance
+	 * to the given point.
+	 * 
+	 * @param point
+	 *            the Point3D object for test
+	 * @param distance
+	 *            the maximal distance
+	 * @return NNResult[] - an array of NNResult objects sorted by distance.
+	 * @throws IllegalArgumentException
+	 *             if distance is negative.
+	 */
+	public NNResult[] withinDistance(Point3D point, double distance) {
+		return ExactDistanceSearch.within(nearestIterator(point), point,
+				distance);
+	}
+
+	/**
+	 * Returns an Iterator over the objects in ascending order of their
+	 * distance to the given point. Each call of next() returns a NNResult
+	 * object. The cells are visited in rings of growing distance around the
+	 * cell of the point.<br>
+	 * The Iterator throws a ConcurrentModificationException if this
+	 * SpatialHash was changed after its creation.
+	 * 
+	 * @param point
+	 *            the Point3D object for test
+	 * @return Iterator - Iterator over NNResult objects.
+	 */
+	public Iterator nearestIterator(Point3D point) {
+		return new NNIterator(point);
+	}
+
+	/**
+	 * Returns the ScalarOperator of this.
+	 * 
+	 * @return ScalarOperator of this.
+	 */
+	public ScalarOperator getScalarOperator() {
+		return sop;
+	}
+
+	/*
+	 * Writes the bounds of the MBB3D of the given object to b. Point3D
+	 * objects are read without creating a MBB3D.
+	 * 
+	 * @param go GeoObj
+	 * 
+	 * @param b array for minX, minY, minZ, maxX, maxY, maxZ
+	 * 
+	 * @throws IllegalArgumentException if mbb of given GeoObject is null.
+	 */
+	private static void bounds(Object go, double[] b) {
+		if (go instanceof Point3D) {
+			Point3D p = (Point3D) go;
+			b[0] = b[3] = p.getX();
+			b[1] = b[4] = p.getY();
+			b[2] = b[5] = p.getZ();
+			return;
+		}
+		MBB3D mbb = ((GeoObj) go).getMBB();
+		if (mbb == null)
+			throw new IllegalArgumentException(
+					"MBB3D of given GeoObject is null.");
+		b[0] = mbb.getPMin().getX();
+		b[1] = mbb.getPMin().getY();
+		b[2] = mbb.getPMin().getZ();
+		b[3] = mbb.getPMax().getX();
+		b[4] = mbb.getPMax().getY();
+		b[5] = mbb.getPMax().getZ();
+	}
+
+	/*
+	 * Returns the bounds of the given MBB3D.
+	 * 
+	 * @param mbb MBB3D
+	 * 
+	 * @return double[] - minX, minY, minZ, maxX, maxY, maxZ.
+	 */
+	private static double[] box(MBB3D mbb) {
+		return new double[] { mbb.getPMin().getX(), mbb.getPMin().getY(),
+				mbb.getPMin().getZ(), mbb.getPMax().getX(),
+				mbb.getPMax().getY(), mbb.getPMax().getZ() };
+	}
+
+	/*
+	 * Returns the bounds of the given point.
+	 * 
+	 * @param point Point3D
+	 * 
+	 * @return double[] - minX, minY, minZ, maxX, maxY, maxZ.
+	 */
+	private static double[] point(Point3D point) {
+		return new double[] { point.getX(), point.getY(), point.getZ(),
+				point.getX(), point.getY(), point.getZ() };
+	}
+
+	/*
+	 * Returns the cell index of the center of the given interval.
+	 * 
+	 * @param min minimum coordinate
+	 * 
+	 * @param max maximum coordinate
+	 * 
+	 * @return int - cell index.
+	 */
+	private int index(double min, double max) {
+		return index((min + max) / 2);
+	}
+
+	/*
+	 * Returns the cell index of the given coordinate.
+	 * 
+	 * @param coord coordinate
+	 * 
+	 * @return int - cell index, clamped to the int range.
+	 */
+	private int index(double coord) {
+		double i = Math.floor(coord / cellSize);
+		if (i >= Integer.MAX_VALUE)
+			return Integer.MAX_VALUE;
+		if (i <= Integer.MIN_VALUE)
+			return Integer.MIN_VALUE;
+		return (int) i;
+	}
+
+	/*
+	 * Tests the given object bounds against the query bounds. Mirrors the
+	 * predicates of MBB3D.
+	 * 
+	 * @param b object bounds
+	 * 
+	 * @param q query bounds
+	 * 
+	 * @param predicate predicate constant
+	 * 
+	 * @return boolean - true if the object qualifies.
+	 */
+	private boolean matches(double[] b, double[] q, int predicate) {
+		for (int i = 0; i < 3; i++) {
+			switch (predicate) {
+			case INTERSECTS_STRICT:
+				if (sop.greaterOrEqual(b[i], q[i + 3])
+						|| sop.lessOrEqual(b[i + 3], q[i]))
+					return false;
+				break;
+			case INTERSECTS:
+				if (sop.greaterThan(b[i], q[i + 3])
+						|| sop.lessThan(b[i + 3], q[i]))
+					return false;
+				break;
+			case CONTAINS_STRICT:
+				if (sop.greaterOrEqual(b[i], q[i])
+						|| sop.lessOrEqual(b[i + 3], q[i + 3]))
+					return false;
+				break;
+			case CONTAINS:
+				if (sop.greaterThan(b[i], q[i])
+						|| sop.lessThan(b[i + 3], q[i + 3]))
+					return false;
+				break;
+			case INSIDE_STRICT:
+				if (sop.lessOrEqual(b[i], q[i])
+						|| sop.greaterOrEqual(b[i + 3], q[i + 3]))
+					return false;
+				break;
+			case INSIDE:
+				if (sop.lessThan(b[i], q[i])
+						|| sop.greaterThan(b[i + 3], q[i + 3]))
+					return false;
+				break;
+			default:
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Returns the minimal squared distance of the given bounds to the given
+	 * point. Mirrors MBB3D.minDistSquare(Point3D, ScalarOperator).
+	 * 
+	 * @param b object bounds
+	 * 
+	 * @param p point coordinates
+	 * 
+	 * @return double - squared distance.
+	 */
+	private double minDistSquare(double[] b, double[] p) {
+		double min = 0;
+		for (int i = 0; i < 3; i++) {
+			double r = p[i];
+			if (sop.lessThan(p[i], b[i]))
+				r = b[i];
+			else if (sop.greaterThan(p[i], b[i + 3]))
+				r = b[i + 3];
+			min += (p[i] - r) * (p[i] - r);
+		}
+		return min;
+	}
+
+	/*
+	 * Retrieves the objects qualifying for the given predicate into a new
+	 * Set.
+	 * 
+	 * @param mbb test MBB3D
+	 * 
+	 * @param predicate predicate constant
+	 * 
+	 * @return Set - result Set.
+	 */
+	private Set retrieve(MBB3D mbb, int predicate) {
+		Set set = new HashSet();
+		retrieve(box(mbb), predicate, set, null);
+		return set;
+	}
+
+	/*
+	 * Retrieves the objects qualifying for the given predicate. The cells
+	 * overlapping the query widened by the largest half extent are looked up
+	 * one by one, or all occupied cells are scanned if these are fewer.
+	 * 
+	 * @param q query bounds
+	 * 
+	 * @param predicate predicate constant
+	 * 
+	 * @param set result Set or null
+	 * 
+	 * @param visitor Visitor or null
+	 * 
+	 * @return boolean - false if the visitor terminated the query.
+	 */
+	private boolean retrieve(double[] q, int predicate, Set set,
+			Visitor visitor) {
+		if (count == 0)
+			return true;
+		double widen = maxHalfExtent + sop.getEpsilon();
+		int[] from = new int[3];
+		int[] to = new int[3];
+		long cellCount = 1;
+		for (int k = 0; k < 3; k++) {
+			from[k] = index(q[k] - widen);
+			to[k] = index(q[k + 3] + widen);
+			cellCount *= (long) to[k] - from[k] + 1;
+		}
+
+		double[] b = new double[6];
+		if (cellCount > occupied) {
+			for (int s = 0; s < cells.length; s++)
+				if (cells[s] != null
+						&& !retrieve(cells[s], q, b, predicate, set, visitor))
+					return false;
+			return true;
+		}
+		for (int x = from[0]; x <= to[0]; x++) {
+			for (int y = from[1]; y <= to[1]; y++) {
+				for (int z = from[2]; z <= to[2]; z++) {
+					int slot = find(x, y, z);
+					if (slot >= 0
+							&& !retrieve(cells[slot], q, b, predicate, set,
+									visitor))
+						return false;
+					if (z == Integer.MAX_VALUE)
+						break;
+				}
+				if (y == Integer.MAX_VALUE)
+					break;
+			}
+			if (x == Integer.MAX_VALUE)
+				break;
+		}
+		return true;
+	}
+
+	/*
+	 * Retrieves the qualifying objects of the given cell.
+	 * 
+	 * @param cell Cell
+	 * 
+	 * @param q query bounds
+	 * 
+	 * @param b buffer for the object bounds
+	 * 
+	 * @param predicate predicate constant
+	 * 
+	 * @param set result Set or null
+	 * 
+	 * @param visitor Visitor or null
+	 * 
+	 * @return boolean - false if the visitor terminated the query.
+	 */
+	private boolean retrieve(Cell cell, double[] q, double[] b, int predicate,
+			Set set, Visitor visitor) {
+		for (int i = 0; i < cell.used; i++) {
+			bounds(cell.objects[i], b);
+			if (matches(b, q, predicate)) {
+				if (set != null)
+					set.add(cell.objects[i]);
+				else if (!visitor.visit(cell.objects[i]))
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Answers the planes of the given query. Every occupied cell is widened
+	 * by the largest half extent and tested first, the objects of the cells
+	 * reached by a plane are tested with their bounds.
+	 * 
+	 * @param query sorted parallel planes
+	 * 
+	 * @param result Sets of the planes, or null if the visitor is used
+	 * 
+	 * @param visitor Visitor receiving the objects
+	 * 
+	 * @return boolean - false if the visitor terminated the query.
+	 */
+	private boolean intersects(PlaneQuery query, Set[] result,
+			Visitor visitor) {
+		if (count == 0)
+			return true;
+		double[] c = new double[6];
+		double[] b = new double[6];
+		for (int s = 0; s < cells.length; s++) {
+			Cell cell = cells[s];
+			if (cell == null)
+				continue;
+			boolean clamped = false;
+			for (int k = 0; k < 3; k++) {
+				int key = keys[s * 3 + k];
+				clamped |= key == Integer.MIN_VALUE || key == Integer.MAX_VALUE;
+				c[k] = key * cellSize - maxHalfExtent;
+				c[k + 3] = (key + 1.0) * cellSize + maxHalfExtent;
+			}
+			int from = 0;
+			int to = query.getNumber();
+			// cells with clamped keys are not bounded - test their objects
+			if (!clamped) {
+				from = query.lower(c, 0, from, to);
+				to = query.upper(c, 0, from, to);
+				if (from == to)
+					continue;
+			}
+			for (int i = 0; i < cell.used; i++) {
+				bounds(cell.objects[i], b);
+				int lower = query.lower(b, 0, from, to);
+				int upper = query.upper(b, 0, lower, to);
+				if (lower == upper)
+					continue;
+				if (result == null) {
+					if (!visitor.visit(cell.objects[i]))
+						return false;
+				} else {
+					for (int j = lower; j < upper; j++)
+						result[query.getPlane(j)].add(cell.objects[i]);
+				}
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Adds the given object to the cell of the center of its bounds.
+	 * 
+	 * @param go GeoObj
+	 * 
+	 * @param b bounds of go
+	 */
+	private void add(Object go, double[] b) {
+		int x = index(b[0], b[3]);
+		int y = index(b[1], b[4]);
+		int z = index(b[2], b[5]);
+		int slot = find(x, y, z);
+		if (slot < 0) {
+			if ((occupied + 1) * 2 > cells.length)
+				resize(cells.length * 2);
+			slot = hash(x, y, z) & (cells.length - 1);
+			while (cells[slot] != null)
+				slot = (slot + 1) & (cells.length - 1);
+			keys[slot * 3] = x;
+			keys[slot * 3 + 1] = y;
+			keys[slot * 3 + 2] = z;
+			cells[slot] = new Cell();
+			occupied++;
+		}
+		cells[slot].add(go);
+	}
+
+	/*
+	 * Returns the slot of the given cell or -1 if the cell is not occupied.
+	 * 
+	 * @param x cell index along the x axis
+	 * 
+	 * @param y cell index along the y axis
+	 * 
+	 * @param z cell index along the z axis
+	 * 
+	 * @return int - slot or -1.
+	 */
+	private int find(int x, int y, int z) {
+		int mask = cells.length - 1;
+		int slot = hash(x, y, z) & mask;
+		while (cells[slot] != null) {
+			if (keys[slot * 3] == x && keys[slot * 3 + 1] == y
+					&& keys[slot * 3 + 2] == z)
+				return slot;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/*
+	 * Frees the given slot and moves following entries of the probe sequence
+	 * back (deletion without tombstones).
+	 * 
+	 * @param slot slot to free
+	 */
+	private void removeSlot(int slot) {
+		int mask = cells.length - 1;
+		int free = slot;
+		cells[free] = null;
+		occupied--;
+		int j = free;
+		while (true) {
+			j = (j + 1) & mask;
+			if (cells[j] == null)
+				return;
+			int home = hash(keys[j * 3], keys[j * 3 + 1], keys[j * 3 + 2])
+					& mask;
+			// entry stays if its home lies cyclically in (free, j]
+			if (free <= j ? (free < home && home <= j)
+					: (free < home || home <= j))
+				continue;
+			cells[free] = cells[j];
+			keys[free * 3] = keys[j * 3];
+			keys[free * 3 + 1] = keys[j * 3 + 1];
+			keys[free * 3 + 2] = keys[j * 3 + 2];
+			cells[j] = null;
+			free = j;
+		}
+	}
+
+	/*
+	 * Resizes the hash table keeping the cells.
+	 * 
+	 * @param size new number of slots (power of 2)
+	 */
+	private void resize(int size) {
+		Cell[] oldCells = cells;
+		int[] oldKeys = keys;
+		cells = new Cell[size];
+		keys = new int[size * 3];
+		for (int s = 0; s < oldCells.length; s++) {
+			if (oldCells[s] == null)
+				continue;
+			int slot = hash(oldKeys[s * 3], oldKeys[s * 3 + 1],
+					oldKeys[s * 3 + 2])
+					& (size - 1);
+			while (cells[slot] != null)
+				slot = (slot + 1) & (size - 1);
+			cells[slot] = oldCells[s];
+			keys[slot * 3] = oldKeys[s * 3];
+			keys[slot * 3 + 1] = oldKeys[s * 3 + 1];
+			keys[slot * 3 + 2] = oldKeys[s * 3 + 2];
+		}
+	}
+
+	/*
+	 * Adapts the cell size to the average number of objects per cell. Only
+	 * done if the number of objects has doubled or halved since the last
+	 * adaption.
+	 */
+	private void adapt() {
+		if (count < MIN_ADAPT_COUNT)
+			return;
+		if (count < adaptCount * 2 && count * 2 > adaptCount)
+			return;
+		adaptCount = count;
+
+		boolean halved = false;
+		boolean doubled = false;
+		for (int i = 0; i < MAX_ADAPT_STEPS; i++) {
+			double average = (double) count / occupied;
+			if (average > MAX_OCCUPANCY && !doubled
+					&& cellSize / 2 > sop.getEpsilon()) {
+				rehash(cellSize / 2);
+				halved = true;
+			} else if (average < MIN_OCCUPANCY && !halved) {
+				rehash(cellSize * 2);
+				doubled = true;
+			} else
+				break;
+		}
+	}
+
+	/*
+	 * Redistributes all objects to cells of the given size.
+	 * 
+	 * @param size new cell size
+	 */
+	private void rehash(double size) {
+		Cell[] oldCells = cells;
+		int slots = 16;
+		while (slots < occupied * 2)
+			slots *= 2;
+		cellSize = size;
+		cells = new Cell[slots];
+		keys = new int[slots * 3];
+		occupied = 0;
+		double[] b = new double[6];
+		for (int s = 0; s < oldCells.length; s++) {
+			Cell cell = oldCells[s];
+			if (cell == null)
+				continue;
+			for (int i = 0; i < cell.used; i++) {
+				bounds(cell.objects[i], b);
+				add(cell.objects[i], b);
+			}
+		}
+		modCount++;
+	}
+
+	/*
+	 * Resets the bounds of all objects.
+	 */
+	private void clearBounds() {
+		for (int k = 0; k < 3; k++) {
+			bounds[k] = Double.POSITIVE_INFINITY;
+			bounds[k + 3] = Double.NEGATIVE_INFINITY;
+		}
+	}
+
+	/*
+	 * Extends the bounds of all objects by the given bounds.
+	 * 
+	 * @param b object bounds
+	 */
+	private void extendBounds(double[] b) {
+		for (int k = 0; k < 3; k++) {
+			bounds[k] = Math.min(bounds[k], b[k]);
+			bounds[k + 3] = Math.max(bounds[k + 3], b[k + 3]);
+		}
+	}
+
+	/*
+	 * Hash of a cell.
+	 * 
+	 * @param x cell index along the x axis
+	 * 
+	 * @param y cell index along the y axis
+	 * 
+	 * @param z cell index along the z axis
+	 * 
+	 * @return int - hash value.
+	 */
+	private static int hash(int x, int y, int z) {
+		int h = x * 0x8da6b343 ^ y * 0xd8163841 ^ z * 0xcb1ab31f;
+		return h ^ (h >>> 16);
+	}
+
+	/*
+	 * Cell of the grid holding its objects.
+	 */
+	private final static class Cell implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		/* objects of this cell */
+		private Object[] objects;
+
+		/* number of objects */
+		private int used;
+
+		/*
+		 * Constructor.
+		 */
+		private Cell() {
+			this.objects = new Object[2];
+			this.used = 0;
+		}
+
+		/*
+		 * Adds the given object.
+		 * 
+		 * @param go object
+		 */
+		private void add(Object go) {
+			if (used == objects.length) {
+				Object[] help = new Object[used * 2];
+				System.arraycopy(objects, 0, help, 0, used);
+				objects = help;
+			}
+			objects[used++] = go;
+		}
+
+		/*
+		 * Returns the index of the given object or -1.
+		 * 
+		 * @param go object
+		 * 
+		 * @return int - index of go, -1 if not found.
+		 */
+		private int indexOf(Object go) {
+			for (int i = 0; i < used; i++)
+				if (objects[i].equals(go))
+					return i;
+			return -1;
+		}
+
+		/*
+		 * Removes the object with the given index.
+		 * 
+		 * @param index index of the object
+		 */
+		private void remove(int index) {
+			used--;
+			objects[index] = objects[used];
+			objects[used] = null;
+		}
+	}
+
+	/*
+	 * Result of the nearest neighbour search with its squared distance.
+	 */
+	private final static class Element implements Comparable, NNResult {
+
+		/* result object */
+		private final Object ref;
+
+		/* squared distance to the query point */
+		private final double distSquare;
+
+		/*
+		 * Constructor.
+		 * 
+		 * @param ref result object
+		 * 
+		 * @param distSquare squared distance to the query point
+		 */
+		private Element(Object ref, double distSquare) {
+			this.ref = ref;
+			this.distSquare = distSquare;
+		}
+
+		/**
+		 * Returns the distance of this result object.
+		 * 
+		 * @return double - distance as double.
+		 */
+		public double getDistance() {
+			return Math.sqrt(distSquare);
+		}
+
+		/**
+		 * Returns the reference to the object.
+		 * 
+		 * @return Object - reference.
+		 */
+		public Object getObjectRef() {
+			return ref;
+		}
+
+		/*
+		 * Orders by distance.
+		 * 
+		 * @see java.lang.Comparable#compareTo(java.lang.Object)
+		 */
+		public int compareTo(Object o) {
+			return Double.compare(distSquare, ((Element) o).distSquare);
+		}
+	}
+
+	/*
+	 * Iterator for the incremental nearest neighbour search. The cells are
+	 * visited in rings of growing Chebyshev distance around the cell of the
+	 * query point. An object of a ring not visited yet has at least the
+	 * distance ring * cellSize - maxHalfExtent, so the candidates below this
+	 * bound can be returned. If a ring has more cells than there are occupied
+	 * cells, all remaining cells are scanned at once.
+	 */
+	private final class NNIterator implements Iterator {
+
+		/* query point coordinates */
+		private final double[] p;
+
+		/* cell of the query point */
+		private final int[] center;
+
+		/* candidates */
+		private final PriorityQueue queue;
+
+		/* expected modification count */
+		private final int expectedModCount;
+
+		/* last visited ring, -1 before the first one */
+		private int ring;
+
+		/* flag if all objects were added to the queue */
+		private boolean all;
+
+		/*
+		 * Constructor.
+		 * 
+		 * @param point query point
+		 */
+		private NNIterator(Point3D point) {
+			this.p = new double[] { point.getX(), point.getY(), point.getZ() };
+			this.center = new int[] { index(p[0]), index(p[1]), index(p[2]) };
+			this.queue = new PriorityQueue();
+			this.expectedModCount = modCount;
+			this.ring = -1;
+			this.all = count == 0;
+		}
+
+		/*
+		 * Visits rings until the head of the queue is nearer than every
+		 * object of the unvisited rings.
+		 * 
+		 * @see java.util.Iterator#hasNext()
+		 */
+		public boolean hasNext() {
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			while (true) {
+				if (!queue.isEmpty()) {
+					if (all)
+						return true;
+					double bound = ring * cellSize - maxHalfExtent
+							- sop.getEpsilon();
+					if (bound > 0
+							&& ((Element) queue.peek()).distSquare <= bound
+									* bound)
+						return true;
+				} else if (all)
+					return false;
+				visitNextRing();
+			}
+		}
+
+		/*
+		 * Returns the next nearest object as NNResult.
+		 * 
+		 * @see java.util.Iterator#next()
+		 */
+		public Object next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			return queue.poll();
+		}
+
+		/*
+		 * Not supported.
+		 * 
+		 * @see java.util.Iterator#remove()
+		 */
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		/*
+		 * Adds the objects of the next ring to the queue.
+		 */
+		private void visitNextRing() {
+			ring++;
+			long shell = ring == 0 ? 1 : 24L * ring * ring + 2;
+			double[] b = new double[6];
+			if (shell > occupied) {
+				// scan all cells not visited yet
+				for (int s = 0; s < cells.length; s++)
+					if (cells[s] != null && distance(s) >= ring)
+						enqueue(cells[s], b);
+				all = true;
+				return;
+			}
+			for (int dx = -ring; dx <= ring; dx++) {
+				for (int dy = -ring; dy <= ring; dy++) {
+					boolean side = Math.abs(dx) == ring
+							|| Math.abs(dy) == ring;
+					int step = side ? 1 : 2 * ring;
+					for (int dz = -ring; dz <= ring; dz += step) {
+						int slot = find(center[0] + dx, center[1] + dy,
+								center[2] + dz);
+						if (slot >= 0)
+							enqueue(cells[slot], b);
+					}
+				}
+			}
+		}
+
+		/*
+		 * Returns the Chebyshev distance of the cell in the given slot to the
+		 * cell of the query point.
+		 * 
+		 * @param slot slot of the cell
+		 * 
+		 * @return long - distance in cells.
+		 */
+		private long distance(int slot) {
+			long d = 0;
+			for (int k = 0; k < 3; k++)
+				d = Math.max(d, Math.abs((long) keys[slot * 3 + k]
+						- center[k]));
+			return d;
+		}
+
+		/*
+		 * Adds the objects of the given cell to the queue.
+		 * 
+		 * @param cell Cell
+		 * 
+		 * @param b buffer for the object bounds
+		 */
+		private void enqueue(Cell cell, double[] b) {
+			for (int i = 0; i < cell.used; i++) {
+				bounds(cell.objects[i], b);
+				queue.add(new Element(cell.objects[i], minDistSquare(b, p)));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.dbms.util;
+
+import de.uos.igf.db3d.dbms.geom.ScalarOperator;
+
+/**
+ * SAMProvider creating SpatialHash objects.
+ */
+public final class SpatialHashProvider implements SAMProvider {
+
+	private static final long serialVersionUID = 1L;
+
+	/* initial edge length of the grid cells */
+	private final double cellSize;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param cellSize
+	 *            initial edge length of the grid cells (must be greater than
+	 *            0)
+	 * @throws IllegalArgumentException
+	 *             if cellSize is not greater than 0.
+	 */
+	public SpatialHashProvider(double cellSize) throws IllegalArgumentException {
+		if (!(cellSize > 0))
+			throw new IllegalArgumentException("IllegalParameters");
+		this.cellSize = cellSize;
+	}
+
+	/**
+	 * Creates a new empty SpatialHash.
+	 * 
+	 * @param sop
+	 *            ScalarOperator of the indexed objects
+	 * @return SAM - new empty SpatialHash.
+	 * @throws IllegalArgumentException
+	 *             if ScalarOperator = null.
+	 */
+	public SAM createSAM(ScalarOperator sop) {
+		return new SpatialHash(cellSize, sop);
+	}
+
+	/**
+	 * Returns the initial edge length of the grid cells.
+	 * 
+	 * @return double - initial cell size.
+	 */
+	public double getCellSize() {
+		return cellSize;
+	}
+
+}
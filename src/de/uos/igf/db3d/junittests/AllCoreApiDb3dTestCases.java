@@ -11,16 +11,27 @@ import java.util.logging.Logger;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 import de.uos.igf.db3d.junittests.dbms.geom.Point3DTestCase;
+import de.uos.igf.db3d.junittests.dbms.geom.PredicatesTestCase;
 import de.uos.igf.db3d.junittests.dbms.geom.SegmentTestCase;
 import de.uos.igf.db3d.junittests.dbms.geom.Tetrahedron3DTestCase;
 import de.uos.igf.db3d.junittests.dbms.geom.TetrahedronTriangle3DTestCase;
+import de.uos.igf.db3d.junittests.dbms.geom.TriangleBatchTestCase;
 import de.uos.igf.db3d.junittests.dbms.geom.Triangle3DTestCase;
+import de.uos.igf.db3d.junittests.dbms.geom.TriangleIntersectionTestCase;
 import de.uos.igf.db3d.junittests.dbms.geom.Vector3DTestCase;
 import de.uos.igf.db3d.junittests.dbms.geom.Wireframe3DTestCase;
 import de.uos.igf.db3d.junittests.dbms.model3d.SegmentElt3DTestCase;
 import de.uos.igf.db3d.junittests.dbms.model3d.SegmentNet3DCompTestCase;
+import de.uos.igf.db3d.junittests.dbms.model3d.TetrahedronNet3DCompTestCase;
 import de.uos.igf.db3d.junittests.dbms.model3d.TriangleElt3DTestCase;
 import de.uos.igf.db3d.junittests.dbms.model3d.TriangleNet3DCompTestCase;
+import de.uos.igf.db3d.junittests.dbms.util.DOPTreeTestCase;
+import de.uos.igf.db3d.junittests.dbms.util.OctreeTestCase;
+import de.uos.igf.db3d.junittests.dbms.util.PagedRStarTestCase;
+import de.uos.igf.db3d.junittests.dbms.util.PartitionJoinTestCase;
+import de.uos.igf.db3d.junittests.dbms.util.RStarConcurrencyTestCase;
+import de.uos.igf.db3d.junittests.dbms.util.RStarTestCase;
+import de.uos.igf.db3d.junittests.dbms.util.SpatialHashTestCase;
 
 /**
  * This is a test suite of <tt>ALL</tt> DB3D kernel related testcases. This
@@ -55,14 +66,25 @@ public class AllCoreApiDb3dTestCases {
 
 		// $JUnit-BEGIN$
 		suite.addTestSuite(Point3DTestCase.class);
+		suite.addTestSuite(PredicatesTestCase.class);
 		suite.addTestSuite(SegmentTestCase.class);
 		suite.addTestSuite(Tetrahedron3DTestCase.class);
 		suite.addTestSuite(TetrahedronTriangle3DTestCase.class);
 		suite.addTestSuite(Triangle3DTestCase.class);
+		suite.addTestSuite(TriangleIntersectionTestCase.class);
+		suite.addTestSuite(TriangleBatchTestCase.class);
 		suite.addTestSuite(Vector3DTestCase.class);
 		suite.addTestSuite(Wireframe3DTestCase.class);
+		suite.addTestSuite(RStarTestCase.class);
+		suite.addTestSuite(RStarConcurrencyTestCase.class);
+		suite.addTestSuite(PartitionJoinTestCase.class);
+		suite.addTestSuite(OctreeTestCase.class);
+		suite.addTestSuite(SpatialHashTestCase.class);
+		suite.addTestSuite(PagedRStarTestCase.class);
+		suite.addTestSuite(DOPTreeTestCase.class);
 		suite.addTestSuite(SegmentElt3DTestCase.class);
 		suite.addTestSuite(SegmentNet3DCompTestCase.class);
+		suite.addTestSuite(TetrahedronNet3DCompTestCase.class);
 		// TODO suite.addTestSuite(TriangleElt3DTestCase.class);
 		suite.addTestSuite(TriangleNet3DCompTestCase.class);
 		// suite.addTestSuite(TransientDBMSTestCase.class);
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.junittests.dbms.geom;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import de.uos.igf.db3d.dbms.geom.Line3D;
+import de.uos.igf.db3d.dbms.geom.Point3D;
+import de.uos.igf.db3d.dbms.geom.Predicates;
+import de.uos.igf.db3d.dbms.geom.ScalarOperator;
+import de.uos.igf.db3d.dbms.geom.Segment3D;
+import de.uos.igf.db3d.dbms.geom.Tetrahedron3D;
+import de.uos.igf.db3d.dbms.geom.Triangle3D;
+
+/**
+ * This testcase tests the robust predicates of the <code>Predicates</code>
+ * class against determinants evaluated with <code>BigDecimal</code>.
+ */
+public class PredicatesTestCase extends TestCase {
+
+	public void testSigns() {
+		assertTrue(Predicates.orient2d(0, 0, 1, 0, 0, 1) > 0);
+		assertTrue(Predicates.orient2d(0, 0, 0, 1, 1, 0) < 0);
+		assertEquals(0.0, Predicates.orient2d(0, 0, 1, 1, 3, 3), 0);
+
+		Point3D a = new Point3D(0, 0, 0);
+		Point3D b = new Point3D(1, 0, 0);
+		Point3D c = new Point3D(0, 1, 0);
+		assertTrue(Predicates.orient3d(a, b, c, new Point3D(0, 0, -1)) > 0);
+		assertTrue(Predicates.orient3d(a, b, c, new Point3D(0, 0, 1)) < 0);
+		assertEquals(0.0, Predicates.orient3d(a, b, c, new Point3D(5, 7, 0)),
+				0);
+
+		assertTrue(Predicates.incircle(1, 0, 0, 1, -1, 0, 0, 0) > 0);
+		assertTrue(Predicates.incircle(1, 0, 0, 1, -1, 0, 2, 2) < 0);
+		assertEquals(0.0, Predicates.incircle(1, 0, 0, 1, -1, 0, 0, -1), 0);
+
+		// a, c, b and d have a positive orientation
+		Point3D d = new Point3D(0, 0, 1);
+		assertTrue(Predicates.orient3d(a, c, b, d) > 0);
+		assertTrue(Predicates.insphere(a, c, b, d, new Point3D(0.2, 0.2, 0.2)) > 0);
+		assertTrue(Predicates.insphere(a, c, b, d, new Point3D(3, 3, 3)) < 0);
+		assertEquals(0.0, Predicates.insphere(a, c, b, d,
+				new Point3D(1, 1, 1)), 0);
+	}
+
+	public void testNearDegenerate() {
+		Random random = new Random(29);
+		for (int i = 0; i < 2000; i++) {
+			// points on a line with a tiny perturbation
+			double t = random.nextDouble();
+			double ax = 0.5 + random.nextDouble(), ay = 0.5 + random.nextDouble();
+			double bx = 12 + random.nextDouble(), by = 12 + random.nextDouble();
+			double cx = ax + t * (bx - ax), cy = ay + t * (by - ay);
+			if (i % 2 == 0)
+				cx = cx + Math.ulp(cx) * (random.nextInt(5) - 2);
+			assertEquals(signOrient2d(ax, ay, bx, by, cx, cy), sign(Predicates
+					.orient2d(ax, ay, bx, by, cx, cy)));
+
+			// points on a plane with a tiny perturbation
+			double[] p = new double[12];
+			for (int k = 0; k < 9; k++)
+				p[k] = random.nextDouble() * 10;
+			double u = random.nextDouble();
+			double v = random.nextDouble();
+			for (int k = 0; k < 3; k++)
+				p[9 + k] = p[k] + u * (p[3 + k] - p[k]) + v * (p[6 + k] - p[k]);
+			if (i % 2 == 0)
+				p[11] = p[11] + Math.ulp(p[11]) * (random.nextInt(5) - 2);
+			assertEquals(signOrient3d(p), sign(Predicates.orient3d(p[0], p[1],
+					p[2], p[3], p[4], p[5], p[6], p[7], p[8], p[9], p[10],
+					p[11])));
+
+			// points on a circle with a tiny perturbation
+			double[] q = new double[8];
+			for (int k = 0; k < 4; k++) {
+				double angle = random.nextDouble() * 2 * Math.PI;
+				q[2 * k] = 3 + 5 * Math.cos(angle);
+				q[2 * k + 1] = 4 + 5 * Math.sin(angle);
+			}
+			assertEquals(signIncircle(q), sign(Predicates.incircle(q[0], q[1],
+					q[2], q[3], q[4], q[5], q[6], q[7])));
+		}
+	}
+
+	public void testFastPaths() {
+		ScalarOperator sop = new ScalarOperator();
+		Point3D a = new Point3D(0, 0, 0);
+		Point3D b = new Point3D(1, 0, 0);
+		Point3D c = new Point3D(0, 1, 0);
+		Point3D d = new Point3D(0, 0, 1);
+		Triangle3D triangle = new Triangle3D(a, b, c, sop);
+		assertTrue(triangle.contains(new Point3D(0.2, 0.2, 0), sop));
+		assertFalse(triangle.contains(new Point3D(0.2, 0.2, 0.1), sop));
+
+		Tetrahedron3D tetra = new Tetrahedron3D(a, b, c, d, sop);
+		assertTrue(tetra.contains(new Point3D(0.1, 0.1, 0.1), sop));
+		assertTrue(tetra.contains(new Point3D(0.5, 0.5, 0), sop));
+		assertTrue(tetra.contains(d, sop));
+		assertFalse(tetra.contains(new Point3D(0.5, 0.5, 0.5), sop));
+
+		Segment3D segment = new Segment3D(a, new Point3D(2, 2, 2), sop);
+		assertTrue(segment.contains(new Point3D(1, 1, 1), sop));
+		assertTrue(segment.contains(new Point3D(1, 1, 1.00001), sop));
+		assertFalse(segment.contains(new Point3D(1, 1, 1.1), sop));
+		assertFalse(segment.contains(new Point3D(3, 3, 3), sop));
+		Line3D line = new Line3D(segment, sop);
+		assertTrue(line.contains(new Point3D(3, 3, 3), sop));
+		assertFalse(line.contains(new Point3D(3, 3, 3.1), sop));
+
+		// crossing, skew and touching within epsilon
+		assertTrue(segment.intersects(new Segment3D(new Point3D(0, 2, 1),
+				new Point3D(2, 0, 1), sop), sop));
+		assertFalse(segment.intersects(new Segment3D(new Point3D(0, 2, 1.1),
+				new Point3D(2, 0, 1.1), sop), sop));
+		assertTrue(segment.intersects(new Segment3D(new Point3D(0, 2,
+				1.00001), new Point3D(2, 0, 1.00001), sop), sop));
+	}
+
+	private static int sign(double value) {
+		return value > 0 ? 1 : (value < 0 ? -1 : 0);
+	}
+
+	private static BigDecimal big(double value) {
+		return new BigDecimal(value);
+	}
+
+	private static int signOrient2d(double ax, double ay, double bx,
+			double by, double cx, double cy) {
+		BigDecimal acx = big(ax).subtract(big(cx));
+		BigDecimal acy = big(ay).subtract(big(cy));
+		BigDecimal bcx = big(bx).subtract(big(cx));
+		BigDecimal bcy = big(by).subtract(big(cy));
+		return acx.multiply(bcy).subtract(acy.multiply(bcx)).signum();
+	}
+
+	private static int signOrient3d(double[] p) {
+		BigDecimal[] m = new BigDecimal[9];
+		for (int r = 0; r < 3; r++)
+			for (int k = 0; k < 3; k++)
+				m[3 * r + k] = big(p[3 * r + k]).subtract(big(p[9 + k]));
+		return det3(m).signum();
+	}
+
+	private static int signIncircle(double[] q) {
+		BigDecimal[] m = new BigDecimal[9];
+		for (int r = 0; r < 3; r++) {
+			BigDecimal x = big(q[2 * r]).subtract(big(q[6]));
+			BigDecimal y = big(q[2 * r + 1]).subtract(big(q[7]));
+			m[3 * r] = x;
+			m[3 * r + 1] = y;
+			m[3 * r + 2] = x.multiply(x).add(y.multiply(y));
+		}
+		return det3(m).signum();
+	}
+
+	private static BigDecimal det3(BigDecimal[] m) {
+		return m[0].multiply(m[4].multiply(m[8]).subtract(m[5].multiply(m[7])))
+				.subtract(
+						m[1].multiply(m[3].multiply(m[8]).subtract(
+								m[5].multiply(m[6])))).add(
+						m[2].multiply(m[3].multiply(m[7]).subtract(
+								m[4].multiply(m[6]))));
+	}
+
+}
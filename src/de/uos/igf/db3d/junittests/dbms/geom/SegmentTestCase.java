@@ -112,4 +112,19 @@ public class SegmentTestCase extends TestCase {
 
 	}
 
+	public void testEuclideanDistance() {
+		ScalarOperator sop = new ScalarOperator();
+		Segment3D segment = new Segment3D(new Point3D(0.0, 0.0, 0.0),
+				new Point3D(4.0, 0.0, 0.0), sop);
+
+		assertEquals(2.0, segment.euclideanDistance(new Point3D(2.0, 2.0, 0.0)),
+				1E-9);
+		assertEquals(5.0, segment.euclideanDistance(new Point3D(7.0, 4.0, 0.0)),
+				1E-9);
+		assertEquals(1.0, segment.euclideanDistanceSQR(new Point3D(-1.0, 0.0,
+				0.0)), 1E-9);
+		assertEquals(0.0, segment.euclideanDistance(new Point3D(3.0, 0.0, 0.0)),
+				1E-9);
+	}
+
 }
@@ -5,6 +5,7 @@
 package de.uos.igf.db3d.junittests.dbms.geom;
 
 import junit.framework.TestCase;
+import de.uos.igf.db3d.dbms.geom.GeomUtils;
 import de.uos.igf.db3d.dbms.geom.Point3D;
 import de.uos.igf.db3d.dbms.geom.ScalarOperator;
 import de.uos.igf.db3d.dbms.geom.Segment3D;
@@ -295,6 +296,51 @@ public class Tetrahedron3DTestCase extends TestCase {
 		// TODO: Exception in Wireframe3D.getTriangulated();
 	}
 
+	public void testEuclideanDistance() {
+		ScalarOperator sop = new ScalarOperator();
+		Tetrahedron3D tetra = new Tetrahedron3D(new Point3D(0.0, 0.0, 0.0),
+				new Point3D(4.0, 0.0, 0.0), new Point3D(0.0, 4.0, 0.0),
+				new Point3D(0.0, 0.0, 4.0), sop);
+
+		// inside and on the border
+		assertEquals(0.0, tetra.euclideanDistance(new Point3D(1.0, 1.0, 1.0)),
+				1E-9);
+		assertEquals(0.0, tetra.euclideanDistance(new Point3D(1.0, 1.0, 0.0)),
+				1E-9);
+		// below the base triangle
+		assertEquals(2.0, tetra.euclideanDistance(new Point3D(1.0, 1.0, -2.0)),
+				1E-9);
+		// beyond a vertex
+		assertEquals(9.0, tetra.euclideanDistanceSQR(new Point3D(7.0, 0.0,
+				0.0)), 1E-9);
+	}
+
+	public void testSimplexDistance() {
+		ScalarOperator sop = new ScalarOperator();
+		Tetrahedron3D tetra = new Tetrahedron3D(new Point3D(0.0, 0.0, 0.0),
+				new Point3D(4.0, 0.0, 0.0), new Point3D(0.0, 4.0, 0.0),
+				new Point3D(0.0, 0.0, 4.0), sop);
+
+		// the segment and an edge - closest points inside both
+		Segment3D seg = new Segment3D(new Point3D(3.0, -1.0, 2.0),
+				new Point3D(3.0, 1.0, 2.0), sop);
+		assertEquals(0.5, GeomUtils.euclideanDistanceSQR(tetra, seg), 1E-9);
+		assertEquals(0.5, GeomUtils.euclideanDistanceSQR(seg, tetra), 1E-9);
+
+		// vertex against face
+		Triangle3D tri = new Triangle3D(new Point3D(-3.0, -1.0, -1.0),
+				new Point3D(-3.0, 5.0, -1.0), new Point3D(-3.0, 2.0, 5.0), sop);
+		assertEquals(9.0, GeomUtils.euclideanDistanceSQR(tetra, tri), 1E-9);
+
+		// a triangle piercing the tetrahedron without a vertex inside
+		Triangle3D cross = new Triangle3D(new Point3D(1.0, 1.0, -5.0),
+				new Point3D(1.0, 1.0, 5.0), new Point3D(9.0, 9.0, 0.0), sop);
+		assertEquals(0.0, GeomUtils.euclideanDistanceSQR(cross, tetra), 1E-9);
+
+		assertTrue(Double.isNaN(GeomUtils.euclideanDistanceSQR(tetra,
+				tetra.getMBB())));
+	}
+
 	public void tearDown() throws Exception {
 	}
 
@@ -7,6 +7,7 @@ package de.uos.igf.db3d.junittests.dbms.geom;
 import java.util.Arrays;
 
 import junit.framework.TestCase;
+import de.uos.igf.db3d.dbms.geom.MBB3D;
 import de.uos.igf.db3d.dbms.geom.Point3D;
 import de.uos.igf.db3d.dbms.geom.ScalarOperator;
 import de.uos.igf.db3d.dbms.geom.Segment3D;
@@ -361,4 +362,52 @@ public class Triangle3DTestCase extends TestCase {
 																		// test toString-method
 		
 	}
+
+	public void testEuclideanDistance() {
+		ScalarOperator sop = new ScalarOperator();
+		Triangle3D triangle = new Triangle3D(new Point3D(0.0, 0.0, 0.0),
+				new Point3D(4.0, 0.0, 0.0), new Point3D(0.0, 4.0, 0.0), sop);
+
+		// face region
+		assertEquals(3.0, triangle.euclideanDistance(new Point3D(1.0, 1.0, 3.0)),
+				1E-9);
+		// vertex regions
+		assertEquals(25.0, triangle.euclideanDistanceSQR(new Point3D(-3.0,
+				-4.0, 0.0)), 1E-9);
+		assertEquals(1.0, triangle.euclideanDistance(new Point3D(5.0, 0.0,
+				0.0)), 1E-9);
+		// edge region of the hypotenuse
+		assertEquals(Math.sqrt(2.0), triangle.euclideanDistance(new Point3D(
+				3.0, 3.0, 0.0)), 1E-9);
+		// point on the triangle
+		assertEquals(0.0, triangle.euclideanDistance(new Point3D(1.0, 2.0,
+				0.0)), 1E-9);
+	}
+
+	public void testMBBCache() {
+		ScalarOperator sop = new ScalarOperator();
+		Triangle3D triangle = new Triangle3D(new Point3D(0.0, 0.0, 0.0),
+				new Point3D(4.0, 0.0, 0.0), new Point3D(0.0, 4.0, 0.0), sop);
+		MBB3D mbb = triangle.getMBB();
+		assertSame(mbb, triangle.getMBB());
+
+		// setting a point invalidates the cached MBB3D
+		triangle.setPoint(2, new Point3D(0.0, 4.0, 2.0));
+		assertNotSame(mbb, triangle.getMBB());
+		assertEquals(2.0, triangle.getMBB().getPMax().getZ(), 1E-9);
+
+		// in place union of a box with the MBB3D
+		double[] box = new double[6];
+		new MBB3D(new Point3D(-1.0, 1.0, 1.0), new Point3D(0.0, 2.0, 1.0))
+				.getCoordinates(box, 0);
+		triangle.getMBB().expand(box, 0, sop);
+		assertTrue(MBB3D.create(box, 0).isEqual(
+				new MBB3D(new Point3D(-1.0, 0.0, 0.0), new Point3D(4.0, 4.0,
+						2.0)), sop));
+		assertTrue(MBB3D.intersects(box, 0, box, 0, sop));
+		assertEquals(MBB3D.create(box, 0).computeVolume(), new MBB3D(
+				new Point3D(-1.0, 1.0, 1.0), new Point3D(0.0, 2.0, 1.0))
+				.unionVolume(triangle.getMBB(), sop), 1E-9);
+	}
+
 }
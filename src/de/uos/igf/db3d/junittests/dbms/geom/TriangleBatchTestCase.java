@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.junittests.dbms.geom;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import de.uos.igf.db3d.dbms.geom.Line3D;
+import de.uos.igf.db3d.dbms.geom.Point3D;
+import de.uos.igf.db3d.dbms.geom.ScalarOperator;
+import de.uos.igf.db3d.dbms.geom.Segment3D;
+import de.uos.igf.db3d.dbms.geom.Triangle3D;
+import de.uos.igf.db3d.dbms.geom.TriangleBatch;
+
+/**
+ * This testcase tests the <code>TriangleBatch</code> class against the
+ * segment and line methods of <code>Triangle3D</code>.
+ */
+public class TriangleBatchTestCase extends TestCase {
+
+	public void testSegments() {
+		ScalarOperator sop = new ScalarOperator();
+		Random random = new Random(43);
+		Triangle3D[] triangles = createTriangles(200, random, sop);
+		Segment3D[] segments = new Segment3D[300];
+		for (int i = 0; i < segments.length; i++)
+			segments[i] = new Segment3D(randomPoint(random),
+					randomPoint(random), sop);
+
+		TriangleBatch batch = new TriangleBatch(triangles);
+		assertEquals(triangles.length, batch.getCount());
+		int[] segmentHits = new int[5000];
+		int[] triangleHits = new int[5000];
+		double[] params = new double[5000];
+		int hits = batch.intersectSegments(TriangleBatch.pack(segments), 0,
+				segments.length, 0, segmentHits, triangleHits, params);
+		assertTrue(hits > 50 && hits <= params.length);
+
+		boolean[][] found = new boolean[segments.length][triangles.length];
+		for (int k = 0; k < hits; k++) {
+			Segment3D segment = segments[segmentHits[k]];
+			Triangle3D triangle = triangles[triangleHits[k]];
+			found[segmentHits[k]][triangleHits[k]] = true;
+			assertTrue(triangle.intersects(segment, sop));
+			Point3D point = pointAt(segment.getPoint(0), segment.getPoint(1),
+					params[k]);
+			assertTrue(triangle.euclideanDistance(point) < sop.getEpsilon());
+			assertTrue(segment.contains(point, sop));
+		}
+		// the Triangle3D methods count touching within epsilon as hit, too
+		int missing = 0;
+		for (int i = 0; i < segments.length; i++)
+			for (int j = 0; j < triangles.length; j++)
+				if (!found[i][j] && triangles[j].intersects(segments[i], sop))
+					missing++;
+		assertTrue(missing * 100 < hits);
+
+		// too small buffers take the first hits
+		int[] small = new int[3];
+		double[] smallParams = new double[3];
+		assertEquals(hits, batch.intersectSegments(TriangleBatch
+				.pack(segments), 0, segments.length, 0, small, new int[3],
+				smallParams));
+		assertEquals(segmentHits[2], small[2]);
+		assertEquals(params[2], smallParams[2], 0);
+	}
+
+	public void testLines() {
+		ScalarOperator sop = new ScalarOperator();
+		Random random = new Random(47);
+		Triangle3D[] triangles = createTriangles(100, random, sop);
+		Line3D[] lines = new Line3D[100];
+		for (int i = 0; i < lines.length; i++)
+			lines[i] = new Line3D(randomPoint(random), randomPoint(random), sop);
+
+		TriangleBatch batch = new TriangleBatch(triangles);
+		int[] lineHits = new int[5000];
+		int[] triangleHits = new int[5000];
+		double[] params = new double[5000];
+		int hits = batch.intersectLines(TriangleBatch.pack(lines), 0,
+				lines.length, 0, lineHits, triangleHits, params);
+		assertTrue(hits > 50 && hits <= params.length);
+		for (int k = 0; k < hits; k++) {
+			Line3D line = lines[lineHits[k]];
+			Triangle3D triangle = triangles[triangleHits[k]];
+			assertTrue(triangle.intersects(line, sop));
+			Point3D origin = line.getOrigin();
+			Point3D point = new Point3D(origin.getX() + params[k]
+					* line.getDVector().getX(), origin.getY() + params[k]
+					* line.getDVector().getY(), origin.getZ() + params[k]
+					* line.getDVector().getZ());
+			assertTrue(triangle.euclideanDistance(point) < sop.getEpsilon());
+		}
+	}
+
+	public void testSimple() {
+		double[] triangle = new double[] { 0, 0, 0, 2, 0, 0, 0, 2, 0 };
+		TriangleBatch batch = new TriangleBatch(triangle, 0, 1);
+		// crossing, ending above, parallel and through a corner
+		double[] segments = new double[] { 0.5, 0.5, -1, 0.5, 0.5, 3, 0.5,
+				0.5, 1, 0.5, 0.5, 3, 0, 0, 1, 1, 1, 1, 2, 0, -1, 2, 0, 1 };
+		int[] segmentHits = new int[4];
+		int[] triangleHits = new int[4];
+		double[] params = new double[4];
+		assertEquals(2, batch.intersectSegments(segments, 0, 4, 1.0E-9,
+				segmentHits, triangleHits, params));
+		assertEquals(0, segmentHits[0]);
+		assertEquals(0.25, params[0], 1.0E-12);
+		assertEquals(3, segmentHits[1]);
+		assertEquals(0.5, params[1], 1.0E-12);
+
+		// the line through the second segment hits, too
+		assertEquals(3, batch.intersectLines(new double[] { 0.5, 0.5, -1, 0,
+				0, 1, 0.5, 0.5, 1, 0, 0, 1, 2, 0, -1, 0, 0, 1 }, 0, 3, 1.0E-9,
+				segmentHits, triangleHits, params));
+		assertEquals(-1, params[1], 1.0E-12);
+
+		try {
+			batch.intersectSegments(segments, 0, 5, 0, segmentHits,
+					triangleHits, params);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	private static Triangle3D[] createTriangles(int number, Random random,
+			ScalarOperator sop) {
+		Triangle3D[] triangles = new Triangle3D[number];
+		for (int i = 0; i < number; i++) {
+			Point3D p = randomPoint(random);
+			triangles[i] = new Triangle3D(p, new Point3D(p.getX()
+					+ random.nextDouble() * 4 + 1, p.getY()
+					+ random.nextDouble() - 0.5, p.getZ() + random.nextDouble()
+					- 0.5), new Point3D(p.getX() + random.nextDouble() - 0.5, p
+					.getY()
+					+ random.nextDouble() * 4 + 1, p.getZ()
+					+ random.nextDouble() * 2 - 1), sop);
+		}
+		return triangles;
+	}
+
+	private static Point3D randomPoint(Random random) {
+		return new Point3D(random.nextDouble() * 10, random.nextDouble() * 10,
+				random.nextDouble() * 10);
+	}
+
+	private static Point3D pointAt(Point3D start, Point3D end, double t) {
+		return new Point3D(start.getX() + t * (end.getX() - start.getX()),
+				start.getY() + t * (end.getY() - start.getY()), start.getZ()
+						+ t * (end.getZ() - start.getZ()));
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.junittests.dbms.geom;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import de.uos.igf.db3d.dbms.geom.ScalarOperator;
+import de.uos.igf.db3d.dbms.geom.Triangle3D;
+
+/**
+ * Microbenchmark for the triangle-triangle methods of the
+ * <code>Triangle3D</code> class. Compares intersects and intersection with
+ * the general computation by the planes of the triangles on random pairs
+ * with overlapping MBB3Ds.<br>
+ * Not a testcase - run it via its main method.
+ */
+public class TriangleIntersectionBenchmark {
+
+	/* number of triangle pairs */
+	private static final int PAIRS = 20000;
+
+	/* number of runs over all pairs */
+	private static final int RUNS = 10;
+
+	public static void main(String[] args) {
+		ScalarOperator sop = new ScalarOperator();
+		Random random = new Random(1);
+		List first = new ArrayList();
+		List second = new ArrayList();
+		while (first.size() < PAIRS) {
+			Triangle3D t1 = TriangleIntersectionTestCase.createTriangle(random);
+			Triangle3D t2 = TriangleIntersectionTestCase.createTriangle(random);
+			if (t1.isValid(sop) && t1.isRegular(sop) && t2.isValid(sop)
+					&& t2.isRegular(sop)
+					&& t1.getMBB().intersects(t2.getMBB(), sop)) {
+				first.add(t1);
+				second.add(t2);
+			}
+		}
+		Triangle3D[] a = (Triangle3D[]) first.toArray(new Triangle3D[PAIRS]);
+		Triangle3D[] b = (Triangle3D[]) second.toArray(new Triangle3D[PAIRS]);
+
+		for (int warmup = 0; warmup < 2; warmup++) {
+			long kernel = 0;
+			long planes = 0;
+			int hits = 0;
+			long start = System.nanoTime();
+			for (int r = 0; r < RUNS; r++)
+				for (int i = 0; i < PAIRS; i++)
+					if (a[i].intersects(b[i], sop))
+						hits++;
+			kernel = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int r = 0; r < RUNS; r++)
+				for (int i = 0; i < PAIRS; i++) {
+					try {
+						if (a[i].intersectsByPlanes(b[i], sop))
+							hits--;
+					} catch (RuntimeException e) {
+						// degenerated intermediate result
+						hits--;
+					}
+				}
+			planes = System.nanoTime() - start;
+			print("intersects:  ", kernel, planes, hits);
+
+			hits = 0;
+			start = System.nanoTime();
+			for (int r = 0; r < RUNS; r++)
+				for (int i = 0; i < PAIRS; i++)
+					if (a[i].intersection(b[i], sop) != null)
+						hits++;
+			kernel = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int r = 0; r < RUNS; r++)
+				for (int i = 0; i < PAIRS; i++) {
+					try {
+						if (a[i].intersectionByPlanes(b[i], sop) != null)
+							hits--;
+					} catch (RuntimeException e) {
+						// degenerated intermediate result
+						hits--;
+					}
+				}
+			planes = System.nanoTime() - start;
+			print("intersection:", kernel, planes, hits);
+		}
+	}
+
+	/*
+	 * Prints the time per pair of both methods.
+	 */
+	private static void print(String name, long kernel, long planes,
+			int difference) {
+		long pairs = (long) PAIRS * RUNS;
+		System.out.println(name + " kernel " + kernel / pairs
+				+ " ns/pair, planes " + planes / pairs + " ns/pair, speedup "
+				+ (planes * 10 / Math.max(kernel, 1)) / 10.0 + ", difference "
+				+ difference);
+	}
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.junittests.dbms.geom;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import de.uos.igf.db3d.dbms.geom.Point3D;
+import de.uos.igf.db3d.dbms.geom.ScalarOperator;
+import de.uos.igf.db3d.dbms.geom.Segment3D;
+import de.uos.igf.db3d.dbms.geom.SimpleGeoObj;
+import de.uos.igf.db3d.dbms.geom.Triangle3D;
+import de.uos.igf.db3d.dbms.geom.TriangleIntersection;
+
+/**
+ * This testcase tests the <code>TriangleIntersection</code> kernel behind
+ * the triangle-triangle methods of <code>Triangle3D</code> against the
+ * general computation by the planes of the triangles.
+ */
+public class TriangleIntersectionTestCase extends TestCase {
+
+	/**
+	 * Creates a random triangle without validation around the cube [0, 3]^3.
+	 */
+	static Triangle3D createTriangle(Random random) {
+		double x = random.nextDouble() * 2;
+		double y = random.nextDouble() * 2;
+		double z = random.nextDouble() * 2;
+		return new Triangle3D(new Point3D(x, y, z), new Point3D(x
+				+ random.nextDouble(), y + random.nextDouble() - 0.5, z
+				+ random.nextDouble() - 0.5), new Point3D(x
+				+ random.nextDouble() - 0.5, y + random.nextDouble(), z
+				+ random.nextDouble() - 0.5), null);
+	}
+
+	public void testCrossCheck() {
+		ScalarOperator sop = new ScalarOperator();
+		Random random = new Random(41);
+		int intersecting = 0;
+		for (int i = 0; i < 20000; i++) {
+			Triangle3D t1 = createTriangle(random);
+			Triangle3D t2 = createTriangle(random);
+			if (!t1.isValid(sop) || !t1.isRegular(sop) || !t2.isValid(sop)
+					|| !t2.isRegular(sop))
+				continue;
+			boolean result = t1.intersects(t2, sop);
+			try {
+				assertEquals(t1.intersectsByPlanes(t2, sop), result);
+			} catch (RuntimeException e) {
+				// the general computation fails for some grazing pairs
+			}
+			assertEquals(result, t2.intersects(t1, sop));
+
+			SimpleGeoObj obj = t1.intersection(t2, sop);
+			assertEquals(result, obj != null);
+			if (obj != null) {
+				intersecting++;
+				Point3D[] points;
+				if (obj.getType() == SimpleGeoObj.SEGMENT3D)
+					points = ((Segment3D) obj).getPoints();
+				else
+					points = new Point3D[] { (Point3D) obj };
+				for (int k = 0; k < points.length; k++) {
+					assertTrue(t1.euclideanDistance(points[k]) < sop
+							.getEpsilon());
+					assertTrue(t2.euclideanDistance(points[k]) < sop
+							.getEpsilon());
+				}
+			}
+		}
+		assertTrue(intersecting > 100);
+	}
+
+	public void testSpecialCases() {
+		ScalarOperator sop = new ScalarOperator();
+		Point3D a = new Point3D(0, 0, 0);
+		Point3D b = new Point3D(2, 0, 0);
+		Point3D c = new Point3D(0, 2, 0);
+		Triangle3D base = new Triangle3D(a, b, c, sop);
+
+		// common edge
+		Triangle3D t = new Triangle3D(a, b, new Point3D(1, 0, 2), sop);
+		SimpleGeoObj obj = base.intersection(t, sop);
+		assertEquals(SimpleGeoObj.SEGMENT3D, obj.getType());
+		assertTrue(((Segment3D) obj).isGeometryEquivalent(new Segment3D(a, b,
+				sop), sop));
+
+		// common point
+		t = new Triangle3D(c, new Point3D(-1, 3, 1), new Point3D(1, 3, 1),
+				sop);
+		obj = base.intersection(t, sop);
+		assertEquals(SimpleGeoObj.POINT3D, obj.getType());
+		assertTrue(((Point3D) obj).isEqual(c, sop));
+
+		// point of t in the inner of base
+		t = new Triangle3D(new Point3D(0.5, 0.5, 0), new Point3D(1, 1, 1),
+				new Point3D(0, 1, 1), sop);
+		obj = base.intersection(t, sop);
+		assertEquals(SimpleGeoObj.POINT3D, obj.getType());
+
+		// crossing
+		t = new Triangle3D(new Point3D(0.5, -1, -1), new Point3D(0.5, 1, 1),
+				new Point3D(0.5, 1, -1), sop);
+		assertTrue(base.intersects(t, sop));
+		obj = base.intersection(t, sop);
+		assertEquals(SimpleGeoObj.SEGMENT3D, obj.getType());
+		assertTrue(((Segment3D) obj).isGeometryEquivalent(new Segment3D(
+				new Point3D(0.5, 0, 0), new Point3D(0.5, 1, 0), sop), sop));
+
+		// above base
+		t = new Triangle3D(new Point3D(0.5, 0.5, 0.001), new Point3D(1, 1, 1),
+				new Point3D(0, 1, 1), sop);
+		assertFalse(base.intersects(t, sop));
+		assertNull(base.intersection(t, sop));
+
+		// coplanar, overlapping and disjoint
+		t = new Triangle3D(new Point3D(1, 1, 0), new Point3D(-1, 1, 0),
+				new Point3D(1, -1, 0), sop);
+		assertTrue(base.intersects(t, sop));
+		assertNotNull(base.intersection(t, sop));
+		t = new Triangle3D(new Point3D(0.2, 0.2, 0), new Point3D(0.6, 0.2, 0),
+				new Point3D(0.2, 0.6, 0), sop);
+		assertTrue(base.intersects(t, sop));
+		assertTrue(t.intersects(base, sop));
+		t = new Triangle3D(new Point3D(3, 3, 0), new Point3D(4, 3, 0),
+				new Point3D(3, 4, 0), sop);
+		assertFalse(base.intersects(t, sop));
+
+		// raw coordinates
+		double[] coords = new double[] { 0, 0, 0, 2, 0, 0, 0, 2, 0, 0.5, -1,
+				-1, 0.5, 1, 1, 0.5, 1, -1 };
+		double[] result = new double[6];
+		assertEquals(TriangleIntersection.INTERSECTING, TriangleIntersection
+				.intersects(coords, 0, coords, 9, sop.getEpsilon()));
+		assertEquals(TriangleIntersection.SEGMENT, TriangleIntersection
+				.intersection(coords, 0, coords, 9, sop.getEpsilon(), result));
+		assertEquals(TriangleIntersection.COPLANAR, TriangleIntersection
+				.intersection(coords, 0, coords, 0, sop.getEpsilon(), result));
+	}
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.junittests.dbms.model3d;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import de.uos.igf.db3d.dbms.geom.Point3D;
+import de.uos.igf.db3d.dbms.geom.ScalarOperator;
+import de.uos.igf.db3d.dbms.geom.Tetrahedron3D;
+import de.uos.igf.db3d.dbms.model3d.TetrahedronElt3D;
+import de.uos.igf.db3d.dbms.model3d.TetrahedronNet3DComp;
+import de.uos.igf.db3d.dbms.model3d.TetrahedronNetBuilder;
+import de.uos.igf.db3d.dbms.util.RStar;
+import de.uos.igf.db3d.dbms.util.RStarStatistics;
+
+/**
+ * This testcase tests the point location of the
+ * <code>TetrahedronNet3DComp</code> class.
+ */
+public class TetrahedronNet3DCompTestCase extends TestCase {
+
+	/**
+	 * Creates a component of size^3 unit cubes with six tetrahedrons each.
+	 */
+	static TetrahedronNet3DComp createGrid(int size, ScalarOperator sop) {
+		Point3D[][][] points = new Point3D[size + 1][size + 1][size + 1];
+		for (int i = 0; i <= size; i++)
+			for (int j = 0; j <= size; j++)
+				for (int k = 0; k <= size; k++)
+					points[i][j][k] = new Point3D(i, j, k);
+
+		// the six paths from corner 000 to corner 111 of a cube
+		int[][] paths = new int[][] { { 0, 1, 2 }, { 0, 2, 1 }, { 1, 0, 2 },
+				{ 1, 2, 0 }, { 2, 0, 1 }, { 2, 1, 0 } };
+		TetrahedronElt3D[] elements = new TetrahedronElt3D[size * size * size
+				* 6];
+		int n = 0;
+		for (int i = 0; i < size; i++)
+			for (int j = 0; j < size; j++)
+				for (int k = 0; k < size; k++)
+					for (int p = 0; p < 6; p++) {
+						int[] c = new int[] { i, j, k };
+						Point3D[] tet = new Point3D[4];
+						tet[0] = points[c[0]][c[1]][c[2]];
+						for (int s = 0; s < 3; s++) {
+							c[paths[p][s]]++;
+							tet[s + 1] = points[c[0]][c[1]][c[2]];
+						}
+						elements[n++] = new TetrahedronElt3D(tet, sop);
+					}
+		TetrahedronNetBuilder builder = new TetrahedronNetBuilder(sop);
+		builder.addComponent(elements);
+		return builder.getTetrahedronNet().getComponent(0);
+	}
+
+	public void testGetTetraContainingPoint() {
+		ScalarOperator sop = new ScalarOperator();
+		TetrahedronNet3DComp comp = createGrid(5, sop);
+		assertEquals(750, comp.countTetras());
+
+		Random random = new Random(53);
+		for (int i = 0; i < 500; i++) {
+			Point3D point = new Point3D(random.nextDouble() * 5, random
+					.nextDouble() * 5, random.nextDouble() * 5);
+			TetrahedronElt3D tetra = comp.getTetraContainingPoint(point);
+			assertNotNull(tetra);
+			assertTrue(tetra.contains(point, sop));
+			assertTrue(comp.containsInside(point));
+		}
+
+		// points on vertices, edges and faces of the grid
+		for (int i = 0; i < 100; i++) {
+			Point3D point = new Point3D(random.nextInt(6), random.nextInt(6),
+					random.nextInt(11) / 2.0);
+			TetrahedronElt3D tetra = comp.getTetraContainingPoint(point);
+			assertNotNull(tetra);
+			assertTrue(tetra.contains(point, sop));
+		}
+
+		// points outside
+		assertNull(comp.getTetraContainingPoint(new Point3D(2, 2, 5.5)));
+		assertNull(comp.getTetraContainingPoint(new Point3D(-1, 2, 2)));
+		assertFalse(comp.containsInside(new Point3D(6, 6, 6)));
+		// the SAM decides within epsilon at the border
+		assertNotNull(comp.getTetraContainingPoint(new Point3D(2.5, 2.5,
+				5.00001)));
+	}
+
+	public void testWalk() {
+		ScalarOperator sop = new ScalarOperator();
+		TetrahedronNet3DComp comp = createGrid(5, sop);
+		RStar rstar = (RStar) comp.getSAM();
+		rstar.setMetricsEnabled(true);
+
+		// inner points are found by the walk, never by a SAM contains query
+		Random random = new Random(59);
+		for (int i = 0; i < 200; i++) {
+			Point3D point = new Point3D(random.nextDouble() * 5, random
+					.nextDouble() * 5, random.nextDouble() * 5);
+			assertTrue(comp.getTetraContainingPoint(point).contains(point,
+					sop));
+		}
+		RStarStatistics statistics = rstar.getStatistics();
+		assertEquals(0, statistics
+				.getQueryCount(RStarStatistics.QUERY_CONTAINS));
+
+		// a point near the last one starts the walk at the located element
+		Point3D point = new Point3D(2.2, 2.3, 2.4);
+		comp.getTetraContainingPoint(point);
+		long nearest = rstar.getStatistics().getQueryCount(
+				RStarStatistics.QUERY_NEAREST);
+		comp.getTetraContainingPoint(new Point3D(2.21, 2.31, 2.41));
+		assertEquals(nearest, rstar.getStatistics().getQueryCount(
+				RStarStatistics.QUERY_NEAREST));
+		rstar.setMetricsEnabled(false);
+	}
+
+	public void testEditAndLocate() throws Exception {
+		ScalarOperator sop = new ScalarOperator();
+		TetrahedronNet3DComp comp = createGrid(4, sop);
+		Random random = new Random(61);
+
+		// add and remove elements below the grid, locate points in between
+		for (int n = 0; n < 20; n++) {
+			int i = random.nextInt(4);
+			int j = random.nextInt(4);
+			// the shared face lies opposite to the apex at point 0
+			Tetrahedron3D tetra = new Tetrahedron3D(new Point3D(i + 0.7,
+					j + 0.3, -1), new Point3D(i, j, 0), new Point3D(i + 1, j,
+					0), new Point3D(i + 1, j + 1, 0), sop);
+			Point3D center = tetra.getCenter();
+			assertNull(comp.getTetraContainingPoint(center));
+			TetrahedronElt3D added = comp.addElt(tetra);
+			assertNotNull(added);
+			assertSame(added, comp.getTetraContainingPoint(center));
+			locateRandom(comp, random, sop);
+			assertNotNull(comp.removeElt(added));
+			assertNull(comp.getTetraContainingPoint(center));
+			locateRandom(comp, random, sop);
+		}
+		assertEquals(384, comp.countTetras());
+	}
+
+	/*
+	 * Locates random points inside the grid of size 4.
+	 */
+	private static void locateRandom(TetrahedronNet3DComp comp,
+			Random random, ScalarOperator sop) {
+		for (int k = 0; k < 10; k++) {
+			Point3D point = new Point3D(random.nextDouble() * 4, random
+					.nextDouble() * 4, random.nextDouble() * 4);
+			assertTrue(comp.getTetraContainingPoint(point).contains(point,
+					sop));
+		}
+	}
+
+	public void testRemove() throws Exception {
+		ScalarOperator sop = new ScalarOperator();
+		TetrahedronNet3DComp comp = createGrid(3, sop);
+		Point3D point = new Point3D(0.1, 0.2, 0.3);
+		TetrahedronElt3D tetra = comp.getTetraContainingPoint(point);
+		assertNotNull(tetra);
+
+		// removing a border element invalidates the start of the walk
+		TetrahedronElt3D border = null;
+		for (Iterator it = comp.getElementsViaSAM().iterator(); it.hasNext();) {
+			TetrahedronElt3D elt = (TetrahedronElt3D) it.next();
+			if (elt.contains(point, sop))
+				border = elt;
+		}
+		assertNotNull(comp.removeElt(border));
+		assertNull(comp.getTetraContainingPoint(point));
+		Point3D inside = new Point3D(2.5, 2.5, 2.5);
+		assertTrue(comp.getTetraContainingPoint(inside).contains(inside, sop));
+	}
+
+}
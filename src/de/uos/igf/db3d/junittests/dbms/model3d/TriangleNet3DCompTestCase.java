@@ -4,15 +4,20 @@
 
 package de.uos.igf.db3d.junittests.dbms.model3d;
 
+import java.util.Collection;
+import java.util.Iterator;
+
 import junit.framework.TestCase;
 import de.uos.igf.db3d.dbms.api.NameNotUniqueException;
 import de.uos.igf.db3d.dbms.geom.Point3D;
 import de.uos.igf.db3d.dbms.geom.ScalarOperator;
+import de.uos.igf.db3d.dbms.geom.Segment3D;
 import de.uos.igf.db3d.dbms.model3d.TriangleElt3D;
 import de.uos.igf.db3d.dbms.model3d.TriangleNet3D;
 import de.uos.igf.db3d.dbms.model3d.TriangleNet3DComp;
 import de.uos.igf.db3d.dbms.model3d.TriangleNetBuilder;
 import de.uos.igf.db3d.dbms.model3d.TriangleNet3DComp.TriangleElt3DIterator;
+import de.uos.igf.db3d.dbms.util.ClosestPairResult;
 
 /**
  * This testcase tests the (topology) methods of the
@@ -59,4 +64,147 @@ public class TriangleNet3DCompTestCase extends TestCase {
 
 	}
 
+	public void testClosestPairs() throws NameNotUniqueException {
+		ScalarOperator sop = new ScalarOperator();
+		TriangleNetBuilder triNetBuilder = new TriangleNetBuilder(sop);
+		triNetBuilder.addComponent(new TriangleElt3D[] {
+				new TriangleElt3D(new Point3D(1.0, 1.0, 1.0), new Point3D(3.0,
+						1.0, 1.0), new Point3D(2.0, 3.0, 1.0), sop),
+				new TriangleElt3D(new Point3D(3.0, 1.0, 1.0), new Point3D(2.0,
+						3.0, 1.0), new Point3D(3.0, 3.0, 1.0), sop) });
+		triNetBuilder.addComponent(new TriangleElt3D[] {
+				new TriangleElt3D(new Point3D(2.5, 2.0, 3.5), new Point3D(6.0,
+						2.0, 3.5), new Point3D(6.0, 5.0, 3.5), sop),
+				new TriangleElt3D(new Point3D(6.0, 2.0, 3.5), new Point3D(8.0,
+						2.0, 3.5), new Point3D(6.0, 5.0, 3.5), sop) });
+		TriangleNet3D triNet3D = triNetBuilder.getTriangleNet();
+		TriangleNet3DComp comp1 = triNet3D.getComponent(0);
+		TriangleNet3DComp comp2 = triNet3D.getComponent(1);
+
+		ClosestPairResult[] pairs = comp1.closestPairs(comp2, 2);
+		assertEquals(2, pairs.length);
+		assertEquals(2.5, pairs[0].getDistance(), 1E-9);
+		assertTrue(pairs[0].getDistance() <= pairs[1].getDistance());
+		assertTrue(pairs[0].getFirst() instanceof TriangleElt3D);
+
+		// the neighbours of a component touch, but no element is paired
+		// with itself
+		pairs = comp1.closestPairs(comp1, 5);
+		assertEquals(2, pairs.length);
+		assertEquals(0, pairs[0].getDistance(), 1E-9);
+		assertTrue(pairs[0].getFirst() != pairs[0].getSecond());
+		assertSame(pairs[0].getFirst(), pairs[1].getSecond());
+	}
+
+	public void testTrianglesWithPoint() throws Exception {
+		ScalarOperator sop = new ScalarOperator();
+		TriangleElt3D[] elements = new TriangleElt3D[32];
+		int n = 0;
+		for (int i = 0; i < 4; i++)
+			for (int j = 0; j < 4; j++) {
+				Point3D p00 = new Point3D(i, j, 0);
+				Point3D p10 = new Point3D(i + 1, j, 0);
+				Point3D p01 = new Point3D(i, j + 1, 0);
+				Point3D p11 = new Point3D(i + 1, j + 1, 0);
+				elements[n++] = new TriangleElt3D(p00, p10, p11, sop);
+				elements[n++] = new TriangleElt3D(p00, p11, p01, sop);
+			}
+		TriangleNetBuilder triNetBuilder = new TriangleNetBuilder(sop);
+		triNetBuilder.addComponent(elements);
+		TriangleNet3DComp comp = triNetBuilder.getTriangleNet()
+				.getComponent(0);
+		assertStars(comp, sop);
+
+		Point3D inner = new Point3D(2, 2, 0);
+		assertEquals(6, comp.getAllTrianglesWithPoint(inner).size());
+		assertEquals(12, comp.getAllSegmentsWithPoint(inner).size());
+		assertEquals(2, comp.getAllTrianglesWithPoint2(new Point3D(4, 4, 0))
+				.size());
+		// no vertex
+		assertEquals(0, comp.getAllTrianglesWithPoint(
+				new Point3D(0.5, 0.25, 0)).size());
+		assertEquals(0, comp.getAllTrianglesWithPoint2(new Point3D(9, 9, 0))
+				.size());
+
+		// the index follows removals and insertions
+		TriangleElt3D corner = comp.getAllTrianglesWithPoint(
+				new Point3D(0, 0, 0)).iterator().next();
+		assertNotNull(comp.removeElt(corner));
+		assertEquals(1, comp.getAllTrianglesWithPoint(new Point3D(0, 0, 0))
+				.size());
+		assertStars(comp, sop);
+		TriangleElt3D added = comp.addElt(new TriangleElt3D(new Point3D(4, 0,
+				0), new Point3D(5, 0, 0), new Point3D(4, 1, 0), sop));
+		assertTrue(comp.getAllTrianglesWithPoint(new Point3D(5, 0, 0))
+				.contains(added));
+		assertStars(comp, sop);
+	}
+
+	public void testTrianglesWithPerturbedPoint() throws Exception {
+		ScalarOperator sop = new ScalarOperator();
+		// equal within epsilon, but hashed into different buckets
+		Point3D center = new Point3D(1.99951, 1, 0);
+		Point3D perturbed = new Point3D(1.99949, 1, 0);
+		Point3D[] outer = new Point3D[] { new Point3D(1, 0, 0),
+				new Point3D(3, 0, 0), new Point3D(3, 2, 0),
+				new Point3D(1, 2, 0) };
+		TriangleElt3D[] elements = new TriangleElt3D[4];
+		for (int i = 0; i < 4; i++)
+			elements[i] = new TriangleElt3D(i < 2 ? center : perturbed,
+					outer[i], outer[(i + 1) % 4], sop);
+		TriangleNetBuilder triNetBuilder = new TriangleNetBuilder(sop);
+		triNetBuilder.addComponent(elements);
+		TriangleNet3DComp comp = triNetBuilder.getTriangleNet()
+				.getComponent(0);
+
+		assertEquals(4, comp.getAllTrianglesWithPoint(center).size());
+		assertEquals(4, comp.getAllTrianglesWithPoint2(perturbed).size());
+		assertEquals(8, comp.getAllSegmentsWithPoint(center).size());
+		assertStars(comp, sop);
+
+		// remove the elements which created the index entry
+		for (Iterator it = comp.getAllTrianglesWithPoint(center).iterator(); it
+				.hasNext();) {
+			TriangleElt3D elt = (TriangleElt3D) it.next();
+			if (elt.getPoint(0) == center || elt.getPoint(1) == center
+					|| elt.getPoint(2) == center)
+				assertNotNull(comp.removeElt(elt));
+		}
+		assertEquals(2, comp.getAllTrianglesWithPoint(center).size());
+		assertStars(comp, sop);
+		TriangleElt3D elt = comp.getAllTrianglesWithPoint(perturbed)
+				.iterator().next();
+		assertNotNull(comp.removeElt(elt));
+		assertEquals(1, comp.getAllTrianglesWithPoint(center).size());
+		assertEquals(1, comp.getAllTrianglesWithPoint2(perturbed).size());
+		assertStars(comp, sop);
+	}
+
+	/*
+	 * Compares the incident elements of all vertices with a scan over all
+	 * elements.
+	 */
+	private static void assertStars(TriangleNet3DComp comp, ScalarOperator sop) {
+		Collection all = comp.getElementsViaSAM();
+		for (Iterator it = all.iterator(); it.hasNext();) {
+			TriangleElt3D elt = (TriangleElt3D) it.next();
+			for (int i = 0; i < 3; i++) {
+				Point3D point = elt.getPoint(i);
+				int count = 0;
+				for (Iterator it2 = all.iterator(); it2.hasNext();)
+					if (((TriangleElt3D) it2.next()).hasCorner(point, sop))
+						count++;
+				Collection triangles = comp.getAllTrianglesWithPoint(point);
+				assertEquals(count, triangles.size());
+				assertTrue(triangles.contains(elt));
+				assertEquals(count, comp.getAllTrianglesWithPoint2(point)
+						.size());
+				Collection segments = comp.getAllSegmentsWithPoint(point);
+				assertEquals(2 * count, segments.size());
+				for (Iterator it3 = segments.iterator(); it3.hasNext();)
+					assertTrue(((Segment3D) it3.next()).contains(point, sop));
+			}
+		}
+	}
+
 }
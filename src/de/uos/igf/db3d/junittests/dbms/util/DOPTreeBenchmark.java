@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.junittests.dbms.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+import de.uos.igf.db3d.dbms.geom.GeomUtils;
+import de.uos.igf.db3d.dbms.geom.ScalarOperator;
+import de.uos.igf.db3d.dbms.geom.Triangle3D;
+import de.uos.igf.db3d.dbms.structure.GeoObj;
+import de.uos.igf.db3d.dbms.util.DOPTree;
+import de.uos.igf.db3d.dbms.util.RStar;
+
+/**
+ * False positive benchmark for the <code>DOPTree</code> class. Queries a
+ * slanted surface with small triangles and compares the candidates of the
+ * 18-DOP overlaps query with the candidates of a RStar query with the MBB3D
+ * of the triangles. A candidate is false positive if it does not intersect
+ * the query triangle.<br>
+ * Not a testcase - run it via its main method.
+ */
+public class DOPTreeBenchmark {
+
+	/* number of query triangles */
+	private static final int QUERIES = 20000;
+
+	public static void main(String[] args) {
+		ScalarOperator sop = new ScalarOperator();
+		int[] sizes = new int[] { 50, 100, 200 };
+		for (int s = 0; s < sizes.length; s++) {
+			Triangle3D[] tris = DOPTreeTestCase.createSlanted(sizes[s], sop);
+			RStar rstar = new RStar(8, sop);
+			rstar.bulkLoad(tris);
+			DOPTree tree = new DOPTree(Arrays.asList(tris), 4, sop);
+			Triangle3D[] queries = DOPTreeTestCase.createQueries(QUERIES,
+					sizes[s], new Random(1), sop);
+
+			long[] box = new long[3];
+			long[] dop = new long[3];
+			for (int i = 0; i < queries.length; i++) {
+				count(rstar.intersects(queries[i].getMBB()), queries[i], box);
+				count(tree.overlaps(queries[i]), queries[i], dop);
+			}
+			System.out.println(tris.length + " triangles, " + QUERIES
+					+ " queries, " + box[2] + " hits:");
+			print("  RStar (MBB3D):   ", box);
+			print("  DOPTree (18-DOP):", dop);
+		}
+	}
+
+	/*
+	 * Counts the candidates, the false positives and the hits of a query.
+	 */
+	private static void count(Set candidates, GeoObj query, long[] counts) {
+		for (Iterator it = candidates.iterator(); it.hasNext();) {
+			counts[0]++;
+			if (GeomUtils.euclideanDistanceSQR((GeoObj) it.next(), query) == 0)
+				counts[2]++;
+			else
+				counts[1]++;
+		}
+	}
+
+	/*
+	 * Prints the candidates and the false positive rate.
+	 */
+	private static void print(String name, long[] counts) {
+		System.out.println(name + " " + counts[0] + " candidates, "
+				+ counts[1] + " false positives ("
+				+ (counts[0] == 0 ? 0 : counts[1] * 1000 / counts[0] / 10.0)
+				+ "%)");
+	}
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.junittests.dbms.util;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import de.uos.igf.db3d.dbms.geom.GeomUtils;
+import de.uos.igf.db3d.dbms.geom.MBB3D;
+import de.uos.igf.db3d.dbms.geom.Plane3D;
+import de.uos.igf.db3d.dbms.geom.Point3D;
+import de.uos.igf.db3d.dbms.geom.ScalarOperator;
+import de.uos.igf.db3d.dbms.geom.Triangle3D;
+import de.uos.igf.db3d.dbms.geom.Vector3D;
+import de.uos.igf.db3d.dbms.structure.GeoObj;
+import de.uos.igf.db3d.dbms.util.DOPTree;
+import de.uos.igf.db3d.dbms.util.RStar;
+import de.uos.igf.db3d.dbms.util.SAM.NNResult;
+import de.uos.igf.db3d.junittests.dbms.TestConstants;
+
+/**
+ * This testcase tests the methods of the <code>DOPTree</code> class against
+ * the <code>RStar</code>.
+ */
+public class DOPTreeTestCase extends TestCase {
+
+	/**
+	 * Creates a triangulated slanted surface on the plane x + y + z = size.
+	 */
+	static Triangle3D[] createSlanted(int size, ScalarOperator sop) {
+		Triangle3D[] tris = new Triangle3D[size * size * 2];
+		int k = 0;
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				Point3D p00 = new Point3D(i, j, size - i - j);
+				Point3D p10 = new Point3D(i + 1, j, size - i - 1 - j);
+				Point3D p01 = new Point3D(i, j + 1, size - i - j - 1);
+				Point3D p11 = new Point3D(i + 1, j + 1, size - i - j - 2);
+				tris[k++] = new Triangle3D(p00, p10, p11, sop);
+				tris[k++] = new Triangle3D(p00, p11, p01, sop);
+			}
+		}
+		return tris;
+	}
+
+	/**
+	 * Creates small random triangles around the slanted surface.
+	 */
+	static Triangle3D[] createQueries(int number, int size, Random random,
+			ScalarOperator sop) {
+		Triangle3D[] queries = new Triangle3D[number];
+		for (int i = 0; i < number; i++) {
+			double x = random.nextDouble() * size;
+			double y = random.nextDouble() * size;
+			double z = size - x - y + random.nextDouble() * 4 - 2;
+			queries[i] = new Triangle3D(new Point3D(x, y, z), new Point3D(x
+					+ random.nextDouble() + 0.1, y, z), new Point3D(x, y
+					+ random.nextDouble() + 0.1, z + random.nextDouble()), sop);
+		}
+		return queries;
+	}
+
+	public void testQueries() {
+		ScalarOperator sop = new ScalarOperator();
+		Triangle3D[] tris = RStarTestCase.createGrid(25, sop);
+		RStar rstar = new RStar(8, sop);
+		rstar.bulkLoad(tris);
+		DOPTree tree = new DOPTree(Arrays.asList(tris), 4, sop);
+		assertEquals(tris.length, tree.getCount());
+		assertEquals(rstar.getEntries(), tree.getEntries());
+		assertTrue(tree.getMBB().isEqual(rstar.getMBB(), sop));
+
+		Random random = new Random(17);
+		for (int i = 0; i < 40; i++) {
+			double x = random.nextDouble() * 25;
+			double y = random.nextDouble() * 25;
+			double z = random.nextDouble() * 2;
+			MBB3D query = new MBB3D(new Point3D(x, y, z), new Point3D(x
+					+ random.nextDouble() * 6, y + random.nextDouble() * 6,
+					z + random.nextDouble()));
+			assertEquals(rstar.intersects(query), tree.intersects(query));
+			assertEquals(rstar.intersectsStrict(query), tree
+					.intersectsStrict(query));
+			assertEquals(rstar.inside(query), tree.inside(query));
+			assertEquals(rstar.insideStrict(query), tree.insideStrict(query));
+			assertEquals(rstar.contains(query), tree.contains(query));
+
+			Point3D point = new Point3D(x, y, z);
+			assertEquals(rstar.contains(point), tree.contains(point));
+			NNResult[] expected = rstar.nearest(5, point);
+			NNResult[] result = tree.nearest(5, point);
+			for (int k = 0; k < expected.length; k++)
+				assertEquals(expected[k].getDistance(), result[k]
+						.getDistance(), TestConstants.EPSILON);
+		}
+
+		Plane3D[] planes = new Plane3D[10];
+		for (int i = 0; i < planes.length; i++)
+			planes[i] = new Plane3D(new Vector3D(1, 1, 1), new Vector3D(i * 5,
+					0, 0), sop);
+		Set[] expected = rstar.intersects(planes);
+		Set[] result = tree.intersects(planes);
+		for (int i = 0; i < planes.length; i++)
+			assertEquals(expected[i], result[i]);
+
+		Iterator it = tree.nearestIterator(new Point3D(-5, 12, 3));
+		Set visited = new HashSet();
+		double last = 0;
+		while (it.hasNext()) {
+			NNResult nn = (NNResult) it.next();
+			assertTrue(nn.getDistance() >= last);
+			last = nn.getDistance();
+			assertTrue(visited.add(nn.getObjectRef()));
+		}
+		assertEquals(tris.length, visited.size());
+	}
+
+	public void testOverlaps() {
+		ScalarOperator sop = new ScalarOperator();
+		Triangle3D[] tris = createSlanted(20, sop);
+		RStar rstar = new RStar(8, sop);
+		rstar.bulkLoad(tris);
+		DOPTree tree = new DOPTree(Arrays.asList(tris), 4, sop);
+
+		Triangle3D[] queries = createQueries(100, 20, new Random(23), sop);
+		int candidates = 0;
+		int boxCandidates = 0;
+		for (int i = 0; i < queries.length; i++) {
+			Set boxResult = rstar.intersects(queries[i].getMBB());
+			Set result = tree.overlaps(queries[i]);
+			// the DOP candidates are a subset of the MBB3D candidates
+			assertTrue(boxResult.containsAll(result));
+			// and contain every exact hit
+			for (Iterator it = boxResult.iterator(); it.hasNext();) {
+				GeoObj obj = (GeoObj) it.next();
+				if (GeomUtils.euclideanDistanceSQR(obj, queries[i]) == 0)
+					assertTrue(result.contains(obj));
+			}
+			candidates += result.size();
+			boxCandidates += boxResult.size();
+		}
+		assertTrue(candidates < boxCandidates);
+	}
+
+	public void testEmpty() {
+		ScalarOperator sop = new ScalarOperator();
+		DOPTree tree = new DOPTree(new HashSet(), 4, sop);
+		assertEquals(0, tree.getCount());
+		assertNull(tree.getMBB());
+		MBB3D query = new MBB3D(new Point3D(0, 0, 0), new Point3D(1, 1, 1));
+		assertTrue(tree.intersects(query).isEmpty());
+		assertTrue(tree.overlaps(query).isEmpty());
+		assertFalse(tree.nearestIterator(new Point3D(0, 0, 0)).hasNext());
+		try {
+			tree.insert(query);
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+	}
+
+}
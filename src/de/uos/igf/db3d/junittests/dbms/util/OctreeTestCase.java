@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.junittests.dbms.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import de.uos.igf.db3d.dbms.geom.MBB3D;
+import de.uos.igf.db3d.dbms.geom.Point3D;
+import de.uos.igf.db3d.dbms.geom.ScalarOperator;
+import de.uos.igf.db3d.dbms.geom.Triangle3D;
+import de.uos.igf.db3d.dbms.model3d.TriangleElt3D;
+import de.uos.igf.db3d.dbms.model3d.TriangleNet3D;
+import de.uos.igf.db3d.dbms.model3d.TriangleNetBuilder;
+import de.uos.igf.db3d.dbms.util.Octree;
+import de.uos.igf.db3d.dbms.util.OctreeProvider;
+import de.uos.igf.db3d.dbms.util.RStar;
+import de.uos.igf.db3d.dbms.util.SAM.NNResult;
+import de.uos.igf.db3d.junittests.dbms.TestConstants;
+
+/**
+ * This testcase tests the methods of the <code>Octree</code> class against
+ * the <code>RStar</code>.
+ */
+public class OctreeTestCase extends TestCase {
+
+	public void testQueries() {
+		ScalarOperator sop = new ScalarOperator();
+		Triangle3D[] tris = RStarTestCase.createGrid(25, sop);
+		Octree octree = new Octree(8, 12, sop);
+		RStar rstar = new RStar(8, sop);
+		for (int i = 0; i < tris.length; i++) {
+			octree.insert(tris[i]);
+			rstar.insert(tris[i]);
+		}
+		assertEquals(tris.length, octree.getCount());
+		assertEquals(rstar.getEntries(), octree.getEntries());
+		assertTrue(octree.getMBB().isEqual(rstar.getMBB(), sop));
+
+		Random random = new Random(3);
+		for (int i = 0; i < 50; i++) {
+			double x = random.nextDouble() * 28 - 2;
+			double y = random.nextDouble() * 28 - 2;
+			MBB3D query = new MBB3D(new Point3D(x, y, 0), new Point3D(x
+					+ random.nextDouble() * 5, y + random.nextDouble() * 5, 2));
+			assertEquals(rstar.intersects(query), octree.intersects(query));
+			assertEquals(rstar.intersectsStrict(query), octree
+					.intersectsStrict(query));
+			assertEquals(rstar.inside(query), octree.inside(query));
+			Point3D point = new Point3D(x, y, 1);
+			assertEquals(rstar.contains(point), octree.contains(point));
+
+			NNResult[] expected = rstar.nearest(4, point);
+			NNResult[] result = octree.nearest(4, point);
+			for (int k = 0; k < expected.length; k++)
+				assertEquals(expected[k].getDistance(), result[k]
+						.getDistance(), TestConstants.EPSILON);
+		}
+
+		// incremental nearest neighbours are complete and sorted
+		Iterator it = octree.nearestIterator(new Point3D(-5, 30, 4));
+		Set visited = new HashSet();
+		double last = 0;
+		while (it.hasNext()) {
+			NNResult nn = (NNResult) it.next();
+			assertTrue(nn.getDistance() >= last);
+			last = nn.getDistance();
+			assertTrue(visited.add(nn.getObjectRef()));
+		}
+		assertEquals(tris.length, visited.size());
+	}
+
+	public void testRemove() {
+		ScalarOperator sop = new ScalarOperator();
+		Triangle3D[] tris = RStarTestCase.createGrid(15, sop);
+		Octree octree = new Octree(4, 10, sop);
+		// shuffled order lets the root grow in different directions
+		Triangle3D[] shuffled = tris.clone();
+		Collections.shuffle(Arrays.asList(shuffled), new Random(9));
+		for (int i = 0; i < shuffled.length; i++)
+			octree.insert(shuffled[i]);
+
+		for (int i = 0; i < tris.length; i += 2)
+			assertTrue(octree.remove(tris[i]));
+		assertFalse(octree.remove(tris[0]));
+		assertEquals(tris.length / 2, octree.getCount());
+		MBB3D all = new MBB3D(new Point3D(-1, -1, -1), new Point3D(16, 16, 3));
+		assertEquals(tris.length / 2, octree.intersects(all).size());
+		for (int i = 1; i < tris.length; i += 2)
+			assertTrue(octree.remove(tris[i]));
+		assertEquals(0, octree.getCount());
+		assertNull(octree.getMBB());
+		assertTrue(octree.getEntries().isEmpty());
+	}
+
+	public void testProvider() {
+		ScalarOperator sop = new ScalarOperator();
+		TriangleNetBuilder builder = new TriangleNetBuilder(sop);
+		builder.setSAMProvider(new OctreeProvider(8, 10));
+		Triangle3D[] tris = RStarTestCase.createGrid(6, sop);
+		TriangleElt3D[] elts = new TriangleElt3D[tris.length];
+		for (int i = 0; i < tris.length; i++)
+			elts[i] = new TriangleElt3D(tris[i]);
+		builder.addComponent(elts);
+		TriangleNet3D net = builder.getTriangleNet();
+
+		assertTrue(net.getComponent(0).getSAM() instanceof Octree);
+		assertEquals(tris.length, net.getComponent(0).getSAM().getCount());
+		assertTrue(net.getSAMProvider() instanceof OctreeProvider);
+	}
+
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.junittests.dbms.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import de.uos.igf.db3d.dbms.geom.MBB3D;
+import de.uos.igf.db3d.dbms.geom.Plane3D;
+import de.uos.igf.db3d.dbms.geom.Point3D;
+import de.uos.igf.db3d.dbms.geom.ScalarOperator;
+import de.uos.igf.db3d.dbms.geom.Triangle3D;
+import de.uos.igf.db3d.dbms.geom.Vector3D;
+import de.uos.igf.db3d.dbms.util.PagedRStar;
+import de.uos.igf.db3d.dbms.util.RStar;
+import de.uos.igf.db3d.dbms.util.SAM.NNResult;
+import de.uos.igf.db3d.junittests.dbms.TestConstants;
+
+/**
+ * This testcase tests the methods of the <code>PagedRStar</code> class
+ * against the <code>RStar</code>.
+ */
+public class PagedRStarTestCase extends TestCase {
+
+	private File file;
+
+	protected void setUp() throws IOException {
+		file = File.createTempFile("pagedrstar", ".idx");
+		file.delete();
+	}
+
+	protected void tearDown() {
+		file.delete();
+		new File(file.getPath() + ".obj").delete();
+	}
+
+	public void testQueries() throws IOException {
+		ScalarOperator sop = new ScalarOperator();
+		MBB3D[] boxes = createBoxes(1500, new Random(3));
+		// small pages and pool force a deep tree and evictions
+		PagedRStar paged = new PagedRStar(file, 512, 8, sop);
+		RStar rstar = new RStar(8, sop);
+		for (int i = 0; i < boxes.length; i++) {
+			assertTrue(paged.insert(boxes[i]));
+			rstar.insert(boxes[i]);
+		}
+		assertFalse(paged.insert(boxes[0]));
+		assertEquals(boxes.length, paged.getCount());
+		assertTrue(paged.getHeight() > 2);
+		assertEquals(rstar.getEntries(), paged.getEntries());
+		assertTrue(paged.getMBB().isEqual(rstar.getMBB(), sop));
+		checkQueries(rstar, paged, new Random(5));
+		paged.close();
+	}
+
+	public void testReopen() throws IOException {
+		ScalarOperator sop = new ScalarOperator();
+		MBB3D[] boxes = createBoxes(800, new Random(7));
+		PagedRStar paged = new PagedRStar(file, 512, 16, sop);
+		RStar rstar = new RStar(8, sop);
+		for (int i = 0; i < boxes.length; i++) {
+			paged.insert(boxes[i]);
+			rstar.insert(boxes[i]);
+		}
+		int height = paged.getHeight();
+		paged.close();
+
+		// the page size is taken from the file
+		paged = new PagedRStar(file, 1024, 4, sop);
+		assertEquals(512, paged.getPageSize());
+		assertEquals(boxes.length, paged.getCount());
+		assertEquals(height, paged.getHeight());
+		checkQueries(rstar, paged, new Random(9));
+
+		// modifications after reopening are persistent, too
+		for (int i = 0; i < 100; i++) {
+			assertTrue(paged.remove(boxes[i]));
+			rstar.remove(boxes[i]);
+		}
+		paged.close();
+		paged = new PagedRStar(file, 512, 4, sop);
+		assertEquals(rstar.getEntries(), paged.getEntries());
+		paged.close();
+	}
+
+	public void testRemove() throws IOException {
+		ScalarOperator sop = new ScalarOperator();
+		MBB3D[] boxes = createBoxes(1000, new Random(11));
+		PagedRStar paged = new PagedRStar(file, 256, 8, sop);
+		RStar rstar = new RStar(8, sop);
+		for (int i = 0; i < boxes.length; i++) {
+			paged.insert(boxes[i]);
+			rstar.insert(boxes[i]);
+		}
+		for (int i = 0; i < boxes.length; i += 2) {
+			assertTrue(paged.remove(boxes[i]));
+			rstar.remove(boxes[i]);
+		}
+		assertFalse(paged.remove(boxes[0]));
+		assertEquals(boxes.length / 2, paged.getCount());
+		assertEquals(rstar.getEntries(), paged.getEntries());
+		checkQueries(rstar, paged, new Random(13));
+
+		// freed pages are reused
+		long length = file.length();
+		paged.flush();
+		for (int i = 0; i < boxes.length; i += 2)
+			paged.insert(boxes[i]);
+		paged.flush();
+		assertTrue(file.length() <= length * 2);
+
+		for (int i = 0; i < boxes.length; i++)
+			assertTrue(paged.remove(boxes[i]));
+		assertEquals(0, paged.getCount());
+		assertEquals(1, paged.getHeight());
+		assertNull(paged.getMBB());
+		assertTrue(paged.getEntries().isEmpty());
+		paged.close();
+	}
+
+	public void testRemoveTriangles() throws IOException {
+		ScalarOperator sop = new ScalarOperator();
+		Triangle3D[] tris = RStarTestCase.createGrid(25, sop);
+		PagedRStar paged = new PagedRStar(file, 512, 8, sop);
+		RStar rstar = new RStar(8, sop);
+		for (int i = 0; i < tris.length; i++) {
+			assertTrue(paged.insert(tris[i]));
+			rstar.insert(tris[i]);
+		}
+		// the stored objects are copies - found by their geometry
+		assertFalse(paged.insert(tris[0]));
+		for (int i = 0; i < tris.length; i += 2) {
+			assertTrue(paged.remove(tris[i]));
+			rstar.remove(tris[i]);
+		}
+		assertFalse(paged.remove(tris[0]));
+		assertEquals(tris.length / 2, paged.getCount());
+
+		MBB3D[] queries = new MBB3D[] {
+				new MBB3D(new Point3D(2.5, 2.5, 0), new Point3D(7.5, 4, 1)),
+				new MBB3D(new Point3D(0, 0, 0), new Point3D(25, 25, 2)) };
+		for (int i = 0; i < queries.length; i++) {
+			Set expected = rstar.intersects(queries[i]);
+			Set result = paged.intersects(queries[i]);
+			assertEquals(expected.size(), result.size());
+			for (Iterator it = result.iterator(); it.hasNext();) {
+				Triangle3D tri = (Triangle3D) it.next();
+				assertFalse(paged.insert(tri));
+				boolean found = false;
+				for (Iterator e = expected.iterator(); e.hasNext() && !found;)
+					found = tri.isGeometryEquivalent((Triangle3D) e.next(),
+							sop);
+				assertTrue(found);
+			}
+		}
+		paged.close();
+	}
+
+	private static void checkQueries(RStar rstar, PagedRStar paged,
+			Random random) {
+		for (int i = 0; i < 40; i++) {
+			double x = random.nextDouble() * 100;
+			double y = random.nextDouble() * 100;
+			double z = random.nextDouble() * 100;
+			MBB3D query = new MBB3D(new Point3D(x, y, z), new Point3D(x
+					+ random.nextDouble() * 20, y + random.nextDouble() * 20,
+					z + random.nextDouble() * 20));
+			assertEquals(rstar.intersects(query), paged.intersects(query));
+			assertEquals(rstar.intersectsStrict(query), paged
+					.intersectsStrict(query));
+			assertEquals(rstar.inside(query), paged.inside(query));
+			assertEquals(rstar.contains(query), paged.contains(query));
+
+			Point3D point = new Point3D(x, y, z);
+			assertEquals(rstar.contains(point), paged.contains(point));
+			NNResult[] expected = rstar.nearest(6, point);
+			NNResult[] result = paged.nearest(6, point);
+			for (int k = 0; k < expected.length; k++)
+				assertEquals(expected[k].getDistance(), result[k]
+						.getDistance(), TestConstants.EPSILON);
+		}
+
+		MBB3D[] queries = createBoxes(200, random);
+		Set[] result = paged.intersects(queries);
+		for (int i = 0; i < queries.length; i++)
+			assertEquals(rstar.intersects(queries[i]), result[i]);
+
+		Plane3D[] planes = new Plane3D[25];
+		for (int i = 0; i < planes.length; i++)
+			planes[i] = new Plane3D(new Vector3D(0, 1, 1), new Vector3D(0,
+					i * 4, 0), new ScalarOperator());
+		result = paged.intersects(planes);
+		Set[] expected = rstar.intersects(planes);
+		for (int i = 0; i < planes.length; i++)
+			assertEquals(expected[i], result[i]);
+
+		Iterator it = paged.nearestIterator(new Point3D(-10, 50, 120));
+		Set visited = new HashSet();
+		double last = 0;
+		while (it.hasNext()) {
+			NNResult nn = (NNResult) it.next();
+			assertTrue(nn.getDistance() >= last);
+			last = nn.getDistance();
+			assertTrue(visited.add(nn.getObjectRef()));
+		}
+		assertEquals(rstar.getCount(), visited.size());
+	}
+
+	private static MBB3D[] createBoxes(int number, Random random) {
+		MBB3D[] boxes = new MBB3D[number];
+		for (int i = 0; i < number; i++) {
+			double x = random.nextDouble() * 100;
+			double y = random.nextDouble() * 100;
+			double z = random.nextDouble() * 100;
+			boxes[i] = new MBB3D(new Point3D(x, y, z), new Point3D(x
+					+ random.nextDouble() * 5 + 0.01, y + random.nextDouble()
+					* 5 + 0.01, z + random.nextDouble() * 5 + 0.01));
+		}
+		return boxes;
+	}
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.junittests.dbms.util;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import de.uos.igf.db3d.dbms.geom.Point3D;
+import de.uos.igf.db3d.dbms.geom.ScalarOperator;
+import de.uos.igf.db3d.dbms.geom.Tetrahedron3D;
+import de.uos.igf.db3d.dbms.geom.Triangle3D;
+import de.uos.igf.db3d.dbms.structure.GeoObj;
+import de.uos.igf.db3d.dbms.util.JoinResult;
+import de.uos.igf.db3d.dbms.util.PartitionJoin;
+import de.uos.igf.db3d.dbms.util.SAM;
+
+/**
+ * This testcase tests the methods of the <code>PartitionJoin</code> class.
+ */
+public class PartitionJoinTestCase extends TestCase {
+
+	public void testTriangleJoin() {
+		ScalarOperator sop = new ScalarOperator();
+		Triangle3D[] tris = RStarTestCase.createGrid(20, sop);
+		Random random = new Random(11);
+		Triangle3D[] others = new Triangle3D[400];
+		for (int i = 0; i < others.length; i++) {
+			double x = random.nextDouble() * 22 - 1;
+			double y = random.nextDouble() * 22 - 1;
+			double z = random.nextDouble() * 3;
+			others[i] = new Triangle3D(new Point3D(x, y, z), new Point3D(
+					x + 1.5, y + 0.2, z + 0.5), new Point3D(x + 0.3, y + 0.9,
+					z - 0.5), sop);
+		}
+		// objects with an equal twin share all their cells
+		others[0] = tris[17];
+		others[1] = tris[200];
+
+		Set expected = new HashSet();
+		for (int i = 0; i < tris.length; i++)
+			for (int j = 0; j < others.length; j++)
+				if (tris[i].intersects(others[j], sop))
+					expected.add(Arrays.asList(new Object[] { tris[i],
+							others[j] }));
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, pairs(PartitionJoin.intersectionJoin(tris,
+				others, sop)));
+	}
+
+	public void testMixedJoin() {
+		ScalarOperator sop = new ScalarOperator();
+		Random random = new Random(5);
+		GeoObj[] tetras = new GeoObj[150];
+		for (int i = 0; i < tetras.length; i++) {
+			double x = random.nextDouble() * 10;
+			double y = random.nextDouble() * 10;
+			double z = random.nextDouble() * 10;
+			tetras[i] = new Tetrahedron3D(new Point3D(x, y, z), new Point3D(
+					x + 1, y, z), new Point3D(x, y + 1, z), new Point3D(x, y,
+					z + 1), sop);
+		}
+		GeoObj[] mixed = new GeoObj[150];
+		for (int i = 0; i < mixed.length; i++) {
+			double x = random.nextDouble() * 10;
+			double y = random.nextDouble() * 10;
+			double z = random.nextDouble() * 10;
+			if (i % 2 == 0)
+				mixed[i] = new Triangle3D(new Point3D(x, y, z), new Point3D(
+						x + 1.2, y + 0.1, z), new Point3D(x, y + 1.2, z + 0.4),
+						sop);
+			else
+				mixed[i] = new Tetrahedron3D(new Point3D(x, y, z), new Point3D(
+						x + 0.8, y, z), new Point3D(x, y + 0.8, z),
+						new Point3D(x, y, z + 0.8), sop);
+		}
+
+		Set expected = new HashSet();
+		for (int i = 0; i < tetras.length; i++) {
+			for (int j = 0; j < mixed.length; j++) {
+				Tetrahedron3D tetra = (Tetrahedron3D) tetras[i];
+				boolean hit = mixed[j] instanceof Triangle3D ? tetra
+						.intersects((Triangle3D) mixed[j], sop) : tetra
+						.intersects((Tetrahedron3D) mixed[j], sop);
+				if (hit)
+					expected.add(Arrays.asList(new Object[] { tetras[i],
+							mixed[j] }));
+			}
+		}
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, pairs(PartitionJoin.intersectionJoin(tetras,
+				mixed, sop)));
+
+		// early termination
+		final int[] count = new int[1];
+		assertFalse(PartitionJoin.intersectionJoin(tetras, mixed, sop,
+				new SAM.Visitor() {
+					public boolean visit(Object obj) {
+						count[0]++;
+						return false;
+					}
+				}));
+		assertEquals(1, count[0]);
+
+		// disjoint sets
+		GeoObj[] far = new GeoObj[] { new Triangle3D(new Point3D(50, 50, 50),
+				new Point3D(51, 50, 50), new Point3D(50, 51, 50), sop) };
+		assertEquals(0, PartitionJoin.intersectionJoin(tetras, far, sop).length);
+	}
+
+	/*
+	 * Converts join results to a set of object pairs, every pair must be
+	 * reported once.
+	 */
+	private static Set pairs(JoinResult[] results) {
+		Set set = new HashSet();
+		for (int i = 0; i < results.length; i++)
+			assertTrue(set.add(Arrays.asList(new Object[] {
+					results[i].getFirst(), results[i].getSecond() })));
+		return set;
+	}
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.junittests.dbms.util;
+
+import de.uos.igf.db3d.dbms.geom.MBB3D;
+import de.uos.igf.db3d.dbms.geom.Point3D;
+import de.uos.igf.db3d.dbms.geom.ScalarOperator;
+import de.uos.igf.db3d.dbms.geom.Triangle3D;
+import de.uos.igf.db3d.dbms.util.RStar;
+
+/**
+ * Throughput benchmark for the concurrent mode of the <code>RStar</code>
+ * class. Measures range queries per second with 1 to 32 reader threads while
+ * one writer thread keeps updating the tree.<br>
+ * Not a testcase - run it via its main method.
+ */
+public class RStarConcurrencyBenchmark {
+
+	/* measuring time per run in milliseconds */
+	private static final long RUNTIME = 2000;
+
+	public static void main(String[] args) throws InterruptedException {
+		ScalarOperator sop = new ScalarOperator();
+		Triangle3D[] stable = RStarTestCase.createGrid(150, sop);
+		Triangle3D[] moving = RStarConcurrencyTestCase.shift(RStarTestCase
+				.createGrid(20, sop), 200, sop);
+
+		int[] threads = new int[] { 1, 2, 4, 8, 16, 32 };
+		for (int c = 0; c < 2; c++) {
+			boolean concurrent = c == 1;
+			System.out.println(concurrent ? "concurrent mode:"
+					: "default mode (unlocked readers):");
+			for (int t = 0; t < threads.length; t++) {
+				RStar rstar = new RStar(8, sop);
+				rstar.setConcurrent(concurrent);
+				rstar.bulkLoad(stable);
+				long queries = run(rstar, moving, threads[t]);
+				System.out.println("  " + threads[t] + " readers: "
+						+ (queries * 1000 / RUNTIME) + " queries/s");
+			}
+		}
+	}
+
+	/*
+	 * Runs the given number of readers and one writer on the tree and returns
+	 * the number of answered queries.
+	 */
+	private static long run(final RStar rstar, final Triangle3D[] moving,
+			int readers) throws InterruptedException {
+		final long end = System.currentTimeMillis() + RUNTIME;
+		final long[] counts = new long[readers];
+
+		Thread writer = new Thread() {
+			public void run() {
+				while (System.currentTimeMillis() < end) {
+					for (int i = 0; i < moving.length; i++)
+						rstar.insert(moving[i]);
+					for (int i = 0; i < moving.length; i++)
+						rstar.remove(moving[i]);
+				}
+			}
+		};
+
+		Thread[] threads = new Thread[readers];
+		for (int r = 0; r < readers; r++) {
+			final int id = r;
+			threads[r] = new Thread() {
+				public void run() {
+					long n = 0;
+					int i = id;
+					while (System.currentTimeMillis() < end) {
+						double x = (i * 7) % 140;
+						double y = (i * 13) % 140;
+						rstar.intersects(new MBB3D(new Point3D(x, y, 0),
+								new Point3D(x + 5, y + 5, 2)));
+						i++;
+						n++;
+					}
+					counts[id] = n;
+				}
+			};
+		}
+
+		writer.start();
+		for (int r = 0; r < readers; r++)
+			threads[r].start();
+		writer.join();
+		long sum = 0;
+		for (int r = 0; r < readers; r++) {
+			threads[r].join();
+			sum += counts[r];
+		}
+		return sum;
+	}
+
+}
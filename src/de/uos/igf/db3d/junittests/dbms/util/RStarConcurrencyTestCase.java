@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.junittests.dbms.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+import de.uos.igf.db3d.dbms.geom.MBB3D;
+import de.uos.igf.db3d.dbms.geom.Point3D;
+import de.uos.igf.db3d.dbms.geom.ScalarOperator;
+import de.uos.igf.db3d.dbms.geom.Triangle3D;
+import de.uos.igf.db3d.dbms.util.RStar;
+import de.uos.igf.db3d.dbms.util.SAM.NNResult;
+
+/**
+ * This testcase stresses the concurrent mode of the <code>RStar</code> class.
+ * Several reader threads query a stable part of the tree while a writer
+ * thread keeps inserting and removing elements in another part.
+ */
+public class RStarConcurrencyTestCase extends TestCase {
+
+	/* runtime of the stress test in milliseconds */
+	private static final long RUNTIME = 1500;
+
+	public void testReadersWithWriter() throws InterruptedException {
+		final ScalarOperator sop = new ScalarOperator();
+
+		// stable part: x in [0;20], volatile part: x in [40;60]
+		final Triangle3D[] stable = RStarTestCase.createGrid(20, sop);
+		final Triangle3D[] moving = shift(RStarTestCase.createGrid(20, sop),
+				40, sop);
+
+		final RStar rstar = new RStar(8, sop);
+		rstar.setConcurrent(true);
+		assertTrue(rstar.isConcurrent());
+		rstar.bulkLoad(stable);
+
+		final MBB3D stableBox = new MBB3D(new Point3D(-1, -1, -1),
+				new Point3D(21, 21, 3));
+		final int expected = rstar.intersects(stableBox).size();
+		final Point3D stablePoint = new Point3D(5.5, 5.25, 1);
+		final int expectedContains = rstar.contains(stablePoint).size();
+
+		final List failures = Collections.synchronizedList(new ArrayList());
+		final long end = System.currentTimeMillis() + RUNTIME;
+
+		Thread writer = new Thread() {
+			public void run() {
+				try {
+					while (failures.isEmpty()
+							&& System.currentTimeMillis() < end) {
+						for (int i = 0; i < moving.length; i++)
+							rstar.insert(moving[i]);
+						for (int i = 0; i < moving.length; i++)
+							if (!rstar.remove(moving[i]))
+								failures.add("remove failed");
+					}
+				} catch (Throwable t) {
+					failures.add(t);
+				}
+			}
+		};
+
+		Thread[] readers = new Thread[4];
+		for (int r = 0; r < readers.length; r++) {
+			readers[r] = new Thread() {
+				public void run() {
+					try {
+						while (failures.isEmpty()
+								&& System.currentTimeMillis() < end) {
+							if (rstar.intersects(stableBox).size() != expected)
+								failures.add("intersects");
+							if (rstar.contains(stablePoint).size() != expectedContains)
+								failures.add("contains");
+							NNResult[] nn = rstar.nearest(1, stablePoint);
+							if (nn[0].getObjectRef() == null
+									|| nn[0].getDistance() != 0.0)
+								failures.add("nearest");
+							// touches the changing part too
+							rstar.getMBB();
+						}
+					} catch (Throwable t) {
+						failures.add(t);
+					}
+				}
+			};
+		}
+
+		writer.start();
+		for (int r = 0; r < readers.length; r++)
+			readers[r].start();
+		writer.join();
+		for (int r = 0; r < readers.length; r++)
+			readers[r].join();
+
+		assertTrue(failures.toString(), failures.isEmpty());
+		assertEquals(stable.length, rstar.getCount());
+		assertEquals(stable.length, rstar.getEntries().size());
+	}
+
+	/*
+	 * Shifts the given triangles along the x axis.
+	 */
+	static Triangle3D[] shift(Triangle3D[] tris, double dx, ScalarOperator sop) {
+		Triangle3D[] result = new Triangle3D[tris.length];
+		for (int i = 0; i < tris.length; i++) {
+			Point3D[] p = tris[i].getPoints();
+			result[i] = new Triangle3D(new Point3D(p[0].getX() + dx, p[0]
+					.getY(), p[0].getZ()), new Point3D(p[1].getX() + dx, p[1]
+					.getY(), p[1].getZ()), new Point3D(p[2].getX() + dx, p[2]
+					.getY(), p[2].getZ()), sop);
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,792 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.junittests.dbms.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+import de.uos.igf.db3d.dbms.geom.GeomUtils;
+import de.uos.igf.db3d.dbms.geom.MBB3D;
+import de.uos.igf.db3d.dbms.geom.Plane3D;
+import de.uos.igf.db3d.dbms.geom.Point3D;
+import de.uos.igf.db3d.dbms.geom.ScalarOperator;
+import de.uos.igf.db3d.dbms.geom.Segment3D;
+import de.uos.igf.db3d.dbms.geom.Triangle3D;
+import de.uos.igf.db3d.dbms.geom.Vector3D;
+import de.uos.igf.db3d.dbms.util.ClosestPairResult;
+import de.uos.igf.db3d.dbms.util.JoinResult;
+import de.uos.igf.db3d.dbms.util.Octree;
+import de.uos.igf.db3d.dbms.util.PackedRStar;
+import de.uos.igf.db3d.dbms.util.QuantizedRStar;
+import de.uos.igf.db3d.dbms.util.RStar;
+import de.uos.igf.db3d.dbms.util.RStarMonitor;
+import de.uos.igf.db3d.dbms.util.RStarStatistics;
+import de.uos.igf.db3d.dbms.util.SAM;
+import de.uos.igf.db3d.dbms.util.SAM.NNResult;
+import de.uos.igf.db3d.dbms.util.SpatialAggregate;
+import de.uos.igf.db3d.dbms.util.SpatialHash;
+import de.uos.igf.db3d.junittests.dbms.TestConstants;
+
+/**
+ * This testcase tests the methods of the <code>RStar</code> class.
+ */
+public class RStarTestCase extends TestCase {
+
+	/*
+	 * Creates a triangulated grid of size x size cells with a slightly varying
+	 * height.
+	 */
+	static Triangle3D[] createGrid(int size, ScalarOperator sop) {
+		Triangle3D[] tris = new Triangle3D[size * size * 2];
+		int k = 0;
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				Point3D p00 = new Point3D(i, j, (i * j) % 3);
+				Point3D p10 = new Point3D(i + 1, j, ((i + 1) * j) % 3);
+				Point3D p01 = new Point3D(i, j + 1, (i * (j + 1)) % 3);
+				Point3D p11 = new Point3D(i + 1, j + 1,
+						((i + 1) * (j + 1)) % 3);
+				tris[k++] = new Triangle3D(p00, p10, p11, sop);
+				tris[k++] = new Triangle3D(p00, p11, p01, sop);
+			}
+		}
+		return tris;
+	}
+
+	public void testBulkLoad() {
+		ScalarOperator sop = new ScalarOperator();
+		Triangle3D[] tris = createGrid(30, sop);
+
+		RStar inserted = new RStar(8, sop);
+		for (int i = 0; i < tris.length; i++)
+			inserted.insert(tris[i]);
+
+		RStar packed = new RStar(8, sop);
+		assertEquals(tris.length, packed.bulkLoad(tris));
+		assertEquals(tris.length, packed.getCount());
+		assertTrue(packed.getMBB().isEqual(inserted.getMBB(), sop));
+
+		MBB3D[] queries = new MBB3D[] {
+				new MBB3D(new Point3D(2.5, 2.5, 0), new Point3D(7.5, 4, 1)),
+				new MBB3D(new Point3D(0, 0, 0), new Point3D(30, 30, 2)),
+				new MBB3D(new Point3D(40, 40, 0), new Point3D(50, 50, 2)) };
+		for (int i = 0; i < queries.length; i++) {
+			Set expected = inserted.intersects(queries[i]);
+			Set result = packed.intersects(queries[i]);
+			assertEquals(expected, result);
+		}
+		assertEquals(inserted.contains(new Point3D(5.5, 5.5, 1)), packed
+				.contains(new Point3D(5.5, 5.5, 1)));
+	}
+
+	public void testBulkLoadRuns() {
+		ScalarOperator sop = new ScalarOperator();
+		Triangle3D[] grid = createGrid(30, sop);
+		// 225 leaves in runs of 7 - the last run holds a single triangle
+		Triangle3D[] tris = new Triangle3D[1793];
+		System.arraycopy(grid, 0, tris, 0, tris.length);
+
+		RStar packed = new RStar(8, sop);
+		assertEquals(tris.length, packed.bulkLoad(tris));
+		RStarStatistics statistics = packed.getStatistics();
+		assertEquals(225, statistics.getLeafCount());
+		assertEquals(tris.length, statistics.getCount());
+
+		MBB3D query = new MBB3D(new Point3D(0, 0, 0), new Point3D(30, 30, 2));
+		assertEquals(tris.length, packed.intersects(query).size());
+		for (int i = tris.length - 16; i < tris.length; i++)
+			assertTrue(packed.remove(tris[i]));
+		assertEquals(tris.length - 16, packed.intersects(query).size());
+	}
+
+	public void testBulkLoadUpdate() {
+		ScalarOperator sop = new ScalarOperator();
+		Triangle3D[] tris = createGrid(20, sop);
+
+		RStar packed = new RStar(8, sop);
+		packed.bulkLoad(tris);
+
+		// the packed tree must stay maintainable
+		for (int i = 0; i < tris.length; i += 2)
+			assertTrue(packed.remove(tris[i]));
+		assertEquals(tris.length / 2, packed.getCount());
+		for (int i = 0; i < tris.length; i += 2)
+			assertTrue(packed.insert(tris[i]));
+		assertEquals(tris.length, packed.getCount());
+		assertEquals(tris.length, packed.getEntries().size());
+
+		// repeated removal of all but a few objects must shrink the tree
+		for (int k = 0; k < 3; k++) {
+			for (int i = 4; i < tris.length; i++)
+				assertTrue(packed.remove(tris[i]));
+			assertEquals(4, packed.getEntries().size());
+			for (int i = 4; i < tris.length; i++)
+				assertTrue(packed.insert(tris[i]));
+			assertEquals(tris.length, packed.getEntries().size());
+		}
+
+		// loading into a filled tree inserts one by one
+		RStar small = new RStar(8, sop);
+		small.insert(tris[0]);
+		assertEquals(tris.length - 1, small.bulkLoad(tris));
+	}
+
+	public void testFreeze() {
+		ScalarOperator sop = new ScalarOperator();
+		Triangle3D[] tris = createGrid(25, sop);
+
+		RStar rstar = new RStar(8, sop);
+		for (int i = 0; i < tris.length; i++)
+			rstar.insert(tris[i]);
+		PackedRStar packed = rstar.freeze();
+
+		assertEquals(rstar.getCount(), packed.getCount());
+		assertEquals(rstar.getEntries(), packed.getEntries());
+		assertTrue(packed.getMBB().isEqual(rstar.getMBB(), sop));
+
+		MBB3D query = new MBB3D(new Point3D(3, 3, 0), new Point3D(9.5, 6, 2));
+		assertEquals(rstar.intersects(query), packed.intersects(query));
+		assertEquals(rstar.intersectsStrict(query), packed
+				.intersectsStrict(query));
+		assertEquals(rstar.inside(query), packed.inside(query));
+		assertEquals(rstar.insideStrict(query), packed.insideStrict(query));
+		MBB3D small = new MBB3D(new Point3D(3.2, 3.6, 0.5), new Point3D(3.3,
+				3.7, 0.6));
+		assertEquals(rstar.contains(small), packed.contains(small));
+		assertEquals(rstar.containsStrict(small), packed.containsStrict(small));
+		Point3D point = new Point3D(7.5, 7.25, 1);
+		assertEquals(rstar.contains(point), packed.contains(point));
+
+		// compare nearest neighbours with a linear scan
+		Point3D far = new Point3D(-3, 12, 5);
+		NNResult[] nn = packed.nearest(5, far);
+		double[] dists = new double[tris.length];
+		for (int i = 0; i < tris.length; i++)
+			dists[i] = tris[i].getMBB().minDist(far, sop);
+		Arrays.sort(dists);
+		for (int i = 0; i < nn.length; i++)
+			assertEquals(dists[i], nn[i].getDistance(), TestConstants.EPSILON);
+
+		try {
+			packed.insert(tris[0]);
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// read only
+		}
+	}
+
+	public void testCompress() {
+		ScalarOperator sop = new ScalarOperator();
+		Triangle3D[] tris = createGrid(25, sop);
+		RStar rstar = new RStar(8, sop);
+		for (int i = 0; i < tris.length; i++)
+			rstar.insert(tris[i]);
+		PackedRStar packed = rstar.freeze();
+
+		int[] bits = { 8, 16 };
+		Random random = new Random(31);
+		for (int b = 0; b < bits.length; b++) {
+			QuantizedRStar quantized = rstar.compress(bits[b]);
+			assertEquals(bits[b], quantized.getBits());
+			assertEquals(rstar.getEntries(), quantized.getEntries());
+			assertTrue(quantized.getMBB().isEqual(rstar.getMBB(), sop));
+			assertTrue(quantized.getIndexSize() * 3 < 52L * tris.length);
+
+			for (int i = 0; i < 50; i++) {
+				double x = random.nextDouble() * 27 - 1;
+				double y = random.nextDouble() * 27 - 1;
+				MBB3D query = new MBB3D(new Point3D(x, y, random
+						.nextDouble() * 2), new Point3D(x + random.nextDouble()
+						* 4, y + random.nextDouble() * 4, 2.5));
+				assertEquals(packed.intersects(query), quantized
+						.intersects(query));
+				assertEquals(packed.intersectsStrict(query), quantized
+						.intersectsStrict(query));
+				assertEquals(packed.inside(query), quantized.inside(query));
+				assertEquals(packed.insideStrict(query), quantized
+						.insideStrict(query));
+				Point3D point = new Point3D(x, y, 1);
+				assertEquals(packed.contains(point), quantized
+						.contains(point));
+
+				NNResult[] expected = packed.nearest(4, point);
+				NNResult[] result = quantized.nearest(4, point);
+				for (int k = 0; k < expected.length; k++)
+					assertEquals(expected[k].getDistance(), result[k]
+							.getDistance(), TestConstants.EPSILON);
+			}
+			MBB3D[] queries = new MBB3D[100];
+			for (int i = 0; i < queries.length; i++) {
+				double x = random.nextDouble() * 26;
+				queries[i] = new MBB3D(new Point3D(x, x / 2, 0), new Point3D(
+						x + 1.5, x / 2 + 1, 2));
+			}
+			Set[] result = quantized.intersects(queries);
+			for (int i = 0; i < queries.length; i++)
+				assertEquals(packed.intersects(queries[i]), result[i]);
+		}
+
+		try {
+			rstar.compress(12);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// 8 or 16 bits only
+		}
+	}
+
+	public void testAggregate() {
+		ScalarOperator sop = new ScalarOperator();
+		Triangle3D[] tris = createGrid(30, sop);
+		RStar rstar = new RStar(8, sop);
+		for (int i = 0; i < tris.length; i++)
+			rstar.insert(tris[i]);
+		assertEquals(tris.length, rstar.getAggregate().getCount());
+
+		Random random = new Random(41);
+		for (int round = 0; round < 3; round++) {
+			for (int i = 0; i < 30; i++) {
+				double x = random.nextDouble() * 28 - 1;
+				double y = random.nextDouble() * 28 - 1;
+				MBB3D query = new MBB3D(new Point3D(x, y, -1), new Point3D(x
+						+ random.nextDouble() * 12, y + random.nextDouble()
+						* 12, 3));
+				checkAggregate(rstar.inside(query), rstar
+						.aggregateInside(query));
+				checkAggregate(rstar.intersects(query), rstar
+						.aggregateIntersects(query));
+			}
+			checkAggregate(rstar.getEntries(), rstar.getAggregate());
+
+			// the totals follow removals and inserts
+			for (int i = round; i < tris.length; i += 3)
+				rstar.remove(tris[i]);
+			for (int i = round; i < tris.length; i += 6)
+				rstar.insert(tris[i]);
+		}
+
+		RStar empty = new RStar(8, sop);
+		assertEquals(0, empty.aggregateInside(rstar.getMBB()).getCount());
+	}
+
+	/*
+	 * Compares the totals with the sums over the given objects.
+	 */
+	private static void checkAggregate(Set objects, SpatialAggregate aggregate) {
+		double area = 0;
+		for (Iterator it = objects.iterator(); it.hasNext();)
+			area += ((Triangle3D) it.next()).getArea();
+		assertEquals(objects.size(), aggregate.getCount());
+		assertEquals(area, aggregate.getArea(), TestConstants.EPSILON);
+		assertEquals(0, aggregate.getVolume(), 0);
+	}
+
+	public void testVisitor() {
+		ScalarOperator sop = new ScalarOperator();
+		Triangle3D[] tris = createGrid(20, sop);
+		RStar rstar = new RStar(8, sop);
+		rstar.bulkLoad(tris);
+		SAM[] sams = new SAM[] { rstar, rstar.freeze() };
+
+		MBB3D query = new MBB3D(new Point3D(3, 3, 0), new Point3D(9.5, 6, 2));
+		Point3D point = new Point3D(7.5, 7.25, 1);
+		for (int i = 0; i < sams.length; i++) {
+			final Set visited = new HashSet();
+			SAM.Visitor collect = new SAM.Visitor() {
+				public boolean visit(Object obj) {
+					assertTrue(visited.add(obj));
+					return true;
+				}
+			};
+			assertTrue(sams[i].intersects(query, collect));
+			assertEquals(sams[i].intersects(query), visited);
+			visited.clear();
+			assertTrue(sams[i].inside(query, collect));
+			assertEquals(sams[i].inside(query), visited);
+			visited.clear();
+			assertTrue(sams[i].contains(point, collect));
+			assertEquals(sams[i].contains(point), visited);
+
+			// early termination after the first object
+			final int[] count = new int[1];
+			assertFalse(sams[i].intersects(query, new SAM.Visitor() {
+				public boolean visit(Object obj) {
+					count[0]++;
+					return false;
+				}
+			}));
+			assertEquals(1, count[0]);
+		}
+	}
+
+	public void testNearestIterator() {
+		ScalarOperator sop = new ScalarOperator();
+		Triangle3D[] tris = createGrid(15, sop);
+		RStar rstar = new RStar(8, sop);
+		for (int i = 0; i < tris.length; i++)
+			rstar.insert(tris[i]);
+		SAM[] sams = new SAM[] { rstar, rstar.freeze() };
+
+		Point3D far = new Point3D(-4, 20, 6);
+		double[] dists = new double[tris.length];
+		for (int i = 0; i < tris.length; i++)
+			dists[i] = tris[i].getMBB().minDist(far, sop);
+		Arrays.sort(dists);
+
+		for (int k = 0; k < sams.length; k++) {
+			Set visited = new HashSet();
+			Iterator it = sams[k].nearestIterator(far);
+			for (int i = 0; i < tris.length; i++) {
+				assertTrue(it.hasNext());
+				NNResult nn = (NNResult) it.next();
+				assertEquals(dists[i], nn.getDistance(), TestConstants.EPSILON);
+				assertTrue(visited.add(nn.getObjectRef()));
+			}
+			assertFalse(it.hasNext());
+
+			// nearest must agree with the linear scan as well
+			NNResult[] nn = sams[k].nearest(7, far);
+			for (int i = 0; i < nn.length; i++)
+				assertEquals(dists[i], nn[i].getDistance(), TestConstants.EPSILON);
+		}
+
+		Iterator it = rstar.nearestIterator(far);
+		it.next();
+		rstar.remove(tris[0]);
+		try {
+			it.next();
+			fail();
+		} catch (ConcurrentModificationException e) {
+			// tree changed
+		}
+	}
+
+	public void testNearestExact() {
+		ScalarOperator sop = new ScalarOperator();
+		// long slanted triangles with large MBBs
+		Random random = new Random(42);
+		Triangle3D[] tris = new Triangle3D[300];
+		for (int i = 0; i < tris.length; i++) {
+			double x = random.nextDouble() * 100;
+			double y = random.nextDouble() * 100;
+			double z = random.nextDouble() * 10;
+			tris[i] = new Triangle3D(new Point3D(x, y, z), new Point3D(x + 20,
+					y + 15, z + 5), new Point3D(x + 21, y + 15, z + 6), sop);
+		}
+		RStar rstar = new RStar(8, sop);
+		rstar.bulkLoad(tris);
+		SAM[] sams = new SAM[] { rstar, rstar.freeze() };
+
+		Point3D point = new Point3D(50, 50, 5);
+		double[] dists = new double[tris.length];
+		for (int i = 0; i < tris.length; i++)
+			dists[i] = tris[i].euclideanDistance(point);
+		Arrays.sort(dists);
+		int within = 0;
+		while (dists[within] <= 8.0)
+			within++;
+
+		for (int k = 0; k < sams.length; k++) {
+			NNResult[] nn = sams[k].nearestExact(10, point);
+			for (int i = 0; i < nn.length; i++) {
+				assertEquals(dists[i], nn[i].getDistance(), TestConstants.EPSILON);
+				assertEquals(nn[i].getDistance(), ((Triangle3D) nn[i]
+						.getObjectRef()).euclideanDistance(point),
+						TestConstants.EPSILON);
+			}
+			NNResult[] range = sams[k].withinDistance(point, 8.0);
+			assertEquals(within, range.length);
+			for (int i = 1; i < range.length; i++)
+				assertTrue(range[i - 1].getDistance() <= range[i].getDistance());
+		}
+	}
+
+	public void testJoin() {
+		ScalarOperator sop = new ScalarOperator();
+		Triangle3D[] tris = createGrid(20, sop);
+		List shifted = new ArrayList();
+		Random random = new Random(7);
+		for (int i = 0; i < 300; i++) {
+			double x = random.nextDouble() * 22 - 1;
+			double y = random.nextDouble() * 22 - 1;
+			double z = random.nextDouble() * 3;
+			shifted.add(new Triangle3D(new Point3D(x, y, z), new Point3D(
+					x + 0.7, y + 0.2, z), new Point3D(x + 0.3, y + 0.9,
+					z + 0.5), sop));
+		}
+		// some objects of the second tree equal objects of the first
+		for (int i = 0; i < tris.length; i += 10)
+			shifted.add(tris[i]);
+
+		RStar first = new RStar(8, sop);
+		first.bulkLoad(tris);
+		RStar second = new RStar(6, sop);
+		for (int i = 0; i < shifted.size(); i++)
+			second.insert((Triangle3D) shifted.get(i));
+
+		// compare with a nested loop join
+		Set expectedIntersects = new HashSet();
+		Set expectedEquals = new HashSet();
+		for (int i = 0; i < tris.length; i++) {
+			for (int j = 0; j < shifted.size(); j++) {
+				MBB3D mbb = ((Triangle3D) shifted.get(j)).getMBB();
+				if (tris[i].getMBB().intersectsStrict(mbb, sop))
+					expectedIntersects.add(Arrays.asList(new Object[] {
+							tris[i], shifted.get(j) }));
+				if (tris[i].getMBB().isEqual(mbb, sop))
+					expectedEquals.add(Arrays.asList(new Object[] { tris[i],
+							shifted.get(j) }));
+			}
+		}
+		assertEquals(expectedIntersects, pairs(first.intersectionJoin(second)));
+		assertEquals(expectedEquals, pairs(first.equalsJoin(second)));
+
+		// the trees have different heights, join in both directions
+		Set reverse = pairs(second.intersectionJoin(first));
+		assertEquals(expectedIntersects.size(), reverse.size());
+
+		final int[] count = new int[1];
+		assertFalse(first.intersectionJoin(second, new SAM.Visitor() {
+			public boolean visit(Object obj) {
+				count[0]++;
+				return count[0] < 5;
+			}
+		}));
+		assertEquals(5, count[0]);
+	}
+
+	public void testDistanceJoin() {
+		ScalarOperator sop = new ScalarOperator();
+		Triangle3D[] tris = createGrid(20, sop);
+		RStar first = new RStar(8, sop);
+		first.bulkLoad(tris);
+		RStar second = new RStar(6, sop);
+		Random random = new Random(17);
+		List points = new ArrayList();
+		for (int i = 0; i < 400; i++) {
+			Point3D point = new Point3D(random.nextDouble() * 24 - 2, random
+					.nextDouble() * 24 - 2, random.nextDouble() * 6 - 2);
+			points.add(point);
+			second.insert(point);
+		}
+
+		// compare with the point distances of a nested loop join
+		double distance = 0.6;
+		Set result = pairs(first.distanceJoin(second, distance));
+		int expected = 0;
+		for (int i = 0; i < tris.length; i++) {
+			for (int j = 0; j < points.size(); j++) {
+				Point3D point = (Point3D) points.get(j);
+				double d = Math.sqrt(tris[i].euclideanDistanceSQR(point));
+				boolean found = result.contains(Arrays.asList(new Object[] {
+						tris[i], point }));
+				if (d <= distance - 1e-6)
+					assertTrue(found);
+				else if (d > distance + 1e-6)
+					assertFalse(found);
+				if (found)
+					expected++;
+			}
+		}
+		assertEquals(expected, result.size());
+		assertTrue(expected > 0);
+
+		// a distance of 0 joins the touching triangles of the grid
+		Set touching = pairs(first.distanceJoin(first, 0));
+		assertTrue(touching.size() > first.intersectionJoin(first).length / 2);
+		assertTrue(touching.contains(Arrays.asList(new Object[] { tris[0],
+				tris[1] })));
+		assertFalse(touching.contains(Arrays.asList(new Object[] { tris[0],
+				tris[tris.length - 1] })));
+
+		final int[] count = new int[1];
+		assertFalse(first.distanceJoin(second, distance, new SAM.Visitor() {
+			public boolean visit(Object obj) {
+				return ++count[0] < 4;
+			}
+		}));
+		assertEquals(4, count[0]);
+
+		try {
+			first.distanceJoin(second, -1);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// negative distance
+		}
+	}
+
+	public void testClosestPairs() {
+		ScalarOperator sop = new ScalarOperator();
+		Triangle3D[] tris = createGrid(15, sop);
+		RStar first = new RStar(8, sop);
+		first.bulkLoad(tris);
+		RStar second = new RStar(6, sop);
+		Random random = new Random(19);
+		Segment3D[] segs = new Segment3D[300];
+		for (int i = 0; i < segs.length; i++) {
+			double x = random.nextDouble() * 20 - 2;
+			double y = random.nextDouble() * 20 - 2;
+			double z = random.nextDouble() * 10 + 3;
+			segs[i] = new Segment3D(new Point3D(x, y, z), new Point3D(x
+					+ random.nextDouble(), y - random.nextDouble(), z
+					+ random.nextDouble() - 0.5), sop);
+			second.insert(segs[i]);
+		}
+
+		// compare with the sorted distances of all pairs
+		double[] distances = new double[tris.length * segs.length];
+		for (int i = 0; i < tris.length; i++)
+			for (int j = 0; j < segs.length; j++)
+				distances[i * segs.length + j] = Math.sqrt(GeomUtils
+						.euclideanDistanceSQR(tris[i], segs[j]));
+		Arrays.sort(distances);
+
+		ClosestPairResult[] pairs = first.closestPairs(second, 25);
+		assertEquals(25, pairs.length);
+		for (int k = 0; k < pairs.length; k++) {
+			assertEquals(distances[k], pairs[k].getDistance(),
+					TestConstants.EPSILON);
+			assertTrue(pairs[k].getFirst() instanceof Triangle3D);
+			assertTrue(pairs[k].getSecond() instanceof Segment3D);
+		}
+		ClosestPairResult closest = second.closestPair(first);
+		assertEquals(distances[0], closest.getDistance(), TestConstants.EPSILON);
+		assertTrue(closest.getFirst() instanceof Segment3D);
+
+		// all pairs of small trees
+		RStar small = new RStar(4, sop);
+		for (int j = 0; j < 5; j++)
+			small.insert(segs[j]);
+		assertEquals(5 * tris.length, first.closestPairs(small,
+				10 * tris.length).length);
+		assertNull(first.closestPair(new RStar(8, sop)));
+
+		// pairs of an object with itself are skipped
+		pairs = second.closestPairs(second, 20);
+		assertEquals(20, pairs.length);
+		for (int k = 0; k < pairs.length; k++)
+			assertTrue(pairs[k].getFirst() != pairs[k].getSecond());
+		assertEquals(5 * 4, small.closestPairs(small, 100).length);
+
+		// other SAMs are copied into a RStar
+		assertSame(first, RStar.toRStar(first, 8, sop));
+		Octree octree = new Octree(8, 12, sop);
+		for (int j = 0; j < segs.length; j++)
+			octree.insert(segs[j]);
+		pairs = first.closestPairs(RStar.toRStar(octree, 8, sop), 25);
+		for (int k = 0; k < pairs.length; k++)
+			assertEquals(distances[k], pairs[k].getDistance(),
+					TestConstants.EPSILON);
+
+		try {
+			first.closestPairs(second, 0);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// number less than 1
+		}
+	}
+
+	public void testBatchIntersects() {
+		ScalarOperator sop = new ScalarOperator();
+		Triangle3D[] tris = createGrid(30, sop);
+		RStar rstar = new RStar(8, sop);
+		rstar.bulkLoad(tris);
+		Octree octree = new Octree(8, 12, sop);
+		SpatialHash hash = new SpatialHash(1.0, sop);
+		for (int i = 0; i < tris.length; i++) {
+			octree.insert(tris[i]);
+			hash.insert(tris[i]);
+		}
+		SAM[] sams = { rstar, rstar.freeze(), octree, hash };
+
+		// large enough for the parallel execution
+		Random random = new Random(21);
+		MBB3D[] queries = new MBB3D[1500];
+		for (int i = 0; i < queries.length; i++) {
+			double x = random.nextDouble() * 32 - 1;
+			double y = random.nextDouble() * 32 - 1;
+			queries[i] = new MBB3D(new Point3D(x, y, 0), new Point3D(x
+					+ random.nextDouble() * 2, y + random.nextDouble() * 2, 2));
+		}
+		for (int k = 0; k < sams.length; k++) {
+			Set[] result = sams[k].intersects(queries);
+			assertEquals(queries.length, result.length);
+			for (int i = 0; i < queries.length; i++)
+				assertEquals(rstar.intersects(queries[i]), result[i]);
+		}
+		assertEquals(0, rstar.intersects(new MBB3D[0]).length);
+	}
+
+	public void testPlaneIntersects() {
+		ScalarOperator sop = new ScalarOperator();
+		Triangle3D[] tris = createGrid(30, sop);
+		RStar rstar = new RStar(8, sop);
+		rstar.bulkLoad(tris);
+		Octree octree = new Octree(8, 12, sop);
+		SpatialHash hash = new SpatialHash(1.0, sop);
+		Set all = new HashSet();
+		for (int i = 0; i < tris.length; i++) {
+			octree.insert(tris[i]);
+			hash.insert(tris[i]);
+			all.add(tris[i]);
+		}
+		SAM[] sams = { rstar, rstar.freeze(), rstar.compress(8), octree,
+				hash };
+
+		// slices along x - also touching the grid lines
+		Plane3D[] slices = new Plane3D[61];
+		for (int i = 0; i < slices.length; i++)
+			slices[i] = new Plane3D(new Vector3D(-1, 0, 0), new Vector3D(
+					i * 0.5, 0, 0), sop);
+		// oblique planes in unsorted order
+		Random random = new Random(23);
+		Plane3D[] oblique = new Plane3D[40];
+		for (int i = 0; i < oblique.length; i++)
+			oblique[i] = new Plane3D(new Vector3D(1, 2, 3), new Vector3D(
+					random.nextDouble() * 40 - 5, random.nextDouble() * 40,
+					random.nextDouble() * 4), sop);
+
+		for (int k = 0; k < sams.length; k++) {
+			checkPlanes(sams[k], slices, all, sop);
+			checkPlanes(sams[k], oblique, all, sop);
+			assertEquals(0, sams[k].intersects(new Plane3D[0]).length);
+		}
+
+		// the visitor terminates the query
+		final int[] count = new int[1];
+		assertFalse(rstar.intersects(slices[7], new SAM.Visitor() {
+			public boolean visit(Object obj) {
+				return ++count[0] < 3;
+			}
+		}));
+		assertEquals(3, count[0]);
+
+		try {
+			rstar.intersects(new Plane3D[] { slices[0], oblique[0] });
+			fail();
+		} catch (IllegalArgumentException e) {
+			// planes not parallel
+		}
+	}
+
+	private static void checkPlanes(SAM sam, Plane3D[] planes, Set objects,
+			ScalarOperator sop) {
+		Set[] result = sam.intersects(planes);
+		assertEquals(planes.length, result.length);
+		for (int i = 0; i < planes.length; i++) {
+			Set expected = new HashSet();
+			Iterator it = objects.iterator();
+			while (it.hasNext()) {
+				Triangle3D tri = (Triangle3D) it.next();
+				if (cuts(tri.getMBB(), planes[i], sop))
+					expected.add(tri);
+			}
+			assertEquals(expected, result[i]);
+			assertEquals(expected, sam.intersects(planes[i]));
+		}
+	}
+
+	/*
+	 * Tests the MBB3D against the plane by the signed distances of its
+	 * corners.
+	 */
+	private static boolean cuts(MBB3D mbb, Plane3D plane, ScalarOperator sop) {
+		Vector3D n = plane.getNormalVector();
+		double offset = n.scalarproduct(plane.getPositionVector());
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		for (int c = 0; c < 8; c++) {
+			Point3D p = (c & 1) == 0 ? mbb.getPMin() : mbb.getPMax();
+			Point3D q = (c & 2) == 0 ? mbb.getPMin() : mbb.getPMax();
+			Point3D r = (c & 4) == 0 ? mbb.getPMin() : mbb.getPMax();
+			double d = n.getX() * p.getX() + n.getY() * q.getY() + n.getZ()
+					* r.getZ() - offset;
+			min = Math.min(min, d);
+			max = Math.max(max, d);
+		}
+		return min <= sop.getEpsilon() && max >= -sop.getEpsilon();
+	}
+
+	public void testStatistics() throws Exception {
+		ScalarOperator sop = new ScalarOperator();
+		RStar rstar = new RStar(4, sop);
+		// two overlapping cubes - dead space 27 - 15, overlap 1
+		rstar.insert(new MBB3D(new Point3D(0, 0, 0), new Point3D(2, 2, 2)));
+		rstar.insert(new MBB3D(new Point3D(1, 1, 1), new Point3D(3, 3, 3)));
+		RStarStatistics statistics = rstar.getStatistics();
+		assertEquals(1, statistics.getNodeCount());
+		assertEquals(1, statistics.getHeight());
+		assertEquals(0.5, statistics.getLeafFillFactor(), TestConstants.EPSILON);
+		assertEquals(1.0, statistics.getOverlap(0), TestConstants.EPSILON);
+		assertEquals(12.0, statistics.getDeadSpace(), TestConstants.EPSILON);
+		assertEquals(0, statistics.getInsertCount());
+
+		Triangle3D[] tris = createGrid(20, sop);
+		rstar = new RStar(8, sop);
+		rstar.setMetricsEnabled(true);
+		for (int i = 0; i < tris.length; i++)
+			rstar.insert(tris[i]);
+		MBB3D query = new MBB3D(new Point3D(3, 3, 0), new Point3D(5, 5, 2));
+		rstar.intersects(query);
+		rstar.inside(query);
+		rstar.nearest(3, new Point3D(10, 10, 1));
+
+		statistics = rstar.getStatistics();
+		assertEquals(tris.length, statistics.getCount());
+		assertEquals(tris.length, statistics.getInsertCount());
+		assertTrue(statistics.getHeight() > 1);
+		assertTrue(statistics.getSplitCount() > 0);
+		assertTrue(statistics.getReinsertCount() > 0);
+		// every split adds a node, every root split a new root as well
+		assertEquals(statistics.getNodeCount(), 1 + statistics.getSplitCount()
+				+ statistics.getHeight() - 1);
+		assertTrue(statistics.getFillFactor() > 0.5
+				&& statistics.getFillFactor() <= 1);
+		assertEquals(1, statistics
+				.getQueryCount(RStarStatistics.QUERY_INTERSECTS));
+		assertEquals(1, statistics.getQueryCount(RStarStatistics.QUERY_INSIDE));
+		assertEquals(1, statistics.getQueryCount(RStarStatistics.QUERY_NEAREST));
+		assertTrue(statistics
+				.getNodeVisits(RStarStatistics.QUERY_INTERSECTS) >= statistics
+				.getHeight());
+		assertEquals(0, statistics.getQueryCount(RStarStatistics.QUERY_JOIN));
+
+		// the counters are read through JMX as well
+		ObjectName name = RStarMonitor.register(rstar, "test");
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			assertEquals(Integer.valueOf(statistics.getNodeCount()), server
+					.getAttribute(name, "NodeCount"));
+			assertEquals(Boolean.TRUE, server.getAttribute(name,
+					"MetricsEnabled"));
+		} finally {
+			RStarMonitor.unregister(name);
+		}
+		rstar.setMetricsEnabled(false);
+		assertEquals(0, rstar.getStatistics().getSplitCount());
+	}
+
+	/*
+	 * Converts join results to a set of object pairs.
+	 */
+	private static Set pairs(JoinResult[] results) {
+		Set set = new HashSet();
+		for (int i = 0; i < results.length; i++)
+			assertTrue(set.add(Arrays.asList(new Object[] {
+					results[i].getFirst(), results[i].getSecond() })));
+		return set;
+	}
+
+}
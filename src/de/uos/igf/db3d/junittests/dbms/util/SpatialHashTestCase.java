@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) Prof. Martin Breunig
+ */
+
+package de.uos.igf.db3d.junittests.dbms.util;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import de.uos.igf.db3d.dbms.geom.MBB3D;
+import de.uos.igf.db3d.dbms.geom.Point3D;
+import de.uos.igf.db3d.dbms.geom.ScalarOperator;
+import de.uos.igf.db3d.dbms.geom.Triangle3D;
+import de.uos.igf.db3d.dbms.model3d.PointElt3D;
+import de.uos.igf.db3d.dbms.model3d.PointNet3D;
+import de.uos.igf.db3d.dbms.model3d.PointNetBuilder;
+import de.uos.igf.db3d.dbms.util.RStar;
+import de.uos.igf.db3d.dbms.util.SpatialHash;
+import de.uos.igf.db3d.dbms.util.SAM.NNResult;
+import de.uos.igf.db3d.junittests.dbms.TestConstants;
+
+/**
+ * This testcase tests the methods of the <code>SpatialHash</code> class
+ * against the <code>RStar</code>.
+ */
+public class SpatialHashTestCase extends TestCase {
+
+	public void testQueries() {
+		ScalarOperator sop = new ScalarOperator();
+		PointElt3D[] points = createPoints(2000, 50, new Random(5));
+		// small initial cell size forces the cells to grow
+		SpatialHash hash = new SpatialHash(0.01, sop);
+		RStar rstar = new RStar(8, sop);
+		for (int i = 0; i < points.length; i++) {
+			hash.insert(points[i]);
+			rstar.insert(points[i]);
+		}
+		assertTrue(hash.getCellSize() > 0.01);
+		assertEquals(points.length, hash.getCount());
+		assertEquals(rstar.getEntries(), hash.getEntries());
+		assertTrue(hash.getMBB().isEqual(rstar.getMBB(), sop));
+
+		Random random = new Random(7);
+		for (int i = 0; i < 50; i++) {
+			double x = random.nextDouble() * 56 - 3;
+			double y = random.nextDouble() * 56 - 3;
+			double z = random.nextDouble() * 56 - 3;
+			MBB3D query = new MBB3D(new Point3D(x, y, z), new Point3D(x
+					+ random.nextDouble() * 10, y + random.nextDouble() * 10,
+					z + random.nextDouble() * 10));
+			assertEquals(rstar.intersects(query), hash.intersects(query));
+			assertEquals(rstar.intersectsStrict(query), hash
+					.intersectsStrict(query));
+			assertEquals(rstar.inside(query), hash.inside(query));
+
+			Point3D point = new Point3D(x, y, z);
+			NNResult[] expected = rstar.nearest(5, point);
+			NNResult[] result = hash.nearest(5, point);
+			for (int k = 0; k < expected.length; k++)
+				assertEquals(expected[k].getDistance(), result[k]
+						.getDistance(), TestConstants.EPSILON);
+
+			// stored points are found
+			Point3D stored = points[random.nextInt(points.length)];
+			assertEquals(rstar.contains(stored), hash.contains(stored));
+			assertEquals(1, hash.contains(stored).size());
+		}
+
+		// incremental nearest neighbours are complete and sorted
+		Iterator it = hash.nearestIterator(new Point3D(-20, 70, 25));
+		Set visited = new HashSet();
+		double last = 0;
+		while (it.hasNext()) {
+			NNResult nn = (NNResult) it.next();
+			assertTrue(nn.getDistance() >= last);
+			last = nn.getDistance();
+			assertTrue(visited.add(nn.getObjectRef()));
+		}
+		assertEquals(points.length, visited.size());
+	}
+
+	public void testExtendedObjects() {
+		ScalarOperator sop = new ScalarOperator();
+		Triangle3D[] tris = RStarTestCase.createGrid(20, sop);
+		SpatialHash hash = new SpatialHash(0.5, sop);
+		RStar rstar = new RStar(8, sop);
+		for (int i = 0; i < tris.length; i++) {
+			hash.insert(tris[i]);
+			rstar.insert(tris[i]);
+		}
+		Random random = new Random(11);
+		for (int i = 0; i < 30; i++) {
+			double x = random.nextDouble() * 22 - 1;
+			double y = random.nextDouble() * 22 - 1;
+			MBB3D query = new MBB3D(new Point3D(x, y, 0), new Point3D(x
+					+ random.nextDouble() * 3, y + random.nextDouble() * 3, 2));
+			assertEquals(rstar.intersects(query), hash.intersects(query));
+			assertEquals(rstar.contains(query), hash.contains(query));
+			Point3D point = new Point3D(x, y, 1);
+			assertEquals(rstar.contains(point), hash.contains(point));
+			assertEquals(rstar.nearest(3, point)[2].getDistance(), hash
+					.nearest(3, point)[2].getDistance(), TestConstants.EPSILON);
+		}
+	}
+
+	public void testRemove() {
+		ScalarOperator sop = new ScalarOperator();
+		PointElt3D[] points = createPoints(500, 20, new Random(13));
+		SpatialHash hash = new SpatialHash(1.0, sop);
+		for (int i = 0; i < points.length; i++)
+			hash.insert(points[i]);
+
+		for (int i = 0; i < points.length; i += 2)
+			assertTrue(hash.remove(points[i]));
+		assertFalse(hash.remove(points[0]));
+		assertEquals(points.length / 2, hash.getCount());
+		for (int i = 1; i < points.length; i += 2)
+			assertEquals(1, hash.contains(points[i]).size());
+		for (int i = 1; i < points.length; i += 2)
+			assertTrue(hash.remove(points[i]));
+		assertEquals(0, hash.getCount());
+		assertNull(hash.getMBB());
+		assertTrue(hash.getEntries().isEmpty());
+		assertNull(hash.nearest(1, new Point3D(0, 0, 0))[0].getObjectRef());
+	}
+
+	public void testPointNetDefault() {
+		ScalarOperator sop = new ScalarOperator();
+		PointNetBuilder builder = new PointNetBuilder(sop);
+		builder.addComponent(createPoints(100, 10, new Random(17)));
+		PointNet3D net = builder.getPointNet();
+		assertTrue(net.getComponent(0).getSAM() instanceof SpatialHash);
+		assertEquals(100, net.getComponent(0).getSAM().getCount());
+	}
+
+	/*
+	 * Creates random points in the cube [0, size]^3.
+	 */
+	private static PointElt3D[] createPoints(int number, double size,
+			Random random) {
+		PointElt3D[] points = new PointElt3D[number];
+		for (int i = 0; i < number; i++)
+			points[i] = new PointElt3D(random.nextDouble() * size, random
+					.nextDouble()
+					* size, random.nextDouble() * size);
+		return points;
+	}
+
+}